@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.web.component.progress;
+
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ProjectorStatisticsEntryType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ProjectorStatisticsType;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class ProjectorLineDto implements Serializable {
+
+    public static final String F_COMPONENT = "component";
+    public static final String F_RESOURCE = "resource";
+    public static final String F_WAVE = "wave";
+    public static final String F_COUNT = "count";
+    public static final String F_AVERAGE_TIME = "averageTime";
+    public static final String F_MIN_TIME = "minTime";
+    public static final String F_MAX_TIME = "maxTime";
+    public static final String F_TOTAL_TIME = "totalTime";
+
+    private String component;
+    private String resource;
+    private Integer wave;
+    private int count;
+    private Long minTime;
+    private Long maxTime;
+    private long totalTime;
+
+    public ProjectorLineDto(ProjectorStatisticsEntryType entry) {
+        component = entry.getComponent();
+        resource = entry.getResource();
+        wave = entry.getWave();
+        count = entry.getCount();
+        minTime = entry.getMinTimeMicros();
+        maxTime = entry.getMaxTimeMicros();
+        totalTime = entry.getTotalTimeMicros();
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public Integer getWave() {
+        return wave;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public Long getAverageTime() {
+        if (count > 0) {
+            return totalTime / count;
+        } else {
+            return null;
+        }
+    }
+
+    public Long getMinTime() {
+        return minTime;
+    }
+
+    public Long getMaxTime() {
+        return maxTime;
+    }
+
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    // the most expensive components first
+    protected static List<ProjectorLineDto> extractFromOperationalInformation(ProjectorStatisticsType projectorStatisticsType) {
+        List<ProjectorLineDto> retval = new ArrayList<>();
+        if (projectorStatisticsType == null) {
+            return retval;
+        }
+        for (ProjectorStatisticsEntryType entry : projectorStatisticsType.getEntry()) {
+            retval.add(new ProjectorLineDto(entry));
+        }
+        retval.sort(Comparator.comparingLong(ProjectorLineDto::getTotalTime).reversed());
+        return retval;
+    }
+}
@@ -33,12 +33,14 @@ public class StatisticsDto implements Serializable {
     public static final String F_PROVISIONING_LINES = "provisioningLines";
     public static final String F_MAPPINGS_LINES = "mappingsLines";
     public static final String F_NOTIFICATIONS_LINES = "notificationsLines";
+    public static final String F_PROJECTOR_LINES = "projectorLines";
     public static final String F_LAST_MESSAGE = "lastMessage";
 
     private EnvironmentalPerformanceInformationType environmentalPerformanceInformationType;
     private List<ProvisioningStatisticsLineDto> provisioningLines;
     private List<MappingsLineDto> mappingsLines;
     private List<NotificationsLineDto> notificationsLines;
+    private List<ProjectorLineDto> projectorLines;
     private String lastMessage;
 
     public StatisticsDto() {
@@ -49,6 +51,7 @@ public class StatisticsDto implements Serializable {
         provisioningLines = ProvisioningStatisticsLineDto.extractFromOperationalInformation(environmentalPerformanceInformationType.getProvisioningStatistics());
         mappingsLines = MappingsLineDto.extractFromOperationalInformation(environmentalPerformanceInformationType.getMappingsStatistics());
         notificationsLines = NotificationsLineDto.extractFromOperationalInformation(environmentalPerformanceInformationType.getNotificationsStatistics());
+        projectorLines = ProjectorLineDto.extractFromOperationalInformation(environmentalPerformanceInformationType.getProjectorStatistics());
         lastMessage = extractLastMessageFromOperationalInformation(environmentalPerformanceInformationType);
     }
 
@@ -92,6 +95,14 @@ public class StatisticsDto implements Serializable {
         this.notificationsLines = notificationsLines;
     }
 
+    public List<ProjectorLineDto> getProjectorLines() {
+        return projectorLines;
+    }
+
+    public void setProjectorLines(List<ProjectorLineDto> projectorLines) {
+        this.projectorLines = projectorLines;
+    }
+
     public String getLastMessage() {
         return lastMessage != null ? lastMessage : "(none)";        // i18n
     }
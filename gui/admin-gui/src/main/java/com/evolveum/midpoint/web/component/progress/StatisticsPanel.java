@@ -57,6 +57,16 @@ public class StatisticsPanel extends BasePanel<StatisticsDto> {
     private static final String ID_PROVISIONING_MAX_TIME = "Provisioning.MaxTime";
     private static final String ID_PROVISIONING_TOTAL_TIME = "Provisioning.TotalTime";
 
+    private static final String ID_PROJECTOR_STATISTICS_LINES = "projectorStatisticsLines";
+    private static final String ID_PROJECTOR_COMPONENT = "Projector.Component";
+    private static final String ID_PROJECTOR_RESOURCE = "Projector.Resource";
+    private static final String ID_PROJECTOR_WAVE = "Projector.Wave";
+    private static final String ID_PROJECTOR_COUNT = "Projector.Count";
+    private static final String ID_PROJECTOR_AVERAGE_TIME = "Projector.AverageTime";
+    private static final String ID_PROJECTOR_MIN_TIME = "Projector.MinTime";
+    private static final String ID_PROJECTOR_MAX_TIME = "Projector.MaxTime";
+    private static final String ID_PROJECTOR_TOTAL_TIME = "Projector.TotalTime";
+
     private static final String ID_MAPPINGS_STATISTICS_LINES = "mappingsStatisticsLines";
     private static final String ID_MAPPINGS_OBJECT = "Mappings.Object";
     private static final String ID_MAPPINGS_COUNT = "Mappings.Count";
@@ -149,6 +159,20 @@ public class StatisticsPanel extends BasePanel<StatisticsDto> {
         };
         contentsPanel.add(notificationsLines);
 
+        ListView projectorLines = new ListView<ProjectorLineDto>(ID_PROJECTOR_STATISTICS_LINES, new PropertyModel<>(getModel(), StatisticsDto.F_PROJECTOR_LINES)) {
+            protected void populateItem(final ListItem<ProjectorLineDto> item) {
+                item.add(new Label(ID_PROJECTOR_COMPONENT, new PropertyModel<String>(item.getModel(), ProjectorLineDto.F_COMPONENT)));
+                item.add(new Label(ID_PROJECTOR_RESOURCE, new PropertyModel<String>(item.getModel(), ProjectorLineDto.F_RESOURCE)));
+                item.add(new Label(ID_PROJECTOR_WAVE, new PropertyModel<String>(item.getModel(), ProjectorLineDto.F_WAVE)));
+                item.add(new Label(ID_PROJECTOR_COUNT, new PropertyModel<String>(item.getModel(), ProjectorLineDto.F_COUNT)));
+                item.add(new Label(ID_PROJECTOR_AVERAGE_TIME, new PropertyModel<String>(item.getModel(), ProjectorLineDto.F_AVERAGE_TIME)));
+                item.add(new Label(ID_PROJECTOR_MIN_TIME, new PropertyModel<String>(item.getModel(), ProjectorLineDto.F_MIN_TIME)));
+                item.add(new Label(ID_PROJECTOR_MAX_TIME, new PropertyModel<String>(item.getModel(), ProjectorLineDto.F_MAX_TIME)));
+                item.add(new Label(ID_PROJECTOR_TOTAL_TIME, new PropertyModel<String>(item.getModel(), ProjectorLineDto.F_TOTAL_TIME)));
+            }
+        };
+        contentsPanel.add(projectorLines);
+
         Label lastMessage = new Label(ID_LAST_MESSAGE, new PropertyModel<>(getModel(), StatisticsDto.F_LAST_MESSAGE));
         contentsPanel.add(lastMessage);
 
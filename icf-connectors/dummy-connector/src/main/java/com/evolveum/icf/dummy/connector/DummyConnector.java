@@ -215,6 +215,7 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
     public Uid create(final ObjectClass objectClass, final Set<Attribute> createAttributes, final OperationOptions options) {
         log.info("create::begin attributes {0}", createAttributes);
         validate(objectClass);
+        resource.simulateNetworkLatency();
 
         DummyObject newObject;
         try {
@@ -291,6 +292,7 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
         log.info("update::begin");
         validate(objectClass);
         validate(uid);
+        resource.simulateNetworkLatency();
 
         try {
 
@@ -520,6 +522,7 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
     public Uid addAttributeValues(ObjectClass objectClass, Uid uid, Set<Attribute> valuesToAdd, OperationOptions options) {
         validate(objectClass);
         validate(uid);
+        resource.simulateNetworkLatency();
 
         try {
 
@@ -711,6 +714,7 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
     public Uid removeAttributeValues(ObjectClass objectClass, Uid uid, Set<Attribute> valuesToRemove, OperationOptions options) {
         validate(objectClass);
         validate(uid);
+        resource.simulateNetworkLatency();
 
         try {
 
@@ -887,6 +891,7 @@ public class DummyConnector implements PoolableConnector, AuthenticateOp, Resolv
         log.info("delete::begin");
         validate(objectClass);
         validate(uid);
+        resource.simulateNetworkLatency();
 
         String id = uid.getUidValue();
 
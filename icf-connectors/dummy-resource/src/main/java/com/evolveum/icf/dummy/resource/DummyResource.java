@@ -102,6 +102,7 @@ public class DummyResource implements DebugDumpable {
 	private int groupMembersReadCount = 0;
 	private Collection<String> forbiddenNames;
 	private int operationDelayRange = 0;
+	private int networkLatency = 0;
 
 	/**
 	 * There is a monster that loves to eat cookies.
@@ -179,6 +180,7 @@ public class DummyResource implements DebugDumpable {
 		latestSyncToken = 0;
 		writeOperationCount = 0;
 		operationDelayRange = 0;
+		networkLatency = 0;
 		resetBreakMode();
 	}
 
@@ -368,6 +370,18 @@ public class DummyResource implements DebugDumpable {
 		this.operationDelayRange = operationDelayRange;
 	}
 
+	public int getNetworkLatency() {
+		return networkLatency;
+	}
+
+	/**
+	 * Simulated round-trip time of a request to the resource (in milliseconds). Unlike operation delay,
+	 * the latency does not block other operations, so it can be hidden by executing operations concurrently.
+	 */
+	public void setNetworkLatency(int networkLatency) {
+		this.networkLatency = networkLatency;
+	}
+
 	public boolean isMonsterization() {
 		return monsterization;
 	}
@@ -932,6 +946,21 @@ public class DummyResource implements DebugDumpable {
 		}
 	}
 
+	/**
+	 * Should be called by the connector (outside of any lock) for each request sent to the resource.
+	 */
+	public void simulateNetworkLatency() {
+		if (networkLatency == 0) {
+			return;
+		}
+		try {
+			Thread.sleep(networkLatency);
+		} catch (InterruptedException e) {
+			LOGGER.debug("Network latency simulation on dummy {} interrupted: {}", instanceName, e.getMessage());
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	private synchronized void checkBlockOperations() {
 		if (blockOperations) {
 			try {
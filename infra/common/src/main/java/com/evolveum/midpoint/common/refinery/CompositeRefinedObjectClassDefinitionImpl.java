@@ -307,6 +307,11 @@ public class CompositeRefinedObjectClassDefinitionImpl implements CompositeRefin
 		return structuralObjectClassDefinition.getVolatility();
 	}
 
+	@Override
+	public CachingPolicyType getCaching() {
+		return structuralObjectClassDefinition.getCaching();
+	}
+
 	@Override
 	public List<MappingType> getPasswordInbound() {
 		return structuralObjectClassDefinition.getPasswordInbound();
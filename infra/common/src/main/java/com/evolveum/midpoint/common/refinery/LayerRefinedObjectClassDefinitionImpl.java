@@ -614,6 +614,11 @@ public class LayerRefinedObjectClassDefinitionImpl implements LayerRefinedObject
 		return refinedObjectClassDefinition.getVolatility();
 	}
 
+	@Override
+	public CachingPolicyType getCaching() {
+		return refinedObjectClassDefinition.getCaching();
+	}
+
 	@Override
 	public Class getTypeClassIfKnown() {
 		return refinedObjectClassDefinition.getTypeClassIfKnown();
@@ -127,6 +127,11 @@ public interface RefinedObjectClassDefinition extends ObjectClassComplexTypeDefi
 	String getHumanReadableName();
 
 	ResourceObjectVolatilityType getVolatility();
+
+	/**
+	 * Caching policy specific to this object type (if any). Resource-level policy is not considered here.
+	 */
+	CachingPolicyType getCaching();
 	//endregion
 
 
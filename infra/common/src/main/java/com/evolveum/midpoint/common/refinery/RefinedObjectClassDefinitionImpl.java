@@ -318,6 +318,14 @@ public class RefinedObjectClassDefinitionImpl implements RefinedObjectClassDefin
 		return schemaHandlingObjectTypeDefinitionType.getVolatility();
 	}
 
+	@Override
+	public CachingPolicyType getCaching() {
+		if (schemaHandlingObjectTypeDefinitionType == null) {
+			return null;
+		}
+		return schemaHandlingObjectTypeDefinitionType.getCaching();
+	}
+
 	//endregion
 
 	//region Generating and matching artifacts ========================================================
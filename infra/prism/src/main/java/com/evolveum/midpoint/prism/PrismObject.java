@@ -461,6 +461,14 @@ public class PrismObject<O extends Objectable> extends PrismContainer<O> {
         return isImmutable() ? clone() : this;
 	}
 
+	/**
+	 * Returns an object that can be kept independently of this one: immutable object can be shared
+	 * (nobody is able to change it), so it is returned as is; mutable object is cloned.
+	 */
+	public PrismObject<O> cloneIfMutable() {
+		return isImmutable() ? this : clone();
+	}
+
 	public PrismObject<O> createImmutableClone() {
 		PrismObject<O> clone = clone();
 		clone.setImmutable(true);
@@ -364,8 +364,16 @@ public abstract class SchemaConstants {
 	public static final QName MODEL_EXTENSION_OBJECT_DELTA = new QName(NS_MODEL_EXTENSION, "objectDelta");
 	public static final QName MODEL_EXTENSION_OBJECT_DELTAS = new QName(NS_MODEL_EXTENSION, "objectDeltas");
 	public static final QName MODEL_EXTENSION_WORKER_THREADS = new QName(NS_MODEL_EXTENSION, "workerThreads");
+	public static final QName MODEL_EXTENSION_WORKER_BATCH_SIZE = new QName(NS_MODEL_EXTENSION, "workerBatchSize");
+	public static final QName MODEL_EXTENSION_PROPAGATION_THREADS = new QName(NS_MODEL_EXTENSION, "propagationThreads");
+	public static final QName MODEL_EXTENSION_WORKER_DRAIN_TIMEOUT = new QName(NS_MODEL_EXTENSION, "workerDrainTimeout");
+	public static final QName MODEL_EXTENSION_COUNT_OBJECTS_ON_START = new QName(NS_MODEL_EXTENSION, "countObjectsOnStart");
+	public static final QName MODEL_EXTENSION_USE_CORRELATION_INDEX = new QName(NS_MODEL_EXTENSION, "useCorrelationIndex");
+	public static final QName MODEL_EXTENSION_CHECKPOINT_INTERVAL = new QName(NS_MODEL_EXTENSION, "checkpointInterval");
+	public static final QName MODEL_EXTENSION_LAST_PROCESSED_OID = new QName(NS_MODEL_EXTENSION, "lastProcessedOid");
 	public static final QName MODEL_EXTENSION_OPTION_RAW = new QName(NS_MODEL_EXTENSION, "optionRaw");
 	public static final QName MODEL_EXTENSION_EXECUTE_OPTIONS = new QName(NS_MODEL_EXTENSION, "executeOptions");
+	public static final QName MODEL_EXTENSION_RECONCILE_RESOURCE_OID = new QName(NS_MODEL_EXTENSION, "reconcileResourceOid");
 
 	public static final QName MODEL_EXTENSION_DIAGNOSE = new QName(NS_MODEL_EXTENSION, "diagnose");
 	public static final QName MODEL_EXTENSION_FIX = new QName(NS_MODEL_EXTENSION, "fix");
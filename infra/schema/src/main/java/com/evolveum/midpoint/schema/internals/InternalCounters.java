@@ -28,6 +28,11 @@ public enum InternalCounters {
 	
 	RESOURCE_REPOSITORY_MODIFY_COUNT("resourceRepositoryModifyCount", "resource repository modify count", InternalOperationClasses.REPOSITORY_OPERATIONS),
 
+	/**
+	 * Cached resources that had to be cloned because the client did not ask for read-only version.
+	 */
+	RESOURCE_CACHE_CLONE_COUNT("resourceCacheCloneCount", "resource cache clone count", null),
+
 	CONNECTOR_INSTANCE_INITIALIZATION_COUNT("connectorInstanceInitializationCount", "connector instance initialization count", InternalOperationClasses.CONNECTOR_OPERATIONS),
 
 	CONNECTOR_SCHEMA_PARSE_COUNT("connectorSchemaParseCount", "connector schema parse count", InternalOperationClasses.CONNECTOR_OPERATIONS),
@@ -63,6 +68,18 @@ public enum InternalCounters {
 
 	ROLE_EVALUATION_SKIP_COUNT("roleEvaluationSkipCount", "role evaluation skip count", null),
 
+	MAPPING_EVALUATION_COUNT("mappingEvaluationCount", "mapping evaluation count", null),
+
+	/**
+	 * Mappings that were not evaluated because none of their sources changed.
+	 */
+	MAPPING_EVALUATION_SKIP_COUNT("mappingEvaluationSkipCount", "mapping evaluation skip count", null),
+
+	/**
+	 * Recomputes that were skipped because their inputs have not changed.
+	 */
+	RECOMPUTE_SKIP_COUNT("recomputeSkipCount", "recompute skip count", null),
+
 	PROJECTOR_RUN_COUNT("projectorRunCount", "projector run count", null);
 
 	// Used as localization key
@@ -37,6 +37,9 @@ public class ConnectorOperationalStatus implements DebugDumpable, Serializable {
 	public static final String F_POOL_CONFIG_MIN_EVICTABLE_IDLE_TIME = "poolConfigMinEvictableIdleTime";
 	public static final String F_POOL_STATUS_NUM_IDLE = "poolStatusNumIdle";
 	public static final String F_POOL_STATUS_NUM_ACTIVE = "poolStatusNumActive";
+	public static final String F_INSTANCE_CREATE_TIME = "instanceCreateTime";
+	public static final String F_LAST_HEALTH_CHECK_TIMESTAMP = "lastHealthCheckTimestamp";
+	public static final String F_LAST_HEALTH_CHECK_SUCCESS = "lastHealthCheckSuccess";
 
 	private String connectorName;
 	private String connectorClassName;
@@ -53,6 +56,11 @@ public class ConnectorOperationalStatus implements DebugDumpable, Serializable {
 	private Integer poolStatusNumIdle;
 	private Integer poolStatusNumActive;
 
+	// connector instance management (on this node)
+	private Long instanceCreateTime;				// how long it took to create and configure the connector instance (ms)
+	private Long lastHealthCheckTimestamp;
+	private Boolean lastHealthCheckSuccess;
+
 	public String getConnectorName() {
 		return connectorName;
 	}
@@ -133,6 +141,30 @@ public class ConnectorOperationalStatus implements DebugDumpable, Serializable {
 		this.poolStatusNumActive = poolStatusNumActive;
 	}
 
+	public Long getInstanceCreateTime() {
+		return instanceCreateTime;
+	}
+
+	public void setInstanceCreateTime(Long instanceCreateTime) {
+		this.instanceCreateTime = instanceCreateTime;
+	}
+
+	public Long getLastHealthCheckTimestamp() {
+		return lastHealthCheckTimestamp;
+	}
+
+	public void setLastHealthCheckTimestamp(Long lastHealthCheckTimestamp) {
+		this.lastHealthCheckTimestamp = lastHealthCheckTimestamp;
+	}
+
+	public Boolean getLastHealthCheckSuccess() {
+		return lastHealthCheckSuccess;
+	}
+
+	public void setLastHealthCheckSuccess(Boolean lastHealthCheckSuccess) {
+		this.lastHealthCheckSuccess = lastHealthCheckSuccess;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -252,7 +284,10 @@ public class ConnectorOperationalStatus implements DebugDumpable, Serializable {
 		DebugUtil.debugDumpWithLabelLn(sb, "poolConfigWaitTimeout", poolConfigWaitTimeout, indent + 1);
 		DebugUtil.debugDumpWithLabelLn(sb, "poolConfigMinEvictableIdleTime", poolConfigMinEvictableIdleTime, indent + 1);
 		DebugUtil.debugDumpWithLabelLn(sb, "poolStatusNumIdle", poolStatusNumIdle, indent + 1);
-		DebugUtil.debugDumpWithLabel(sb, "poolStatusNumActive", poolStatusNumActive, indent + 1);
+		DebugUtil.debugDumpWithLabelLn(sb, "poolStatusNumActive", poolStatusNumActive, indent + 1);
+		DebugUtil.debugDumpWithLabelLn(sb, "instanceCreateTime", instanceCreateTime, indent + 1);
+		DebugUtil.debugDumpWithLabelLn(sb, "lastHealthCheckTimestamp", lastHealthCheckTimestamp, indent + 1);
+		DebugUtil.debugDumpWithLabel(sb, "lastHealthCheckSuccess", lastHealthCheckSuccess, indent + 1);
 		return sb.toString();
 
 	}
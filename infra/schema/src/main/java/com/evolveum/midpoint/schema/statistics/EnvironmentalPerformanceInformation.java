@@ -23,6 +23,8 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.MappingsStatisticsEn
 import com.evolveum.midpoint.xml.ns._public.common.common_3.MappingsStatisticsType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.NotificationsStatisticsEntryType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.NotificationsStatisticsType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ProjectorStatisticsEntryType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ProjectorStatisticsType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ProvisioningStatisticsEntryType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ProvisioningStatisticsType;
 import org.apache.commons.lang.StringUtils;
@@ -32,6 +34,7 @@ import javax.xml.namespace.QName;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * @author Pavol Mederly
@@ -50,6 +53,7 @@ public class EnvironmentalPerformanceInformation {
     private Map<ProvisioningStatisticsKey,ProvisioningStatisticsData> provisioningData = new HashMap<>();
     private Map<NotificationsStatisticsKey,GenericStatisticsData> notificationsData = new HashMap<>();
     private Map<MappingsStatisticsKey,GenericStatisticsData> mappingsData = new HashMap<>();
+    private Map<ProjectorStatisticsKey,GenericStatisticsData> projectorData = new HashMap<>();
 
 	private static final int AGGREGATION_THRESHOLD = 50;
 
@@ -83,6 +87,7 @@ public class EnvironmentalPerformanceInformation {
         rv.setProvisioningStatistics(toProvisioningStatisticsType());
         rv.setMappingsStatistics(toMappingsStatisticsType());
         rv.setNotificationsStatistics(toNotificationsStatisticsType());
+        rv.setProjectorStatistics(toProjectorStatisticsType());
         if (lastMessage != null) {
             rv.setLastMessageTimestamp(XmlTypeConverter.createXMLGregorianCalendar(lastMessage.getDate()));
             rv.setLastMessage(lastMessage.getMessage());
@@ -140,6 +145,30 @@ public class EnvironmentalPerformanceInformation {
         return rv;
     }
 
+    private ProjectorStatisticsType toProjectorStatisticsType() {
+        ProjectorStatisticsType rv = new ProjectorStatisticsType();
+        if (projectorData == null) {
+            return rv;
+        }
+        for (Map.Entry<ProjectorStatisticsKey, GenericStatisticsData> entry : projectorData.entrySet()) {
+            ProjectorStatisticsKey key = entry.getKey();
+            ProjectorStatisticsEntryType entryType = new ProjectorStatisticsEntryType();
+            entryType.setComponent(key.getComponent());
+            entryType.setResource(key.getResourceName());
+            entryType.setWave(key.getWave());
+            GenericStatisticsData data = entry.getValue();
+            entryType.setCount(data.getCount());
+            entryType.setMinTimeMicros(data.getMinDuration());
+            entryType.setMaxTimeMicros(data.getMaxDuration());
+            entryType.setTotalTimeMicros(data.getTotalDuration());
+            if (data.getCount() > 0) {
+                entryType.setAverageTimeMicros(data.getTotalDuration() / data.getCount());
+            }
+            rv.getEntry().add(entryType);
+        }
+        return rv;
+    }
+
     private ProvisioningStatisticsType toProvisioningStatisticsType() {
         ProvisioningStatisticsType rv = new ProvisioningStatisticsType();
         if (provisioningData == null) {
@@ -283,6 +312,7 @@ public class EnvironmentalPerformanceInformation {
         addProvisioningTo(rv, delta.getProvisioningStatistics());
         addMappingsTo(rv, delta.getMappingsStatistics());
         addNotificationsTo(rv, delta.getNotificationsStatistics());
+        addProjectorTo(rv, delta.getProjectorStatistics());
         if (delta.getLastMessageTimestamp() != null) {
             if (rv.getLastMessageTimestamp() == null || rv.getLastMessageTimestamp().compare(delta.getLastMessageTimestamp()) == DatatypeConstants.LESSER) {
                 rv.setLastMessageTimestamp(delta.getLastMessageTimestamp());
@@ -352,13 +382,13 @@ public class EnvironmentalPerformanceInformation {
                 rvMST.getEntry().add(e);
             }
             e.setCount(e.getCount() + de.getCount());
-            e.setMinTime(min(e.getMinTime(), de.getMinTime()));
-            e.setMaxTime(max(e.getMaxTime(), de.getMaxTime()));
-            e.setTotalTime(e.getTotalTime() + de.getTotalTime());
+            e.setMinTimeMicros(min(e.getMinTimeMicros(), de.getMinTimeMicros()));
+            e.setMaxTimeMicros(max(e.getMaxTimeMicros(), de.getMaxTimeMicros()));
+            e.setTotalTimeMicros(e.getTotalTimeMicros() + de.getTotalTimeMicros());
             if (e.getCount() > 0) {
-                e.setAverageTime(e.getTotalTime() / e.getCount());
+                e.setAverageTimeMicros(e.getTotalTimeMicros() / e.getCount());
             } else {
-                e.setAverageTime(null);
+                e.setAverageTimeMicros(null);
             }
         }
     }
@@ -372,6 +402,48 @@ public class EnvironmentalPerformanceInformation {
         return null;
     }
 
+    private static void addProjectorTo(EnvironmentalPerformanceInformationType rv, ProjectorStatisticsType delta) {
+        if (delta == null) {
+            return;
+        }
+        if (rv.getProjectorStatistics() == null) {
+            rv.setProjectorStatistics(delta.clone());
+            return;
+        }
+
+        ProjectorStatisticsType rvPST = rv.getProjectorStatistics();
+        for (ProjectorStatisticsEntryType de : delta.getEntry()) {
+            ProjectorStatisticsEntryType e = findProjectorEntryType(rvPST.getEntry(), de.getComponent(), de.getResource(), de.getWave());
+            if (e == null) {
+                e = new ProjectorStatisticsEntryType();
+                e.setComponent(de.getComponent());
+                e.setResource(de.getResource());
+                e.setWave(de.getWave());
+                rvPST.getEntry().add(e);
+            }
+            e.setCount(e.getCount() + de.getCount());
+            e.setMinTimeMicros(min(e.getMinTimeMicros(), de.getMinTimeMicros()));
+            e.setMaxTimeMicros(max(e.getMaxTimeMicros(), de.getMaxTimeMicros()));
+            e.setTotalTimeMicros(e.getTotalTimeMicros() + de.getTotalTimeMicros());
+            if (e.getCount() > 0) {
+                e.setAverageTimeMicros(e.getTotalTimeMicros() / e.getCount());
+            } else {
+                e.setAverageTimeMicros(null);
+            }
+        }
+    }
+
+    private static ProjectorStatisticsEntryType findProjectorEntryType(List<ProjectorStatisticsEntryType> list, String component,
+            String resource, Integer wave) {
+        for (ProjectorStatisticsEntryType entry : list) {
+            if (StringUtils.equals(entry.getComponent(), component) && StringUtils.equals(entry.getResource(), resource)
+                    && Objects.equals(entry.getWave(), wave)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
     private static void addProvisioningTo(EnvironmentalPerformanceInformationType rv, ProvisioningStatisticsType delta) {
         if (delta == null) {
             return;
@@ -481,6 +553,16 @@ public class EnvironmentalPerformanceInformation {
         data.recordOperation(duration, 1);
     }
 
+    public synchronized void recordProjectorComponentOperation(String component, String resourceName, Integer wave, long duration) {
+        ProjectorStatisticsKey key = new ProjectorStatisticsKey(component, resourceName, wave);
+        GenericStatisticsData data = projectorData.get(key);
+        if (data == null) {
+            data = new GenericStatisticsData();
+            projectorData.put(key, data);
+        }
+        data.recordOperation(duration, 1);
+    }
+
     public synchronized StatusMessage getLastMessage() {
         return lastMessage;
     }
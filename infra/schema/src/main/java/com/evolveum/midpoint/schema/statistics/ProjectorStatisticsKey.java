@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.schema.statistics;
+
+import java.util.Objects;
+
+public class ProjectorStatisticsKey {
+
+    private final String component;
+    private final String resourceName;
+    private final Integer wave;
+
+    public ProjectorStatisticsKey(String component, String resourceName, Integer wave) {
+        this.component = component;
+        this.resourceName = resourceName;
+        this.wave = wave;
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    public String getResourceName() {
+        return resourceName;
+    }
+
+    public Integer getWave() {
+        return wave;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProjectorStatisticsKey that = (ProjectorStatisticsKey) o;
+        return Objects.equals(component, that.component) &&
+                Objects.equals(resourceName, that.resourceName) &&
+                Objects.equals(wave, that.wave);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(component, resourceName, wave);
+    }
+}
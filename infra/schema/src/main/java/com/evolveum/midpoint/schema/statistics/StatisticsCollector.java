@@ -60,6 +60,12 @@ public interface StatisticsCollector {
 
     void recordMappingOperation(String objectOid, String objectName, String objectTypeName, String mappingName, long duration);
 
+    /**
+     * Records execution of a projector or clockwork component. Resource name and wave are null if not applicable.
+     * Duration is in microseconds.
+     */
+    void recordProjectorComponentOperation(String component, String resourceName, Integer wave, long duration);
+
     /**
      * Records information about iterative processing of objects.
      */
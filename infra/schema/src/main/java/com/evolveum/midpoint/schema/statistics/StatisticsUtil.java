@@ -78,6 +78,7 @@ public class StatisticsUtil {
 				(isEmpty(info.getProvisioningStatistics())
 				&& isEmpty(info.getMappingsStatistics())
 				&& isEmpty(info.getNotificationsStatistics())
+				&& isEmpty(info.getProjectorStatistics())
 				&& info.getLastMessage() == null
 				&& info.getLastMessageTimestamp() == null);
 	}
@@ -90,6 +91,10 @@ public class StatisticsUtil {
 		return mappingsStatistics == null || mappingsStatistics.getEntry().isEmpty();
 	}
 
+	public static boolean isEmpty(ProjectorStatisticsType projectorStatistics) {
+		return projectorStatistics == null || projectorStatistics.getEntry().isEmpty();
+	}
+
 	public static boolean isEmpty(ProvisioningStatisticsType provisioningStatistics) {
 		return provisioningStatistics == null || provisioningStatistics.getEntry().isEmpty();
 	}
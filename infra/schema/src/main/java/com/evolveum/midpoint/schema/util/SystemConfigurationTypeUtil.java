@@ -54,6 +54,59 @@ public class SystemConfigurationTypeUtil {
         return sysconfigObject.asObjectable().getInternals().getMaxModelClicks();
     }
 
+    public static int getProjectionExecutionThreads(PrismObject<SystemConfigurationType> sysconfigObject) {
+        if (sysconfigObject == null || sysconfigObject.asObjectable().getInternals() == null) {
+            return 0;
+        }
+        Integer threads = sysconfigObject.asObjectable().getInternals().getProjectionExecutionThreads();
+        return threads != null ? threads : 0;
+    }
+
+    public static int getProjectionLoadThreads(PrismObject<SystemConfigurationType> sysconfigObject) {
+        if (sysconfigObject == null || sysconfigObject.asObjectable().getInternals() == null) {
+            return 0;
+        }
+        Integer threads = sysconfigObject.asObjectable().getInternals().getProjectionLoadThreads();
+        return threads != null ? threads : 0;
+    }
+
+    public static int getReconcileAffectedThreads(PrismObject<SystemConfigurationType> sysconfigObject) {
+        if (sysconfigObject == null || sysconfigObject.asObjectable().getInternals() == null) {
+            return 0;
+        }
+        Integer threads = sysconfigObject.asObjectable().getInternals().getReconcileAffectedThreads();
+        return threads != null ? threads : 0;
+    }
+
+    public static boolean isShareImmutableObjectsInLens(PrismObject<SystemConfigurationType> sysconfigObject) {
+        if (sysconfigObject == null || sysconfigObject.asObjectable().getInternals() == null) {
+            return false;
+        }
+        return Boolean.TRUE.equals(sysconfigObject.asObjectable().getInternals().isShareImmutableObjectsInLens());
+    }
+
+    public static boolean isSkipMappingsWithUnchangedSources(PrismObject<SystemConfigurationType> sysconfigObject) {
+        if (sysconfigObject == null || sysconfigObject.asObjectable().getInternals() == null) {
+            return false;
+        }
+        return Boolean.TRUE.equals(sysconfigObject.asObjectable().getInternals().isSkipMappingsWithUnchangedSources());
+    }
+
+    public static boolean isSkipRecomputeWithUnchangedInputs(PrismObject<SystemConfigurationType> sysconfigObject) {
+        if (sysconfigObject == null || sysconfigObject.asObjectable().getInternals() == null) {
+            return false;
+        }
+        return Boolean.TRUE.equals(sysconfigObject.asObjectable().getInternals().isSkipRecomputeWithUnchangedInputs());
+    }
+
+    public static int getAssigneeCountCacheTimeToLive(PrismObject<SystemConfigurationType> sysconfigObject) {
+        if (sysconfigObject == null || sysconfigObject.asObjectable().getInternals() == null) {
+            return 0;
+        }
+        Integer timeToLive = sysconfigObject.asObjectable().getInternals().getAssigneeCountCacheTimeToLive();
+        return timeToLive != null ? timeToLive : 0;
+    }
+
     public static String getDefaultHostname(SystemConfigurationType sysconfig) {
         if (sysconfig == null) {
             return null;
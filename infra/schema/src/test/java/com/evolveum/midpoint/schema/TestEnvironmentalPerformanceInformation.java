@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.schema;
+
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.constants.MidPointConstants;
+import com.evolveum.midpoint.schema.statistics.EnvironmentalPerformanceInformation;
+import com.evolveum.midpoint.util.PrettyPrinter;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.EnvironmentalPerformanceInformationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ProjectorStatisticsEntryType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ProjectorStatisticsType;
+import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.fail;
+
+/**
+ * Aggregation of projector statistics within one statistics collector and merging of statistics
+ * of more collectors (worker threads, previous task runs).
+ */
+public class TestEnvironmentalPerformanceInformation {
+
+	private static final String ASSIGNMENTS = "assignments";
+	private static final String PROJECTION = "projection";
+	private static final String RESOURCE_DUMMY = "Dummy";
+	private static final String RESOURCE_RED = "Red";
+
+	@BeforeSuite
+	public void setup() throws SchemaException, SAXException, IOException {
+		PrettyPrinter.setDefaultNamespacePrefix(MidPointConstants.NS_MIDPOINT_PUBLIC_PREFIX);
+		PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+	}
+
+	@Test
+	public void projectorStatisticsAggregation() throws Exception {
+		System.out.println("===[ projectorStatisticsAggregation ]===");
+
+		EnvironmentalPerformanceInformation info = new EnvironmentalPerformanceInformation();
+		info.recordProjectorComponentOperation(ASSIGNMENTS, null, 1, 100);
+		info.recordProjectorComponentOperation(ASSIGNMENTS, null, 1, 300);
+		info.recordProjectorComponentOperation(ASSIGNMENTS, null, 2, 10);
+		info.recordProjectorComponentOperation(PROJECTION, RESOURCE_DUMMY, 1, 50);
+		info.recordProjectorComponentOperation(PROJECTION, RESOURCE_RED, 1, 70);
+
+		ProjectorStatisticsType statistics = info.getAggregatedValue().getProjectorStatistics();
+		System.out.println(statistics);
+
+		assertNotNull("No projector statistics", statistics);
+		assertEquals("Wrong # of entries", 4, statistics.getEntry().size());
+		assertEntry(statistics, ASSIGNMENTS, null, 1, 2, 100, 300, 400);
+		assertEntry(statistics, ASSIGNMENTS, null, 2, 1, 10, 10, 10);
+		assertEntry(statistics, PROJECTION, RESOURCE_DUMMY, 1, 1, 50, 50, 50);
+		assertEntry(statistics, PROJECTION, RESOURCE_RED, 1, 1, 70, 70, 70);
+	}
+
+	/**
+	 * Statistics of two worker threads are merged, as they are in the coordinator task,
+	 * and then added to the statistics of the previous task run.
+	 */
+	@Test
+	public void projectorStatisticsMerging() throws Exception {
+		System.out.println("===[ projectorStatisticsMerging ]===");
+
+		EnvironmentalPerformanceInformation worker1 = new EnvironmentalPerformanceInformation();
+		worker1.recordProjectorComponentOperation(ASSIGNMENTS, null, 1, 100);
+		worker1.recordProjectorComponentOperation(PROJECTION, RESOURCE_DUMMY, 1, 50);
+		EnvironmentalPerformanceInformation worker2 = new EnvironmentalPerformanceInformation();
+		worker2.recordProjectorComponentOperation(ASSIGNMENTS, null, 1, 20);
+		worker2.recordProjectorComponentOperation(ASSIGNMENTS, null, 1, 600);
+		worker2.recordProjectorComponentOperation(PROJECTION, RESOURCE_RED, 1, 70);
+
+		EnvironmentalPerformanceInformationType merged = new EnvironmentalPerformanceInformationType();
+		EnvironmentalPerformanceInformation.addTo(merged, worker1.getAggregatedValue());
+		EnvironmentalPerformanceInformation.addTo(merged, worker2.getAggregatedValue());
+		System.out.println(merged.getProjectorStatistics());
+
+		assertEquals("Wrong # of merged entries", 3, merged.getProjectorStatistics().getEntry().size());
+		assertEntry(merged.getProjectorStatistics(), ASSIGNMENTS, null, 1, 3, 20, 600, 720);
+		assertEntry(merged.getProjectorStatistics(), PROJECTION, RESOURCE_DUMMY, 1, 1, 50, 50, 50);
+		assertEntry(merged.getProjectorStatistics(), PROJECTION, RESOURCE_RED, 1, 1, 70, 70, 70);
+
+		// next task run starts with the merged value
+		EnvironmentalPerformanceInformation nextRun = new EnvironmentalPerformanceInformation(merged);
+		nextRun.recordProjectorComponentOperation(ASSIGNMENTS, null, 1, 5);
+		ProjectorStatisticsType aggregated = nextRun.getAggregatedValue().getProjectorStatistics();
+		System.out.println(aggregated);
+
+		assertEquals("Wrong # of aggregated entries", 3, aggregated.getEntry().size());
+		assertEntry(aggregated, ASSIGNMENTS, null, 1, 4, 5, 600, 725);
+		assertEntry(aggregated, PROJECTION, RESOURCE_DUMMY, 1, 1, 50, 50, 50);
+	}
+
+	private void assertEntry(ProjectorStatisticsType statistics, String component, String resource, Integer wave,
+			int count, long min, long max, long total) {
+		for (ProjectorStatisticsEntryType entry : statistics.getEntry()) {
+			if (Objects.equals(component, entry.getComponent()) && Objects.equals(resource, entry.getResource())
+					&& Objects.equals(wave, entry.getWave())) {
+				String desc = component + "/" + resource + "/" + wave;
+				assertEquals("Wrong count for " + desc, count, entry.getCount());
+				assertEquals("Wrong min time for " + desc, Long.valueOf(min), entry.getMinTimeMicros());
+				assertEquals("Wrong max time for " + desc, Long.valueOf(max), entry.getMaxTimeMicros());
+				assertEquals("Wrong total time for " + desc, total, entry.getTotalTimeMicros());
+				assertEquals("Wrong average time for " + desc, Long.valueOf(total / count), entry.getAverageTimeMicros());
+				return;
+			}
+		}
+		fail("No entry for " + component + "/" + resource + "/" + wave + " in " + statistics);
+	}
+}
@@ -116,7 +116,10 @@ public class ModelOperationTaskHandler implements TaskHandler {
 				}
                 clockwork.run(context, task, result);
 
-				task.setModelOperationContext(context.toLensContextType(context.getState() == ModelState.FINAL));
+				// PRIMARY means that the operation was suspended again (e.g. because of approvals); on resume the context
+				// is rotted and projection contexts without primary or sync delta are removed anyway (see above)
+				boolean reduced = context.getState() == ModelState.FINAL || context.getState() == ModelState.PRIMARY;
+				task.setModelOperationContext(context.toLensContextType(reduced));
                 task.savePendingModifications(result);
 
                 if (result.isUnknown()) {
@@ -30,6 +30,7 @@ import org.springframework.stereotype.Component;
 
 import com.evolveum.midpoint.common.refinery.RefinedResourceSchema;
 import com.evolveum.midpoint.model.impl.ModelConstants;
+import com.evolveum.midpoint.model.impl.sync.CorrelationIndexManager;
 import com.evolveum.midpoint.model.impl.sync.SynchronizeAccountResultHandler;
 import com.evolveum.midpoint.model.impl.util.AbstractSearchIterativeModelTaskHandler;
 import com.evolveum.midpoint.model.impl.util.Utils;
@@ -97,6 +98,7 @@ public class ImportAccountsFromResourceTaskHandler extends AbstractSearchIterati
     @Autowired private TaskManager taskManager;
     @Autowired private ProvisioningService provisioningService;
     @Autowired private ChangeNotificationDispatcher changeNotificationDispatcher;
+    @Autowired private CorrelationIndexManager correlationIndexManager;
 
     private PrismPropertyDefinition<QName> objectclassPropertyDefinition;
 
@@ -260,6 +262,21 @@ public class ImportAccountsFromResourceTaskHandler extends AbstractSearchIterati
 		return objectClass;
 	}
 
+	@Override
+	protected boolean initializeRun(SynchronizeAccountResultHandler handler, TaskRunResult runResult, Task task,
+			OperationResult opResult) {
+		// The index could be left over from a previous (failed) run, so it might be outdated
+		correlationIndexManager.release(task);
+		return super.initializeRun(handler, runResult, task, opResult);
+	}
+
+	@Override
+	protected void finish(SynchronizeAccountResultHandler handler, TaskRunResult runResult, Task task,
+			OperationResult opResult) throws SchemaException {
+		super.finish(handler, runResult, task, opResult);
+		correlationIndexManager.release(task);
+	}
+
 	@Override
     protected Class<? extends ObjectType> getType(Task task) {
         return ShadowType.class;
@@ -56,6 +56,7 @@ import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.FocusTypeUtil;
 import com.evolveum.midpoint.schema.util.ObjectResolver;
 import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
+import com.evolveum.midpoint.schema.util.SystemConfigurationTypeUtil;
 import com.evolveum.midpoint.security.api.Authorization;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.DOMUtil;
@@ -102,6 +103,7 @@ public class AssignmentEvaluator<F extends FocusType> {
 	private final boolean loginMode;		// restricted mode, evaluating only authorizations and gui config (TODO name)
 	private final PrismObject<SystemConfigurationType> systemConfiguration;
 	private final MappingEvaluator mappingEvaluator;
+	private final RoleObjectCache roleObjectCache;		// optional
 	private final EvaluatedAssignmentTargetCache evaluatedAssignmentTargetCache;
 
 	private AssignmentEvaluator(Builder<F> builder) {
@@ -118,6 +120,7 @@ public class AssignmentEvaluator<F extends FocusType> {
 		loginMode = builder.loginMode;
 		systemConfiguration = builder.systemConfiguration;
 		mappingEvaluator = builder.mappingEvaluator;
+		roleObjectCache = builder.roleObjectCache;
 		evaluatedAssignmentTargetCache = new EvaluatedAssignmentTargetCache();
 	}
 
@@ -623,7 +626,12 @@ public class AssignmentEvaluator<F extends FocusType> {
 			LOGGER.trace("Resolving target {}:{} from repository", targetClass.getSimpleName(), oid);
 			PrismObject<O> target;
 			try {
-				target = repository.getObject(targetClass, oid, null, ctx.result);
+				if (roleObjectCache != null && RoleObjectCache.isCacheable(targetClass)) {
+					target = roleObjectCache.getObject(targetClass, oid,
+							SystemConfigurationTypeUtil.isShareImmutableObjectsInLens(systemConfiguration), ctx.result);
+				} else {
+					target = repository.getObject(targetClass, oid, null, ctx.result);
+				}
 	        } catch (SchemaException e) {
 	        	throw new SchemaException(e.getMessage() + " in " + segment.sourceDescription, e);
 	        }
@@ -1231,6 +1239,7 @@ public class AssignmentEvaluator<F extends FocusType> {
 		private boolean loginMode = false;
 		private PrismObject<SystemConfigurationType> systemConfiguration;
 		private MappingEvaluator mappingEvaluator;
+		private RoleObjectCache roleObjectCache;
 
 		public Builder() {
 		}
@@ -1300,6 +1309,11 @@ public class AssignmentEvaluator<F extends FocusType> {
 			return this;
 		}
 
+		public Builder<F> roleObjectCache(RoleObjectCache val) {
+			roleObjectCache = val;
+			return this;
+		}
+
 		public AssignmentEvaluator<F> build() {
 			return new AssignmentEvaluator<>(this);
 		}
@@ -28,6 +28,7 @@ import com.evolveum.midpoint.prism.delta.*;
 import com.evolveum.midpoint.repo.api.ConflictWatcher;
 import com.evolveum.midpoint.repo.api.ModificationPrecondition;
 import com.evolveum.midpoint.repo.api.PreconditionViolationException;
+import com.evolveum.midpoint.repo.cache.RepositoryCache;
 import com.evolveum.midpoint.repo.common.expression.Expression;
 import com.evolveum.midpoint.repo.common.expression.ExpressionEvaluationContext;
 import com.evolveum.midpoint.repo.common.expression.ExpressionFactory;
@@ -42,6 +43,8 @@ import com.evolveum.midpoint.model.impl.expr.ExpressionEnvironment;
 import com.evolveum.midpoint.model.impl.expr.ModelExpressionThreadLocalHolder;
 import com.evolveum.midpoint.model.impl.lens.projector.credentials.CredentialsProcessor;
 import com.evolveum.midpoint.model.impl.lens.projector.focus.FocusConstraintsChecker;
+import com.evolveum.midpoint.model.impl.lens.projector.policy.AssigneeCountCache;
+import com.evolveum.midpoint.model.impl.sync.CorrelationIndexManager;
 import com.evolveum.midpoint.model.impl.util.Utils;
 import com.evolveum.midpoint.prism.*;
 import com.evolveum.midpoint.prism.crypto.EncryptionException;
@@ -63,7 +66,11 @@ import com.evolveum.midpoint.schema.internals.InternalsConfig;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.result.OperationResultStatus;
 import com.evolveum.midpoint.schema.util.ShadowUtil;
+import com.evolveum.midpoint.schema.util.SystemConfigurationTypeUtil;
+import com.evolveum.midpoint.security.api.HttpConnectionInformation;
 import com.evolveum.midpoint.security.api.OwnerResolver;
+import com.evolveum.midpoint.security.api.SecurityContextManager;
+import com.evolveum.midpoint.security.api.SecurityUtil;
 import com.evolveum.midpoint.security.enforcer.api.AuthorizationParameters;
 import com.evolveum.midpoint.security.enforcer.api.SecurityEnforcer;
 import com.evolveum.midpoint.task.api.Task;
@@ -82,14 +89,25 @@ import com.evolveum.prism.xml.ns._public.types_3.RawType;
 import org.apache.commons.lang.BooleanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.xml.bind.JAXBElement;
 import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
@@ -106,6 +124,7 @@ public class ChangeExecutor {
 	private static final String OPERATION_EXECUTE = ChangeExecutor.class.getName() + ".execute";
 	private static final String OPERATION_EXECUTE_FOCUS = OPERATION_EXECUTE + ".focus";
 	private static final String OPERATION_EXECUTE_PROJECTION = OPERATION_EXECUTE + ".projection";
+	private static final String OPERATION_EXECUTE_PROJECTION_PARALLEL = OPERATION_EXECUTE_PROJECTION + ".parallel";
 	private static final String OPERATION_LINK_ACCOUNT = ChangeExecutor.class.getName() + ".linkShadow";
 	private static final String OPERATION_UNLINK_ACCOUNT = ChangeExecutor.class.getName() + ".unlinkShadow";
 	private static final String OPERATION_UPDATE_SITUATION_ACCOUNT = ChangeExecutor.class.getName()
@@ -121,6 +140,15 @@ public class ChangeExecutor {
 	@Autowired private ModelObjectResolver objectResolver;
 	@Autowired private OperationalDataManager metadataManager;
 	@Autowired private CredentialsProcessor credentialsProcessor;
+	@Autowired private SecurityContextManager securityContextManager;
+	@Autowired private CorrelationIndexManager correlationIndexManager;
+	@Autowired private RoleObjectCache roleObjectCache;
+	@Autowired private AssigneeCountCache assigneeCountCache;
+
+	private static final ThreadLocal<Boolean> INSIDE_PARALLEL_EXECUTION = new ThreadLocal<>();
+
+	private ExecutorService projectionExecutor;
+	private int projectionExecutorThreads;
 
 	private PrismObjectDefinition<UserType> userDefinition = null;
 	private PrismObjectDefinition<ShadowType> shadowDefinition = null;
@@ -229,6 +257,9 @@ public class ChangeExecutor {
 
 			boolean restartRequested = false;
 
+			Map<LensProjectionContext, ParallelProjectionExecution> parallelExecutions =
+					executeIndependentProjectionDeltas(context, task);
+
 			for (LensProjectionContext projCtx : context.getProjectionContexts()) {
 				if (projCtx.getWave() != context.getExecutionWave()) {
 					continue;
@@ -250,73 +281,85 @@ public class ChangeExecutor {
 				if (projCtx.getResource() != null) {
 					subResult.addParam("resource", projCtx.getResource());
 				}
+				ParallelProjectionExecution parallelExecution = parallelExecutions.remove(projCtx);
 				try {
 
-					context.checkAbortRequested();
+					if (parallelExecution == null) {
+						// Deltas executed in parallel are already on the resources, so they are taken over
+						// (and linked) even if the abort was requested in the meantime.
+						context.checkAbortRequested();
+					}
 
 					context.reportProgress(new ProgressInformation(RESOURCE_OBJECT_OPERATION,
 							projCtx.getResourceShadowDiscriminator(), ENTERING));
 
-					executeReconciliationScript(projCtx, context, BeforeAfterType.BEFORE, task, subResult);
+					if (parallelExecution != null) {
+						// The delta was already executed, concurrently with deltas for other resources.
+						// Here we only take over its outcome, in the usual projection order.
+						takeOver(parallelExecution, context, task, subResult);
+					} else {
 
-					ObjectDelta<ShadowType> projDelta = projCtx.getExecutableDelta();
+						executeReconciliationScript(projCtx, context, BeforeAfterType.BEFORE, task, subResult);
 
-					if (shouldBeDeleted(projDelta, projCtx)) {
-						projDelta = ObjectDelta.createDeleteDelta(projCtx.getObjectTypeClass(), projCtx.getOid(),
-								prismContext);
-					}
+						ObjectDelta<ShadowType> projDelta = projCtx.getExecutableDelta();
 
-					if (projCtx.getSynchronizationPolicyDecision() == SynchronizationPolicyDecision.BROKEN) {
-						if (context.getFocusContext() != null
-								&& context.getFocusContext().getDelta() != null
-								&& context.getFocusContext().getDelta().isDelete()
-								&& context.getOptions() != null
-								&& ModelExecuteOptions.isForce(context.getOptions())) {
-							if (projDelta == null) {
-								projDelta = ObjectDelta.createDeleteDelta(projCtx.getObjectTypeClass(),
-										projCtx.getOid(), prismContext);
-							}
+						if (shouldBeDeleted(projDelta, projCtx)) {
+							projDelta = ObjectDelta.createDeleteDelta(projCtx.getObjectTypeClass(), projCtx.getOid(),
+									prismContext);
 						}
-						if (projDelta != null && projDelta.isDelete()) {
 
-							executeDelta(projDelta, projCtx, context, null, null, projCtx.getResource(), task,
-									subResult);
+						if (projCtx.getSynchronizationPolicyDecision() == SynchronizationPolicyDecision.BROKEN) {
+							if (context.getFocusContext() != null
+									&& context.getFocusContext().getDelta() != null
+									&& context.getFocusContext().getDelta().isDelete()
+									&& context.getOptions() != null
+									&& ModelExecuteOptions.isForce(context.getOptions())) {
+								if (projDelta == null) {
+									projDelta = ObjectDelta.createDeleteDelta(projCtx.getObjectTypeClass(),
+											projCtx.getOid(), prismContext);
+								}
+							}
+							if (projDelta != null && projDelta.isDelete()) {
 
-						}
-					} else {
+								executeDelta(projDelta, projCtx, context, null, null, projCtx.getResource(), task,
+										subResult);
 
-						if (projDelta == null || projDelta.isEmpty()) {
-							if (LOGGER.isTraceEnabled()) {
-								LOGGER.trace("No change for " + projCtx.getResourceShadowDiscriminator());
-							}
-							if (focusContext != null) {
-								updateLinks(focusContext, projCtx, task, subResult);
 							}
+						} else {
 
-							// Make sure post-reconcile delta is always executed,
-							// even if there is no change
-							executeReconciliationScript(projCtx, context, BeforeAfterType.AFTER, task,
-									subResult);
-
-							subResult.computeStatus();
-							subResult.recordNotApplicableIfUnknown();
-							continue;
-
-						} else if (projDelta.isDelete() && projCtx.getResourceShadowDiscriminator() != null
-								&& projCtx.getResourceShadowDiscriminator().getOrder() > 0) {
-							// HACK ... for higher-order context check if this was
-							// already deleted
-							LensProjectionContext lowerOrderContext = LensUtil.findLowerOrderContext(context,
-									projCtx);
-							if (lowerOrderContext != null && lowerOrderContext.isDelete()) {
-								// We assume that this was already executed
-								subResult.setStatus(OperationResultStatus.NOT_APPLICABLE);
+							if (projDelta == null || projDelta.isEmpty()) {
+								if (LOGGER.isTraceEnabled()) {
+									LOGGER.trace("No change for " + projCtx.getResourceShadowDiscriminator());
+								}
+								if (focusContext != null) {
+									updateLinks(focusContext, projCtx, task, subResult);
+								}
+
+								// Make sure post-reconcile delta is always executed,
+								// even if there is no change
+								executeReconciliationScript(projCtx, context, BeforeAfterType.AFTER, task,
+										subResult);
+
+								subResult.computeStatus();
+								subResult.recordNotApplicableIfUnknown();
 								continue;
+
+							} else if (projDelta.isDelete() && projCtx.getResourceShadowDiscriminator() != null
+									&& projCtx.getResourceShadowDiscriminator().getOrder() > 0) {
+								// HACK ... for higher-order context check if this was
+								// already deleted
+								LensProjectionContext lowerOrderContext = LensUtil.findLowerOrderContext(context,
+										projCtx);
+								if (lowerOrderContext != null && lowerOrderContext.isDelete()) {
+									// We assume that this was already executed
+									subResult.setStatus(OperationResultStatus.NOT_APPLICABLE);
+									continue;
+								}
 							}
-						}
 
-						executeDelta(projDelta, projCtx, context, null, null, projCtx.getResource(), task, subResult);
+							executeDelta(projDelta, projCtx, context, null, null, projCtx.getResource(), task, subResult);
 
+						}
 					}
 
 					subResult.computeStatus();
@@ -372,6 +415,19 @@ public class ChangeExecutor {
 				}
 			}
 
+			for (ParallelProjectionExecution parallelExecution : parallelExecutions.values()) {
+				// These were not taken over because the wave is going to be restarted. The deltas were executed
+				// anyway, so let us record them in the projection contexts and keep their results.
+				LensProjectionContext projCtx = parallelExecution.projectionContext;
+				try {
+					finishDeltaExecution(parallelExecution.delta, projCtx, context, projCtx.getResource(), task,
+							parallelExecution.deltaResult, parallelExecution.failure);
+				} finally {
+					parallelExecution.result.computeStatusIfUnknown();
+					result.addSubresult(parallelExecution.result);
+				}
+			}
+
 			// Result computation here needs to be slightly different
 			result.computeStatusComposite();
 			return restartRequested;
@@ -382,6 +438,251 @@ public class ChangeExecutor {
 		}
 	}
 
+	/**
+	 * Executes deltas of projections that are independent of each other concurrently (if enabled in the system configuration).
+	 * A projection is considered independent if it is in the current wave, has a non-empty delta, is the only projection on
+	 * its resource, has no dependencies (in either direction) and no reconciliation scripts. Only the delta execution itself
+	 * runs in parallel; the outcome is taken over by the main loop in {@link #executeChanges(LensContext, Task, OperationResult)}
+	 * in the usual projection order, so linking, scripts, progress reporting and result structure stay deterministic.
+	 *
+	 * The worker threads run only {@link #executeDeltaOperation}, i.e. the authorization, metadata and the provisioning
+	 * operation. The lens context and the task statistics (context OIDs, executed deltas, actions executed) are updated
+	 * by the calling thread in {@link #takeOver}. The calling thread waits for the workers, so the context is only read
+	 * while they run. The task is shared: its requestee is set here for all the workers, and provisioning records only
+	 * the environmental performance information into it, which is synchronized.
+	 */
+	private <O extends ObjectType> Map<LensProjectionContext, ParallelProjectionExecution> executeIndependentProjectionDeltas(
+			LensContext<O> context, Task task) {
+		Map<LensProjectionContext, ParallelProjectionExecution> executions = new IdentityHashMap<>();
+		int threads = SystemConfigurationTypeUtil.getProjectionExecutionThreads(context.getSystemConfiguration());
+		if (threads <= 0 || Boolean.TRUE.equals(INSIDE_PARALLEL_EXECUTION.get())) {
+			// we avoid nested parallel executions, as they could exhaust the executor threads and deadlock
+			return executions;
+		}
+		List<ParallelProjectionExecution> candidates = new ArrayList<>();
+		for (LensProjectionContext projCtx : context.getProjectionContexts()) {
+			ObjectDelta<ShadowType> projDelta = getIndependentProjectionDelta(projCtx, context, task);
+			if (projDelta != null) {
+				candidates.add(new ParallelProjectionExecution(projCtx, projDelta));
+			}
+		}
+		if (candidates.size() < 2) {
+			return executions;          // nothing to gain here
+		}
+		LOGGER.trace("Executing deltas of {} independent projections in parallel using at most {} threads",
+				candidates.size(), threads);
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		HttpConnectionInformation connectionInformation = SecurityUtil.getCurrentConnectionInformation();
+		ExecutorService executor = getProjectionExecutor(threads);
+		List<ParallelProjectionExecution> started = new ArrayList<>(candidates.size());
+		Utils.setRequestee(task, context);
+		try {
+			for (ParallelProjectionExecution candidate : candidates) {
+				if (context.isAbortRequested()) {
+					// the rest is left to the main loop, which reports the abort
+					LOGGER.trace("Abort requested, not starting parallel execution of remaining projection deltas");
+					break;
+				}
+				Runnable execution = () -> {
+					securityContextManager.setupPreAuthenticatedSecurityContext(authentication);
+					securityContextManager.storeConnectionInformation(connectionInformation);
+					RepositoryCache.enter();
+					try {
+						executeProjectionDelta(candidate, context, task);
+					} finally {
+						RepositoryCache.exit();
+						securityContextManager.setupPreAuthenticatedSecurityContext((Authentication) null);
+						securityContextManager.storeConnectionInformation(null);
+					}
+				};
+				try {
+					candidate.future = executor.submit(execution);
+				} catch (RejectedExecutionException e) {
+					// executor is being replaced or shut down, so let's do the work ourselves
+					executeProjectionDelta(candidate, context, task);
+				}
+				started.add(candidate);
+			}
+			for (ParallelProjectionExecution execution : started) {
+				execution.awaitCompletion();
+				// The shadow was changed in another thread, so only the cache of that thread was invalidated.
+				RepositoryCache.invalidateLocal(ShadowType.class, execution.delta.getOid());
+				RepositoryCache.invalidateLocal(ShadowType.class, execution.projectionContext.getOid());
+				executions.put(execution.projectionContext, execution);
+			}
+		} finally {
+			Utils.clearRequestee(task);
+		}
+		return executions;
+	}
+
+	private <O extends ObjectType> ObjectDelta<ShadowType> getIndependentProjectionDelta(LensProjectionContext projCtx,
+			LensContext<O> context, Task task) {
+		if (projCtx.getWave() != context.getExecutionWave() || !projCtx.isCanProject()
+				|| projCtx.getSynchronizationPolicyDecision() == SynchronizationPolicyDecision.IGNORE
+				|| projCtx.getSynchronizationPolicyDecision() == SynchronizationPolicyDecision.BROKEN) {
+			return null;
+		}
+		ResourceShadowDiscriminator discr = projCtx.getResourceShadowDiscriminator();
+		String resourceOid = projCtx.getResourceOid();
+		if (discr == null || discr.getOrder() > 0 || resourceOid == null || !projCtx.getDependencies().isEmpty()) {
+			return null;
+		}
+		if (projCtx.isDoReconciliation() && projCtx.getResource() != null && projCtx.getResource().getScripts() != null) {
+			return null;
+		}
+		for (LensProjectionContext otherCtx : context.getProjectionContexts()) {
+			if (otherCtx == projCtx) {
+				continue;
+			}
+			if (resourceOid.equals(otherCtx.getResourceOid())) {
+				return null;
+			}
+			for (ResourceObjectTypeDependencyType dependency : otherCtx.getDependencies()) {
+				if (dependency.getResourceRef() != null && resourceOid.equals(dependency.getResourceRef().getOid())) {
+					return null;
+				}
+			}
+		}
+		try {
+			ObjectDelta<ShadowType> projDelta = projCtx.getExecutableDelta();
+			if (shouldBeDeleted(projDelta, projCtx)) {
+				projDelta = ObjectDelta.createDeleteDelta(projCtx.getObjectTypeClass(), projCtx.getOid(), prismContext);
+			}
+			if (projDelta == null || projDelta.isEmpty()) {
+				return null;
+			}
+			return prepareDeltaToExecute(projDelta, projCtx, context, projCtx.getResource(), task);
+		} catch (SchemaException e) {
+			// will be reported when this projection is processed in the usual (sequential) way
+			LOGGER.trace("Couldn't get executable delta for {}, not executing it in parallel: {}",
+					projCtx.getHumanReadableName(), e.getMessage(), e);
+			return null;
+		}
+	}
+
+	private <O extends ObjectType> void executeProjectionDelta(ParallelProjectionExecution execution, LensContext<O> context,
+			Task task) {
+		LensProjectionContext projCtx = execution.projectionContext;
+		INSIDE_PARALLEL_EXECUTION.set(true);
+		try {
+			executeDeltaOperation(execution.delta, projCtx, context, null, null, projCtx.getResource(), task,
+					execution.deltaResult);
+		} catch (Throwable t) {
+			execution.failure = t;
+		} finally {
+			INSIDE_PARALLEL_EXECUTION.remove();
+		}
+	}
+
+	/**
+	 * Records the outcome of the parallel execution in the lens context and the task (just like {@link #executeDelta}
+	 * does for sequential execution), puts its result under the projection subresult and rethrows the exception (if any),
+	 * so it is processed just like an exception from sequential execution.
+	 */
+	private <O extends ObjectType> void takeOver(ParallelProjectionExecution execution, LensContext<O> context, Task task,
+			OperationResult subResult) throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException,
+			CommunicationException, ConfigurationException, SecurityViolationException, ExpressionEvaluationException,
+			PreconditionViolationException {
+		LensProjectionContext projCtx = execution.projectionContext;
+		try {
+			finishDeltaExecution(execution.delta, projCtx, context, projCtx.getResource(), task, execution.deltaResult,
+					execution.failure);
+		} finally {
+			execution.result.computeStatusIfUnknown();
+			subResult.addSubresult(execution.result);
+		}
+		execution.rethrowFailure();
+	}
+
+	private synchronized ExecutorService getProjectionExecutor(int threads) {
+		if (projectionExecutor == null || projectionExecutorThreads != threads) {
+			if (projectionExecutor != null) {
+				projectionExecutor.shutdown();
+			}
+			AtomicInteger threadNumber = new AtomicInteger();
+			projectionExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable, "projection-executor-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			projectionExecutorThreads = threads;
+		}
+		return projectionExecutor;
+	}
+
+	@PreDestroy
+	private synchronized void shutdownProjectionExecutor() {
+		if (projectionExecutor != null) {
+			projectionExecutor.shutdownNow();
+			projectionExecutor = null;
+		}
+	}
+
+	/**
+	 * Delta of an independent projection executed concurrently with others. Its result is detached
+	 * until the main loop takes it over.
+	 */
+	private static class ParallelProjectionExecution {
+
+		private final LensProjectionContext projectionContext;
+		private final ObjectDelta<ShadowType> delta;
+		private final OperationResult result = new OperationResult(OPERATION_EXECUTE_PROJECTION_PARALLEL);
+		private final OperationResult deltaResult = result.createSubresult(OPERATION_EXECUTE_DELTA);
+		private Future<?> future;
+		private Throwable failure;
+
+		private ParallelProjectionExecution(LensProjectionContext projectionContext, ObjectDelta<ShadowType> delta) {
+			this.projectionContext = projectionContext;
+			this.delta = delta;
+		}
+
+		private void awaitCompletion() {
+			if (future == null) {
+				return;             // executed synchronously
+			}
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				future.cancel(true);
+				failure = new SystemException("Interrupted while waiting for execution of projection delta", e);
+			} catch (ExecutionException e) {
+				failure = e.getCause();
+			}
+		}
+
+		private void rethrowFailure() throws ObjectAlreadyExistsException, ObjectNotFoundException,
+				SchemaException, CommunicationException, ConfigurationException, SecurityViolationException,
+				ExpressionEvaluationException, PreconditionViolationException {
+			if (failure == null) {
+				return;
+			} else if (failure instanceof ObjectAlreadyExistsException) {
+				throw (ObjectAlreadyExistsException) failure;
+			} else if (failure instanceof ObjectNotFoundException) {
+				throw (ObjectNotFoundException) failure;
+			} else if (failure instanceof SchemaException) {
+				throw (SchemaException) failure;
+			} else if (failure instanceof CommunicationException) {
+				throw (CommunicationException) failure;
+			} else if (failure instanceof ConfigurationException) {
+				throw (ConfigurationException) failure;
+			} else if (failure instanceof SecurityViolationException) {
+				throw (SecurityViolationException) failure;
+			} else if (failure instanceof ExpressionEvaluationException) {
+				throw (ExpressionEvaluationException) failure;
+			} else if (failure instanceof PreconditionViolationException) {
+				throw (PreconditionViolationException) failure;
+			} else if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			} else if (failure instanceof Error) {
+				throw (Error) failure;
+			} else {
+				throw new SystemException(failure.getMessage(), failure);
+			}
+		}
+	}
+
 	private <O extends ObjectType> ObjectDelta<O> applyPendingObjectPolicyStateModifications(LensFocusContext<O> focusContext,
 			ObjectDelta<O> focusDelta) throws SchemaException {
 		for (ItemDelta<?, ?> itemDelta : focusContext.getPendingObjectPolicyStateModifications()) {
@@ -870,6 +1171,31 @@ public class ChangeExecutor {
 					CommunicationException, ConfigurationException, SecurityViolationException,
 					ExpressionEvaluationException, PreconditionViolationException {
 
+		objectDelta = prepareDeltaToExecute(objectDelta, objectContext, context, resource, task);
+		if (objectDelta == null) {
+			return;
+		}
+
+		OperationResult result = parentResult.createSubresult(OPERATION_EXECUTE_DELTA);
+		Throwable failure = null;
+		try {
+			executeDeltaOperation(objectDelta, objectContext, context, options, conflictResolution, resource, task, result);
+		} catch (Throwable t) {
+			failure = t;
+			throw t;
+		} finally {
+			finishDeltaExecution(objectDelta, objectContext, context, resource, task, result, failure);
+		}
+	}
+
+	/**
+	 * Returns the delta that is to be executed, or null if there is nothing to execute (e.g. because
+	 * the delta was already executed).
+	 */
+	private <T extends ObjectType, F extends ObjectType> ObjectDelta<T> prepareDeltaToExecute(ObjectDelta<T> objectDelta,
+			LensElementContext<T> objectContext, LensContext<F> context, ResourceType resource, Task task)
+					throws SchemaException {
+
 		if (objectDelta == null) {
 			throw new IllegalArgumentException("Null change");
 		}
@@ -886,7 +1212,7 @@ public class ChangeExecutor {
 
 		if (objectDelta == null || objectDelta.isEmpty()) {
 			LOGGER.debug("Skipping execution of delta because it was already executed: {}", objectContext);
-			return;
+			return null;
 		}
 
 		if (InternalsConfig.consistencyChecks) {
@@ -904,21 +1230,51 @@ public class ChangeExecutor {
 		if (LOGGER.isTraceEnabled()) {
 			logDeltaExecution(objectDelta, context, resource, null, task);
 		}
+		return objectDelta;
+	}
 
-		OperationResult result = parentResult.createSubresult(OPERATION_EXECUTE_DELTA);
+	/**
+	 * Executes the operation itself. Neither the lens context nor the task statistics are updated here,
+	 * see {@link #finishDeltaExecution}.
+	 */
+	private <T extends ObjectType, F extends ObjectType> void executeDeltaOperation(ObjectDelta<T> objectDelta,
+			LensElementContext<T> objectContext, LensContext<F> context, ModelExecuteOptions options,
+			ConflictResolutionType conflictResolution, ResourceType resource, Task task, OperationResult result)
+					throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException,
+					CommunicationException, ConfigurationException, SecurityViolationException,
+					ExpressionEvaluationException, PreconditionViolationException {
+		if (objectDelta.getChangeType() == ChangeType.ADD) {
+			executeAddition(objectDelta, context, objectContext, options, resource, task, result);
+		} else if (objectDelta.getChangeType() == ChangeType.MODIFY) {
+			executeModification(objectDelta, context, objectContext, options, conflictResolution, resource, task, result);
+		} else if (objectDelta.getChangeType() == ChangeType.DELETE) {
+			executeDeletion(objectDelta, context, objectContext, options, resource, task, result);
+		}
+	}
 
-		try {
+	/**
+	 * Records the outcome of executed delta in the task statistics and in the lens context.
+	 * The failure is null if the operation was successful.
+	 */
+	private <T extends ObjectType, F extends ObjectType> void finishDeltaExecution(ObjectDelta<T> objectDelta,
+			LensElementContext<T> objectContext, LensContext<F> context, ResourceType resource, Task task,
+			OperationResult result, Throwable failure) throws SchemaException {
 
-			if (objectDelta.getChangeType() == ChangeType.ADD) {
-				executeAddition(objectDelta, context, objectContext, options, resource, task, result);
-			} else if (objectDelta.getChangeType() == ChangeType.MODIFY) {
-				executeModification(objectDelta, context, objectContext, options, conflictResolution, resource, task, result);
-			} else if (objectDelta.getChangeType() == ChangeType.DELETE) {
-				executeDeletion(objectDelta, context, objectContext, options, resource, task, result);
-			}
+		recordObjectActionExecuted(objectDelta, objectContext, context, task, failure);
 
-			// To make sure that the OID is set (e.g. after ADD operation)
-			LensUtil.setContextOid(context, objectContext, objectDelta.getOid());
+		try {
+			if (failure == null) {
+				// To make sure that the OID is set (e.g. after ADD operation)
+				LensUtil.setContextOid(context, objectContext, objectDelta.getOid());
+
+				if (FocusType.class.isAssignableFrom(objectDelta.getObjectTypeClass())) {
+					correlationIndexManager.focusChanged(objectDelta);
+					roleObjectCache.objectChanged(objectDelta);
+					//noinspection unchecked
+					assigneeCountCache.focusChanged((ObjectDelta<? extends FocusType>) objectDelta,
+							objectContext != null ? (PrismObject<? extends FocusType>) objectContext.getObjectCurrent() : null);
+				}
+			}
 
 		} finally {
 
@@ -943,6 +1299,18 @@ public class ChangeExecutor {
 		}
 	}
 
+	private <T extends ObjectType, F extends ObjectType> void recordObjectActionExecuted(ObjectDelta<T> objectDelta,
+			LensElementContext<T> objectContext, LensContext<F> context, Task task, Throwable failure) {
+		if (objectDelta.isAdd()) {
+			PrismObject<T> objectToAdd = objectDelta.getObjectToAdd();
+			task.recordObjectActionExecuted(objectToAdd, objectToAdd.getCompileTimeClass(),
+					failure == null ? objectDelta.getOid() : null, ChangeType.ADD, context.getChannel(), failure);
+		} else {
+			task.recordObjectActionExecuted(objectContext.getObjectOld(), objectDelta.getObjectTypeClass(),
+					objectDelta.getOid(), objectDelta.getChangeType(), context.getChannel(), failure);
+		}
+	}
+
 	private <T extends ObjectType, F extends FocusType> void removeExecutedItemDeltas(
 			ObjectDelta<T> objectDelta, LensElementContext<T> objectContext) {
 		if (objectContext == null) {
@@ -1236,59 +1604,51 @@ public class ChangeExecutor {
 		}
 
 		OwnerResolver ownerResolver = createOwnerResolver(context, task, result);
-		try {
-			securityEnforcer.authorize(ModelAuthorizationAction.ADD.getUrl(),
-					AuthorizationPhaseType.EXECUTION, AuthorizationParameters.Builder.buildObject(objectToAdd), ownerResolver, task, result);
+		securityEnforcer.authorize(ModelAuthorizationAction.ADD.getUrl(),
+				AuthorizationPhaseType.EXECUTION, AuthorizationParameters.Builder.buildObject(objectToAdd), ownerResolver, task, result);
 
-			T objectTypeToAdd = objectToAdd.asObjectable();
+		T objectTypeToAdd = objectToAdd.asObjectable();
 
-			metadataManager.applyMetadataAdd(context, objectToAdd, clock.currentTimeXMLGregorianCalendar(), task, result);
+		metadataManager.applyMetadataAdd(context, objectToAdd, clock.currentTimeXMLGregorianCalendar(), task, result);
 
-			if (options == null && context != null) {
-				options = context.getOptions();
-			}
+		if (options == null && context != null) {
+			options = context.getOptions();
+		}
 
-			RepoAddOptions addOpt = new RepoAddOptions();
-			if (ModelExecuteOptions.isOverwrite(options)) {
-				addOpt.setOverwrite(true);
-			}
-			if (ModelExecuteOptions.isNoCrypt(options)) {
-				addOpt.setAllowUnencryptedValues(true);
-			}
+		RepoAddOptions addOpt = new RepoAddOptions();
+		if (ModelExecuteOptions.isOverwrite(options)) {
+			addOpt.setOverwrite(true);
+		}
+		if (ModelExecuteOptions.isNoCrypt(options)) {
+			addOpt.setAllowUnencryptedValues(true);
+		}
 
-			String oid;
-			if (objectTypeToAdd instanceof TaskType) {
-				oid = addTask((TaskType) objectTypeToAdd, addOpt, result);
-			} else if (objectTypeToAdd instanceof NodeType) {
-				throw new UnsupportedOperationException("NodeType cannot be added using model interface");
-			} else if (ObjectTypes.isManagedByProvisioning(objectTypeToAdd)) {
+		String oid;
+		if (objectTypeToAdd instanceof TaskType) {
+			oid = addTask((TaskType) objectTypeToAdd, addOpt, result);
+		} else if (objectTypeToAdd instanceof NodeType) {
+			throw new UnsupportedOperationException("NodeType cannot be added using model interface");
+		} else if (ObjectTypes.isManagedByProvisioning(objectTypeToAdd)) {
 
-				ProvisioningOperationOptions provisioningOptions = getProvisioningOptions(context, options);
+			ProvisioningOperationOptions provisioningOptions = getProvisioningOptions(context, options);
 
-				oid = addProvisioningObject(objectToAdd, context, objectContext, provisioningOptions,
-						resource, task, result);
-				if (oid == null) {
-					throw new SystemException(
-							"Provisioning addObject returned null OID while adding " + objectToAdd);
-				}
-				result.addReturn("createdAccountOid", oid);
-			} else {
-				FocusConstraintsChecker.clearCacheFor(objectToAdd.asObjectable().getName());
+			oid = addProvisioningObject(objectToAdd, context, objectContext, provisioningOptions,
+					resource, task, result);
+			if (oid == null) {
+				throw new SystemException(
+						"Provisioning addObject returned null OID while adding " + objectToAdd);
+			}
+			result.addReturn("createdAccountOid", oid);
+		} else {
+			FocusConstraintsChecker.clearCacheFor(objectToAdd.asObjectable().getName());
 
-				oid = cacheRepositoryService.addObject(objectToAdd, addOpt, result);
-				if (oid == null) {
-					throw new SystemException(
-							"Repository addObject returned null OID while adding " + objectToAdd);
-				}
+			oid = cacheRepositoryService.addObject(objectToAdd, addOpt, result);
+			if (oid == null) {
+				throw new SystemException(
+						"Repository addObject returned null OID while adding " + objectToAdd);
 			}
-			change.setOid(oid);
-			task.recordObjectActionExecuted(objectToAdd, objectToAdd.getCompileTimeClass(), oid,
-					ChangeType.ADD, context.getChannel(), null);
-		} catch (Throwable t) {
-			task.recordObjectActionExecuted(objectToAdd, objectToAdd.getCompileTimeClass(), null,
-					ChangeType.ADD, context.getChannel(), t);
-			throw t;
 		}
+		change.setOid(oid);
 	}
 
 	private <T extends ObjectType, F extends ObjectType> void executeDeletion(ObjectDelta<T> change,
@@ -1302,47 +1662,39 @@ public class ChangeExecutor {
 
 		PrismObject<T> objectOld = objectContext.getObjectOld();
 		OwnerResolver ownerResolver = createOwnerResolver(context, task, result);
-		try {
-			securityEnforcer.authorize(ModelAuthorizationAction.DELETE.getUrl(),
-					AuthorizationPhaseType.EXECUTION, AuthorizationParameters.Builder.buildObject(objectOld), ownerResolver, task, result);
-
-			if (TaskType.class.isAssignableFrom(objectTypeClass)) {
-				taskManager.deleteTask(oid, result);
-			} else if (NodeType.class.isAssignableFrom(objectTypeClass)) {
-				taskManager.deleteNode(oid, result);
-			} else if (ObjectTypes.isClassManagedByProvisioning(objectTypeClass)) {
-				ProvisioningOperationOptions provisioningOptions = getProvisioningOptions(context, options);
-				try {
-					deleteProvisioningObject(objectTypeClass, oid, context, objectContext,
-							provisioningOptions, resource, task, result);
-				} catch (ObjectNotFoundException e) {
-					// Object that we wanted to delete is already gone. This can
-					// happen in some race conditions.
-					// As the resulting state is the same as we wanted it to be
-					// we will not complain and we will go on.
-					LOGGER.trace("Attempt to delete object {} ({}) that is already gone", oid,
-							objectTypeClass);
-					result.muteLastSubresultError();
-				}
-			} else {
-				try {
-					cacheRepositoryService.deleteObject(objectTypeClass, oid, result);
-				} catch (ObjectNotFoundException e) {
-					// Object that we wanted to delete is already gone. This can
-					// happen in some race conditions.
-					// As the resulting state is the same as we wanted it to be
-					// we will not complain and we will go on.
-					LOGGER.trace("Attempt to delete object {} ({}) that is already gone", oid,
-							objectTypeClass);
-					result.muteLastSubresultError();
-				}
+		securityEnforcer.authorize(ModelAuthorizationAction.DELETE.getUrl(),
+				AuthorizationPhaseType.EXECUTION, AuthorizationParameters.Builder.buildObject(objectOld), ownerResolver, task, result);
+
+		if (TaskType.class.isAssignableFrom(objectTypeClass)) {
+			taskManager.deleteTask(oid, result);
+		} else if (NodeType.class.isAssignableFrom(objectTypeClass)) {
+			taskManager.deleteNode(oid, result);
+		} else if (ObjectTypes.isClassManagedByProvisioning(objectTypeClass)) {
+			ProvisioningOperationOptions provisioningOptions = getProvisioningOptions(context, options);
+			try {
+				deleteProvisioningObject(objectTypeClass, oid, context, objectContext,
+						provisioningOptions, resource, task, result);
+			} catch (ObjectNotFoundException e) {
+				// Object that we wanted to delete is already gone. This can
+				// happen in some race conditions.
+				// As the resulting state is the same as we wanted it to be
+				// we will not complain and we will go on.
+				LOGGER.trace("Attempt to delete object {} ({}) that is already gone", oid,
+						objectTypeClass);
+				result.muteLastSubresultError();
+			}
+		} else {
+			try {
+				cacheRepositoryService.deleteObject(objectTypeClass, oid, result);
+			} catch (ObjectNotFoundException e) {
+				// Object that we wanted to delete is already gone. This can
+				// happen in some race conditions.
+				// As the resulting state is the same as we wanted it to be
+				// we will not complain and we will go on.
+				LOGGER.trace("Attempt to delete object {} ({}) that is already gone", oid,
+						objectTypeClass);
+				result.muteLastSubresultError();
 			}
-			task.recordObjectActionExecuted(objectOld, objectTypeClass, oid, ChangeType.DELETE,
-					context.getChannel(), null);
-		} catch (Throwable t) {
-			task.recordObjectActionExecuted(objectOld, objectTypeClass, oid, ChangeType.DELETE,
-					context.getChannel(), t);
-			throw t;
 		}
 	}
 
@@ -1358,51 +1710,43 @@ public class ChangeExecutor {
 		// old object to start from.
 		PrismObject<T> objectOld = objectContext.getObjectOld();
 		OwnerResolver ownerResolver = createOwnerResolver(context, task, result);
-		try {
-			securityEnforcer.authorize(ModelAuthorizationAction.MODIFY.getUrl(),
-					AuthorizationPhaseType.EXECUTION, AuthorizationParameters.Builder.buildObjectDelta(objectOld, delta), ownerResolver, task, result);
+		securityEnforcer.authorize(ModelAuthorizationAction.MODIFY.getUrl(),
+				AuthorizationPhaseType.EXECUTION, AuthorizationParameters.Builder.buildObjectDelta(objectOld, delta), ownerResolver, task, result);
 
-			metadataManager.applyMetadataModify(delta, objectContext, objectTypeClass,
-					clock.currentTimeXMLGregorianCalendar(), task, context, result);
+		metadataManager.applyMetadataModify(delta, objectContext, objectTypeClass,
+				clock.currentTimeXMLGregorianCalendar(), task, context, result);
 
-			if (delta.isEmpty()) {
-				// Nothing to do
-				return;
-			}
+		if (delta.isEmpty()) {
+			// Nothing to do
+			return;
+		}
 
-			if (TaskType.class.isAssignableFrom(objectTypeClass)) {
-				taskManager.modifyTask(delta.getOid(), delta.getModifications(), result);
-			} else if (NodeType.class.isAssignableFrom(objectTypeClass)) {
-				throw new UnsupportedOperationException("NodeType is not modifiable using model interface");
-			} else if (ObjectTypes.isClassManagedByProvisioning(objectTypeClass)) {
-				ProvisioningOperationOptions provisioningOptions = getProvisioningOptions(context, options);
-				String oid = modifyProvisioningObject(objectTypeClass, delta.getOid(),
-						delta.getModifications(), context, objectContext, provisioningOptions, resource,
-						task, result);
-				if (!oid.equals(delta.getOid())) {
-					delta.setOid(oid);
-				}
-			} else {
-				FocusConstraintsChecker.clearCacheForDelta(delta.getModifications());
-				ModificationPrecondition<T> precondition = null;
-				if (conflictResolution != null) {
-					String readVersion = objectContext.getObjectReadVersion();
-					if (readVersion != null) {
-						LOGGER.trace("Modification with precondition, readVersion={}", readVersion);
-						precondition = new VersionPrecondition<>(readVersion);						
-					} else {
-						LOGGER.warn("Requested careful modification of {}, but there is no read version", objectContext.getHumanReadableName());
-					}
+		if (TaskType.class.isAssignableFrom(objectTypeClass)) {
+			taskManager.modifyTask(delta.getOid(), delta.getModifications(), result);
+		} else if (NodeType.class.isAssignableFrom(objectTypeClass)) {
+			throw new UnsupportedOperationException("NodeType is not modifiable using model interface");
+		} else if (ObjectTypes.isClassManagedByProvisioning(objectTypeClass)) {
+			ProvisioningOperationOptions provisioningOptions = getProvisioningOptions(context, options);
+			String oid = modifyProvisioningObject(objectTypeClass, delta.getOid(),
+					delta.getModifications(), context, objectContext, provisioningOptions, resource,
+					task, result);
+			if (!oid.equals(delta.getOid())) {
+				delta.setOid(oid);
+			}
+		} else {
+			FocusConstraintsChecker.clearCacheForDelta(delta.getModifications());
+			ModificationPrecondition<T> precondition = null;
+			if (conflictResolution != null) {
+				String readVersion = objectContext.getObjectReadVersion();
+				if (readVersion != null) {
+					LOGGER.trace("Modification with precondition, readVersion={}", readVersion);
+					precondition = new VersionPrecondition<>(readVersion);						
+				} else {
+					LOGGER.warn("Requested careful modification of {}, but there is no read version", objectContext.getHumanReadableName());
 				}
-				cacheRepositoryService.modifyObject(objectTypeClass, delta.getOid(),
-						delta.getModifications(), precondition, null, result);
 			}
-			task.recordObjectActionExecuted(objectOld, objectTypeClass, delta.getOid(), ChangeType.MODIFY,
-					context.getChannel(), null);
-		} catch (Throwable t) {
-			task.recordObjectActionExecuted(objectOld, objectTypeClass, delta.getOid(), ChangeType.MODIFY,
-					context.getChannel(), t);
-			throw t;
+			cacheRepositoryService.modifyObject(objectTypeClass, delta.getOid(),
+					delta.getModifications(), precondition, null, result);
 		}
 	}
 
@@ -1439,9 +1783,9 @@ public class ChangeExecutor {
 			scripts = prepareScripts(object, context, objectContext, ProvisioningOperationTypeType.ADD,
 					resource, task, result);
 		}
-		Utils.setRequestee(task, context);
+		setRequestee(task, context);
 		String oid = provisioning.addObject(object, scripts, options, task, result);
-		Utils.clearRequestee(task);
+		clearRequestee(task);
 		return oid;
 	}
 
@@ -1468,9 +1812,9 @@ public class ChangeExecutor {
 			scripts = prepareScripts(shadowToModify, context, objectContext,
 					ProvisioningOperationTypeType.DELETE, resource, task, result);
 		}
-		Utils.setRequestee(task, context);
+		setRequestee(task, context);
 		provisioning.deleteObject(objectTypeClass, oid, options, scripts, task, result);
-		Utils.clearRequestee(task);
+		clearRequestee(task);
 	}
 
 	private <F extends ObjectType, T extends ObjectType> String modifyProvisioningObject(
@@ -1501,13 +1845,27 @@ public class ChangeExecutor {
 			scripts = prepareScripts(shadowToModify, context, objectContext,
 					ProvisioningOperationTypeType.MODIFY, resource, task, result);
 		}
-		Utils.setRequestee(task, context);
+		setRequestee(task, context);
 		String changedOid = provisioning.modifyObject(objectTypeClass, oid, modifications, scripts, options,
 				task, result);
-		Utils.clearRequestee(task);
+		clearRequestee(task);
 		return changedOid;
 	}
 
+	// Parallel projection executions share the task, so the requestee is set by the calling thread
+	// for all of them (see executeIndependentProjectionDeltas).
+	private <F extends ObjectType> void setRequestee(Task task, LensContext<F> context) {
+		if (!Boolean.TRUE.equals(INSIDE_PARALLEL_EXECUTION.get())) {
+			Utils.setRequestee(task, context);
+		}
+	}
+
+	private void clearRequestee(Task task) {
+		if (!Boolean.TRUE.equals(INSIDE_PARALLEL_EXECUTION.get())) {
+			Utils.clearRequestee(task);
+		}
+	}
+
 	private <F extends ObjectType, T extends ObjectType> OperationProvisioningScriptsType prepareScripts(
 			PrismObject<T> changedObject, LensContext<F> context, LensElementContext<T> objectContext,
 			ProvisioningOperationTypeType operation, ResourceType resource, Task task, OperationResult result)
@@ -630,7 +630,7 @@ public class Clockwork {
 					boolean restartRequested = changeExecutor.executeChanges(context, task, result);
 					restartRequestedHolder.setValue(restartRequested);
 				},
-				context.getPartialProcessingOptions()::getExecution);
+				context.getPartialProcessingOptions()::getExecution, task, context.getExecutionWave(), null, null);
 
 		audit(context, AuditEventStage.EXECUTION, task, result);
 
@@ -953,7 +953,7 @@ public class Clockwork {
         if (!ModelExecuteOptions.isReconcileAffected(context.getOptions())) {
             return HookOperationMode.FOREGROUND;
         }
-        if (context.getFocusClass() == null || !RoleType.class.isAssignableFrom(context.getFocusClass())) {
+        if (context.getFocusClass() == null || !AbstractRoleType.class.isAssignableFrom(context.getFocusClass())) {
             LOGGER.warn("ReconcileAffected requested but not available for {}. Doing nothing.", context.getFocusClass());
             return HookOperationMode.FOREGROUND;
         }
@@ -962,11 +962,24 @@ public class Clockwork {
         if (context.getFocusContext() == null) {
             throw new IllegalStateException("No focus context when expected it");
         }
-        PrismObject<RoleType> role = (PrismObject) context.getFocusContext().getObjectAny();
+        LensFocusContext<AbstractRoleType> focusContext = (LensFocusContext) context.getFocusContext();
+        PrismObject<AbstractRoleType> role = focusContext.getObjectAny();
         if (role == null) {
             throw new IllegalStateException("No role when expected it");
         }
 
+        // determining what the change means for the members
+        List<ObjectDelta<AbstractRoleType>> executedDeltas = new ArrayList<>();
+        for (LensObjectDeltaOperation<AbstractRoleType> executedDelta : focusContext.getExecutedDeltas()) {
+            executedDeltas.add(executedDelta.getObjectDelta());
+        }
+        RoleChangeImpact impact = RoleChangeImpact.determine(focusContext.getObjectOld(), executedDeltas);
+        LOGGER.debug("Impact of the change of {} on its members: {}", role, impact);
+        if (!impact.isAffectsMembers()) {
+            result.recordStatus(OperationResultStatus.SUCCESS, "The change of the role does not affect its members");
+            return HookOperationMode.FOREGROUND;
+        }
+
         // preparing the recompute/reconciliation task
         Task reconTask;
         if (task.isPersistent()) {
@@ -976,12 +989,12 @@ public class Clockwork {
         }
         assert !reconTask.isPersistent();
 
-        // creating object query
+        // creating object query (direct and indirect members, with any relation)
         PrismPropertyDefinition propertyDef = prismContext.getSchemaRegistry()
                 .findPropertyDefinitionByElementName(SchemaConstants.MODEL_EXTENSION_OBJECT_QUERY);
-        PrismReferenceValue referenceValue = new PrismReferenceValue(context.getFocusContext().getOid(), RoleType.COMPLEX_TYPE);
+        PrismReferenceValue referenceValue = new PrismReferenceValue(focusContext.getOid()).relation(PrismConstants.Q_ANY);
         ObjectFilter refFilter = QueryBuilder.queryFor(FocusType.class, prismContext)
-				.item(FocusType.F_ASSIGNMENT, AssignmentType.F_TARGET_REF).ref(referenceValue)
+				.item(FocusType.F_ROLE_MEMBERSHIP_REF).ref(referenceValue)
 				.buildFilter();
         SearchFilterType filterType = QueryConvertor.createSearchFilterType(refFilter, prismContext);
         QueryType queryType = new QueryType();
@@ -989,9 +1002,28 @@ public class Clockwork {
         PrismProperty<QueryType> property = propertyDef.instantiate();
         property.setRealValue(queryType);
         reconTask.addExtensionProperty(property);
+        reconTask.setExtensionPropertyValue(SchemaConstants.MODEL_EXTENSION_OBJECT_TYPE, FocusType.COMPLEX_TYPE);
+
+        // reconciling only the projections that can be affected (if we know them)
+        if (impact.getResourceOids() != null) {
+            ModelExecuteOptionsType options = new ModelExecuteOptionsType();
+            options.setReconcile(false);
+            reconTask.setExtensionPropertyValue(SchemaConstants.C_MODEL_EXECUTE_OPTIONS, options);
+            PrismPropertyDefinition<String> resourceOidsDef = prismContext.getSchemaRegistry()
+                    .findPropertyDefinitionByElementName(SchemaConstants.MODEL_EXTENSION_RECONCILE_RESOURCE_OID);
+            PrismProperty<String> resourceOidsProperty = resourceOidsDef.instantiate();
+            for (String resourceOid : impact.getResourceOids()) {
+                resourceOidsProperty.addRealValue(resourceOid);
+            }
+            reconTask.addExtensionProperty(resourceOidsProperty);
+        }
+        int threads = SystemConfigurationTypeUtil.getReconcileAffectedThreads(context.getSystemConfiguration());
+        if (threads > 0) {
+            reconTask.setExtensionPropertyValue(SchemaConstants.MODEL_EXTENSION_WORKER_THREADS, threads);
+        }
 
         // other parameters
-        reconTask.setName("Recomputing users after changing role " + role.asObjectable().getName());
+        reconTask.setName("Recomputing objects after changing role " + role.asObjectable().getName());
         reconTask.setBinding(TaskBinding.LOOSE);
         reconTask.setInitialExecutionStatus(TaskExecutionStatus.RUNNABLE);
         reconTask.setHandlerUri(RecomputeTaskHandler.HANDLER_URI);
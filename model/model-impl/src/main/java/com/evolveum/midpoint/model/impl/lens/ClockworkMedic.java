@@ -24,12 +24,14 @@ import com.evolveum.midpoint.model.api.util.ClockworkInspector;
 import com.evolveum.midpoint.model.api.util.DiagnosticContextManager;
 import com.evolveum.midpoint.model.common.mapping.MappingImpl;
 import com.evolveum.midpoint.model.common.util.ProfilingModelInspector;
+import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.repo.api.PreconditionViolationException;
 import com.evolveum.midpoint.repo.cache.RepositoryCache;
 import com.evolveum.midpoint.schema.internals.InternalsConfig;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.DiagnosticContext;
 import com.evolveum.midpoint.schema.util.DiagnosticContextHolder;
+import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.exception.CommunicationException;
 import com.evolveum.midpoint.util.exception.ConfigurationException;
 import com.evolveum.midpoint.util.exception.ExpressionEvaluationException;
@@ -51,6 +53,8 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.PartialProcessingTyp
 public class ClockworkMedic {
 		
 	private static final Trace LOGGER = TraceManager.getTrace(ClockworkMedic.class);
+
+	private static final String PROJECTION_COMPONENT_NAME = "projection";
 	
 	public void enterModelMethod() {
 		if (InternalsConfig.isModelProfiling()) {
@@ -154,6 +158,43 @@ public class ClockworkMedic {
 			Supplier<PartialProcessingTypeType> optionSupplier, OperationResult result)
 			throws SchemaException, ObjectNotFoundException, CommunicationException, ConfigurationException, SecurityViolationException,
 			PolicyViolationException, ExpressionEvaluationException, ObjectAlreadyExistsException, PreconditionViolationException {
+		partialExecute(componentName, runnable, optionSupplier, null, null, null, result);
+	}
+
+	/**
+	 * Executes the component and records its execution time into task statistics (environmental performance information).
+	 * Components that are executed for a projection are recorded separately for each resource.
+	 * Time of nested components is included in the time of the enclosing component.
+	 *
+	 * @param task task to record the statistics to (null means no recording)
+	 * @param wave projection or execution wave the component is executed in
+	 * @param projectionContext projection the component is executed for (null for focus and clockwork components)
+	 */
+	public void partialExecute(String componentName, ProjectorComponentRunnable runnable,
+			Supplier<PartialProcessingTypeType> optionSupplier, Task task, Integer wave, LensProjectionContext projectionContext,
+			OperationResult result)
+			throws SchemaException, ObjectNotFoundException, CommunicationException, ConfigurationException, SecurityViolationException,
+			PolicyViolationException, ExpressionEvaluationException, ObjectAlreadyExistsException, PreconditionViolationException {
+		partialExecute(componentName, componentName, runnable, optionSupplier, task, wave, projectionContext, result);
+	}
+
+	/**
+	 * Executes the whole processing of a projection. Clockwork inspectors see it as "projection <name>" component
+	 * (as they always did), while in the task statistics it is recorded as "projection" component of the resource.
+	 */
+	public void partialExecuteProjection(ProjectorComponentRunnable runnable, Supplier<PartialProcessingTypeType> optionSupplier,
+			Task task, Integer wave, LensProjectionContext projectionContext)
+			throws SchemaException, ObjectNotFoundException, CommunicationException, ConfigurationException, SecurityViolationException,
+			PolicyViolationException, ExpressionEvaluationException, ObjectAlreadyExistsException, PreconditionViolationException {
+		partialExecute("projection " + projectionContext.getHumanReadableName(), PROJECTION_COMPONENT_NAME, runnable,
+				optionSupplier, task, wave, projectionContext, null);
+	}
+
+	private void partialExecute(String componentName, String statisticsComponentName, ProjectorComponentRunnable runnable,
+			Supplier<PartialProcessingTypeType> optionSupplier, Task task, Integer wave, LensProjectionContext projectionContext,
+			OperationResult result)
+			throws SchemaException, ObjectNotFoundException, CommunicationException, ConfigurationException, SecurityViolationException,
+			PolicyViolationException, ExpressionEvaluationException, ObjectAlreadyExistsException, PreconditionViolationException {
 		ClockworkInspector clockworkInspector = getClockworkInspector();
 		PartialProcessingTypeType option = optionSupplier.get();
 		if (option == PartialProcessingTypeType.SKIP) {
@@ -166,6 +207,7 @@ public class ClockworkMedic {
 			if (clockworkInspector != null) {
 				clockworkInspector.projectorComponentStart(componentName);
 			}
+			long start = System.nanoTime();
 			try {
 				runnable.run();
 				LOGGER.trace("Projector component finished: {}", componentName);
@@ -180,10 +222,24 @@ public class ClockworkMedic {
 				if (clockworkInspector != null) {
 					clockworkInspector.projectorComponentFinish(componentName);
 				}
+				if (task != null) {
+					task.recordProjectorComponentOperation(statisticsComponentName, getResourceName(projectionContext), wave,
+							(System.nanoTime() - start) / 1000);
+				}
 			}
 
 		}
 	}
+
+	private String getResourceName(LensProjectionContext projectionContext) {
+		if (projectionContext == null) {
+			return null;
+		} else if (projectionContext.getResource() != null) {
+			return PolyString.getOrig(projectionContext.getResource().getName());
+		} else {
+			return projectionContext.getResourceOid();
+		}
+	}
 	
 	public static <F extends ObjectType> void traceContext(Trace logger, String activity, String phase,
 			boolean important,  LensContext<F> context, boolean showTriples) throws SchemaException {
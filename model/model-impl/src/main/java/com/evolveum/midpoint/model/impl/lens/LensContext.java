@@ -125,6 +125,12 @@ public class LensContext<F extends ObjectType> implements ModelContext<F> {
 	 */
 	private boolean doReconciliationForAllProjections = false;
 
+	/**
+	 * OIDs of resources whose projections are to be reconciled (even if doReconciliationForAllProjections is false).
+	 * Used when recomputing objects affected by a role change. Not stored in LensContextType.
+	 */
+	transient private Set<String> reconciliationResourceOids;
+
 	/**
 	 * If set to true then all operations are considered to be
 	 * in execution phase - for the purpose of authorizations and auditing.
@@ -428,6 +434,19 @@ public class LensContext<F extends ObjectType> implements ModelContext<F> {
 		this.doReconciliationForAllProjections = doReconciliationForAllProjections;
 	}
 
+	public Set<String> getReconciliationResourceOids() {
+		return reconciliationResourceOids;
+	}
+
+	public void setReconciliationResourceOids(Set<String> reconciliationResourceOids) {
+		this.reconciliationResourceOids = reconciliationResourceOids;
+	}
+
+	public boolean isDoReconciliationForResource(String resourceOid) {
+		return doReconciliationForAllProjections
+				|| resourceOid != null && reconciliationResourceOids != null && reconciliationResourceOids.contains(resourceOid);
+	}
+
 	public boolean isReconcileFocus() {
 		return doReconciliationForAllProjections ||  ModelExecuteOptions.isReconcileFocus(options);
 	}
@@ -802,6 +821,7 @@ public class LensContext<F extends ObjectType> implements ModelContext<F> {
 		clone.state = this.state;
 		clone.channel = this.channel;
 		clone.doReconciliationForAllProjections = this.doReconciliationForAllProjections;
+		clone.reconciliationResourceOids = this.reconciliationResourceOids;
 		clone.executionPhaseOnly = this.executionPhaseOnly;
 		clone.focusClass = this.focusClass;
 		clone.isFresh = this.isFresh;
@@ -1108,6 +1128,10 @@ public class LensContext<F extends ObjectType> implements ModelContext<F> {
 	 * except for objectOld, but let's neglect it for the time being).
 	 *
 	 * It is also to be used for the FINAL stage, where we need the context basically for information about executed deltas.
+	 *
+	 * Only deltas (primary, secondary, sync, executed) and references to objects are stored; the objects themselves
+	 * are re-loaded by the projector on resume, because the deserialized element contexts are not fresh. For users
+	 * with many accounts this is much smaller than the full context.
 	 */
 	public LensContextType toLensContextType(boolean reduced) throws SchemaException {
 
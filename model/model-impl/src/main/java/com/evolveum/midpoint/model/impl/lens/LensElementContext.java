@@ -194,12 +194,13 @@ public abstract class LensElementContext<O extends ObjectType> implements ModelE
 	 * Sets current and possibly also old object. This method is used with
 	 * freshly loaded object. The object is set as current object.
 	 * If the old object was not initialized yet (and if it should be initialized)
-	 * then the object is also set as old object.
+	 * then the object is also set as old object. Immutable object is shared
+	 * by both, as nobody can change it; mutable one is copied.
 	 */
 	public void setLoadedObject(PrismObject<O> object) {
 		setObjectCurrent(object);
 		if (objectOld == null && !isAdd()) {
-			setObjectOld(object.clone());
+			setObjectOld(object.cloneIfMutable());
 		}
 	}
 
@@ -453,7 +454,7 @@ public abstract class LensElementContext<O extends ObjectType> implements ModelE
         if (primaryDelta != null) {
             primaryDelta.setOid(oid);
         }
-        if (objectNew != null) {
+        if (objectNew != null && !(objectNew.isImmutable() && oid != null && oid.equals(objectNew.getOid()))) {
         	objectNew.setOid(oid);
         }
     }
@@ -572,13 +573,14 @@ public abstract class LensElementContext<O extends ObjectType> implements ModelE
 	public abstract void cleanup();
 
 	public void normalize() {
-		if (objectNew != null) {
+		// immutable objects are shared with other contexts; they come from the repository, so they are normalized anyway
+		if (objectNew != null && !objectNew.isImmutable()) {
 			objectNew.normalize();
 		}
-		if (objectOld != null) {
+		if (objectOld != null && !objectOld.isImmutable()) {
 			objectOld.normalize();
 		}
-		if (objectCurrent != null) {
+		if (objectCurrent != null && !objectCurrent.isImmutable()) {
 			objectCurrent.normalize();
 		}
 		if (primaryDelta != null) {
@@ -630,7 +632,7 @@ public abstract class LensElementContext<O extends ObjectType> implements ModelE
 		if (thisObject == null) {
 			return null;
 		}
-		return thisObject.clone();
+		return thisObject.cloneIfMutable();
 	}
 
     void storeIntoLensElementContextType(LensElementContextType lensElementContextType, boolean reduced) throws SchemaException {
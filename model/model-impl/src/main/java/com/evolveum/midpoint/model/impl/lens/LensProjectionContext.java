@@ -1333,7 +1333,8 @@ public class LensProjectionContext extends LensElementContext<ShadowType> implem
         lensProjectionContextType.setWave(wave);
         lensProjectionContextType.setResourceShadowDiscriminator(resourceShadowDiscriminator != null ?
                 resourceShadowDiscriminator.toResourceShadowDiscriminatorType() : null);
-        lensProjectionContextType.setFullShadow(fullShadow);
+        // in reduced mode the shadow is not stored, so it has to be re-loaded on resume
+        lensProjectionContextType.setFullShadow(fullShadow && !reduced);
         lensProjectionContextType.setIsAssigned(isAssigned);
         lensProjectionContextType.setIsAssignedOld(isAssignedOld);
         lensProjectionContextType.setIsActive(isActive);
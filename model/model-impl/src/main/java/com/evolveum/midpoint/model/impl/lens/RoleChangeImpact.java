@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.impl.lens;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.util.QNameUtil;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractRoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ConstructionType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Impact of a change of an abstract role on its members, as needed by the reconcileAffected option.
+ *
+ * The change (executed deltas of the role) is classified as follows:
+ * 1. Changes of items that cannot influence the members (description, authorizations, approvers, GUI
+ *    configuration, operational data, ...) have no impact, so the members need not be recomputed at all.
+ * 2. If only inducements with resource constructions were added, deleted or modified, the members have to be
+ *    recomputed and their projections on the resources of these constructions (old and new ones) have to be
+ *    reconciled. Projections on other resources need not be reconciled, i.e. they are not read from the resources.
+ * 3. Anything else (other inducements, assignments, activation, conditions, deletion of the role, ...) can influence
+ *    anything, so all the projections of the members have to be reconciled.
+ *
+ * Only (direct or indirect) members of the role are affected in cases 2 and 3, except for higher-order inducements.
+ * These are treated as case 3 but they influence also objects that are not members of the role; such objects
+ * are not covered by reconcileAffected, exactly as before.
+ *
+ * Old and new inducements are paired by their container IDs. If some of them has no ID (e.g. it was just added
+ * by a delta that did not go through the repository), values are paired by equivalence instead: a modified inducement
+ * then looks like a deleted old value and an added new value, which results in the same set of resources.
+ */
+public class RoleChangeImpact {
+
+	private static final Trace LOGGER = TraceManager.getTrace(RoleChangeImpact.class);
+
+	private static final RoleChangeImpact NONE = new RoleChangeImpact(false, Collections.emptySet());
+	private static final RoleChangeImpact UNLIMITED = new RoleChangeImpact(true, null);
+
+	private static final Collection<QName> IRRELEVANT_ITEMS = Arrays.asList(
+			ObjectType.F_DESCRIPTION, ObjectType.F_METADATA, ObjectType.F_OPERATION_EXECUTION, ObjectType.F_TRIGGER,
+			ObjectType.F_FETCH_RESULT, ObjectType.F_POLICY_SITUATION, ObjectType.F_TRIGGERED_POLICY_RULE,
+			FocusType.F_LINK_REF, FocusType.F_JPEG_PHOTO, FocusType.F_RECOMPUTE_FINGERPRINT,
+			AbstractRoleType.F_AUTHORIZATION, AbstractRoleType.F_REQUESTABLE, AbstractRoleType.F_DELEGABLE,
+			AbstractRoleType.F_RISK_LEVEL, AbstractRoleType.F_OWNER_REF, AbstractRoleType.F_APPROVER_REF,
+			AbstractRoleType.F_APPROVER_EXPRESSION, AbstractRoleType.F_APPROVAL_SCHEMA, AbstractRoleType.F_APPROVAL_PROCESS,
+			AbstractRoleType.F_AUTOMATICALLY_APPROVED, AbstractRoleType.F_ADMIN_GUI_CONFIGURATION,
+			AbstractRoleType.F_DATA_PROTECTION);
+
+	private final boolean affectsMembers;
+	private final Set<String> resourceOids;         // null means all resources
+
+	private RoleChangeImpact(boolean affectsMembers, Set<String> resourceOids) {
+		this.affectsMembers = affectsMembers;
+		this.resourceOids = resourceOids;
+	}
+
+	/**
+	 * @param roleOld state of the role before the change (null if the role was added)
+	 * @param deltas deltas that were executed on the role
+	 */
+	public static RoleChangeImpact determine(PrismObject<? extends AbstractRoleType> roleOld,
+			List<? extends ObjectDelta<? extends AbstractRoleType>> deltas) throws SchemaException {
+		boolean inducementsChanged = false;
+		for (ObjectDelta<? extends AbstractRoleType> delta : deltas) {
+			if (delta.isAdd()) {
+				// nobody can be a member of a role that has just been created
+				continue;
+			}
+			if (delta.isDelete()) {
+				return UNLIMITED;
+			}
+			for (ItemDelta<?, ?> modification : delta.getModifications()) {
+				QName itemName = modification.getPath().getFirstName();
+				if (QNameUtil.match(itemName, AbstractRoleType.F_INDUCEMENT)) {
+					inducementsChanged = true;
+				} else if (!QNameUtil.matchAny(itemName, IRRELEVANT_ITEMS)) {
+					LOGGER.trace("Change of {} can influence members of the role", modification.getPath());
+					return UNLIMITED;
+				}
+			}
+		}
+		if (!inducementsChanged) {
+			return NONE;
+		}
+		if (roleOld == null) {
+			return UNLIMITED;
+		}
+		PrismObject<? extends AbstractRoleType> roleNew = roleOld.clone();
+		for (ObjectDelta<? extends AbstractRoleType> delta : deltas) {
+			if (delta.isModify()) {
+				applyTo(delta, roleNew);
+			}
+		}
+		return determineForInducements(roleOld.asObjectable().getInducement(), roleNew.asObjectable().getInducement());
+	}
+
+	private static RoleChangeImpact determineForInducements(List<AssignmentType> inducementsOld, List<AssignmentType> inducementsNew) {
+		Map<Long, AssignmentType> oldById = indexById(inducementsOld);
+		Map<Long, AssignmentType> newById = indexById(inducementsNew);
+		if (oldById == null || newById == null) {
+			return determineForInducementsWithoutIds(inducementsOld, inducementsNew);
+		}
+		Set<String> resourceOids = new HashSet<>();
+		Set<Long> ids = new HashSet<>(oldById.keySet());
+		ids.addAll(newById.keySet());
+		for (Long id : ids) {
+			AssignmentType inducementOld = oldById.get(id);
+			AssignmentType inducementNew = newById.get(id);
+			if (inducementOld != null && inducementNew != null
+					&& inducementOld.asPrismContainerValue().equivalent(inducementNew.asPrismContainerValue())) {
+				continue;
+			}
+			if (!collectConstructionResourceOid(resourceOids, inducementOld)
+					|| !collectConstructionResourceOid(resourceOids, inducementNew)) {
+				LOGGER.trace("Changed inducement {} is not a simple construction", id);
+				return UNLIMITED;
+			}
+		}
+		return resourceOids.isEmpty() ? NONE : new RoleChangeImpact(true, resourceOids);
+	}
+
+	/*
+	 * Some inducement has no ID, so old and new values cannot be paired. Instead, each value without an equivalent
+	 * counterpart is treated as deleted (old values) or added (new values). A modified inducement is therefore seen
+	 * as a deletion of the old value and an addition of the new one, which gives the same resources as pairing would.
+	 */
+	private static RoleChangeImpact determineForInducementsWithoutIds(List<AssignmentType> inducementsOld,
+			List<AssignmentType> inducementsNew) {
+		Set<String> resourceOids = new HashSet<>();
+		if (!collectUnmatchedConstructionResourceOids(resourceOids, inducementsOld, inducementsNew)
+				|| !collectUnmatchedConstructionResourceOids(resourceOids, inducementsNew, inducementsOld)) {
+			return UNLIMITED;
+		}
+		return resourceOids.isEmpty() ? NONE : new RoleChangeImpact(true, resourceOids);
+	}
+
+	// returns false if some of the inducements that have no equivalent among the others is not a simple construction
+	private static boolean collectUnmatchedConstructionResourceOids(Set<String> resourceOids, List<AssignmentType> inducements,
+			List<AssignmentType> others) {
+		for (AssignmentType inducement : inducements) {
+			boolean matched = false;
+			for (AssignmentType other : others) {
+				if (inducement.asPrismContainerValue().equivalent(other.asPrismContainerValue())) {
+					matched = true;
+					break;
+				}
+			}
+			if (!matched && !collectConstructionResourceOid(resourceOids, inducement)) {
+				LOGGER.trace("Changed inducement {} is not a simple construction", inducement);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// null if some inducement has no ID (we cannot pair old and new values by IDs then)
+	private static Map<Long, AssignmentType> indexById(List<AssignmentType> inducements) {
+		Map<Long, AssignmentType> rv = new HashMap<>();
+		for (AssignmentType inducement : inducements) {
+			if (inducement.getId() == null) {
+				return null;
+			}
+			rv.put(inducement.getId(), inducement);
+		}
+		return rv;
+	}
+
+	// returns false if the inducement is not a first-order resource construction (and nothing else)
+	private static boolean collectConstructionResourceOid(Set<String> resourceOids, AssignmentType inducement) {
+		if (inducement == null) {
+			return true;
+		}
+		ConstructionType construction = inducement.getConstruction();
+		if (construction == null || construction.getResourceRef() == null || construction.getResourceRef().getOid() == null
+				|| inducement.getTargetRef() != null || inducement.getTarget() != null
+				|| inducement.getPersonaConstruction() != null || inducement.getFocusMappings() != null
+				|| inducement.getPolicyRule() != null || !inducement.getOrderConstraint().isEmpty()
+				|| inducement.getOrder() != null && inducement.getOrder() != 1) {
+			return false;
+		}
+		resourceOids.add(construction.getResourceRef().getOid());
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <R extends AbstractRoleType> void applyTo(ObjectDelta<? extends AbstractRoleType> delta,
+			PrismObject<R> object) throws SchemaException {
+		((ObjectDelta<R>) delta).applyTo(object);
+	}
+
+	/**
+	 * If false, the members need not be recomputed at all.
+	 */
+	public boolean isAffectsMembers() {
+		return affectsMembers;
+	}
+
+	/**
+	 * Resources whose projections have to be reconciled; null means all of them.
+	 */
+	public Set<String> getResourceOids() {
+		return resourceOids;
+	}
+
+	@Override
+	public String toString() {
+		return "RoleChangeImpact(" + (!affectsMembers ? "none" : resourceOids == null ? "all resources" : resourceOids) + ")";
+	}
+}
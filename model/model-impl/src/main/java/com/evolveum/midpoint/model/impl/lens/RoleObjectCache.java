@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.impl.lens;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractRoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Node-level cache of abstract roles (roles, orgs, services) used as assignment targets.
+ *
+ * Assignment evaluation fetches every role on the assignment path, for every focus being recomputed.
+ * EvaluatedAssignmentTargetCache avoids repeated evaluation only within a single assignment evaluator run,
+ * so e.g. a reconciliation or recompute task would read (and parse) the same business roles with all their
+ * inducements again and again. This cache keeps the parsed roles across operations.
+ *
+ * We deliberately do not cache the results of the evaluation (evaluated constructions, authorizations,
+ * policy rules), as they depend on the assignment path, activation, conditions and evaluation mode,
+ * i.e. on the focus being evaluated.
+ *
+ * Entries are bound to role version: before a cached role is used, its current version is read from the repository.
+ * This is much cheaper than fetching and parsing the full object, while it keeps the semantics of reading the role
+ * directly, even in a cluster. The version is read from the repository itself, bypassing the repository cache:
+ * the repository cache keeps versions for the whole (thread-local) operation, so it would not notice a role
+ * modified by someone else in the meantime. Roles modified on this node are also invalidated eagerly
+ * (by ChangeExecutor) to free the memory.
+ *
+ * The number of entries is limited; when the limit is reached, the least recently used role is evicted.
+ *
+ * Cached roles are immutable. Callers get their own copy of the role (so they are free to modify it), unless
+ * they ask for a read-only role: then the cached instance itself is returned, saving the cost of the deep copy
+ * (see InternalsConfigurationType.shareImmutableObjectsInLens).
+ */
+@Component
+public class RoleObjectCache {
+
+	private static final Trace LOGGER = TraceManager.getTrace(RoleObjectCache.class);
+
+	private static final int MAX_ENTRIES = 10000;
+
+	@Autowired
+	@Qualifier("cacheRepositoryService")
+	private RepositoryService repositoryService;
+
+	@Autowired
+	@Qualifier("repositoryService")
+	private RepositoryService versionRepositoryService;
+
+	// access-ordered, i.e. iteration starts at the least recently used entry; guarded by itself
+	private final Map<String, PrismObject<? extends ObjectType>> entries =
+			new LinkedHashMap<String, PrismObject<? extends ObjectType>>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, PrismObject<? extends ObjectType>> eldest) {
+					if (size() > MAX_ENTRIES) {
+						LOGGER.trace("Too many cached roles, evicting {}", eldest.getValue());
+						return true;
+					} else {
+						return false;
+					}
+				}
+			};
+
+	public static boolean isCacheable(Class<? extends ObjectType> type) {
+		return AbstractRoleType.class.isAssignableFrom(type);
+	}
+
+	public <O extends ObjectType> PrismObject<O> getObject(Class<O> type, String oid, OperationResult result)
+			throws SchemaException, ObjectNotFoundException {
+		return getObject(type, oid, false, result);
+	}
+
+	/**
+	 * @param readOnly if true, the returned object is immutable and may be shared with other callers
+	 */
+	public <O extends ObjectType> PrismObject<O> getObject(Class<O> type, String oid, boolean readOnly, OperationResult result)
+			throws SchemaException, ObjectNotFoundException {
+		if (!isCacheable(type)) {
+			return repositoryService.getObject(type, oid, null, result);
+		}
+		PrismObject<? extends ObjectType> cached = getEntry(oid);
+		if (cached != null && type.isAssignableFrom(cached.getCompileTimeClass())) {
+			String currentVersion;
+			try {
+				currentVersion = versionRepositoryService.getVersion(type, oid, result);
+			} catch (ObjectNotFoundException | SchemaException e) {
+				removeEntry(oid);
+				throw e;
+			}
+			if (Objects.equals(currentVersion, cached.getVersion())) {
+				LOGGER.trace("Cache HIT for {}", cached);
+				//noinspection unchecked
+				return readOnly ? (PrismObject<O>) cached : (PrismObject<O>) cached.clone();
+			}
+			LOGGER.trace("Version of {} changed ({} -> {}), reloading", cached, cached.getVersion(), currentVersion);
+		}
+		return reload(type, oid, readOnly, result);
+	}
+
+	/**
+	 * Should be called after the object was changed on this node.
+	 */
+	public void objectChanged(ObjectDelta<? extends ObjectType> delta) {
+		if (delta.getOid() != null && isCacheable(delta.getObjectTypeClass())) {
+			removeEntry(delta.getOid());
+		}
+	}
+
+	private <O extends ObjectType> PrismObject<O> reload(Class<O> type, String oid, boolean readOnly, OperationResult result)
+			throws SchemaException, ObjectNotFoundException {
+		PrismObject<O> object;
+		try {
+			object = repositoryService.getObject(type, oid, null, result);
+		} catch (ObjectNotFoundException | SchemaException e) {
+			removeEntry(oid);
+			throw e;
+		}
+		if (readOnly) {
+			object.setImmutable(true);
+			putEntry(oid, object);
+		} else {
+			putEntry(oid, object.createImmutableClone());
+		}
+		return object;
+	}
+
+	private PrismObject<? extends ObjectType> getEntry(String oid) {
+		synchronized (entries) {
+			return entries.get(oid);
+		}
+	}
+
+	private void putEntry(String oid, PrismObject<? extends ObjectType> object) {
+		synchronized (entries) {
+			entries.put(oid, object);
+		}
+	}
+
+	private void removeEntry(String oid) {
+		synchronized (entries) {
+			entries.remove(oid);
+		}
+	}
+}
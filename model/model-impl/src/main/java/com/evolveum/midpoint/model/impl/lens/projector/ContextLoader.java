@@ -17,9 +17,23 @@ package com.evolveum.midpoint.model.impl.lens.projector;
 
 import static com.evolveum.midpoint.schema.internals.InternalsConfig.consistencyChecks;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
 
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.internals.InternalsConfig;
@@ -29,8 +43,11 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
+import com.evolveum.midpoint.common.Clock;
 import com.evolveum.midpoint.common.refinery.RefinedObjectClassDefinition;
 import com.evolveum.midpoint.model.api.ModelExecuteOptions;
 import com.evolveum.midpoint.model.api.context.SynchronizationPolicyDecision;
@@ -57,8 +74,12 @@ import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.delta.PropertyDelta;
 import com.evolveum.midpoint.prism.delta.ReferenceDelta;
 import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 import com.evolveum.midpoint.provisioning.api.ProvisioningService;
 import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.repo.cache.RepositoryCache;
 import com.evolveum.midpoint.schema.GetOperationOptions;
 import com.evolveum.midpoint.schema.PointInTimeType;
 import com.evolveum.midpoint.schema.ResourceShadowDiscriminator;
@@ -69,6 +90,10 @@ import com.evolveum.midpoint.schema.util.ExceptionUtil;
 import com.evolveum.midpoint.schema.util.FocusTypeUtil;
 import com.evolveum.midpoint.schema.util.MiscSchemaUtil;
 import com.evolveum.midpoint.schema.util.ShadowUtil;
+import com.evolveum.midpoint.schema.util.SystemConfigurationTypeUtil;
+import com.evolveum.midpoint.security.api.HttpConnectionInformation;
+import com.evolveum.midpoint.security.api.SecurityContextManager;
+import com.evolveum.midpoint.security.api.SecurityUtil;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.QNameUtil;
 import com.evolveum.midpoint.util.exception.CommunicationException;
@@ -103,11 +128,19 @@ public class ContextLoader {
 	@Autowired private PrismContext prismContext;
 	@Autowired private SecurityHelper securityHelper;
 	@Autowired private ClockworkMedic medic;
+	@Autowired private SecurityContextManager securityContextManager;
+	@Autowired private Clock clock;
 
 	private static final Trace LOGGER = TraceManager.getTrace(ContextLoader.class);
 
 	private static final String OPERATION_LOAD = ContextLoader.class.getName()+".load";
 	private static final String OPERATION_LOAD_PROJECTION = ContextLoader.class.getName()+".loadProjection";
+	private static final String OPERATION_FETCH_SHADOW_PARALLEL = ContextLoader.class.getName()+".fetchShadowParallel";
+
+	private static final ThreadLocal<Boolean> INSIDE_PARALLEL_FETCH = new ThreadLocal<>();
+
+	private ExecutorService shadowFetchExecutor;
+	private int shadowFetchExecutorThreads;
 
 	public <F extends ObjectType> void load(LensContext<F> context, String activityDescription,
 			Task task, OperationResult parentResult)
@@ -169,6 +202,9 @@ public class ContextLoader {
 	    	removeRottenContexts(context);
 	    	
 	    	if (consistencyChecks) context.checkConsistence();
+
+	    	Map<LensProjectionContext, ParallelShadowFetch> parallelFetches = fetchFullShadowsInParallel(context, task);
+	    	preloadProjectionShadows(context, parallelFetches.keySet(), result);
 	
 	    	for (LensProjectionContext projectionContext: context.getProjectionContexts()) {
 	            context.checkAbortRequested();
@@ -176,7 +212,7 @@ public class ContextLoader {
 	            // results. But for that we would need code restructure.
 	            OperationResult projectionResult = result.createMinorSubresult(OPERATION_LOAD_PROJECTION);
 	            try {
-	            	finishLoadOfProjectionContext(context, projectionContext, task, projectionResult);
+	            	finishLoadOfProjectionContext(context, projectionContext, parallelFetches.get(projectionContext), task, projectionResult);
 	            } catch (Throwable e) {
 	            	projectionResult.recordFatalError(e);
 	    			throw e;
@@ -387,6 +423,12 @@ public class ContextLoader {
         Collection<SelectorOptions<GetOperationOptions>> options =
         		SelectorOptions.createCollection(GetOperationOptions.createRetrieve(RetrieveOption.INCLUDE));
 		PrismObject<F> object = cacheRepositoryService.getObject(focusContext.getObjectTypeClass(), userOid, options, result);
+		PrismObject<SystemConfigurationType> systemConfiguration = context.getSystemConfiguration() != null ?
+				context.getSystemConfiguration() : systemObjectCache.getSystemConfiguration(result);	// not loaded into context yet
+		if (SystemConfigurationTypeUtil.isShareImmutableObjectsInLens(systemConfiguration)) {
+			// the object is ours, so we can freeze it; it is then shared as old, current (and maybe new) object
+			object.setImmutable(true);
+		}
         focusContext.setLoadedObject(object);
         focusContext.setFresh(true);
 		LOGGER.trace("Focal object loaded: {}", object);
@@ -501,6 +543,14 @@ public class ContextLoader {
 		if (linkRef == null) {
 			return;
 		}
+		List<String> oidsToPreload = new ArrayList<>();
+		for (PrismReferenceValue linkRefVal : linkRef.getValues()) {
+			if (StringUtils.isNotBlank(linkRefVal.getOid()) && linkRefVal.getObject() == null
+					&& findAccountContext(linkRefVal.getOid(), context) == null) {
+				oidsToPreload.add(linkRefVal.getOid());
+			}
+		}
+		preloadShadows(oidsToPreload, result);
 		for (PrismReferenceValue linkRefVal : linkRef.getValues()) {
 			String oid = linkRefVal.getOid();
 			if (StringUtils.isBlank(oid)) {
@@ -546,7 +596,7 @@ public class ContextLoader {
 			LensProjectionContext accountContext = getOrCreateAccountContext(context, shadow, task, result);
 			accountContext.setFresh(true);
 			accountContext.setExists(shadow != null);
-			if (context.isDoReconciliationForAllProjections()) {
+			if (context.isDoReconciliationForResource(accountContext.getResourceOid())) {
 				accountContext.setDoReconciliation(true);
 			}
 			if (accountContext.isDoReconciliation()) {
@@ -978,7 +1028,7 @@ public class ContextLoader {
      * variable if it's not set (from provisioning), load resource (if not set already), etc.
 	 */
 	private <F extends ObjectType> void finishLoadOfProjectionContext(LensContext<F> context,
-			LensProjectionContext projContext, Task task, OperationResult result)
+			LensProjectionContext projContext, ParallelShadowFetch parallelFetch, Task task, OperationResult result)
 			throws ObjectNotFoundException, CommunicationException, SchemaException, ConfigurationException,
 			SecurityViolationException, ExpressionEvaluationException {
 
@@ -1020,24 +1070,20 @@ public class ContextLoader {
 					}
 				} else {
 					projContext.setExists(true);
-					GetOperationOptions rootOptions = GetOperationOptions.createPointInTimeType(PointInTimeType.FUTURE);
-					if (projContext.isDoReconciliation()) {
-						if (SchemaConstants.CHANGE_CHANNEL_DISCOVERY_URI.equals(context.getChannel())) {
-							// Avoid discovery loops
-							rootOptions.setDoNotDiscovery(true);
-						}
-					} else {
-						rootOptions.setNoFetch(true);
-					}
-					rootOptions.setAllowNotFound(true);
-					Collection<SelectorOptions<GetOperationOptions>> options = SelectorOptions.createCollection(rootOptions);
+					Collection<SelectorOptions<GetOperationOptions>> options = createProjectionLoadOptions(context, projContext);
+					GetOperationOptions rootOptions = SelectorOptions.findRootOptions(options);
 					if (LOGGER.isTraceEnabled()) {
 						LOGGER.trace("Loading shadow {} for projection {}, options={}", projectionObjectOid, projectionHumanReadableName, options);
 					}
 
 					try {
-						PrismObject<ShadowType> objectOld = provisioningService.getObject(
-								projContext.getObjectTypeClass(), projectionObjectOid, options, task, result);
+						PrismObject<ShadowType> objectOld;
+						if (parallelFetch != null && projectionObjectOid.equals(parallelFetch.oid)) {
+							objectOld = parallelFetch.takeOver(result);
+						} else {
+							objectOld = provisioningService.getObject(
+									projContext.getObjectTypeClass(), projectionObjectOid, options, task, result);
+						}
 						if (LOGGER.isTraceEnabled()) {
 							if (!GetOperationOptions.isNoFetch(rootOptions) && !GetOperationOptions.isRaw(rootOptions)) {
 								if (LOGGER.isTraceEnabled()) {
@@ -1191,6 +1237,222 @@ public class ContextLoader {
 		setPrimaryDeltaOldValue(projContext);
 	}
 
+	private <F extends ObjectType> Collection<SelectorOptions<GetOperationOptions>> createProjectionLoadOptions(
+			LensContext<F> context, LensProjectionContext projContext) {
+		GetOperationOptions rootOptions = GetOperationOptions.createPointInTimeType(PointInTimeType.FUTURE);
+		if (projContext.isDoReconciliation()) {
+			if (SchemaConstants.CHANGE_CHANNEL_DISCOVERY_URI.equals(context.getChannel())) {
+				// Avoid discovery loops
+				rootOptions.setDoNotDiscovery(true);
+			}
+		} else {
+			rootOptions.setNoFetch(true);
+		}
+		rootOptions.setAllowNotFound(true);
+		return SelectorOptions.createCollection(rootOptions);
+	}
+
+	// Approximately mirrors the decision in finishLoadOfProjectionContext. It is used only for optimizations,
+	// so it does not matter much if it is not precise.
+	private <F extends ObjectType> boolean isShadowToBeLoaded(LensContext<F> context, LensProjectionContext projContext) {
+		if (projContext.getSynchronizationPolicyDecision() == SynchronizationPolicyDecision.BROKEN
+				|| projContext.getOid() == null || projContext.isAdd()) {
+			return false;
+		}
+		return projContext.getObjectCurrent() == null
+				|| projContext.isDoReconciliation() && !projContext.isFullShadow()
+				|| needToReload(context, projContext);
+	}
+
+	/**
+	 * Fetches the repository shadows of all projections that are going to be loaded using one search.
+	 * The shadows get into the repository cache (the clockwork runs with the cache entered), so provisioning
+	 * does not need to read them from the repository one by one. Shadows that were already fetched in parallel
+	 * are skipped: they were read in other threads, so preloading them into the cache of this thread is useless.
+	 */
+	private <F extends ObjectType> void preloadProjectionShadows(LensContext<F> context,
+			Collection<LensProjectionContext> alreadyFetched, OperationResult result) throws SchemaException {
+		List<String> oids = new ArrayList<>();
+		for (LensProjectionContext projContext : context.getProjectionContexts()) {
+			if (!alreadyFetched.contains(projContext) && isShadowToBeLoaded(context, projContext)) {
+				oids.add(projContext.getOid());
+			}
+		}
+		preloadShadows(oids, result);
+	}
+
+	private void preloadShadows(List<String> oids, OperationResult result) throws SchemaException {
+		if (oids.size() < 2 || !RepositoryCache.exists()) {
+			return;             // nothing to gain here
+		}
+		LOGGER.trace("Preloading {} shadows: {}", oids.size(), oids);
+		ObjectQuery query = QueryBuilder.queryFor(ShadowType.class, prismContext)
+				.id(oids.toArray(new String[0]))
+				.build();
+		cacheRepositoryService.searchObjects(ShadowType.class, query, null, result);
+	}
+
+	/**
+	 * Fetches full shadows (i.e. reads resource objects) of projections on distinct resources concurrently
+	 * (if enabled in the system configuration). Only the provisioning getObject call runs in parallel; the results
+	 * are taken over in finishLoadOfProjectionContext in the usual projection order, so the processing of
+	 * the shadows (and of any errors) is the same as for sequential loading.
+	 */
+	private <F extends ObjectType> Map<LensProjectionContext, ParallelShadowFetch> fetchFullShadowsInParallel(
+			LensContext<F> context, Task task) {
+		Map<LensProjectionContext, ParallelShadowFetch> fetches = new IdentityHashMap<>();
+		int threads = SystemConfigurationTypeUtil.getProjectionLoadThreads(context.getSystemConfiguration());
+		if (threads <= 0 || Boolean.TRUE.equals(INSIDE_PARALLEL_FETCH.get())) {
+			// we avoid nested parallel fetches (e.g. via discovery), as they could exhaust the executor threads and deadlock
+			return fetches;
+		}
+		Set<String> resourceOids = new HashSet<>();
+		List<ParallelShadowFetch> candidates = new ArrayList<>();
+		for (LensProjectionContext projContext : context.getProjectionContexts()) {
+			ResourceShadowDiscriminator discr = projContext.getResourceShadowDiscriminator();
+			if (projContext.isDoReconciliation() && isShadowToBeLoaded(context, projContext)
+					&& (discr == null || discr.getOrder() == 0)
+					&& projContext.getResourceOid() != null && resourceOids.add(projContext.getResourceOid())) {
+				candidates.add(new ParallelShadowFetch(projContext.getOid(), createProjectionLoadOptions(context, projContext)));
+				fetches.put(projContext, candidates.get(candidates.size() - 1));
+			}
+		}
+		if (candidates.size() < 2) {
+			return new IdentityHashMap<>();          // nothing to gain here
+		}
+		LOGGER.trace("Fetching {} full shadows in parallel using at most {} threads", candidates.size(), threads);
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		HttpConnectionInformation connectionInformation = SecurityUtil.getCurrentConnectionInformation();
+		ExecutorService executor = getShadowFetchExecutor(threads);
+		for (ParallelShadowFetch candidate : candidates) {
+			Runnable fetch = () -> {
+				INSIDE_PARALLEL_FETCH.set(true);
+				securityContextManager.setupPreAuthenticatedSecurityContext(authentication);
+				securityContextManager.storeConnectionInformation(connectionInformation);
+				RepositoryCache.enter();
+				try {
+					candidate.fetch(task);
+				} finally {
+					RepositoryCache.exit();
+					securityContextManager.setupPreAuthenticatedSecurityContext((Authentication) null);
+					securityContextManager.storeConnectionInformation(null);
+					INSIDE_PARALLEL_FETCH.remove();
+				}
+			};
+			try {
+				candidate.future = executor.submit(fetch);
+			} catch (RejectedExecutionException e) {
+				// executor is being replaced or shut down, so the shadow will be loaded in the usual way
+				fetches.values().remove(candidate);
+			}
+		}
+		for (ParallelShadowFetch candidate : candidates) {
+			candidate.awaitCompletion();
+			// Fetching updates the repository shadow in another thread, so only the cache of that thread was invalidated.
+			RepositoryCache.invalidateLocal(ShadowType.class, candidate.oid);
+		}
+		return fetches;
+	}
+
+	private synchronized ExecutorService getShadowFetchExecutor(int threads) {
+		if (shadowFetchExecutor == null || shadowFetchExecutorThreads != threads) {
+			if (shadowFetchExecutor != null) {
+				shadowFetchExecutor.shutdown();
+			}
+			AtomicInteger threadNumber = new AtomicInteger();
+			shadowFetchExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable, "shadow-fetch-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			shadowFetchExecutorThreads = threads;
+		}
+		return shadowFetchExecutor;
+	}
+
+	@PreDestroy
+	private synchronized void shutdownShadowFetchExecutor() {
+		if (shadowFetchExecutor != null) {
+			shadowFetchExecutor.shutdownNow();
+			shadowFetchExecutor = null;
+		}
+	}
+
+	/**
+	 * Full shadow fetched concurrently with others. Its result is detached until the shadow is taken over
+	 * by finishLoadOfProjectionContext.
+	 */
+	private class ParallelShadowFetch {
+
+		private final String oid;
+		private final Collection<SelectorOptions<GetOperationOptions>> options;
+		private final OperationResult result = new OperationResult(OPERATION_FETCH_SHADOW_PARALLEL);
+		private Future<?> future;
+		private PrismObject<ShadowType> shadow;
+		private Throwable failure;
+
+		private ParallelShadowFetch(String oid, Collection<SelectorOptions<GetOperationOptions>> options) {
+			this.oid = oid;
+			this.options = options;
+		}
+
+		private void fetch(Task task) {
+			try {
+				shadow = provisioningService.getObject(ShadowType.class, oid, options, task, result);
+			} catch (Throwable t) {
+				failure = t;
+			} finally {
+				result.computeStatusIfUnknown();
+			}
+		}
+
+		private void awaitCompletion() {
+			if (future == null) {
+				return;             // not submitted
+			}
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				future.cancel(true);
+				failure = new SystemException("Interrupted while waiting for fetching of shadow " + oid, e);
+			} catch (ExecutionException e) {
+				failure = e.getCause();
+			}
+		}
+
+		/**
+		 * Puts the result under the given one and returns the shadow or rethrows the exception, so it is processed
+		 * just like a result of the sequential getObject call.
+		 */
+		private PrismObject<ShadowType> takeOver(OperationResult parentResult) throws ObjectNotFoundException,
+				CommunicationException, SchemaException, ConfigurationException, SecurityViolationException,
+				ExpressionEvaluationException {
+			parentResult.addSubresult(result);
+			if (failure == null) {
+				return shadow;
+			} else if (failure instanceof ObjectNotFoundException) {
+				throw (ObjectNotFoundException) failure;
+			} else if (failure instanceof CommunicationException) {
+				throw (CommunicationException) failure;
+			} else if (failure instanceof SchemaException) {
+				throw (SchemaException) failure;
+			} else if (failure instanceof ConfigurationException) {
+				throw (ConfigurationException) failure;
+			} else if (failure instanceof SecurityViolationException) {
+				throw (SecurityViolationException) failure;
+			} else if (failure instanceof ExpressionEvaluationException) {
+				throw (ExpressionEvaluationException) failure;
+			} else if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			} else if (failure instanceof Error) {
+				throw (Error) failure;
+			} else {
+				throw new SystemException(failure.getMessage(), failure);
+			}
+		}
+	}
+
 	private <F extends ObjectType> boolean needToReload(LensContext<F> context,
 			LensProjectionContext projContext) {
 		ResourceShadowDiscriminator discr = projContext.getResourceShadowDiscriminator();
@@ -1227,6 +1489,16 @@ public class ContextLoader {
 
 	public <F extends ObjectType> void loadFullShadow(LensContext<F> context, LensProjectionContext projCtx, String reason, Task task, OperationResult result)
 			throws ObjectNotFoundException, CommunicationException, SchemaException, ConfigurationException, SecurityViolationException, ExpressionEvaluationException {
+		loadFullShadow(context, projCtx, reason, true, task, result);
+	}
+
+	/**
+	 * @param cachedDataAllowed if false, the resource object is always read from the resource, regardless of the
+	 *                          caching policy (e.g. because inbound mappings must not be evaluated on cached data)
+	 */
+	public <F extends ObjectType> void loadFullShadow(LensContext<F> context, LensProjectionContext projCtx, String reason,
+			boolean cachedDataAllowed, Task task, OperationResult result)
+			throws ObjectNotFoundException, CommunicationException, SchemaException, ConfigurationException, SecurityViolationException, ExpressionEvaluationException {
 		if (projCtx.isFullShadow()) {
 			// already loaded
 			return;
@@ -1260,13 +1532,21 @@ public class ContextLoader {
 		try {
 			Collection<SelectorOptions<GetOperationOptions>> options = SelectorOptions.createCollection(getOptions);
 			applyAttributesToGet(projCtx, options);
+			boolean stalenessApplied = cachedDataAllowed && applyMaxStaleness(projCtx, getOptions, options);
+			long loadStart = clock.currentTimeMillis();
 			PrismObject<ShadowType> objectCurrent = provisioningService.getObject(ShadowType.class,
 					projCtx.getOid(), options, task, result);
 			Validate.notNull(objectCurrent.getOid());
 			// TODO: use setLoadedObject() instead?
 			projCtx.setObjectCurrent(objectCurrent);
 			ShadowType oldShadow = objectCurrent.asObjectable();
-			projCtx.determineFullShadowFlag(oldShadow.getFetchResult());
+			if (stalenessApplied && isCachedShadow(oldShadow, loadStart)) {
+				// Cached attributes are good enough for outbound processing, but they are not the full resource object.
+				LOGGER.trace("Cached data were returned for {}, not marking the shadow as full", projCtx);
+				projCtx.setFullShadow(false);
+			} else {
+				projCtx.determineFullShadowFlag(oldShadow.getFetchResult());
+			}
 			// The getObject may return different OID than we have requested in case that compensation happened
 			// TODO: this probably need to be fixed in the consistency mechanism
 			// TODO: the following line is a temporary fix
@@ -1347,6 +1627,50 @@ public class ContextLoader {
 		}
 	}
 
+	/**
+	 * Allows provisioning to return cached attributes (instead of reading the resource object) if they are fresh enough
+	 * according to the caching policy of the projection. Fresh data are always read for reconciliation and when
+	 * specific items (e.g. password) are requested.
+	 *
+	 * @return true if cached data may be returned
+	 */
+	private boolean applyMaxStaleness(LensProjectionContext projCtx, GetOperationOptions rootOptions,
+			Collection<SelectorOptions<GetOperationOptions>> options) throws SchemaException {
+		if (projCtx.isDoReconciliation() || options.size() > 1) {
+			return false;
+		}
+		CachingPolicyType caching = null;
+		RefinedObjectClassDefinition objectClassDefinition = projCtx.getStructuralObjectClassDefinition();
+		if (objectClassDefinition != null) {
+			caching = objectClassDefinition.getCaching();
+		}
+		if (caching == null && projCtx.getResource() != null) {
+			caching = projCtx.getResource().getCaching();
+		}
+		if (caching == null || caching.getCachingStategy() != CachingStategyType.PASSIVE || caching.getMaxStaleness() == null) {
+			return false;
+		}
+		long maxStaleness = caching.getMaxStaleness().getTimeInMillis(new Date());
+		if (maxStaleness <= 0) {
+			return false;
+		}
+		LOGGER.trace("Allowing cached data not older than {} ms for {}", maxStaleness, projCtx);
+		rootOptions.setStaleness(maxStaleness);
+		return true;
+	}
+
+	/**
+	 * Provisioning returns the repository shadow (with its caching metadata) if the cached data are fresh enough.
+	 * A shadow that was read from the resource has either no caching metadata or the ones that were just created.
+	 */
+	private boolean isCachedShadow(ShadowType shadow, long loadStart) {
+		CachingMetadataType cachingMetadata = shadow.getCachingMetadata();
+		if (cachingMetadata == null || cachingMetadata.getRetrievalTimestamp() == null) {
+			return false;
+		}
+		return XmlTypeConverter.toMillis(cachingMetadata.getRetrievalTimestamp()) < loadStart;
+	}
+
 	private void applyAttributesToGet(LensProjectionContext projCtx, Collection<SelectorOptions<GetOperationOptions>> options) throws SchemaException {
 		if ( !LensUtil.isPasswordReturnedByDefault(projCtx)
 				&& LensUtil.needsFullShadowForCredentialProcessing(projCtx)) {
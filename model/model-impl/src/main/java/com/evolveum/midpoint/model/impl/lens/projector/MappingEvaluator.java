@@ -58,6 +58,8 @@ import com.evolveum.midpoint.prism.delta.ItemDelta;
 import com.evolveum.midpoint.prism.delta.PrismValueDeltaSetTriple;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.schema.constants.ExpressionConstants;
+import com.evolveum.midpoint.schema.internals.InternalCounters;
+import com.evolveum.midpoint.schema.internals.InternalMonitor;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.exception.CommonException;
@@ -122,6 +124,7 @@ public class MappingEvaluator {
 		}
 		String mappingName = mapping.getItemName() != null ? mapping.getItemName().getLocalPart() : null;
 		long start = System.currentTimeMillis();
+		InternalMonitor.recordCount(InternalCounters.MAPPING_EVALUATION_COUNT);
 		try {
 			task.recordState("Started evaluation of mapping " + mapping.getMappingContextDescription() + ".");
 			mapping.evaluate(task, parentResult);
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.impl.lens.projector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.evolveum.midpoint.model.impl.lens.LensContext;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.schema.internals.InternalCounters;
+import com.evolveum.midpoint.schema.internals.InternalMonitor;
+import com.evolveum.midpoint.schema.util.SystemConfigurationTypeUtil;
+import com.evolveum.midpoint.util.QNameUtil;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.MappingStrengthType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.MappingType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.VariableBindingDefinitionType;
+
+/**
+ * Decides whether a mapping can be skipped because none of its sources has changed.
+ *
+ * The index is built from paths of the focus delta (primary and secondary deltas of all the waves so far).
+ * A mapping can be skipped only if all of its declared sources point to the focus and none of them is related
+ * (equal, parent or child) to any of the changed paths. Such a mapping would produce only zero set, which is
+ * not used by the consolidation in non-reconciliation mode -- provided that its strength is normal, it has
+ * no time constraints and no range, and that the caller ensured that no other mapping contributes to the same
+ * target item (values of other mappings are compared with our zero set when deciding about deletion).
+ *
+ * Mappings that depend on anything else than their sources (time, other variables, data read by the expression)
+ * have to be marked with alwaysEvaluate flag.
+ *
+ * See InternalsConfigurationType.skipMappingsWithUnchangedSources.
+ */
+public class MappingSourceIndex {
+
+	private static final Trace LOGGER = TraceManager.getTrace(MappingSourceIndex.class);
+
+	private final List<ItemPath> changedPaths;
+	private final boolean allChanged;
+
+	private MappingSourceIndex(List<ItemPath> changedPaths, boolean allChanged) {
+		this.changedPaths = changedPaths;
+		this.allChanged = allChanged;
+	}
+
+	/**
+	 * Returns null if skipping of mappings is not enabled or not applicable for the context as a whole.
+	 */
+	public static MappingSourceIndex create(LensContext<?> context, boolean reconciliation) throws SchemaException {
+		if (!SystemConfigurationTypeUtil.isSkipMappingsWithUnchangedSources(context.getSystemConfiguration())) {
+			return null;
+		}
+		if (reconciliation || context.getFocusContext() == null) {
+			return null;
+		}
+		ObjectDelta<?> focusDelta = context.getFocusContext().getDelta();
+		if (focusDelta == null) {
+			return new MappingSourceIndex(Collections.emptyList(), false);
+		}
+		if (!focusDelta.isModify()) {
+			// ADD (all the values are new) or DELETE (nothing to map)
+			return new MappingSourceIndex(Collections.emptyList(), true);
+		}
+		List<ItemPath> changedPaths = new ArrayList<>();
+		for (ItemDelta<?, ?> modification : focusDelta.getModifications()) {
+			changedPaths.add(modification.getPath().namedSegmentsOnly());
+		}
+		return new MappingSourceIndex(changedPaths, false);
+	}
+
+	/**
+	 * Checks only the mapping itself. Callers are responsible for checking that skipping the mapping cannot influence
+	 * the consolidation of the target item.
+	 */
+	public boolean canSkip(MappingType mappingType) {
+		if (allChanged || !isSkippable(mappingType)) {
+			return false;
+		}
+		for (VariableBindingDefinitionType source : mappingType.getSource()) {
+			ItemPath sourcePath = getFocusSourcePath(source);
+			for (ItemPath changedPath : changedPaths) {
+				if (sourcePath.compareComplex(changedPath) != ItemPath.CompareResult.NO_RELATION) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	public void recordSkip(String mappingDesc) {
+		LOGGER.trace("Skipping evaluation of {} because none of its sources has changed", mappingDesc);
+		InternalMonitor.recordCount(InternalCounters.MAPPING_EVALUATION_SKIP_COUNT);
+	}
+
+	private boolean isSkippable(MappingType mappingType) {
+		if (Boolean.TRUE.equals(mappingType.isAlwaysEvaluate())) {
+			return false;
+		}
+		if (mappingType.getStrength() != null && mappingType.getStrength() != MappingStrengthType.NORMAL) {
+			return false;
+		}
+		if (mappingType.getTimeFrom() != null || mappingType.getTimeTo() != null || mappingType.getRange() != null) {
+			return false;
+		}
+		if (mappingType.getTarget() != null && mappingType.getTarget().getSet() != null) {
+			return false;
+		}
+		if (mappingType.getSource().isEmpty()) {
+			return false;
+		}
+		for (VariableBindingDefinitionType source : mappingType.getSource()) {
+			if (getFocusSourcePath(source) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// null if the source does not point to the focus
+	private ItemPath getFocusSourcePath(VariableBindingDefinitionType source) {
+		if (source.getPath() == null) {
+			return null;
+		}
+		ItemPath path = source.getPath().getItemPath();
+		if (path.startsWithVariable()) {
+			if (!QNameUtil.matchAny(ItemPath.getFirstName(path), MappingEvaluator.FOCUS_VARIABLE_NAMES)) {
+				return null;
+			}
+			path = path.stripVariableSegment();
+		}
+		return path.isEmpty() ? null : path.namedSegmentsOnly();
+	}
+}
@@ -17,6 +17,7 @@ package com.evolveum.midpoint.model.impl.lens.projector;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
@@ -31,6 +32,7 @@ import com.evolveum.midpoint.common.refinery.RefinedAssociationDefinition;
 import com.evolveum.midpoint.common.refinery.RefinedAttributeDefinition;
 import com.evolveum.midpoint.common.refinery.RefinedObjectClassDefinition;
 import com.evolveum.midpoint.model.common.mapping.MappingImpl;
+import com.evolveum.midpoint.model.api.context.SynchronizationPolicyDecision;
 import com.evolveum.midpoint.model.common.mapping.MappingFactory;
 import com.evolveum.midpoint.model.impl.lens.Construction;
 import com.evolveum.midpoint.model.impl.lens.LensContext;
@@ -46,6 +48,7 @@ import com.evolveum.midpoint.prism.PrismPropertyValue;
 import com.evolveum.midpoint.prism.PrismValue;
 import com.evolveum.midpoint.prism.delta.ChangeType;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.delta.PrismValueDeltaSetTriple;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.schema.ResourceShadowDiscriminator;
 import com.evolveum.midpoint.schema.constants.ExpressionConstants;
@@ -117,6 +120,9 @@ public class OutboundProcessor {
 
         String operation = projCtx.getOperation().getValue();
 
+        MappingSourceIndex sourceIndex = isMappingSkippingApplicable(projCtx) ?
+        		MappingSourceIndex.create(context, projCtx.isDoReconciliation() || context.isDoReconciliationForAllProjections()) : null;
+
         for (QName attributeName : rOcDef.getNamesOfAttributesWithOutboundExpressions()) {
 			RefinedAttributeDefinition<?> refinedAttributeDefinition = rOcDef.findAttributeDefinition(attributeName);
 
@@ -130,6 +136,12 @@ public class OutboundProcessor {
 				continue;
 			}
 
+			if (sourceIndex != null && !hasConstructionMapping(projCtx, attributeName)
+					&& sourceIndex.canSkip(outboundMappingType)) {
+				sourceIndex.recordSkip("outbound mapping for " + attributeName + " in " + projCtx.getResource());
+				continue;
+			}
+
 			MappingStrengthType strength = outboundMappingType.getStrength();
 			if (!projCtx.isDelete() && !projCtx.isFullShadow() && (strength == MappingStrengthType.STRONG || strength == MappingStrengthType.WEAK)) {
 				contextLoader.loadFullShadow(context, projCtx, "strong/weak outbound mapping", task, result);
@@ -162,6 +174,12 @@ public class OutboundProcessor {
 //				continue;
 //			}
 
+			if (sourceIndex != null && !hasConstructionMapping(projCtx, assocName)
+					&& sourceIndex.canSkip(outboundMappingType)) {
+				sourceIndex.recordSkip("outbound mapping for " + assocName + " in " + projCtx.getResource());
+				continue;
+			}
+
 			MappingImpl.Builder<PrismContainerValue<ShadowAssociationType>,PrismContainerDefinition<ShadowAssociationType>> mappingBuilder = mappingFactory.createMappingBuilder(outboundMappingType,
 			        "outbound mapping for " + PrettyPrinter.prettyPrint(associationDefinition.getName())
 			        + " in " + projCtx.getResource());
@@ -179,6 +197,37 @@ public class OutboundProcessor {
         projCtx.setOutboundConstruction(outboundConstruction);
     }
 
+    /**
+     * Outbound mappings with unchanged sources can be skipped only for existing projections that are kept.
+     * Newly created accounts need all the values; and the iteration token (an input not visible in the focus delta)
+     * must not be changing.
+     */
+    private boolean isMappingSkippingApplicable(LensProjectionContext projCtx) {
+		if (projCtx.isAdd() || projCtx.getObjectCurrent() == null
+				|| projCtx.getSynchronizationPolicyDecision() != SynchronizationPolicyDecision.KEEP) {
+			return false;
+		}
+		return Objects.equals(projCtx.getIterationToken(), projCtx.getObjectCurrent().asObjectable().getIterationToken());
+    }
+
+    /**
+     * Values of the construction mappings are consolidated together with the values of the outbound mapping,
+     * so the outbound mapping cannot be skipped if there is any construction mapping for the same item.
+     */
+    private boolean hasConstructionMapping(LensProjectionContext projCtx, QName itemName) {
+		PrismValueDeltaSetTriple<PrismPropertyValue<Construction>> constructionTriple = projCtx.getConstructionDeltaSetTriple();
+		if (constructionTriple == null) {
+			return false;
+		}
+		for (PrismPropertyValue<Construction> constructionValue : constructionTriple.getAllValues()) {
+			Construction<?> construction = constructionValue.getValue();
+			if (construction.containsAttributeMapping(itemName) || construction.containsAssociationMapping(itemName)) {
+				return true;
+			}
+		}
+		return false;
+    }
+
     // TODO: unify with MappingEvaluator.evaluateOutboundMapping(...)
     private <F extends FocusType, V extends PrismValue, D extends ItemDefinition> MappingImpl<V, D> evaluateMapping(final MappingImpl.Builder<V,D> mappingBuilder, QName mappingQName,
     		D targetDefinition, ObjectDeltaObject<F> focusOdo, ObjectDeltaObject<ShadowType> projectionOdo,
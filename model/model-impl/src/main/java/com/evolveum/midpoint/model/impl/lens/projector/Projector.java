@@ -181,7 +181,7 @@ public class Projector {
 						context.setFresh(true);
 						if (consistencyChecks) context.checkConsistence();
 					},
-					partialProcessingOptions::getLoad, result);
+					partialProcessingOptions::getLoad, task, context.getProjectionWave(), null, result);
 			}
 	        // For now let's pretend to do just one wave. The maxWaves number will be corrected in the
 			// first wave when dependencies are sorted out for the first time.
@@ -215,7 +215,7 @@ public class Projector {
 					        context.recomputeFocus();
 					        if (consistencyChecks) context.checkConsistence();
 						},
-						partialProcessingOptions::getFocus, result);
+						partialProcessingOptions::getFocus, task, context.getProjectionWave(), null, result);
 
 				medic.traceContext(LOGGER, activityDescription, "focus processing", false, context, false);
 				LensUtil.checkContextSanity(context, "focus processing", result);
@@ -249,10 +249,10 @@ public class Projector {
 
 					for (LensProjectionContext projectionContext : context.getProjectionContexts()) {
 
-						medic.partialExecute("projection " + projectionContext.getHumanReadableName(),
+						medic.partialExecuteProjection(
 								() -> projectProjection(context, projectionContext,
 										partialProcessingOptions, now, activityDescription, task, result),
-								partialProcessingOptions::getProjection);
+								partialProcessingOptions::getProjection, task, context.getProjectionWave(), projectionContext);
 						// TODO: make this condition more complex in the future. We may want the ability
 						// to select only some projections to process
 
@@ -356,7 +356,7 @@ public class Projector {
 				    	projectionContext.recompute();
 				    	if (consistencyChecks) context.checkConsistence();
 					},
-					partialProcessingOptions::getProjectionValues);
+					partialProcessingOptions::getProjectionValues, task, context.getProjectionWave(), projectionContext, null);
 	
 	    	if (projectionContext.isThombstone()) {
 	    		result.recordStatus(OperationResultStatus.NOT_APPLICABLE, "Skipping projection because it is a thombstone");
@@ -372,7 +372,7 @@ public class Projector {
 				    	medic.traceContext(LOGGER, activityDescription, "projection values and credentials of "+projectionDesc, false, context, true);
 				        if (consistencyChecks) context.checkConsistence();
 					},
-					partialProcessingOptions::getProjectionCredentials);
+					partialProcessingOptions::getProjectionCredentials, task, context.getProjectionWave(), projectionContext, null);
 	
 
 	    	medic.partialExecute("projectionReconciliation",
@@ -382,7 +382,7 @@ public class Projector {
 						medic.traceContext(LOGGER, activityDescription, "projection reconciliation of "+projectionDesc, false, context, false);
 				        if (consistencyChecks) context.checkConsistence();
 					},
-					partialProcessingOptions::getProjectionReconciliation);
+					partialProcessingOptions::getProjectionReconciliation, task, context.getProjectionWave(), projectionContext, null);
 
 	    	medic.partialExecute("projectionValuesPostRecon",
 					() -> {
@@ -392,7 +392,7 @@ public class Projector {
 				    	projectionContext.recompute();
 				    	if (consistencyChecks) context.checkConsistence();
 					},
-					partialProcessingOptions::getProjectionValues);
+					partialProcessingOptions::getProjectionValues, task, context.getProjectionWave(), projectionContext, null);
 
 	    	medic.partialExecute("projectionLifecycle",
 					() -> {
@@ -403,7 +403,7 @@ public class Projector {
 //				    	LensUtil.traceContext(LOGGER, activityDescription, "projection lifecycle of "+projectionDesc, false, context, false);
 				    	if (consistencyChecks) context.checkConsistence();
 					},
-					partialProcessingOptions::getProjectionLifecycle);
+					partialProcessingOptions::getProjectionLifecycle, task, context.getProjectionWave(), projectionContext, null);
 
 	        result.recordSuccess();
 
@@ -50,6 +50,7 @@ import com.evolveum.midpoint.model.impl.lens.LensContext;
 import com.evolveum.midpoint.model.impl.lens.LensFocusContext;
 import com.evolveum.midpoint.model.impl.lens.LensProjectionContext;
 import com.evolveum.midpoint.model.impl.lens.LensUtil;
+import com.evolveum.midpoint.model.impl.lens.RoleObjectCache;
 import com.evolveum.midpoint.prism.CloneStrategy;
 import com.evolveum.midpoint.prism.ItemDefinition;
 import com.evolveum.midpoint.prism.PrismContainerDefinition;
@@ -130,6 +131,9 @@ public class AssignmentProcessor {
     @Autowired
     private MappingEvaluator mappingEvaluator;
 
+    @Autowired
+    private RoleObjectCache roleObjectCache;
+
     @Autowired(required=true)
 	private ActivationComputer activationComputer;
 
@@ -990,6 +994,7 @@ public class AssignmentProcessor {
 				.prismContext(prismContext)
 				.mappingFactory(mappingFactory)
 				.mappingEvaluator(mappingEvaluator)
+				.roleObjectCache(roleObjectCache)
 				.activationComputer(activationComputer)
 				.now(now)
 				.systemConfiguration(context.getSystemConfiguration())
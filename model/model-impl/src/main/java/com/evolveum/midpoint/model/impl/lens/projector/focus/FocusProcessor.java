@@ -18,9 +18,16 @@ package com.evolveum.midpoint.model.impl.lens.projector.focus;
 import static com.evolveum.midpoint.schema.internals.InternalsConfig.consistencyChecks;
 import static org.apache.commons.lang3.BooleanUtils.isTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import javax.xml.datatype.DatatypeConstants;
 import javax.xml.datatype.XMLGregorianCalendar;
 
 import com.evolveum.midpoint.model.impl.lens.projector.policy.PolicyRuleProcessor;
@@ -45,6 +52,7 @@ import com.evolveum.midpoint.model.impl.lens.LensUtil;
 import com.evolveum.midpoint.model.impl.lens.OperationalDataManager;
 import com.evolveum.midpoint.model.impl.lens.projector.MappingEvaluator;
 import com.evolveum.midpoint.model.impl.lens.projector.credentials.CredentialsProcessor;
+import com.evolveum.midpoint.model.impl.trigger.RecomputeTriggerHandler;
 import com.evolveum.midpoint.model.impl.util.Utils;
 import com.evolveum.midpoint.prism.delta.ContainerDelta;
 import com.evolveum.midpoint.prism.delta.DeltaSetTriple;
@@ -196,14 +204,14 @@ public class FocusProcessor {
 					        medic.traceContext(LOGGER, activityDescription, "inbound", false, context, false);
 					        if (consistencyChecks) context.checkConsistence();
 						},
-						partialProcessingOptions::getInbound);
+						partialProcessingOptions::getInbound, task, context.getProjectionWave(), null, null);
 
 
 		        // ACTIVATION
 
 				medic.partialExecute("focusActivation",
 						() -> processActivationBeforeAssignments(context, now, result),
-						partialProcessingOptions::getFocusActivation);
+						partialProcessingOptions::getFocusActivation, task, context.getProjectionWave(), null, null);
 
 
 		        // OBJECT TEMPLATE (before assignments)
@@ -211,14 +219,14 @@ public class FocusProcessor {
 				medic.partialExecute("objectTemplateBeforeAssignments",
 						() -> objectTemplateProcessor.processTemplate(context,
 								ObjectTemplateMappingEvaluationPhaseType.BEFORE_ASSIGNMENTS, now, task, result),
-						partialProcessingOptions::getObjectTemplateBeforeAssignments);
+						partialProcessingOptions::getObjectTemplateBeforeAssignments, task, context.getProjectionWave(), null, null);
 
 
 		        // process activation again. Object template might have changed it.
 		        context.recomputeFocus();
 		        medic.partialExecute("focusActivation",
 						() -> processActivationBeforeAssignments(context, now, result),
-						partialProcessingOptions::getFocusActivation);
+						partialProcessingOptions::getFocusActivation, task, context.getProjectionWave(), null, null);
 
 		        // ASSIGNMENTS
 
@@ -227,33 +235,33 @@ public class FocusProcessor {
 
 				medic.partialExecute("assignments",
 						() -> assignmentProcessor.processAssignmentsProjections(context, now, task, result),
-						partialProcessingOptions::getAssignments);
+						partialProcessingOptions::getAssignments, task, context.getProjectionWave(), null, null);
 
 				medic.partialExecute("assignmentsOrg",
 						() -> assignmentProcessor.processOrgAssignments(context, result),
-						partialProcessingOptions::getAssignmentsOrg);
+						partialProcessingOptions::getAssignmentsOrg, task, context.getProjectionWave(), null, null);
 
 
 				medic.partialExecute("assignmentsMembershipAndDelegate",
 						() -> assignmentProcessor.processMembershipAndDelegatedRefs(context, result),
-						partialProcessingOptions::getAssignmentsMembershipAndDelegate);
+						partialProcessingOptions::getAssignmentsMembershipAndDelegate, task, context.getProjectionWave(), null, null);
 
 		        context.recompute();
 
 		        medic.partialExecute("assignmentsConflicts",
 						() -> assignmentProcessor.checkForAssignmentConflicts(context, result),
-						partialProcessingOptions::getAssignmentsConflicts);
+						partialProcessingOptions::getAssignmentsConflicts, task, context.getProjectionWave(), null, null);
 		        
 		        medic.partialExecute("focusLifecycle",
 						() -> focusLifecycleProcessor.processLifecycle(context, now, task, result),
-						partialProcessingOptions::getFocusLifecycle);
+						partialProcessingOptions::getFocusLifecycle, task, context.getProjectionWave(), null, null);
 
 		        // OBJECT TEMPLATE (after assignments)
 
 		        medic.partialExecute("objectTemplateAfterAssignments",
 						() -> objectTemplateProcessor.processTemplate(context,
 								ObjectTemplateMappingEvaluationPhaseType.AFTER_ASSIGNMENTS, now, task, result),
-						partialProcessingOptions::getObjectTemplateBeforeAssignments);
+						partialProcessingOptions::getObjectTemplateBeforeAssignments, task, context.getProjectionWave(), null, null);
 
 		        context.recompute();
 
@@ -262,20 +270,20 @@ public class FocusProcessor {
 		        context.recomputeFocus();
 		        medic.partialExecute("focusActivation",
 						() -> processActivationAfterAssignments(context, now, result),
-						partialProcessingOptions::getFocusActivation);
+						partialProcessingOptions::getFocusActivation, task, context.getProjectionWave(), null, null);
 
 		        // CREDENTIALS (including PASSWORD POLICY)
 
 		        medic.partialExecute("focusCredentials",
 						() -> credentialsProcessor.processFocusCredentials(context, now, task, result),
-						partialProcessingOptions::getFocusCredentials);
+						partialProcessingOptions::getFocusCredentials, task, context.getProjectionWave(), null, null);
 
 		        // We need to evaluate this as a last step. We need to make sure we have all the
 		        // focus deltas so we can properly trigger the rules.
 
 		        medic.partialExecute("focusPolicyRules",
 						() -> policyRuleProcessor.evaluateObjectPolicyRules(context, activityDescription, now, task, result),
-						partialProcessingOptions::getFocusPolicyRules);
+						partialProcessingOptions::getFocusPolicyRules, task, context.getProjectionWave(), null, null);
 
 		        // Processing done, check for success
 
@@ -512,6 +520,110 @@ public class FocusProcessor {
 			throws ExpressionEvaluationException, ObjectNotFoundException, SchemaException, PolicyViolationException {
 		processActivationBasic(context, now, result);
 		processAssignmentActivation(context, now, result);
+		processValidityTrigger(context, now);
+	}
+
+	/**
+	 * Schedules a recompute trigger at the nearest future validity boundary of the focus or its assignments
+	 * (if enabled by object policy configuration). This makes periodic validity scanning unnecessary.
+	 *
+	 * Triggers scheduled for boundaries that are no longer the nearest ones (e.g. because validTo was changed)
+	 * are deleted in the same delta. They are recognized as future recompute triggers at the validity boundaries
+	 * of the current object. (Recompute triggers of template mappings are kept, unless they happen to have
+	 * exactly the same timestamp.)
+	 */
+	private <F extends FocusType> void processValidityTrigger(LensContext<F> context, XMLGregorianCalendar now)
+			throws SchemaException {
+		LensFocusContext<F> focusContext = context.getFocusContext();
+		ObjectPolicyConfigurationType objectPolicyConfiguration = focusContext.getObjectPolicyConfigurationType();
+		if (objectPolicyConfiguration == null || !isTrue(objectPolicyConfiguration.isValidityTriggers())) {
+			return;
+		}
+		PrismObject<F> focusNew = focusContext.getObjectNew();
+		if (focusContext.isDelete() || focusNew == null) {
+			return;
+		}
+		XMLGregorianCalendar nextValidityChange = getNextValidityChange(focusNew.asObjectable(), now);
+		PrismObject<F> focusCurrent = focusContext.getObjectCurrent();
+		Set<XMLGregorianCalendar> oldBoundaries = focusCurrent != null ?
+				getValidityBoundaries(focusCurrent.asObjectable()) : Collections.emptySet();
+
+		boolean exists = false;
+		List<PrismContainerValue<TriggerType>> obsoleteTriggers = new ArrayList<>();
+		for (TriggerType trigger : focusNew.asObjectable().getTrigger()) {
+			if (!RecomputeTriggerHandler.HANDLER_URI.equals(trigger.getHandlerUri()) || trigger.getTimestamp() == null) {
+				continue;
+			}
+			if (trigger.getTimestamp().equals(nextValidityChange)) {
+				exists = true;
+			} else if (trigger.getId() != null && trigger.getTimestamp().compare(now) == DatatypeConstants.GREATER
+					&& oldBoundaries.contains(trigger.getTimestamp())) {
+				obsoleteTriggers.add(trigger.asPrismContainerValue().clone());
+			}
+		}
+		if (obsoleteTriggers.isEmpty() && (exists || nextValidityChange == null)) {
+			LOGGER.trace("Validity trigger for {} is up to date (next validity boundary: {})",
+					focusContext.getHumanReadableName(), nextValidityChange);
+			return;
+		}
+
+		PrismContainerDefinition<TriggerType> triggerContDef = focusContext.getObjectDefinition().findContainerDefinition(ObjectType.F_TRIGGER);
+		ContainerDelta<TriggerType> triggerDelta = triggerContDef.createEmptyDelta(new ItemPath(ObjectType.F_TRIGGER));
+		if (!obsoleteTriggers.isEmpty()) {
+			LOGGER.trace("Deleting obsolete validity triggers for {}: {}", focusContext.getHumanReadableName(), obsoleteTriggers);
+			triggerDelta.addValuesToDelete(obsoleteTriggers);
+		}
+		if (!exists && nextValidityChange != null) {
+			LOGGER.trace("Scheduling validity trigger for {} at {}", focusContext.getHumanReadableName(), nextValidityChange);
+			PrismContainerValue<TriggerType> triggerCVal = triggerContDef.createValue();
+			triggerDelta.addValueToAdd(triggerCVal);
+			TriggerType triggerType = triggerCVal.asContainerable();
+			triggerType.setTimestamp(nextValidityChange);
+			triggerType.setHandlerUri(RecomputeTriggerHandler.HANDLER_URI);
+		}
+		focusContext.swallowToProjectionWaveSecondaryDelta(triggerDelta);
+	}
+
+	private Set<XMLGregorianCalendar> getValidityBoundaries(FocusType focus) {
+		Set<XMLGregorianCalendar> boundaries = new HashSet<>();
+		addValidityBoundaries(boundaries, focus.getActivation());
+		for (AssignmentType assignment : focus.getAssignment()) {
+			addValidityBoundaries(boundaries, assignment.getActivation());
+		}
+		return boundaries;
+	}
+
+	private void addValidityBoundaries(Set<XMLGregorianCalendar> boundaries, ActivationType activation) {
+		if (activation != null) {
+			for (XMLGregorianCalendar boundary : Arrays.asList(activation.getValidFrom(), activation.getValidTo())) {
+				if (boundary != null) {
+					boundaries.add(boundary);
+				}
+			}
+		}
+	}
+
+	private XMLGregorianCalendar getNextValidityChange(FocusType focus, XMLGregorianCalendar now) {
+		XMLGregorianCalendar next = getNextValidityChange(focus.getActivation(), now, null);
+		for (AssignmentType assignment : focus.getAssignment()) {
+			next = getNextValidityChange(assignment.getActivation(), now, next);
+		}
+		return next;
+	}
+
+	private XMLGregorianCalendar getNextValidityChange(ActivationType activation, XMLGregorianCalendar now,
+			XMLGregorianCalendar currentNext) {
+		if (activation == null) {
+			return currentNext;
+		}
+		XMLGregorianCalendar next = currentNext;
+		for (XMLGregorianCalendar boundary : Arrays.asList(activation.getValidFrom(), activation.getValidTo())) {
+			if (boundary != null && boundary.compare(now) == DatatypeConstants.GREATER
+					&& (next == null || boundary.compare(next) == DatatypeConstants.LESSER)) {
+				next = boundary;
+			}
+		}
+		return next;
 	}
 
 	private <F extends FocusType> void processActivationBasic(LensContext<F> context, XMLGregorianCalendar now,
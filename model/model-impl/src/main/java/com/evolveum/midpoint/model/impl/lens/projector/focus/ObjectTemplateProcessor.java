@@ -50,6 +50,7 @@ import com.evolveum.midpoint.model.impl.lens.LensContext;
 import com.evolveum.midpoint.model.impl.lens.LensFocusContext;
 import com.evolveum.midpoint.model.impl.lens.StrengthSelector;
 import com.evolveum.midpoint.model.impl.lens.projector.MappingEvaluator;
+import com.evolveum.midpoint.model.impl.lens.projector.MappingSourceIndex;
 import com.evolveum.midpoint.model.impl.trigger.RecomputeTriggerHandler;
 import com.evolveum.midpoint.prism.Item;
 import com.evolveum.midpoint.prism.ItemDefinition;
@@ -172,9 +173,12 @@ public class ObjectTemplateProcessor {
 		collectMappingsFromTemplate(context, mappings, objectTemplate, objectTemplateDesc, task, result);
 		collectAutoassignMappings(context, mappings, task, result);
 
+		// Iteration token is an input not visible in the focus delta, so we do not skip anything when iterating.
+		MappingSourceIndex sourceIndex = iteration == 0 ? MappingSourceIndex.create(context, context.isReconcileFocus()) : null;
+
 		Map<ItemPath,DeltaSetTriple<? extends ItemValueWithOrigin<?,?>>> outputTripleMap = new HashMap<>();
 		XMLGregorianCalendar nextRecomputeTime = collectTripleFromMappings(context, mappings, phase, focusOdo, focusOdo.getNewObject(), 
-				outputTripleMap, iteration, iterationToken, now, task, result);
+				outputTripleMap, itemDefinitionsMap, sourceIndex, iteration, iterationToken, now, task, result);
 		
 		if (LOGGER.isTraceEnabled()) {
 			LOGGER.trace("outputTripleMap before item delta computation:\n{}", DebugUtil.debugDumpMapMultiLine(outputTripleMap));
@@ -242,7 +246,7 @@ public class ObjectTemplateProcessor {
 
 		Map<ItemPath,DeltaSetTriple<? extends ItemValueWithOrigin<?,?>>> outputTripleMap = new HashMap<>();
 		XMLGregorianCalendar nextRecomputeTime = collectTripleFromMappings(context, mappings, ObjectTemplateMappingEvaluationPhaseType.BEFORE_ASSIGNMENTS, 
-				focusOdo, target, outputTripleMap, iteration, iterationToken, now, task, result);
+				focusOdo, target, outputTripleMap, itemDefinitionsMap, null, iteration, iterationToken, now, task, result);
 		
 
 		if (LOGGER.isTraceEnabled()) {
@@ -585,6 +589,39 @@ public class ObjectTemplateProcessor {
 		return false;
 	}
 
+	/**
+	 * Skipping a mapping is safe only if no other mapping contributes to the same target item (see MappingSourceIndex)
+	 * and the item is not non-tolerant (zero sets of its mappings are used to replace its values).
+	 */
+	private boolean isTargetExclusive(FocalMappingSpec mappingSpec, List<FocalMappingSpec> mappings,
+			Map<ItemPath, ObjectTemplateItemDefinitionType> itemDefinitionsMap) {
+		if (mappingSpec.getObjectTemplateMappingType() == null) {
+			return false;		// autoassign mappings
+		}
+		ItemPath targetPath = getTargetPath(mappingSpec.getMappingType());
+		if (targetPath == null) {
+			return false;
+		}
+		for (FocalMappingSpec otherSpec : mappings) {
+			if (otherSpec == mappingSpec) {
+				continue;
+			}
+			ItemPath otherTargetPath = getTargetPath(otherSpec.getMappingType());
+			if (otherTargetPath == null || otherTargetPath.compareComplex(targetPath) != ItemPath.CompareResult.NO_RELATION) {
+				return false;
+			}
+		}
+		ObjectTemplateItemDefinitionType templateItemDefinition = ItemPathUtil.getFromMap(itemDefinitionsMap, targetPath);
+		return templateItemDefinition == null || !Boolean.FALSE.equals(templateItemDefinition.isTolerant());
+	}
+
+	private ItemPath getTargetPath(MappingType mapping) {
+		if (mapping.getTarget() == null || mapping.getTarget().getPath() == null) {
+			return null;
+		}
+		return mapping.getTarget().getPath().getItemPath().stripVariableSegment();
+	}
+
 	private <T extends Objectable> ItemPath stripFocusVariableSegment(ItemPath sourcePath) {
 		if (sourcePath.startsWithVariable()
 			&& QNameUtil.matchAny(ItemPath.getFirstName(sourcePath), MappingEvaluator.FOCUS_VARIABLE_NAMES)) {
@@ -598,6 +635,7 @@ public class ObjectTemplateProcessor {
 			LensContext<F> context, List<FocalMappingSpec> mappings, ObjectTemplateMappingEvaluationPhaseType phase,
 			ObjectDeltaObject<F> focusOdo, PrismObject<T> target,
 			Map<ItemPath, DeltaSetTriple<? extends ItemValueWithOrigin<?,?>>> outputTripleMap,
+			Map<ItemPath, ObjectTemplateItemDefinitionType> itemDefinitionsMap, MappingSourceIndex sourceIndex,
 			int iteration, String iterationToken,
 			XMLGregorianCalendar now, Task task, OperationResult result)
 			throws SchemaException, ExpressionEvaluationException, ObjectNotFoundException, PolicyViolationException, SecurityViolationException, ConfigurationException, CommunicationException {
@@ -615,6 +653,14 @@ public class ObjectTemplateProcessor {
 			LOGGER.trace("Starting evaluation of {}", mappingDesc);
 			ObjectDeltaObject<F> updatedFocusOdo = getUpdatedFocusOdo(context, focusOdo, outputTripleMap, mappingSpec, mappingDesc);		// for mapping chaining
 
+			// chained sources are changed by preceding mappings, not by the focus delta
+			if (sourceIndex != null && updatedFocusOdo == focusOdo
+					&& isTargetExclusive(mappingSpec, mappings, itemDefinitionsMap)
+					&& sourceIndex.canSkip(mappingSpec.getMappingType())) {
+				sourceIndex.recordSkip(mappingDesc);
+				continue;
+			}
+
 			MappingImpl<V,D> mapping = mappingEvaluator.createFocusMapping(mappingFactory, context, mappingSpec.getMappingType(), 
 					mappingSpec.getOriginObject(), updatedFocusOdo, mappingSpec.getDefaultSource(focusOdo), target,
 					null, iteration, iterationToken, context.getSystemConfiguration(), now, mappingDesc, task, result);
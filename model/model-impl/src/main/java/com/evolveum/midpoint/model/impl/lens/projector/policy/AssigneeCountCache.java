@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.impl.lens.projector.policy;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.prism.PrismContainerValue;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismReferenceValue;
+import com.evolveum.midpoint.prism.PrismValue;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
+
+/**
+ * Node-level cache of the numbers of assignees of abstract roles, as needed by multiplicity policy constraints.
+ *
+ * Without the cache, each evaluation of minAssignees/maxAssignees constraint means a count query against
+ * the repository, for each focus and each projector run. The cache keeps the total number of focal objects
+ * that have an assignment to the given target with the given relation. The focus being evaluated is subtracted
+ * in memory (if it has such assignment in its current state), so the entries can be shared by all the focal objects.
+ *
+ * Entries are dropped when a focus whose assignments might have changed (added, deleted or modified) is processed
+ * by ChangeExecutor on this node. (We do not adjust the numbers, as one focus can have more assignments to the same
+ * target, so we cannot tell whether the number of assignees really changed.) Changes done elsewhere are reflected
+ * after the time-to-live of the entries expires. The cache is used only if the time-to-live is set
+ * (see InternalsConfigurationType.assigneeCountCacheTimeToLive).
+ */
+@Component
+public class AssigneeCountCache {
+
+	private static final Trace LOGGER = TraceManager.getTrace(AssigneeCountCache.class);
+
+	private static final int MAX_ENTRIES = 10000;
+	private static final ItemPath ASSIGNMENT_PATH = new ItemPath(FocusType.F_ASSIGNMENT);
+
+	@Autowired private PrismContext prismContext;
+	@Autowired
+	@Qualifier("cacheRepositoryService")
+	private RepositoryService repositoryService;
+
+	private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the number of focal objects (except the given one) having an assignment to the target with the given relation.
+	 *
+	 * @param selfOid OID of the focus to be excluded from the count, or null
+	 * @param selfCurrent current state of that focus (as it is stored in the repository)
+	 * @param timeToLive in seconds; 0 means no caching
+	 */
+	public int getNumberOfAssigneesExceptMyself(String targetOid, QName relation, String selfOid,
+			PrismObject<? extends FocusType> selfCurrent, int timeToLive, OperationResult result) throws SchemaException {
+		if (timeToLive <= 0 || selfOid != null && selfCurrent == null) {
+			return countAssignees(targetOid, relation, selfOid, result);
+		}
+		Key key = new Key(targetOid, ObjectTypeUtil.normalizeRelation(relation));
+		long now = System.currentTimeMillis();
+		Entry entry = entries.get(key);
+		int total;
+		if (entry != null && now - entry.timestamp < timeToLive * 1000L) {
+			LOGGER.trace("Cache HIT for {}: {}", key, entry.count);
+			total = entry.count;
+		} else {
+			total = countAssignees(targetOid, relation, null, result);
+			if (entries.size() >= MAX_ENTRIES) {
+				LOGGER.debug("Too many cached assignee counts ({}), clearing the cache", entries.size());
+				entries.clear();
+			}
+			entries.put(key, new Entry(total, now));
+		}
+		if (selfOid != null && hasAssignment(selfCurrent, targetOid, relation)) {
+			total--;
+		}
+		return Math.max(total, 0);
+	}
+
+	/**
+	 * Should be called after a focus was changed on this node.
+	 *
+	 * @param objectBefore state of the focus before the change (if known)
+	 */
+	public void focusChanged(ObjectDelta<? extends FocusType> delta, PrismObject<? extends FocusType> objectBefore) {
+		if (entries.isEmpty()) {
+			return;
+		}
+		Set<String> targetOids = new HashSet<>();
+		if (delta.isAdd()) {
+			collectTargetOids(targetOids, delta.getObjectToAdd());
+		} else {
+			boolean assignmentsTouched = delta.isDelete();
+			for (ItemDelta<?, ?> modification : delta.getModifications()) {
+				if (ASSIGNMENT_PATH.isSubPathOrEquivalent(modification.getPath())) {
+					assignmentsTouched = true;
+					// deleted values are in the original object; here we need only the new ones
+					collectTargetOids(targetOids, modification.getValuesToAdd());
+					collectTargetOids(targetOids, modification.getValuesToReplace());
+				}
+			}
+			if (!assignmentsTouched) {
+				return;
+			}
+			if (objectBefore == null) {
+				LOGGER.trace("Assignments of {} changed but the original state is not known, clearing the cache", delta.getOid());
+				entries.clear();
+				return;
+			}
+			collectTargetOids(targetOids, objectBefore);
+		}
+		entries.keySet().removeIf(key -> targetOids.contains(key.targetOid));
+	}
+
+	private int countAssignees(String targetOid, QName relation, String selfOid, OperationResult result) throws SchemaException {
+		ObjectQuery query;
+		if (selfOid != null) {
+			query = QueryBuilder.queryFor(FocusType.class, prismContext)
+					.item(FocusType.F_ASSIGNMENT, AssignmentType.F_TARGET_REF).ref(new PrismReferenceValue(targetOid).relation(relation))
+					.and().not().id(selfOid)
+					.build();
+		} else {
+			query = QueryBuilder.queryFor(FocusType.class, prismContext)
+					.item(FocusType.F_ASSIGNMENT, AssignmentType.F_TARGET_REF).ref(new PrismReferenceValue(targetOid).relation(relation))
+					.build();
+		}
+		return repositoryService.countObjects(FocusType.class, query, null, result);
+	}
+
+	private boolean hasAssignment(PrismObject<? extends FocusType> focus, String targetOid, QName relation) {
+		for (AssignmentType assignment : focus.asObjectable().getAssignment()) {
+			if (assignment.getTargetRef() != null && targetOid.equals(assignment.getTargetRef().getOid())
+					&& ObjectTypeUtil.relationMatches(relation, assignment.getTargetRef().getRelation())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void collectTargetOids(Set<String> targetOids, PrismObject<? extends FocusType> focus) {
+		if (focus != null) {
+			for (AssignmentType assignment : focus.asObjectable().getAssignment()) {
+				if (assignment.getTargetRef() != null && assignment.getTargetRef().getOid() != null) {
+					targetOids.add(assignment.getTargetRef().getOid());
+				}
+			}
+		}
+	}
+
+	// values of assignment container or any of its items (we are interested in assignments and target references)
+	private void collectTargetOids(Set<String> targetOids, Collection<? extends PrismValue> values) {
+		if (values == null) {
+			return;
+		}
+		for (PrismValue value : values) {
+			if (value instanceof PrismContainerValue && ((PrismContainerValue<?>) value).asContainerable() instanceof AssignmentType) {
+				AssignmentType assignment = (AssignmentType) ((PrismContainerValue<?>) value).asContainerable();
+				if (assignment.getTargetRef() != null && assignment.getTargetRef().getOid() != null) {
+					targetOids.add(assignment.getTargetRef().getOid());
+				}
+			} else if (value instanceof PrismReferenceValue && ((PrismReferenceValue) value).getOid() != null) {
+				targetOids.add(((PrismReferenceValue) value).getOid());
+			}
+		}
+	}
+
+	private static class Key {
+		private final String targetOid;
+		private final QName relation;
+
+		private Key(String targetOid, QName relation) {
+			this.targetOid = targetOid;
+			this.relation = relation;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return Objects.equals(targetOid, key.targetOid) && Objects.equals(relation, key.relation);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(targetOid, relation);
+		}
+
+		@Override
+		public String toString() {
+			return targetOid + "/" + relation;
+		}
+	}
+
+	private static class Entry {
+		private final int count;
+		private final long timestamp;
+
+		private Entry(int count, long timestamp) {
+			this.count = count;
+			this.timestamp = timestamp;
+		}
+	}
+}
@@ -39,20 +39,22 @@ public class AssignmentPolicyRuleEvaluationContext<F extends FocusType> extends
 	public final boolean inMinus;
 	public final boolean isDirect;
 	public final DeltaSetTriple<EvaluatedAssignmentImpl<F>> evaluatedAssignmentTriple;
+	@NotNull public final EvaluatedAssignmentTargetIndex<F> targetIndex;		// shared for the whole evaluatedAssignmentTriple
 
 	public AssignmentPolicyRuleEvaluationContext(@NotNull EvaluatedPolicyRule policyRule,
 			@NotNull EvaluatedAssignmentImpl<F> evaluatedAssignment, boolean inPlus, boolean inZero,
 			boolean inMinus, boolean isDirect, LensContext<F> context,
-			DeltaSetTriple<EvaluatedAssignmentImpl<F>> evaluatedAssignmentTriple, Task task,
-			RulesEvaluationContext globalCtx) {
+			DeltaSetTriple<EvaluatedAssignmentImpl<F>> evaluatedAssignmentTriple,
+			@NotNull EvaluatedAssignmentTargetIndex<F> targetIndex, Task task, RulesEvaluationContext globalCtx) {
 		this(policyRule, evaluatedAssignment, inPlus, inZero, inMinus, isDirect, context, evaluatedAssignmentTriple,
-				task, ObjectState.AFTER, globalCtx);
+				targetIndex, task, ObjectState.AFTER, globalCtx);
 	}
 
 	public AssignmentPolicyRuleEvaluationContext(@NotNull EvaluatedPolicyRule policyRule,
 			@NotNull EvaluatedAssignmentImpl<F> evaluatedAssignment, boolean inPlus, boolean inZero,
 			boolean inMinus, boolean isDirect, LensContext<F> context,
-			DeltaSetTriple<EvaluatedAssignmentImpl<F>> evaluatedAssignmentTriple, Task task, ObjectState state,
+			DeltaSetTriple<EvaluatedAssignmentImpl<F>> evaluatedAssignmentTriple,
+			@NotNull EvaluatedAssignmentTargetIndex<F> targetIndex, Task task, ObjectState state,
 			RulesEvaluationContext globalCtx) {
 		super(policyRule, context, task, globalCtx, state);
 		this.evaluatedAssignment = evaluatedAssignment;
@@ -61,11 +63,12 @@ public class AssignmentPolicyRuleEvaluationContext<F extends FocusType> extends
 		this.inMinus = inMinus;
 		this.isDirect = isDirect;
 		this.evaluatedAssignmentTriple = evaluatedAssignmentTriple;
+		this.targetIndex = targetIndex;
 	}
 
 	@Override
 	public AssignmentPolicyRuleEvaluationContext<F> cloneWithStateConstraints(ObjectState state) {
-		return new AssignmentPolicyRuleEvaluationContext<>(policyRule, evaluatedAssignment, inPlus, inZero, inMinus, isDirect, lensContext, evaluatedAssignmentTriple, task, state,
+		return new AssignmentPolicyRuleEvaluationContext<>(policyRule, evaluatedAssignment, inPlus, inZero, inMinus, isDirect, lensContext, evaluatedAssignmentTriple, targetIndex, task, state,
 				globalCtx);
 	}
 
@@ -102,6 +105,6 @@ public class AssignmentPolicyRuleEvaluationContext<F extends FocusType> extends
 	@Override
 	public AssignmentPolicyRuleEvaluationContext<F> clone() {
 		return new AssignmentPolicyRuleEvaluationContext<>(policyRule, evaluatedAssignment, inPlus, inZero, inMinus,
-				isDirect, lensContext, evaluatedAssignmentTriple, task, globalCtx);
+				isDirect, lensContext, evaluatedAssignmentTriple, targetIndex, task, globalCtx);
 	}
 }
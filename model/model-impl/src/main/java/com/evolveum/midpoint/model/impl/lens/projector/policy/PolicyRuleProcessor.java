@@ -99,6 +99,7 @@ public class PolicyRuleProcessor {
 			Task task, OperationResult result)
 			throws PolicyViolationException, SchemaException, ExpressionEvaluationException, ObjectNotFoundException, CommunicationException, ConfigurationException, SecurityViolationException {
 
+		EvaluatedAssignmentTargetIndex<F> targetIndex = new EvaluatedAssignmentTargetIndex<>(evaluatedAssignmentTriple);
 		for (EvaluatedAssignmentImpl<F> evaluatedAssignment : evaluatedAssignmentTriple.union()) {
 			RulesEvaluationContext globalCtx = new RulesEvaluationContext();
 
@@ -121,7 +122,7 @@ public class PolicyRuleProcessor {
 					if (checkApplicabilityToAssignment(policyRule)) {
 						evaluateRule(new AssignmentPolicyRuleEvaluationContext<>(policyRule,
 								evaluatedAssignment, inPlus, inZero, inMinus, true, context,
-								evaluatedAssignmentTriple, task, globalCtx), result);
+								evaluatedAssignmentTriple, targetIndex, task, globalCtx), result);
 					}
 				}
 			}
@@ -130,7 +131,7 @@ public class PolicyRuleProcessor {
 					if (checkApplicabilityToAssignment(policyRule)) {
 						evaluateRule(new AssignmentPolicyRuleEvaluationContext<>(policyRule,
 								evaluatedAssignment, inPlus, inZero, inMinus, false, context,
-								evaluatedAssignmentTriple, task, globalCtx), result);
+								evaluatedAssignmentTriple, targetIndex, task, globalCtx), result);
 					}
 				}
 			}
@@ -139,7 +140,7 @@ public class PolicyRuleProcessor {
 					if (checkApplicabilityToAssignment(policyRule)) {
 						evaluateRule(new AssignmentPolicyRuleEvaluationContext<>(policyRule,
 								evaluatedAssignment, inPlus, inZero, inMinus, true, context,
-								evaluatedAssignmentTriple, task, globalCtx), result);
+								evaluatedAssignmentTriple, targetIndex, task, globalCtx), result);
 					}
 				}
 			}
@@ -148,7 +149,7 @@ public class PolicyRuleProcessor {
 					if (checkApplicabilityToAssignment(policyRule)) {
 						evaluateRule(new AssignmentPolicyRuleEvaluationContext<>(policyRule,
 								evaluatedAssignment, inPlus, inZero, inMinus, false, context,
-								evaluatedAssignmentTriple, task, globalCtx), result);
+								evaluatedAssignmentTriple, targetIndex, task, globalCtx), result);
 					}
 				}
 			}
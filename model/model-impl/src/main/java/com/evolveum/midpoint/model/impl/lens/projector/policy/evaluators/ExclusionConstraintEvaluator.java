@@ -22,6 +22,7 @@ import com.evolveum.midpoint.model.impl.lens.EvaluatedAssignmentImpl;
 import com.evolveum.midpoint.model.impl.lens.EvaluatedAssignmentTargetImpl;
 import com.evolveum.midpoint.model.impl.lens.LensContext;
 import com.evolveum.midpoint.model.impl.lens.projector.policy.AssignmentPolicyRuleEvaluationContext;
+import com.evolveum.midpoint.model.impl.lens.projector.policy.EvaluatedAssignmentTargetIndex;
 import com.evolveum.midpoint.model.impl.lens.projector.policy.PolicyRuleEvaluationContext;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
@@ -113,31 +114,37 @@ public class ExclusionConstraintEvaluator implements PolicyConstraintEvaluator<E
 //				.map(t -> t.getOid())
 //				.collect(Collectors.toSet());
 
-		List<EvaluatedAssignmentTargetImpl> nonNegativeTargetsA = ctx.evaluatedAssignment.getNonNegativeTargets();
+		// Constraints with explicit target OID (the usual case) need to look only at targets with that OID.
+		ObjectReferenceType targetRef = constraint.getValue().getTargetRef();
+		List<EvaluatedAssignmentTargetIndex.Entry<F>> candidates = targetRef != null && targetRef.getOid() != null
+				? ctx.targetIndex.getEntries(targetRef.getOid())
+				: ctx.targetIndex.getAllEntries();
 
-		for (EvaluatedAssignmentImpl<F> assignmentB : ctx.evaluatedAssignmentTriple.getNonNegativeValues()) {
+candidates:
+		for (EvaluatedAssignmentTargetIndex.Entry<F> candidate : candidates) {
+			EvaluatedAssignmentImpl<F> assignmentB = candidate.assignment;
+			EvaluatedAssignmentTargetImpl targetB = candidate.target;
 			if (assignmentB.equals(ctx.evaluatedAssignment)) {      // TODO (value instead of reference equality?)
 				continue;
 			}
-targetB:	for (EvaluatedAssignmentTargetImpl targetB : assignmentB.getNonNegativeTargets()) {
-				if (!pathMatches(targetB.getAssignmentPath(), targetOrderConstraints)) {
-//					System.out.println("Target assignment path does not match: constraints=" + targetOrderConstraints + ", whole path=" + targetB.getAssignmentPath());
-					continue;
-				}
-				if (!oidMatches(constraint.getValue().getTargetRef(), targetB, prismContext, matchingRuleRegistry, "exclusion constraint")) {
-					continue;
-				}
-				// To avoid false positives let us check if this target is not already covered by assignment being evaluated
-				// (is this really needed?)
-				for (EvaluatedAssignmentTargetImpl targetA : nonNegativeTargetsA) {
+			if (!pathMatches(targetB.getAssignmentPath(), targetOrderConstraints)) {
+//				System.out.println("Target assignment path does not match: constraints=" + targetOrderConstraints + ", whole path=" + targetB.getAssignmentPath());
+				continue;
+			}
+			if (!oidMatches(targetRef, targetB, prismContext, matchingRuleRegistry, "exclusion constraint")) {
+				continue;
+			}
+			// To avoid false positives let us check if this target is not already covered by assignment being evaluated
+			// (is this really needed?)
+			if (targetB.getOid() != null) {
+				for (EvaluatedAssignmentTargetImpl targetA : ctx.targetIndex.getTargets(ctx.evaluatedAssignment, targetB.getOid())) {
 					if (targetA.appliesToFocusWithAnyRelation()
-							&& targetA.getOid() != null && targetA.getOid().equals(targetB.getOid())
 							&& targetA.getAssignmentPath().equivalent(targetB.getAssignmentPath())) {
-						continue targetB;
+						continue candidates;
 					}
 				}
-				return createTrigger(ctx.evaluatedAssignment, assignmentB, targetB, constraint, ctx.policyRule, ctx, result);
 			}
+			return createTrigger(ctx.evaluatedAssignment, assignmentB, targetB, constraint, ctx.policyRule, ctx, result);
 		}
 		return null;
 	}
@@ -260,6 +267,10 @@ targetB:	for (EvaluatedAssignmentTargetImpl targetB : assignmentB.getNonNegative
 
 	public <F extends FocusType> void checkExclusionsLegacy(LensContext<F> context, Collection<EvaluatedAssignmentImpl<F>> assignmentsA,
 			Collection<EvaluatedAssignmentImpl<F>> assignmentsB) throws PolicyViolationException {
+		// Legacy exclusions are rare. Avoid checking all the pairs of targets if there are none.
+		if (!hasLegacyExclusions(assignmentsA) && !hasLegacyExclusions(assignmentsB)) {
+			return;
+		}
 		for (EvaluatedAssignmentImpl<F> assignmentA: assignmentsA) {
 			for (EvaluatedAssignmentImpl<F> assignmentB: assignmentsB) {
 				if (assignmentA == assignmentB) {
@@ -278,6 +289,17 @@ targetB:	for (EvaluatedAssignmentTargetImpl targetB : assignmentB.getNonNegative
 		}
 	}
 
+	private <F extends FocusType> boolean hasLegacyExclusions(Collection<EvaluatedAssignmentImpl<F>> assignments) {
+		for (EvaluatedAssignmentImpl<F> assignment : assignments) {
+			for (EvaluatedAssignmentTargetImpl eRole : assignment.getRoles().getAllValues()) {
+				if (eRole.appliesToFocus() && !eRole.getExclusions().isEmpty()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	private <F extends FocusType> void checkExclusionLegacy(EvaluatedAssignmentImpl<F> assignmentA, EvaluatedAssignmentImpl<F> assignmentB,
 			EvaluatedAssignmentTargetImpl roleA, EvaluatedAssignmentTargetImpl roleB) throws PolicyViolationException {
 		checkExclusionOneWayLegacy(assignmentA, assignmentB, roleA, roleB);
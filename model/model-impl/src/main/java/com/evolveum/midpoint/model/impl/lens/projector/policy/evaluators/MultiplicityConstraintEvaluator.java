@@ -20,21 +20,17 @@ import com.evolveum.midpoint.model.api.context.EvaluatedAssignment;
 import com.evolveum.midpoint.model.api.context.EvaluatedMultiplicityTrigger;
 import com.evolveum.midpoint.model.api.context.EvaluatedPolicyRuleTrigger;
 import com.evolveum.midpoint.model.impl.lens.LensContext;
+import com.evolveum.midpoint.model.impl.lens.projector.policy.AssigneeCountCache;
 import com.evolveum.midpoint.model.impl.lens.projector.policy.AssignmentPolicyRuleEvaluationContext;
 import com.evolveum.midpoint.model.impl.lens.projector.policy.ObjectPolicyRuleEvaluationContext;
 import com.evolveum.midpoint.model.impl.lens.projector.policy.PolicyRuleEvaluationContext;
-import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
-import com.evolveum.midpoint.prism.PrismReferenceValue;
 import com.evolveum.midpoint.prism.delta.PlusMinusZero;
-import com.evolveum.midpoint.prism.query.ObjectQuery;
-import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
-import com.evolveum.midpoint.prism.query.builder.S_AtomicFilterExit;
 import com.evolveum.midpoint.prism.xml.XsdTypeMapper;
-import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
+import com.evolveum.midpoint.schema.util.SystemConfigurationTypeUtil;
 import com.evolveum.midpoint.util.LocalizableMessage;
 import com.evolveum.midpoint.util.LocalizableMessageBuilder;
 import com.evolveum.midpoint.util.QNameUtil;
@@ -46,7 +42,6 @@ import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.exception.SecurityViolationException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import javax.xml.bind.JAXBElement;
@@ -70,8 +65,7 @@ public class MultiplicityConstraintEvaluator implements PolicyConstraintEvaluato
 	private static final String KEY_TARGET = "target";
 
 	@Autowired private ConstraintEvaluatorHelper evaluatorHelper;
-	@Autowired private PrismContext prismContext;
-	@Autowired @Qualifier("cacheRepositoryService") private RepositoryService repositoryService;
+	@Autowired private AssigneeCountCache assigneeCountCache;
 
 	@Override
 	public <F extends FocusType> EvaluatedPolicyRuleTrigger evaluate(JAXBElement<MultiplicityPolicyConstraintType> constraint,
@@ -103,7 +97,6 @@ public class MultiplicityConstraintEvaluator implements PolicyConstraintEvaluato
 		boolean isMax = QNameUtil.match(constraint.getName(), PolicyConstraintsType.F_MAX_ASSIGNEES)
 				|| QNameUtil.match(constraint.getName(), PolicyConstraintsType.F_OBJECT_MAX_ASSIGNEES_VIOLATION);
 		assert isMin || isMax;
-		// TODO cache repository call results
 		if (isMin) {
 			Integer requiredMultiplicity = XsdTypeMapper.multiplicityToInteger(constraint.getValue().getMultiplicity());
 			if (requiredMultiplicity == null) {
@@ -113,7 +106,7 @@ public class MultiplicityConstraintEvaluator implements PolicyConstraintEvaluato
 				return null;            // unbounded or 0
 			}
 			for (QName relationToCheck : relationsToCheck) {
-				int currentAssignees = getNumberOfAssigneesExceptMyself(targetRole, null, relationToCheck, result);
+				int currentAssignees = getNumberOfAssigneesExceptMyself(targetRole, null, null, relationToCheck, ctx.lensContext, result);
 				if (currentAssignees < requiredMultiplicity) {
 					return new EvaluatedMultiplicityTrigger(PolicyConstraintKindType.MIN_ASSIGNEES_VIOLATION,
 							constraint.getValue(),
@@ -133,7 +126,7 @@ public class MultiplicityConstraintEvaluator implements PolicyConstraintEvaluato
 				return null;			// unbounded
 			}
 			for (QName relationToCheck : relationsToCheck) {
-				int currentAssigneesExceptMyself = getNumberOfAssigneesExceptMyself(targetRole, null, relationToCheck, result);
+				int currentAssigneesExceptMyself = getNumberOfAssigneesExceptMyself(targetRole, null, null, relationToCheck, ctx.lensContext, result);
 				if (currentAssigneesExceptMyself >= requiredMultiplicity) {
 					return new EvaluatedMultiplicityTrigger(PolicyConstraintKindType.MAX_ASSIGNEES_VIOLATION,
 							constraint.getValue(),
@@ -178,17 +171,17 @@ public class MultiplicityConstraintEvaluator implements PolicyConstraintEvaluato
 			return null;
 		}
 		String focusOid = context.getFocusContext() != null ? context.getFocusContext().getOid() : null;
+		PrismObject<F> focusCurrent = context.getFocusContext() != null ? context.getFocusContext().getObjectCurrent() : null;
 		boolean isMin = QNameUtil.match(constraint.getName(), PolicyConstraintsType.F_MIN_ASSIGNEES);
 		boolean isMax = QNameUtil.match(constraint.getName(), PolicyConstraintsType.F_MAX_ASSIGNEES);
 		assert isMin || isMax;
-		// TODO cache repository call results
 		if (isMin) {
 			Integer requiredMultiplicity = XsdTypeMapper.multiplicityToInteger(constraint.getValue().getMultiplicity());
 			if (requiredMultiplicity <= 0) {
 				return null;            // unbounded or 0
 			}
 			// Complain only if the situation is getting worse
-			int currentAssigneesExceptMyself = getNumberOfAssigneesExceptMyself(targetRole, focusOid, relation, result);
+			int currentAssigneesExceptMyself = getNumberOfAssigneesExceptMyself(targetRole, focusOid, focusCurrent, relation, context, result);
 			if (currentAssigneesExceptMyself < requiredMultiplicity && plusMinus == PlusMinusZero.MINUS) {
 				return new EvaluatedMultiplicityTrigger(PolicyConstraintKindType.MIN_ASSIGNEES_VIOLATION,
 						constraint.getValue(),
@@ -205,7 +198,7 @@ public class MultiplicityConstraintEvaluator implements PolicyConstraintEvaluato
 				return null;			// unbounded
 			}
 			// Complain only if the situation is getting worse
-			int currentAssigneesExceptMyself = getNumberOfAssigneesExceptMyself(targetRole, focusOid, relation, result);
+			int currentAssigneesExceptMyself = getNumberOfAssigneesExceptMyself(targetRole, focusOid, focusCurrent, relation, context, result);
 			if (currentAssigneesExceptMyself >= requiredMultiplicity && plusMinus == PLUS) {
 				return new EvaluatedMultiplicityTrigger(PolicyConstraintKindType.MAX_ASSIGNEES_VIOLATION,
 						constraint.getValue(),
@@ -232,19 +225,15 @@ public class MultiplicityConstraintEvaluator implements PolicyConstraintEvaluato
 	/**
 	 * Returns numbers of assignees with the given relation name.
 	 */
-	private int getNumberOfAssigneesExceptMyself(AbstractRoleType target, String selfOid, QName relation, OperationResult result)
+	private int getNumberOfAssigneesExceptMyself(AbstractRoleType target, String selfOid,
+			PrismObject<? extends FocusType> selfCurrent, QName relation, LensContext<?> context, OperationResult result)
 			throws SchemaException {
 		if (target.getOid() == null) {
 			return 0;
 		}
-		S_AtomicFilterExit q = QueryBuilder.queryFor(FocusType.class, prismContext)
-				.item(FocusType.F_ASSIGNMENT, AssignmentType.F_TARGET_REF).ref(
-						new PrismReferenceValue(target.getOid()).relation(relation));
-		if (selfOid != null) {
-			q = q.and().not().id(selfOid);
-		}
-		ObjectQuery query = q.build();
-		return repositoryService.countObjects(FocusType.class, query, null, result);
+		int timeToLive = SystemConfigurationTypeUtil.getAssigneeCountCacheTimeToLive(context.getSystemConfiguration());
+		return assigneeCountCache.getNumberOfAssigneesExceptMyself(target.getOid(), relation, selfOid, selfCurrent,
+				timeToLive, result);
 	}
 
 	private <F extends FocusType> LocalizableMessage getMessage(JAXBElement<MultiplicityPolicyConstraintType> constraintElement,
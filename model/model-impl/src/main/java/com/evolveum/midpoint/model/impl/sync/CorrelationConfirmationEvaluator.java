@@ -83,6 +83,9 @@ public class CorrelationConfirmationEvaluator {
 
 	@Autowired(required = true)
 	private MatchingRuleRegistry matchingRuleRegistry;
+
+	@Autowired
+	private CorrelationIndexManager correlationIndexManager;
 	
 	public <F extends FocusType> List<PrismObject<F>> findFocusesByCorrelationRule(Class<F> focusType, ShadowType currentShadow,
 			List<ConditionalSearchFilterType> conditionalFilters, ResourceType resourceType, SystemConfigurationType configurationType, Task task, OperationResult result)
@@ -230,7 +233,10 @@ public class CorrelationConfirmationEvaluator {
 		List<PrismObject<F>> users;
 		try {
 			LOGGER.trace("SYNCHRONIZATION: CORRELATION: expression for results in filter\n{}", q.debugDumpLazily());
-			users = repositoryService.searchObjects(focusType, q, null, result);
+			users = correlationIndexManager.searchObjects(focusType, q, task, result);
+			if (users == null) {
+				users = repositoryService.searchObjects(focusType, q, null, result);
+			}
 		} catch (RuntimeException ex) {
 			LoggingUtils.logException(LOGGER,
 					"Couldn't search users in repository, based on filter (simplified)\n{}.", ex, q.debugDump());
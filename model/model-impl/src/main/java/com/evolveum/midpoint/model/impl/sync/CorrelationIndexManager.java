@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.impl.sync;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismProperty;
+import com.evolveum.midpoint.prism.PrismPropertyValue;
+import com.evolveum.midpoint.prism.delta.ChangeType;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.prism.query.AndFilter;
+import com.evolveum.midpoint.prism.query.EqualFilter;
+import com.evolveum.midpoint.prism.query.InOidFilter;
+import com.evolveum.midpoint.prism.query.ObjectFilter;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.ResultHandler;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.util.QNameUtil;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
+
+/**
+ * Task-scoped in-memory index used to resolve correlation queries without searching the repository
+ * for each resource object (useful e.g. for initial import of many accounts).
+ *
+ * Used only if the task has useCorrelationIndex extension property set to true, and only for correlation
+ * filters that are (or contain) a simple equality on a focus property with string or polystring values.
+ * On first use, the values of the property are loaded for all focus objects of given type. Values are
+ * normalized (using the polystring normalizer), so the index can return more candidates than the filter
+ * would match, but never less. The candidates are then checked against the original filter in the repository,
+ * so the result is the same as if the repository was searched directly. If there are no candidates,
+ * the repository is not contacted at all.
+ *
+ * Focus objects added or modified through the model on this node are reflected in all the indexes: both the ones
+ * changed by the task itself (e.g. users created by the synchronization reaction) and by other tasks or users.
+ * Changes done directly in the repository or on other cluster nodes are not.
+ *
+ * The index is kept until the task (or the processing of a bucket) finishes.
+ */
+@Component
+public class CorrelationIndexManager {
+
+	private static final Trace LOGGER = TraceManager.getTrace(CorrelationIndexManager.class);
+
+	private static final String OPERATION_BUILD_INDEX = CorrelationIndexManager.class.getName() + ".buildIndex";
+
+	private static final int MAX_TASKS = 10;
+	private static final int MAX_DIRTY_OBJECTS = 1000;
+
+	@Autowired
+	@Qualifier("cacheRepositoryService")
+	private RepositoryService repositoryService;
+
+	@Autowired private PrismContext prismContext;
+
+	private final Map<String, TaskIndexes> taskIndexes = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns focus objects matching the correlation query, or null if the index cannot be used
+	 * for the query (or is not enabled for the task).
+	 */
+	public <F extends FocusType> List<PrismObject<F>> searchObjects(Class<F> focusType, ObjectQuery query, Task task,
+			OperationResult result) throws SchemaException {
+		String scope = getScope(task);
+		if (scope == null || query == null || query.getPaging() != null) {
+			return null;
+		}
+		EqualFilter<?> equalFilter = findIndexableFilter(query.getFilter());
+		if (equalFilter == null) {
+			return null;
+		}
+		Set<String> keys = new HashSet<>();
+		for (PrismPropertyValue<?> value : equalFilter.getValues()) {
+			String key = normalize(value.getValue());
+			if (key == null) {
+				return null;
+			}
+			keys.add(key);
+		}
+
+		TaskIndexes indexes = taskIndexes.get(scope);
+		if (indexes == null) {
+			evictIfNeeded();
+			indexes = taskIndexes.computeIfAbsent(scope, k -> new TaskIndexes());
+		}
+		Index index = indexes.indexes.computeIfAbsent(getIndexKey(focusType, equalFilter.getFullPath()),
+				k -> new Index(focusType, equalFilter.getFullPath()));
+		index.ensureBuilt(result);
+
+		Set<String> candidates = index.getCandidates(keys);
+		if (candidates.isEmpty()) {
+			LOGGER.trace("No correlation candidates in the index for {}", keys);
+			return new ArrayList<>();
+		}
+		LOGGER.trace("Correlation candidates in the index for {}: {}", keys, candidates);
+		ObjectQuery candidatesQuery = ObjectQuery.createObjectQuery(
+				AndFilter.createAnd(InOidFilter.createInOid(candidates), query.getFilter().clone()));
+		return repositoryService.searchObjects(focusType, candidatesQuery, null, result);
+	}
+
+	/**
+	 * Should be called after a delta of a focus object was successfully executed (by any task).
+	 */
+	public void focusChanged(ObjectDelta<? extends ObjectType> delta) {
+		for (TaskIndexes indexes : taskIndexes.values()) {
+			for (Index index : indexes.indexes.values()) {
+				if (index.focusType.isAssignableFrom(delta.getObjectTypeClass())) {
+					index.focusChanged(delta);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Discards the indexes built for the task (or its bucket).
+	 */
+	public void release(Task task) {
+		String scope = getScopeKey(task);
+		if (scope != null && taskIndexes.remove(scope) != null) {
+			LOGGER.debug("Released correlation indexes for {}", task);
+		}
+	}
+
+	private void evictIfNeeded() {
+		if (taskIndexes.size() >= MAX_TASKS) {
+			// Indexes of tasks that ended without releasing them (e.g. tasks run by a handler that does not release
+			// the indexes). Should be rare.
+			String oldest = null;
+			long oldestTimestamp = Long.MAX_VALUE;
+			for (Map.Entry<String, TaskIndexes> entry : taskIndexes.entrySet()) {
+				if (entry.getValue().created < oldestTimestamp) {
+					oldest = entry.getKey();
+					oldestTimestamp = entry.getValue().created;
+				}
+			}
+			if (oldest != null) {
+				LOGGER.debug("Too many correlation indexes, discarding the ones for task {}", oldest);
+				taskIndexes.remove(oldest);
+			}
+		}
+	}
+
+	private String getScope(Task task) {
+		Task coordinator = getCoordinator(task);
+		if (coordinator == null || coordinator.getOid() == null) {
+			return null;
+		}
+		PrismProperty<Boolean> useIndexProperty = coordinator.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_USE_CORRELATION_INDEX);
+		if (useIndexProperty == null || !Boolean.TRUE.equals(useIndexProperty.getRealValue())) {
+			return null;
+		}
+		return coordinator.getOid();
+	}
+
+	private String getScopeKey(Task task) {
+		Task coordinator = getCoordinator(task);
+		return coordinator != null ? coordinator.getOid() : null;
+	}
+
+	private Task getCoordinator(Task task) {
+		if (task != null && task.isLightweightAsynchronousTask() && task.getParentForLightweightAsynchronousTask() != null) {
+			return task.getParentForLightweightAsynchronousTask();
+		}
+		return task;
+	}
+
+	private EqualFilter<?> findIndexableFilter(ObjectFilter filter) {
+		if (filter instanceof EqualFilter) {
+			EqualFilter<?> equalFilter = (EqualFilter<?>) filter;
+			if (equalFilter.getRightHandSidePath() == null && equalFilter.getExpression() == null
+					&& equalFilter.getValues() != null && !equalFilter.getValues().isEmpty()
+					&& isIndexable(equalFilter.getFullPath())) {
+				return equalFilter;
+			}
+		} else if (filter instanceof AndFilter) {
+			for (ObjectFilter condition : ((AndFilter) filter).getConditions()) {
+				EqualFilter<?> equalFilter = findIndexableFilter(condition);
+				if (equalFilter != null) {
+					return equalFilter;
+				}
+			}
+		}
+		return null;
+	}
+
+	// Only properties directly in the object or in its extension (not in multivalued containers).
+	private boolean isIndexable(ItemPath path) {
+		if (path.namedSegmentsOnly().size() != path.size()) {
+			return false;
+		}
+		return path.size() == 1 || path.size() == 2 && QNameUtil.match(path.getFirstName(), ObjectType.F_EXTENSION);
+	}
+
+	private String normalize(Object value) {
+		String orig;
+		String norm;
+		if (value instanceof PolyString) {
+			orig = ((PolyString) value).getOrig();
+			norm = ((PolyString) value).getNorm();
+		} else if (value instanceof PolyStringType) {
+			orig = ((PolyStringType) value).getOrig();
+			norm = ((PolyStringType) value).getNorm();
+		} else if (value instanceof String) {
+			orig = (String) value;
+			norm = null;
+		} else {
+			return null;
+		}
+		return orig != null ? prismContext.getDefaultPolyStringNormalizer().normalize(orig) : norm;
+	}
+
+	private String getIndexKey(Class<? extends FocusType> focusType, ItemPath path) {
+		return focusType.getName() + ":" + path;
+	}
+
+	private static class TaskIndexes {
+		private final long created = System.currentTimeMillis();
+		private final Map<String, Index> indexes = new ConcurrentHashMap<>();
+	}
+
+	private class Index {
+
+		private final Class<? extends FocusType> focusType;
+		private final ItemPath path;
+		private volatile Snapshot current;          // null until built
+		private volatile Snapshot building;         // being built (changes have to be applied to it as well)
+
+		private Index(Class<? extends FocusType> focusType, ItemPath path) {
+			this.focusType = focusType;
+			this.path = path;
+		}
+
+		private boolean isUsable(Snapshot snapshot) {
+			return snapshot != null && snapshot.dirtyOids.size() <= MAX_DIRTY_OBJECTS;
+		}
+
+		private void ensureBuilt(OperationResult parentResult) throws SchemaException {
+			if (isUsable(current)) {
+				return;
+			}
+			synchronized (this) {
+				if (isUsable(current)) {
+					return;
+				}
+				OperationResult result = parentResult.createMinorSubresult(OPERATION_BUILD_INDEX);
+				result.addParam("focusType", focusType.getSimpleName());
+				result.addParam("path", String.valueOf(path));
+				long start = System.currentTimeMillis();
+				Snapshot snapshot = new Snapshot();
+				building = snapshot;
+				try {
+					ResultHandler<FocusType> handler = (object, handlerResult) -> {
+						snapshot.addObject(object.getOid(), object, path);
+						return true;
+					};
+					@SuppressWarnings("unchecked")
+					Class<FocusType> type = (Class<FocusType>) focusType;
+					repositoryService.searchObjectsIterative(type, null, handler,
+							SelectorOptions.createCollection(GetOperationOptions.createReadOnly()), true, result);
+					current = snapshot;
+					LOGGER.debug("Built correlation index for {} {} with {} distinct values in {} ms", focusType.getSimpleName(),
+							path, snapshot.oidsByValue.size(), System.currentTimeMillis() - start);
+					result.computeStatus();
+				} catch (SchemaException | RuntimeException e) {
+					result.recordFatalError("Couldn't build correlation index: " + e.getMessage(), e);
+					throw e;
+				} finally {
+					building = null;
+				}
+			}
+		}
+
+		private Set<String> getCandidates(Set<String> keys) {
+			Snapshot snapshot = current;
+			Set<String> candidates = new HashSet<>(snapshot.dirtyOids);
+			for (String key : keys) {
+				candidates.addAll(snapshot.oidsByValue.getOrDefault(key, Collections.emptySet()));
+			}
+			return candidates;
+		}
+
+		private void focusChanged(ObjectDelta<? extends ObjectType> delta) {
+			// Snapshot being built has to be read first: if there is none, either the build has not started yet
+			// (so it will see the change in repository) or the built snapshot is already the current one.
+			Snapshot buildingSnapshot = building;
+			Snapshot currentSnapshot = current;
+			for (Snapshot snapshot : new Snapshot[] { buildingSnapshot, currentSnapshot }) {
+				if (snapshot != null) {
+					snapshot.focusChanged(delta, path);
+				}
+			}
+		}
+	}
+
+	private class Snapshot {
+
+		private final Map<String, Set<String>> oidsByValue = new ConcurrentHashMap<>();
+		// Objects modified by the task in a way that could change the indexed values. They are always
+		// considered to be candidates (there should be only a few of them).
+		private final Set<String> dirtyOids = ConcurrentHashMap.newKeySet();
+
+		private void addObject(String oid, PrismObject<? extends ObjectType> object, ItemPath path) {
+			if (oid == null || object == null) {
+				return;
+			}
+			PrismProperty<?> property = object.findProperty(path);
+			if (property == null) {
+				return;
+			}
+			for (Object realValue : property.getRealValues()) {
+				String key = normalize(realValue);
+				if (key != null) {
+					oidsByValue.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(oid);
+				}
+			}
+		}
+
+		// Deleted objects and values are left in the index, as they are filtered out by the repository search.
+		private void focusChanged(ObjectDelta<? extends ObjectType> delta, ItemPath path) {
+			if (delta.getChangeType() == ChangeType.ADD) {
+				PrismObject<? extends ObjectType> objectToAdd = delta.getObjectToAdd();
+				addObject(delta.getOid() != null ? delta.getOid() : objectToAdd.getOid(), objectToAdd, path);
+			} else if (delta.getChangeType() == ChangeType.MODIFY) {
+				for (ItemDelta<?, ?> modification : delta.getModifications()) {
+					if (modification.getPath().isSubPathOrEquivalent(path)) {
+						dirtyOids.add(delta.getOid());
+						return;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.impl.sync;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.common.Clock;
+import com.evolveum.midpoint.model.api.ModelExecuteOptions;
+import com.evolveum.midpoint.model.api.context.SynchronizationPolicyDecision;
+import com.evolveum.midpoint.model.common.SystemObjectCache;
+import com.evolveum.midpoint.model.impl.lens.EvaluatedAssignmentImpl;
+import com.evolveum.midpoint.model.impl.lens.EvaluatedAssignmentTargetImpl;
+import com.evolveum.midpoint.model.impl.lens.LensContext;
+import com.evolveum.midpoint.model.impl.lens.LensFocusContext;
+import com.evolveum.midpoint.model.impl.lens.LensProjectionContext;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.builder.DeltaBuilder;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.repo.api.PreconditionViolationException;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.repo.api.VersionPrecondition;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+import com.evolveum.midpoint.schema.internals.InternalCounters;
+import com.evolveum.midpoint.schema.internals.InternalMonitor;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
+import com.evolveum.midpoint.schema.util.SystemConfigurationTypeUtil;
+import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractRoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ActivationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectTemplateType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RecomputeFingerprintType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.TriggerType;
+
+/**
+ * Allows recompute tasks to skip objects whose inputs have not changed since their last recompute.
+ *
+ * After a recompute that resulted in no changes, the versions of the objects the computation depended on
+ * (system configuration, object template, assignment targets, resources, shadows) are stored on the focus,
+ * along with the expected version of the focus itself and the earliest time when the result can change merely
+ * because time passes (validity of the focus, its assignments and the targets, triggers). The next recompute
+ * compares them with the current versions (which is much cheaper than loading the objects) and skips the object
+ * if nothing has changed.
+ *
+ * The fingerprint is written directly to the repository with a version precondition, and the focus version
+ * is expected to be incremented by one by that write. If the repository does not behave like this, or if anyone
+ * else modifies the focus, the fingerprint simply does not match.
+ *
+ * Objects read by expressions and the content of the resources are not covered; therefore this is used only
+ * for recomputes without reconciliation, and only if enabled (see InternalsConfigurationType.skipRecomputeWithUnchangedInputs).
+ */
+@Component
+public class RecomputeFingerprintManager {
+
+	private static final Trace LOGGER = TraceManager.getTrace(RecomputeFingerprintManager.class);
+
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+
+	@Autowired private PrismContext prismContext;
+	@Autowired private SystemObjectCache systemObjectCache;
+	@Autowired private Clock clock;
+	@Autowired
+	@Qualifier("cacheRepositoryService")
+	private RepositoryService repositoryService;
+
+	public boolean isEnabled(ModelExecuteOptions options, OperationResult result) throws SchemaException {
+		if (ModelExecuteOptions.isReconcile(options)) {
+			return false;
+		}
+		return SystemConfigurationTypeUtil.isSkipRecomputeWithUnchangedInputs(systemObjectCache.getSystemConfiguration(result));
+	}
+
+	/**
+	 * Returns true if the recompute of the focus can be skipped, because none of its inputs has changed.
+	 */
+	public boolean isUnchanged(PrismObject<? extends FocusType> focus, OperationResult result) throws SchemaException {
+		RecomputeFingerprintType fingerprint = focus.asObjectable().getRecomputeFingerprint();
+		if (fingerprint == null || fingerprint.getFocusVersion() == null || fingerprint.getVersionsDigest() == null) {
+			return false;
+		}
+		if (!fingerprint.getFocusVersion().equals(focus.getVersion())) {
+			LOGGER.trace("Focus version changed for {}: {} -> {}", focus, fingerprint.getFocusVersion(), focus.getVersion());
+			return false;
+		}
+		if (fingerprint.getValidUntil() != null && XmlTypeConverter.toMillis(fingerprint.getValidUntil()) <= clock.currentTimeMillis()) {
+			LOGGER.trace("Recompute fingerprint of {} has expired at {}", focus, fingerprint.getValidUntil());
+			return false;
+		}
+		List<String> versions = new ArrayList<>(fingerprint.getDependencyRef().size());
+		for (ObjectReferenceType dependencyRef : fingerprint.getDependencyRef()) {
+			Class<? extends ObjectType> type = ObjectTypes.getObjectTypeFromTypeQName(dependencyRef.getType()).getClassDefinition();
+			try {
+				versions.add(repositoryService.getVersion(type, dependencyRef.getOid(), result));
+			} catch (ObjectNotFoundException e) {
+				LOGGER.trace("Dependency {} of {} does not exist any more", dependencyRef, focus);
+				result.muteLastSubresultError();
+				return false;
+			}
+		}
+		if (!fingerprint.getVersionsDigest().equals(computeDigest(fingerprint.getDependencyRef(), versions))) {
+			LOGGER.trace("Versions of dependencies of {} changed", focus);
+			return false;
+		}
+		LOGGER.trace("Inputs of {} have not changed, recompute can be skipped", focus);
+		InternalMonitor.recordCount(InternalCounters.RECOMPUTE_SKIP_COUNT);
+		return true;
+	}
+
+	/**
+	 * Stores the fingerprint of the inputs of the recompute that was just finished, if it resulted in no changes.
+	 */
+	public <F extends FocusType> void storeIfUnchanged(LensContext<F> context, OperationResult result) throws SchemaException {
+		LensFocusContext<F> focusContext = context.getFocusContext();
+		if (focusContext == null || focusContext.getObjectCurrent() == null || !focusContext.getExecutedDeltas().isEmpty()) {
+			return;
+		}
+		for (LensProjectionContext projectionContext : context.getProjectionContexts()) {
+			if (!projectionContext.getExecutedDeltas().isEmpty()
+					|| projectionContext.getSynchronizationPolicyDecision() == SynchronizationPolicyDecision.BROKEN) {
+				return;
+			}
+		}
+		PrismObject<F> focus = focusContext.getObjectCurrent();
+		String nextFocusVersion = getNextVersion(focus.getVersion());
+		if (nextFocusVersion == null) {
+			return;
+		}
+		RecomputeFingerprintType fingerprint = new RecomputeFingerprintType();
+		List<String> versions = new ArrayList<>();
+		if (!collectDependencies(context, fingerprint.getDependencyRef(), versions)) {
+			LOGGER.trace("Not storing recompute fingerprint for {} because some of the dependencies are not known", focus);
+			return;
+		}
+		fingerprint.setFocusVersion(nextFocusVersion);
+		fingerprint.setVersionsDigest(computeDigest(fingerprint.getDependencyRef(), versions));
+		fingerprint.setValidUntil(computeValidUntil(context));
+		try {
+			repositoryService.modifyObject(focusContext.getObjectTypeClass(), focus.getOid(),
+					DeltaBuilder.deltaFor(FocusType.class, prismContext)
+							.item(FocusType.F_RECOMPUTE_FINGERPRINT).replace(fingerprint)
+							.asItemDeltas(),
+					new VersionPrecondition<>(focus.getVersion()), null, result);
+		} catch (ObjectNotFoundException | ObjectAlreadyExistsException | PreconditionViolationException e) {
+			// Somebody has changed (or deleted) the object in the meanwhile. Nothing to store then.
+			LOGGER.debug("Couldn't store recompute fingerprint for {}: {}", focus, e.getMessage());
+			result.muteLastSubresultError();
+		}
+	}
+
+	private <F extends FocusType> boolean collectDependencies(LensContext<F> context, List<ObjectReferenceType> refs,
+			List<String> versions) {
+		PrismObject<SystemConfigurationType> systemConfiguration = context.getSystemConfiguration();
+		if (systemConfiguration != null && !addDependency(systemConfiguration, refs, versions)) {
+			return false;
+		}
+		ObjectTemplateType focusTemplate = context.getFocusTemplate();
+		if (focusTemplate != null) {
+			if (!addDependency(focusTemplate.asPrismObject(), refs, versions) || !focusTemplate.getIncludeRef().isEmpty()) {
+				// included templates are not loaded here, so we cannot check their versions
+				return false;
+			}
+		}
+		if (context.getEvaluatedAssignmentTriple() != null) {
+			for (EvaluatedAssignmentImpl<?> evaluatedAssignment : context.getEvaluatedAssignmentTriple().getAllValues()) {
+				if (evaluatedAssignment.getTarget() != null
+						&& !addDependency(evaluatedAssignment.getTarget(), refs, versions)) {
+					return false;
+				}
+				for (EvaluatedAssignmentTargetImpl target : evaluatedAssignment.getRoles().getAllValues()) {
+					if (!addDependency(target.getTarget(), refs, versions)) {
+						return false;
+					}
+				}
+			}
+		}
+		for (LensProjectionContext projectionContext : context.getProjectionContexts()) {
+			if (projectionContext.getResource() != null
+					&& !addDependency(projectionContext.getResource().asPrismObject(), refs, versions)) {
+				return false;
+			}
+			if (projectionContext.getObjectCurrent() != null
+					&& !addDependency(projectionContext.getObjectCurrent(), refs, versions)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean addDependency(PrismObject<?> object, List<ObjectReferenceType> refs, List<String> versions) {
+		if (object.getOid() == null || object.getVersion() == null) {
+			return false;
+		}
+		for (ObjectReferenceType ref : refs) {
+			if (object.getOid().equals(ref.getOid())) {
+				return true;
+			}
+		}
+		//noinspection unchecked
+		refs.add(ObjectTypeUtil.createObjectRef(object.getOid(),
+				ObjectTypes.getObjectType((Class<? extends ObjectType>) object.getCompileTimeClass())));
+		versions.add(object.getVersion());
+		return true;
+	}
+
+	private <F extends FocusType> XMLGregorianCalendar computeValidUntil(LensContext<F> context) {
+		long now = clock.currentTimeMillis();
+		long validUntil = Long.MAX_VALUE;
+		F focus = context.getFocusContext().getObjectCurrent().asObjectable();
+		for (TriggerType trigger : focus.getTrigger()) {
+			// triggers that are already due count as well: processing of them can change the result
+			if (trigger.getTimestamp() != null) {
+				validUntil = Math.min(validUntil, XmlTypeConverter.toMillis(trigger.getTimestamp()));
+			}
+		}
+		validUntil = updateValidUntil(validUntil, focus.getActivation(), now);
+		for (AssignmentType assignment : focus.getAssignment()) {
+			validUntil = updateValidUntil(validUntil, assignment.getActivation(), now);
+		}
+		if (context.getEvaluatedAssignmentTriple() != null) {
+			for (EvaluatedAssignmentImpl<?> evaluatedAssignment : context.getEvaluatedAssignmentTriple().getAllValues()) {
+				for (EvaluatedAssignmentTargetImpl target : evaluatedAssignment.getRoles().getAllValues()) {
+					FocusType targetObject = target.getTarget().asObjectable();
+					validUntil = updateValidUntil(validUntil, targetObject.getActivation(), now);
+					if (targetObject instanceof AbstractRoleType) {
+						for (AssignmentType inducement : ((AbstractRoleType) targetObject).getInducement()) {
+							validUntil = updateValidUntil(validUntil, inducement.getActivation(), now);
+						}
+						for (AssignmentType assignment : targetObject.getAssignment()) {
+							validUntil = updateValidUntil(validUntil, assignment.getActivation(), now);
+						}
+					}
+				}
+			}
+		}
+		return validUntil != Long.MAX_VALUE ? XmlTypeConverter.createXMLGregorianCalendar(validUntil) : null;
+	}
+
+	// only future boundaries are relevant
+	private long updateValidUntil(long validUntil, ActivationType activation, long now) {
+		if (activation == null) {
+			return validUntil;
+		}
+		for (XMLGregorianCalendar boundary : new XMLGregorianCalendar[] { activation.getValidFrom(), activation.getValidTo() }) {
+			if (boundary != null) {
+				long millis = XmlTypeConverter.toMillis(boundary);
+				if (millis > now) {
+					validUntil = Math.min(validUntil, millis);
+				}
+			}
+		}
+		return validUntil;
+	}
+
+	private String getNextVersion(String version) {
+		if (version == null) {
+			return null;
+		}
+		try {
+			return String.valueOf(Integer.parseInt(version) + 1);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private String computeDigest(List<ObjectReferenceType> refs, List<String> versions) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new SystemException(e.getMessage(), e);
+		}
+		for (int i = 0; i < refs.size(); i++) {
+			digest.update((refs.get(i).getOid() + ":" + versions.get(i) + ";").getBytes(StandardCharsets.UTF_8));
+		}
+		return Base64.getEncoder().encodeToString(digest.digest());
+	}
+}
@@ -15,6 +15,10 @@
  */
 package com.evolveum.midpoint.model.impl.sync;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import javax.annotation.PostConstruct;
 
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
@@ -22,6 +26,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.evolveum.midpoint.model.api.ModelExecuteOptions;
+import com.evolveum.midpoint.model.api.hooks.HookOperationMode;
 import com.evolveum.midpoint.model.impl.ModelConstants;
 import com.evolveum.midpoint.model.impl.lens.Clockwork;
 import com.evolveum.midpoint.model.impl.lens.ContextFactory;
@@ -30,7 +35,9 @@ import com.evolveum.midpoint.model.impl.util.AbstractSearchIterativeModelTaskHan
 import com.evolveum.midpoint.model.impl.util.Utils;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismProperty;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
 import com.evolveum.midpoint.repo.api.PreconditionViolationException;
 import com.evolveum.midpoint.repo.common.task.AbstractSearchIterativeResultHandler;
 import com.evolveum.midpoint.schema.result.OperationConstants;
@@ -50,8 +57,11 @@ import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.exception.SecurityViolationException;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractRoleType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 
 /**
@@ -73,6 +83,7 @@ public class RecomputeTaskHandler extends AbstractSearchIterativeModelTaskHandle
 	@Autowired private PrismContext prismContext;
     @Autowired private ContextFactory contextFactory;
     @Autowired private Clockwork clockwork;
+    @Autowired private RecomputeFingerprintManager recomputeFingerprintManager;
 
 	private static final transient Trace LOGGER = TraceManager.getTrace(RecomputeTaskHandler.class);
 
@@ -95,19 +106,60 @@ public class RecomputeTaskHandler extends AbstractSearchIterativeModelTaskHandle
 	protected AbstractSearchIterativeResultHandler<FocusType> createHandler(TaskRunResult runResult, final Task coordinatorTask,
 			OperationResult opResult) {
 
+		Set<String> reconcileResourceOids = getReconcileResourceOids(coordinatorTask);
 		AbstractSearchIterativeResultHandler<FocusType> handler = new AbstractSearchIterativeResultHandler<FocusType>(
 				coordinatorTask, RecomputeTaskHandler.class.getName(), "recompute", "recompute task", taskManager) {
 			@Override
 			protected boolean handleObject(PrismObject<FocusType> object, Task workerTask, OperationResult result) throws CommonException, PreconditionViolationException {
-				recompute(object, getOptions(coordinatorTask), workerTask, result);
+				recompute(object, getOptions(coordinatorTask), reconcileResourceOids, workerTask, result);
 				return true;
 			}
 
+			@Override
+			protected void prepareBatch(List<PrismObject<FocusType>> objects, Task workerTask, OperationResult result) throws CommonException {
+				preloadRelatedObjects(objects, result);
+			}
 		};
         handler.setStopOnError(false);
         return handler;
 	}
 
+	/**
+	 * Loads linked shadows and roles of the whole batch using two repository searches. The objects get into
+	 * the repository cache of the worker thread, so individual recomputations do not need to fetch them one by one.
+	 */
+	private void preloadRelatedObjects(List<PrismObject<FocusType>> objects, OperationResult result) throws SchemaException {
+		Set<String> shadowOids = new HashSet<>();
+		Set<String> roleOids = new HashSet<>();
+		for (PrismObject<FocusType> object : objects) {
+			FocusType focus = object.asObjectable();
+			for (ObjectReferenceType linkRef : focus.getLinkRef()) {
+				if (linkRef.getOid() != null) {
+					shadowOids.add(linkRef.getOid());
+				}
+			}
+			for (ObjectReferenceType roleMembershipRef : focus.getRoleMembershipRef()) {
+				if (roleMembershipRef.getOid() != null) {
+					roleOids.add(roleMembershipRef.getOid());
+				}
+			}
+		}
+		LOGGER.trace("Preloading {} shadows and {} roles for a batch of {} objects", shadowOids.size(), roleOids.size(),
+				objects.size());
+		preloadObjects(ShadowType.class, shadowOids, result);
+		preloadObjects(AbstractRoleType.class, roleOids, result);
+	}
+
+	private <T extends ObjectType> void preloadObjects(Class<T> type, Set<String> oids, OperationResult result) throws SchemaException {
+		if (oids.isEmpty()) {
+			return;
+		}
+		ObjectQuery query = QueryBuilder.queryFor(type, prismContext)
+				.id(oids.toArray(new String[0]))
+				.build();
+		getRepositoryService().searchObjects(type, query, null, result);
+	}
+
 	private ModelExecuteOptions getOptions(Task coordinatorTask) throws SchemaException {
 		ModelExecuteOptions modelExecuteOptions = Utils.getModelExecuteOptions(coordinatorTask);
 		if (modelExecuteOptions == null) {
@@ -119,16 +171,38 @@ public class RecomputeTaskHandler extends AbstractSearchIterativeModelTaskHandle
 		return modelExecuteOptions;
 	}
 
-	private void recompute(PrismObject<FocusType> focalObject, ModelExecuteOptions options, Task task, OperationResult result) throws SchemaException,
+	// resources whose projections are to be reconciled even if the options do not say so
+	private Set<String> getReconcileResourceOids(Task coordinatorTask) {
+		PrismProperty<String> property = coordinatorTask.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_RECONCILE_RESOURCE_OID);
+		if (property == null || property.isEmpty()) {
+			return null;
+		}
+		Set<String> oids = new HashSet<>(property.getRealValues());
+		LOGGER.trace("Reconciling projections on resources: {}", oids);
+		return oids;
+	}
+
+	private void recompute(PrismObject<FocusType> focalObject, ModelExecuteOptions options, Set<String> reconcileResourceOids,
+			Task task, OperationResult result) throws SchemaException,
 			ObjectNotFoundException, ExpressionEvaluationException, CommunicationException, ObjectAlreadyExistsException,
 			ConfigurationException, PolicyViolationException, SecurityViolationException, PreconditionViolationException {
 		LOGGER.trace("Recomputing object {}", focalObject);
 
+		boolean skipUnchanged = recomputeFingerprintManager.isEnabled(options, result);
+		if (skipUnchanged && recomputeFingerprintManager.isUnchanged(focalObject, result)) {
+			LOGGER.trace("Skipping recomputation of object {} because its inputs have not changed", focalObject);
+			return;
+		}
+
 		LensContext<FocusType> syncContext = contextFactory.createRecomputeContext(focalObject, options, task, result);
+		syncContext.setReconciliationResourceOids(reconcileResourceOids);
 		if (LOGGER.isTraceEnabled()) {
 			LOGGER.trace("Recomputing object {}: context:\n{}", focalObject, syncContext.debugDump());
 		}
-		clockwork.run(syncContext, task, result);
+		HookOperationMode mode = clockwork.run(syncContext, task, result);
+		if (skipUnchanged && mode == HookOperationMode.FOREGROUND) {
+			recomputeFingerprintManager.storeIfUnchanged(syncContext, result);
+		}
 		LOGGER.trace("Recomputation of object {}: {}", focalObject, result.getStatus());
 	}
 
@@ -106,6 +106,7 @@ public class ReconciliationTaskHandler implements WorkBucketAwareTaskHandler {
 	@Autowired private ProvisioningService provisioningService;
 	@Autowired private PrismContext prismContext;
 	@Autowired private ChangeNotificationDispatcher changeNotificationDispatcher;
+	@Autowired private CorrelationIndexManager correlationIndexManager;
 	@Autowired private AuditService auditService;
 	@Autowired private Clock clock;
 	@Autowired
@@ -495,6 +496,8 @@ public class ReconciliationTaskHandler implements WorkBucketAwareTaskHandler {
 
 		localCoordinatorTask.setExpectedTotal(null);
 
+		// The index could be left over from a previous (failed) run, so it might be outdated
+		correlationIndexManager.release(localCoordinatorTask);
 		try {
 
 			ObjectQuery query = objectclassDef.createShadowSearchQuery(resource.getOid());
@@ -532,6 +535,8 @@ public class ReconciliationTaskHandler implements WorkBucketAwareTaskHandler {
 		} catch (ConfigurationException | SecurityViolationException | SchemaException | CommunicationException | ObjectNotFoundException | ExpressionEvaluationException | RuntimeException | Error e) {
 			opResult.recordFatalError(e);
 			throw e;
+		} finally {
+			correlationIndexManager.release(localCoordinatorTask);
 		}
         return !interrupted;
 	}
@@ -91,4 +91,9 @@ public class RecomputeTriggerHandler implements TriggerHandler {
 
 	}
 
+	@Override
+	public boolean isIdempotent() {
+		return true;			// the object is recomputed no matter how many triggers it has
+	}
+
 }
@@ -29,4 +29,13 @@ public interface TriggerHandler {
 
 	<O extends ObjectType> void handle(PrismObject<O> object, TriggerType trigger, Task task, OperationResult result);
 
+	/**
+	 * Idempotent handler does the same thing regardless of which trigger it is invoked for (e.g. recompute).
+	 * If an object has more hot triggers of such a handler, the trigger scanner invokes the handler only once
+	 * and removes all these triggers.
+	 */
+	default boolean isIdempotent() {
+		return false;
+	}
+
 }
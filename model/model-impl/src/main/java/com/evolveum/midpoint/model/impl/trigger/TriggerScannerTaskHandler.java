@@ -180,13 +180,21 @@ public class TriggerScannerTaskHandler extends AbstractScannerTaskHandler<Object
 			} else {
 				LOGGER.trace("Firing triggers for {} ({} triggers)", object, triggerCVals.size());
 				List<TriggerType> triggers = getSortedTriggers(triggerCVals);
+				Set<String> idempotentHandlersFired = new HashSet<>();
 				for (TriggerType trigger: triggers) {
 					XMLGregorianCalendar timestamp = trigger.getTimestamp();
 					if (timestamp == null) {
 						LOGGER.warn("Trigger without a timestamp in {}", object);
 					} else {
 						if (isHot(handler, timestamp)) {
-							fireTrigger(trigger, object, triggerContainer.getDefinition(), workerTask, coordinatorTask, result);
+							if (idempotentHandlersFired.contains(trigger.getHandlerUri())) {
+								continue;		// already fired together with an earlier trigger
+							}
+							List<TriggerType> coalesced = getCoalescedTriggers(handler, trigger, triggers);
+							if (coalesced.size() > 1) {
+								idempotentHandlersFired.add(trigger.getHandlerUri());
+							}
+							fireTrigger(trigger, coalesced, object, triggerContainer.getDefinition(), workerTask, coordinatorTask, result);
 						} else {
 							LOGGER.trace("Trigger {} is not hot (timestamp={}, thisScanTimestamp={}, lastScanTimestamp={})",
 									trigger, timestamp, handler.getThisScanTimestamp(), handler.getLastScanTimestamp());
@@ -197,6 +205,26 @@ public class TriggerScannerTaskHandler extends AbstractScannerTaskHandler<Object
 		}
 	}
 
+	/**
+	 * Returns triggers that are to be removed after the handler is fired for the given trigger: for idempotent handlers
+	 * it is the trigger itself plus all other hot triggers with the same handler URI; for other handlers the trigger alone.
+	 */
+	private List<TriggerType> getCoalescedTriggers(AbstractScannerResultHandler<ObjectType> handler, TriggerType trigger,
+			List<TriggerType> allTriggers) {
+		String handlerUri = trigger.getHandlerUri();
+		TriggerHandler triggerHandler = handlerUri != null ? triggerHandlerRegistry.getHandler(handlerUri) : null;
+		if (triggerHandler == null || !triggerHandler.isIdempotent()) {
+			return Collections.singletonList(trigger);
+		}
+		List<TriggerType> rv = new ArrayList<>();
+		for (TriggerType t : allTriggers) {
+			if (handlerUri.equals(t.getHandlerUri()) && t.getTimestamp() != null && isHot(handler, t.getTimestamp())) {
+				rv.add(t);
+			}
+		}
+		return rv;
+	}
+
 	private List<TriggerType> getSortedTriggers(List<PrismContainerValue<TriggerType>> triggerCVals) {
 		List<TriggerType> rv = new ArrayList<>();
 		triggerCVals.forEach(cval -> rv.add(cval.clone().asContainerable()));
@@ -214,7 +242,7 @@ public class TriggerScannerTaskHandler extends AbstractScannerTaskHandler<Object
 		return handler.getLastScanTimestamp() == null || handler.getLastScanTimestamp().compare(timestamp) == DatatypeConstants.LESSER;
 	}
 
-	private void fireTrigger(TriggerType trigger, PrismObject<ObjectType> object,
+	private void fireTrigger(TriggerType trigger, List<TriggerType> triggersToRemove, PrismObject<ObjectType> object,
 			PrismContainerDefinition<TriggerType> triggerContainerDefinition,
 			Task workerTask, Task coordinatorTask, OperationResult result) {
 		String handlerUri = trigger.getHandlerUri();
@@ -223,7 +251,15 @@ public class TriggerScannerTaskHandler extends AbstractScannerTaskHandler<Object
 			return;
 		}
 		LOGGER.debug("Firing trigger {} in {}: id={}", handlerUri, object, trigger.getId());
-		if (triggerAlreadySeen(coordinatorTask, handlerUri, object.getOid()+":"+trigger.getId())) {
+		if (triggersToRemove.size() > 1) {
+			LOGGER.debug("Coalescing {} triggers of idempotent handler {} in {}", triggersToRemove.size(), handlerUri, object);
+		}
+		boolean allSeen = true;
+		for (TriggerType triggerToRemove : triggersToRemove) {
+			// we must not use short-circuit evaluation here, as triggerAlreadySeen marks the trigger as seen
+			allSeen &= triggerAlreadySeen(coordinatorTask, handlerUri, object.getOid()+":"+triggerToRemove.getId());
+		}
+		if (allSeen) {
 			LOGGER.debug("Handler {} already executed for {}:{}", handlerUri, ObjectTypeUtil.toShortString(object), trigger.getId());
 			return;
 		}
@@ -240,13 +276,15 @@ public class TriggerScannerTaskHandler extends AbstractScannerTaskHandler<Object
 				result.recordPartialError(e);
 			}
 		}
-		removeTrigger(object, trigger.asPrismContainerValue(), workerTask, triggerContainerDefinition);
+		removeTriggers(object, triggersToRemove, workerTask, triggerContainerDefinition);
 	}
 
-	private void removeTrigger(PrismObject<ObjectType> object, PrismContainerValue<TriggerType> triggerCVal, Task task,
+	private void removeTriggers(PrismObject<ObjectType> object, List<TriggerType> triggers, Task task,
 			PrismContainerDefinition<TriggerType> triggerContainerDef) {
 		ContainerDelta<TriggerType> triggerDelta = triggerContainerDef.createEmptyDelta(new ItemPath(F_TRIGGER));
-		triggerDelta.addValuesToDelete(triggerCVal.clone());
+		for (TriggerType trigger : triggers) {
+			triggerDelta.addValuesToDelete(trigger.asPrismContainerValue().clone());
+		}
 		Collection<? extends ItemDelta> modifications = MiscSchemaUtil.createCollection(triggerDelta);
 		// This is detached result. It will not take part of the task result. We do not really care.
 		OperationResult result = new OperationResult(TriggerScannerTaskHandler.class.getName()+".removeTrigger");
@@ -15,6 +15,7 @@
  */
 package com.evolveum.midpoint.model.impl.util;
 
+import java.util.Collection;
 import java.util.List;
 
 import javax.xml.datatype.XMLGregorianCalendar;
@@ -29,6 +30,8 @@ import com.evolveum.midpoint.prism.PrismPropertyDefinition;
 import com.evolveum.midpoint.prism.PrismPropertyValue;
 import com.evolveum.midpoint.prism.delta.PropertyDelta;
 import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.SelectorOptions;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.Task;
@@ -103,6 +106,16 @@ public abstract class AbstractScannerTaskHandler<O extends ObjectType, H extends
 		}
 	}
 
+	/**
+	 * The query of a scanner depends on the scan window (lastScanTimestamp - thisScanTimestamp), which is different
+	 * in a resumed run. Objects below the checkpoint that entered the new window would be skipped, so no checkpoints here.
+	 */
+	@Override
+	protected boolean isCheckpointingSupported(Class<? extends ObjectType> type,
+			Collection<SelectorOptions<GetOperationOptions>> searchOptions, boolean useRepository) {
+		return false;
+	}
+
 	@Override
     public String getCategoryName(Task task) {
         return TaskCategory.SYSTEM;
@@ -160,7 +160,11 @@ public class DeleteTaskHandler implements TaskHandler {
 			LOGGER.trace("Deleting {}, raw={} using query:\n{}", objectType.getSimpleName(), optionRaw, query.debugDump());
 		}
 
-		boolean countObjectsOnStart = true; // TODO
+		boolean countObjectsOnStart = true;
+		PrismProperty<Boolean> countObjectsOnStartPrismProperty = task.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_COUNT_OBJECTS_ON_START);
+		if (countObjectsOnStartPrismProperty != null && countObjectsOnStartPrismProperty.getRealValue() != null) {
+			countObjectsOnStart = countObjectsOnStartPrismProperty.getRealValue();
+		}
 
 		Integer maxSize = 100;
 		ObjectPaging paging = ObjectPaging.createPaging(0, maxSize);
@@ -19,6 +19,7 @@ import com.evolveum.midpoint.model.api.context.EvaluatedExclusionTrigger;
 import com.evolveum.midpoint.model.api.context.EvaluatedPolicyRule;
 import com.evolveum.midpoint.model.api.context.EvaluatedSituationTrigger;
 import com.evolveum.midpoint.model.api.context.SynchronizationPolicyDecision;
+import com.evolveum.midpoint.model.impl.lens.projector.policy.EvaluatedAssignmentTargetIndex;
 import com.evolveum.midpoint.model.impl.util.RecordingProgressListener;
 import com.evolveum.midpoint.prism.PrismContainerValue;
 import com.evolveum.midpoint.prism.PrismObject;
@@ -37,12 +38,14 @@ import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.test.DummyResourceContoller;
 import com.evolveum.midpoint.test.util.TestUtil;
+import com.evolveum.midpoint.util.exception.PolicyViolationException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
 import org.springframework.test.context.ContextConfiguration;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -62,6 +65,8 @@ public class TestPolicyRules extends AbstractLensTest {
 
 	private static final String ROLE_JUDGE_POLICY_RULE_EXCLUSION_NAME = "criminal exclusion";
 
+	private static final String ROLE_LEGACY_JUDGE_OID = "7f3a1c2e-94b5-4d8e-a6f0-2b9c8e5d1a47";
+
 	@Override
 	public void initSystem(Task initTask, OperationResult initResult) throws Exception {
 		super.initSystem(initTask, initResult);
@@ -359,6 +364,102 @@ public class TestPolicyRules extends AbstractLensTest {
         assertEquals("Wrong rule name in poliy excpetion", ROLE_JUDGE_POLICY_RULE_EXCLUSION_NAME, policyException.getRuleName());
 	}
 
+	/**
+	 * The same situation as in test110. Checks the index of assignment targets that is used
+	 * to evaluate exclusion constraints.
+	 */
+	@Test
+	public void test114AssignRolePirateToJackTargetIndex() throws Exception {
+		final String TEST_NAME = "test114AssignRolePirateToJackTargetIndex";
+		TestUtil.displayTestTitle(this, TEST_NAME);
+
+		// GIVEN
+		Task task = taskManager.createTaskInstance(TestPolicyRules.class.getName() + "." + TEST_NAME);
+		OperationResult result = task.getResult();
+
+		LensContext<UserType> context = createUserLensContext();
+		fillContextWithUser(context, USER_JACK_OID, result);
+		addModificationToContextAssignRole(context, USER_JACK_OID, ROLE_PIRATE_OID);
+
+		// WHEN
+		TestUtil.displayWhen(TEST_NAME);
+		projector.project(context, "test", task, result);
+
+		// THEN
+		TestUtil.displayThen(TEST_NAME);
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+
+		DeltaSetTriple<EvaluatedAssignmentImpl<UserType>> evaluatedAssignmentTriple =
+				(DeltaSetTriple)context.getEvaluatedAssignmentTriple();
+		EvaluatedAssignmentImpl<UserType> pirateAssignment = findEvaluatedAssignment(evaluatedAssignmentTriple.getPlusSet(), ROLE_PIRATE_OID);
+		EvaluatedAssignmentImpl<UserType> judgeAssignment = findEvaluatedAssignment(evaluatedAssignmentTriple.getZeroSet(), ROLE_JUDGE_OID);
+
+		EvaluatedAssignmentTargetIndex<UserType> index = new EvaluatedAssignmentTargetIndex<>(evaluatedAssignmentTriple);
+
+		List<EvaluatedAssignmentTargetIndex.Entry<UserType>> pirateEntries = index.getEntries(ROLE_PIRATE_OID);
+		assertEquals("Wrong # of pirate entries", 1, pirateEntries.size());
+		assertSame("Wrong assignment in pirate entry", pirateAssignment, pirateEntries.get(0).assignment);
+		assertFalse("No judge entries", index.getEntries(ROLE_JUDGE_OID).isEmpty());
+		for (EvaluatedAssignmentTargetIndex.Entry<UserType> judgeEntry : index.getEntries(ROLE_JUDGE_OID)) {
+			assertSame("Wrong assignment in judge entry", judgeAssignment, judgeEntry.assignment);
+		}
+		assertTrue("Unexpected thief entries", index.getEntries(ROLE_THIEF_OID).isEmpty());
+
+		// entries must keep the order of assignments, so that the same conflicting target is reported as before
+		List<EvaluatedAssignmentImpl<UserType>> assignments = new ArrayList<>(evaluatedAssignmentTriple.getNonNegativeValues());
+		int lastPosition = -1;
+		for (EvaluatedAssignmentTargetIndex.Entry<UserType> entry : index.getAllEntries()) {
+			int position = assignments.indexOf(entry.assignment);
+			assertTrue("Entry for unknown assignment: " + entry.assignment, position >= 0);
+			assertTrue("Entries are not in the order of assignments", position >= lastPosition);
+			lastPosition = position;
+		}
+
+		assertEquals("Wrong # of pirate targets of pirate assignment", 1, index.getTargets(pirateAssignment, ROLE_PIRATE_OID).size());
+		assertTrue("Unexpected judge targets of pirate assignment", index.getTargets(pirateAssignment, ROLE_JUDGE_OID).isEmpty());
+	}
+
+	/**
+	 * Legacy (role-level) exclusion is still enforced, although it is checked only when some role has one.
+	 */
+	@Test
+	public void test116AssignRolesLegacyJudgeAndPirateToJack() throws Exception {
+		final String TEST_NAME = "test116AssignRolesLegacyJudgeAndPirateToJack";
+		TestUtil.displayTestTitle(this, TEST_NAME);
+
+		// GIVEN
+		Task task = taskManager.createTaskInstance(TestPolicyRules.class.getName() + "." + TEST_NAME);
+		OperationResult result = task.getResult();
+
+		PrismObject<RoleType> legacyJudge = prismContext.createObject(RoleType.class);
+		legacyJudge.setOid(ROLE_LEGACY_JUDGE_OID);
+		legacyJudge.asObjectable().setName(createPolyStringType("Legacy Judge"));
+		ExclusionPolicyConstraintType exclusion = new ExclusionPolicyConstraintType();
+		exclusion.setTargetRef(ObjectTypeUtil.createObjectRef(ROLE_PIRATE_OID, ObjectTypes.ROLE));
+		legacyJudge.asObjectable().getExclusion().add(exclusion);
+		repositoryService.addObject(legacyJudge, null, result);
+
+		LensContext<UserType> context = createUserLensContext();
+		fillContextWithUser(context, USER_JACK_OID, result);
+		addModificationToContextAssignRole(context, USER_JACK_OID, ROLE_LEGACY_JUDGE_OID);
+		addModificationToContextAssignRole(context, USER_JACK_OID, ROLE_PIRATE_OID);
+
+		display("Input context", context);
+
+		try {
+			// WHEN
+			TestUtil.displayWhen(TEST_NAME);
+			projector.project(context, "test", task, result);
+
+			fail("Unexpected success");
+		} catch (PolicyViolationException e) {
+			// THEN
+			TestUtil.displayThen(TEST_NAME);
+			display("Expected exception", e);
+		}
+	}
+
 	@Test
     public void test120AssignRoleConstableToJack() throws Exception {
 		final String TEST_NAME = "test120AssignRoleConstableToJack";
@@ -653,6 +754,16 @@ public class TestPolicyRules extends AbstractLensTest {
 		assertEquals("Wrong # of focus policy rules", 0, focusContext.getPolicyRules().size());
 	}
 
+	private EvaluatedAssignmentImpl<UserType> findEvaluatedAssignment(Collection<EvaluatedAssignmentImpl<UserType>> assignments,
+			String targetOid) {
+		for (EvaluatedAssignmentImpl<UserType> assignment : assignments) {
+			if (assignment.getTarget() != null && targetOid.equals(assignment.getTarget().getOid())) {
+				return assignment;
+			}
+		}
+		throw new AssertionError("No evaluated assignment to " + targetOid + " in " + assignments);
+	}
+
 	private ObjectDelta<ShadowType> assertAssignAccountToJack(LensContext<UserType> context) {
         display("Output context", context);
 
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.impl.lens;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismReferenceValue;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.delta.builder.DeltaBuilder;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.schema.constants.MidPointConstants;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
+import com.evolveum.midpoint.util.PrettyPrinter;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ConstructionType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Unit tests for determining the impact of a role change on the members of the role (reconcileAffected).
+ */
+public class TestRoleChangeImpact {
+
+	private static final String ROLE_OID = "0d6b4f3a-1c43-4b9a-9a57-6a44c1ab3f01";
+	private static final String ROLE_OTHER_OID = "0d6b4f3a-1c43-4b9a-9a57-6a44c1ab3f02";
+	private static final String RESOURCE_A_OID = "0d6b4f3a-1c43-4b9a-9a57-6a44c1ab3fa1";
+	private static final String RESOURCE_B_OID = "0d6b4f3a-1c43-4b9a-9a57-6a44c1ab3fb2";
+	private static final String RESOURCE_C_OID = "0d6b4f3a-1c43-4b9a-9a57-6a44c1ab3fc3";
+	private static final String USER_OID = "0d6b4f3a-1c43-4b9a-9a57-6a44c1ab3f0e";
+
+	@BeforeSuite
+	public void setup() throws SchemaException, SAXException, IOException {
+		PrettyPrinter.setDefaultNamespacePrefix(MidPointConstants.NS_MIDPOINT_PUBLIC_PREFIX);
+		PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+	}
+
+	@Test
+	public void test100IrrelevantItemsChanged() throws Exception {
+		PrismObject<RoleType> roleOld = createRole(true);
+		ObjectDelta<RoleType> delta = DeltaBuilder.deltaFor(RoleType.class, getPrismContext())
+				.item(RoleType.F_DESCRIPTION).replace("new description")
+				.item(RoleType.F_APPROVER_REF).add(new PrismReferenceValue(USER_OID, UserType.COMPLEX_TYPE))
+				.item(RoleType.F_RISK_LEVEL).replace("high")
+				.asObjectDeltaCast(ROLE_OID);
+
+		RoleChangeImpact impact = RoleChangeImpact.determine(roleOld, Collections.singletonList(delta));
+
+		assertFalse("Members affected: " + impact, impact.isAffectsMembers());
+	}
+
+	@Test
+	public void test110ConstructionInducementModified() throws Exception {
+		PrismObject<RoleType> roleOld = createRole(true);
+		ObjectDelta<RoleType> delta = DeltaBuilder.deltaFor(RoleType.class, getPrismContext())
+				.item(RoleType.F_INDUCEMENT, 1L, AssignmentType.F_CONSTRUCTION, ConstructionType.F_RESOURCE_REF)
+						.replace(new PrismReferenceValue(RESOURCE_C_OID, ResourceType.COMPLEX_TYPE))
+				.asObjectDeltaCast(ROLE_OID);
+
+		RoleChangeImpact impact = RoleChangeImpact.determine(roleOld, Collections.singletonList(delta));
+
+		assertTrue("Members not affected: " + impact, impact.isAffectsMembers());
+		assertEquals("Wrong resources", new HashSet<>(Arrays.asList(RESOURCE_A_OID, RESOURCE_C_OID)), impact.getResourceOids());
+	}
+
+	@Test
+	public void test120ConstructionInducementAdded() throws Exception {
+		PrismObject<RoleType> roleOld = createRole(true);
+		ObjectDelta<RoleType> delta = DeltaBuilder.deltaFor(RoleType.class, getPrismContext())
+				.item(RoleType.F_INDUCEMENT).add(createConstructionInducement(3L, RESOURCE_C_OID).asPrismContainerValue())
+				.asObjectDeltaCast(ROLE_OID);
+
+		RoleChangeImpact impact = RoleChangeImpact.determine(roleOld, Collections.singletonList(delta));
+
+		assertTrue("Members not affected: " + impact, impact.isAffectsMembers());
+		assertEquals("Wrong resources", Collections.singleton(RESOURCE_C_OID), impact.getResourceOids());
+	}
+
+	/**
+	 * A construction is changed together with a non-construction inducement, so any projection can be affected.
+	 */
+	@Test
+	public void test130MixedChange() throws Exception {
+		PrismObject<RoleType> roleOld = createRole(true);
+		AssignmentType roleInducement = new AssignmentType();
+		roleInducement.setId(3L);
+		roleInducement.setTargetRef(ObjectTypeUtil.createObjectRef(ROLE_OTHER_OID, ObjectTypes.ROLE));
+		ObjectDelta<RoleType> delta = DeltaBuilder.deltaFor(RoleType.class, getPrismContext())
+				.item(RoleType.F_INDUCEMENT, 1L, AssignmentType.F_CONSTRUCTION, ConstructionType.F_RESOURCE_REF)
+						.replace(new PrismReferenceValue(RESOURCE_C_OID, ResourceType.COMPLEX_TYPE))
+				.item(RoleType.F_INDUCEMENT).add(roleInducement.asPrismContainerValue())
+				.asObjectDeltaCast(ROLE_OID);
+
+		RoleChangeImpact impact = RoleChangeImpact.determine(roleOld, Collections.singletonList(delta));
+
+		assertTrue("Members not affected: " + impact, impact.isAffectsMembers());
+		assertNull("Resources are limited: " + impact, impact.getResourceOids());
+	}
+
+	@Test
+	public void test140OtherItemChanged() throws Exception {
+		PrismObject<RoleType> roleOld = createRole(true);
+		AssignmentType assignment = new AssignmentType();
+		assignment.setTargetRef(ObjectTypeUtil.createObjectRef(ROLE_OTHER_OID, ObjectTypes.ROLE));
+		ObjectDelta<RoleType> delta = DeltaBuilder.deltaFor(RoleType.class, getPrismContext())
+				.item(RoleType.F_DESCRIPTION).replace("new description")
+				.item(RoleType.F_ASSIGNMENT).add(assignment.asPrismContainerValue())
+				.asObjectDeltaCast(ROLE_OID);
+
+		RoleChangeImpact impact = RoleChangeImpact.determine(roleOld, Collections.singletonList(delta));
+
+		assertTrue("Members not affected: " + impact, impact.isAffectsMembers());
+		assertNull("Resources are limited: " + impact, impact.getResourceOids());
+	}
+
+	/**
+	 * Inducements without IDs cannot be paired by IDs, so they are paired by equivalence.
+	 */
+	@Test
+	public void test150ConstructionInducementWithoutIdsAdded() throws Exception {
+		PrismObject<RoleType> roleOld = createRole(false);
+		ObjectDelta<RoleType> delta = DeltaBuilder.deltaFor(RoleType.class, getPrismContext())
+				.item(RoleType.F_INDUCEMENT).add(createConstructionInducement(null, RESOURCE_C_OID).asPrismContainerValue())
+				.asObjectDeltaCast(ROLE_OID);
+
+		RoleChangeImpact impact = RoleChangeImpact.determine(roleOld, Collections.singletonList(delta));
+
+		assertTrue("Members not affected: " + impact, impact.isAffectsMembers());
+		assertEquals("Wrong resources", Collections.singleton(RESOURCE_C_OID), impact.getResourceOids());
+	}
+
+	@Test
+	public void test160ConstructionInducementWithoutIdsReplaced() throws Exception {
+		PrismObject<RoleType> roleOld = createRole(false);
+		ObjectDelta<RoleType> delta = DeltaBuilder.deltaFor(RoleType.class, getPrismContext())
+				.item(RoleType.F_INDUCEMENT)
+						.delete(createConstructionInducement(null, RESOURCE_B_OID).asPrismContainerValue())
+						.add(createConstructionInducement(null, RESOURCE_C_OID).asPrismContainerValue())
+				.asObjectDeltaCast(ROLE_OID);
+
+		RoleChangeImpact impact = RoleChangeImpact.determine(roleOld, Collections.singletonList(delta));
+
+		assertTrue("Members not affected: " + impact, impact.isAffectsMembers());
+		assertEquals("Wrong resources", new HashSet<>(Arrays.asList(RESOURCE_B_OID, RESOURCE_C_OID)), impact.getResourceOids());
+	}
+
+	// role with construction inducements for resources A (ID 1) and B (ID 2)
+	private PrismObject<RoleType> createRole(boolean withIds) throws SchemaException {
+		RoleType role = new RoleType(getPrismContext());
+		role.setOid(ROLE_OID);
+		role.setName(PrismTestUtil.createPolyStringType("role"));
+		role.getInducement().add(createConstructionInducement(withIds ? 1L : null, RESOURCE_A_OID));
+		role.getInducement().add(createConstructionInducement(withIds ? 2L : null, RESOURCE_B_OID));
+		return role.asPrismObject();
+	}
+
+	private AssignmentType createConstructionInducement(Long id, String resourceOid) {
+		AssignmentType inducement = new AssignmentType();
+		inducement.setId(id);
+		ConstructionType construction = new ConstructionType();
+		construction.setResourceRef(ObjectTypeUtil.createObjectRef(resourceOid, ObjectTypes.RESOURCE));
+		inducement.setConstruction(construction);
+		return inducement;
+	}
+
+	private PrismContext getPrismContext() {
+		return PrismTestUtil.getPrismContext();
+	}
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.intest;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.icf.dummy.resource.BreakMode;
+import com.evolveum.icf.dummy.resource.DummyAccount;
+import com.evolveum.midpoint.model.api.ProgressInformation;
+import com.evolveum.midpoint.model.api.ProgressListener;
+import com.evolveum.midpoint.model.api.context.ModelContext;
+import com.evolveum.midpoint.model.impl.lens.ChangeExecutor;
+import com.evolveum.midpoint.model.impl.lens.projector.ContextLoader;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.schema.internals.InternalInspector;
+import com.evolveum.midpoint.schema.internals.InternalMonitor;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.result.OperationResultStatus;
+import com.evolveum.midpoint.schema.util.MiscSchemaUtil;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.InternalsConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests parallel execution of independent projection deltas (internals/projectionExecutionThreads)
+ * and loading of projections (shadow preloading, internals/projectionLoadThreads).
+ */
+@ContextConfiguration(locations = {"classpath:ctx-model-intest-test-main.xml"})
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestParallelProjections extends AbstractInitializedModelIntegrationTest {
+
+	private static final String OPERATION_EXECUTE_PROJECTION = ChangeExecutor.class.getName() + ".execute.projection";
+	private static final String OPERATION_EXECUTE_PROJECTION_SHADOW = OPERATION_EXECUTE_PROJECTION + ".ShadowType";
+	private static final String OPERATION_EXECUTE_PROJECTION_PARALLEL = OPERATION_EXECUTE_PROJECTION + ".parallel";
+	private static final String OPERATION_FETCH_SHADOW_PARALLEL = ContextLoader.class.getName() + ".fetchShadowParallel";
+
+	private static final String USER_SHARPTOOTH_NAME = "sharptooth";
+	private static final String USER_SHARPTOOTH_FULLNAME = "Cpt. Sharptooth";
+
+	private static final String USER_RACKHAM_NAME = "rackham";
+	private static final String USER_RACKHAM_FULLNAME = "Calico Jack Rackham";
+
+	@Test
+	public void test000SetProjectionExecutionThreads() throws Exception {
+		final String TEST_NAME = "test000SetProjectionExecutionThreads";
+		displayTestTitle(TEST_NAME);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		modifyObjectReplaceProperty(SystemConfigurationType.class, SYSTEM_CONFIGURATION_OID,
+				new ItemPath(SystemConfigurationType.F_INTERNALS, InternalsConfigurationType.F_PROJECTION_EXECUTION_THREADS),
+				task, result, 4);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+	}
+
+	/**
+	 * Accounts on two independent resources are created in parallel. Their outcomes are taken over
+	 * in the usual projection order, so there is one projection subresult per account with the parallel
+	 * execution result inside, and both accounts are linked.
+	 */
+	@Test
+	public void test100AssignJackDummyAndRed() throws Exception {
+		final String TEST_NAME = "test100AssignJackDummyAndRed";
+		displayTestTitle(TEST_NAME);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		ObjectDelta<UserType> userDelta = createAccountAssignmentUserDelta(USER_JACK_OID, RESOURCE_DUMMY_OID, null, true);
+		userDelta.merge(createAccountAssignmentUserDelta(USER_JACK_OID, RESOURCE_DUMMY_RED_OID, null, true));
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		executeChanges(userDelta, null, task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		result.computeStatus();
+		display("Result", result);
+		assertSuccess(result);
+
+		List<OperationResult> projectionResults = findSubresultsDeep(result, OPERATION_EXECUTE_PROJECTION_SHADOW);
+		assertEquals("Wrong number of projection results", 2, projectionResults.size());
+		for (OperationResult projectionResult : projectionResults) {
+			assertEquals("Wrong number of parallel execution results in " + projectionResult, 1,
+					projectionResult.findSubresults(OPERATION_EXECUTE_PROJECTION_PARALLEL).size());
+			assertEquals("Wrong status of " + projectionResult, OperationResultStatus.SUCCESS, projectionResult.getStatus());
+		}
+
+		PrismObject<UserType> userAfter = getUser(USER_JACK_OID);
+		display("User after", userAfter);
+		assertLinks(userAfter, 2);
+		assertNotNull("No link to default dummy account", getLinkRefOid(userAfter, RESOURCE_DUMMY_OID));
+		assertNotNull("No link to red dummy account", getLinkRefOid(userAfter, RESOURCE_DUMMY_RED_OID));
+		assertDefaultDummyAccount(ACCOUNT_JACK_DUMMY_USERNAME, USER_JACK_FULL_NAME, true);
+		assertDummyAccount(RESOURCE_DUMMY_RED_NAME, ACCOUNT_JACK_DUMMY_USERNAME, USER_JACK_FULL_NAME, true);
+	}
+
+	/**
+	 * Two accounts are created in parallel but one of the resources fails. The other account has to be
+	 * created and linked, and the failure has to be recorded in the projection subresult it belongs to.
+	 */
+	@Test
+	public void test110AssignSharptoothDummyAndBrokenRed() throws Exception {
+		final String TEST_NAME = "test110AssignSharptoothDummyAndBrokenRed";
+		displayTestTitle(TEST_NAME);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		PrismObject<UserType> user = createUser(USER_SHARPTOOTH_NAME, USER_SHARPTOOTH_FULLNAME, true);
+		addObject(user);
+		String userOid = user.getOid();
+
+		ObjectDelta<UserType> userDelta = createAccountAssignmentUserDelta(userOid, RESOURCE_DUMMY_OID, null, true);
+		userDelta.merge(createAccountAssignmentUserDelta(userOid, RESOURCE_DUMMY_RED_OID, null, true));
+
+		getDummyResource(RESOURCE_DUMMY_RED_NAME).setAddBreakMode(BreakMode.GENERIC);
+
+		try {
+			// WHEN
+			displayWhen(TEST_NAME);
+			executeChanges(userDelta, null, task, result);
+		} finally {
+			getDummyResource(RESOURCE_DUMMY_RED_NAME).resetBreakMode();
+		}
+
+		// THEN
+		displayThen(TEST_NAME);
+		result.computeStatus();
+		display("Result", result);
+		assertPartialError(result);
+
+		List<OperationResult> projectionResults = findSubresultsDeep(result, OPERATION_EXECUTE_PROJECTION_SHADOW);
+		assertEquals("Wrong number of projection results", 2, projectionResults.size());
+		int successes = 0;
+		int errors = 0;
+		for (OperationResult projectionResult : projectionResults) {
+			assertEquals("Wrong number of parallel execution results in " + projectionResult, 1,
+					projectionResult.findSubresults(OPERATION_EXECUTE_PROJECTION_PARALLEL).size());
+			if (projectionResult.getStatus() == OperationResultStatus.SUCCESS) {
+				successes++;
+			} else if (projectionResult.getStatus() == OperationResultStatus.FATAL_ERROR) {
+				errors++;
+			}
+		}
+		assertEquals("Wrong number of successful projection results", 1, successes);
+		assertEquals("Wrong number of failed projection results", 1, errors);
+
+		PrismObject<UserType> userAfter = getUser(userOid);
+		display("User after", userAfter);
+		assertNotNull("No link to default dummy account", getLinkRefOid(userAfter, RESOURCE_DUMMY_OID));
+		assertDefaultDummyAccount(USER_SHARPTOOTH_NAME, USER_SHARPTOOTH_FULLNAME, true);
+		assertNull("Unexpected red dummy account", getDummyAccount(RESOURCE_DUMMY_RED_NAME, USER_SHARPTOOTH_NAME));
+	}
+
+	/**
+	 * The abort is requested when the first projection is taken over, i.e. after both accounts were created
+	 * in parallel. Both of them have to be linked anyway.
+	 */
+	@Test
+	public void test120AssignRackhamAbortAfterParallelExecution() throws Exception {
+		final String TEST_NAME = "test120AssignRackhamAbortAfterParallelExecution";
+		displayTestTitle(TEST_NAME);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		PrismObject<UserType> user = createUser(USER_RACKHAM_NAME, USER_RACKHAM_FULLNAME, true);
+		addObject(user);
+		String userOid = user.getOid();
+
+		ObjectDelta<UserType> userDelta = createAccountAssignmentUserDelta(userOid, RESOURCE_DUMMY_OID, null, true);
+		userDelta.merge(createAccountAssignmentUserDelta(userOid, RESOURCE_DUMMY_RED_OID, null, true));
+		Collection<ObjectDelta<? extends ObjectType>> deltas = MiscSchemaUtil.createCollection(userDelta);
+		AbortingProgressListener listener = new AbortingProgressListener();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		try {
+			modelService.executeChanges(deltas, null, task, Collections.singleton(listener), result);
+		} catch (RuntimeException e) {
+			// the abort may be reported later in the clockwork
+			display("Expected exception", e);
+		}
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertTrue("Abort was not requested", listener.isAbortRequested());
+
+		PrismObject<UserType> userAfter = getUser(userOid);
+		display("User after", userAfter);
+		assertLinks(userAfter, 2);
+		assertNotNull("No link to default dummy account", getLinkRefOid(userAfter, RESOURCE_DUMMY_OID));
+		assertNotNull("No link to red dummy account", getLinkRefOid(userAfter, RESOURCE_DUMMY_RED_OID));
+		assertDefaultDummyAccount(USER_RACKHAM_NAME, USER_RACKHAM_FULLNAME, true);
+		assertDummyAccount(RESOURCE_DUMMY_RED_NAME, USER_RACKHAM_NAME, USER_RACKHAM_FULLNAME, true);
+	}
+
+	/**
+	 * Jack has two linked accounts (from test100). Their repository shadows are preloaded by one search,
+	 * so they are not read one by one when the projections are loaded.
+	 */
+	@Test
+	public void test200RecomputeJackPreloadShadows() throws Exception {
+		final String TEST_NAME = "test200RecomputeJackPreloadShadows";
+		displayTestTitle(TEST_NAME);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		RepositoryReadCounter readCounter = new RepositoryReadCounter();
+		InternalMonitor.setInspector(readCounter);
+
+		try {
+			// WHEN
+			displayWhen(TEST_NAME);
+			recomputeUser(USER_JACK_OID, task, result);
+		} finally {
+			InternalMonitor.setInspector(null);
+		}
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+		assertEquals("Unexpected repository reads of shadows", 0, readCounter.getReads(ShadowType.class));
+
+		PrismObject<UserType> userAfter = getUser(USER_JACK_OID);
+		assertLinks(userAfter, 2);
+	}
+
+	/**
+	 * Jack's accounts on two resources are fetched in parallel during reconciliation. The red account was changed
+	 * on the resource, so its full shadow has to be really used: the strong mapping fixes the full name back.
+	 */
+	@Test
+	public void test210ReconcileJackParallelFetch() throws Exception {
+		final String TEST_NAME = "test210ReconcileJackParallelFetch";
+		displayTestTitle(TEST_NAME);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		modifyObjectReplaceProperty(SystemConfigurationType.class, SYSTEM_CONFIGURATION_OID,
+				new ItemPath(SystemConfigurationType.F_INTERNALS, InternalsConfigurationType.F_PROJECTION_LOAD_THREADS),
+				task, result, 4);
+		getDummyAccount(RESOURCE_DUMMY_RED_NAME, ACCOUNT_JACK_DUMMY_USERNAME)
+				.replaceAttributeValue(DummyAccount.ATTR_FULLNAME_NAME, "Captain Jack Sparrow");
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		reconcileUser(USER_JACK_OID, task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		result.computeStatus();
+		display("Result", result);
+		assertSuccess(result);
+
+		List<OperationResult> fetchResults = findSubresultsDeep(result, OPERATION_FETCH_SHADOW_PARALLEL);
+		assertEquals("Wrong number of parallel fetch results", 2, fetchResults.size());
+		for (OperationResult fetchResult : fetchResults) {
+			assertEquals("Wrong status of " + fetchResult, OperationResultStatus.SUCCESS, fetchResult.getStatus());
+		}
+
+		PrismObject<UserType> userAfter = getUser(USER_JACK_OID);
+		display("User after", userAfter);
+		assertLinks(userAfter, 2);
+		assertDefaultDummyAccount(ACCOUNT_JACK_DUMMY_USERNAME, USER_JACK_FULL_NAME, true);
+		assertDummyAccount(RESOURCE_DUMMY_RED_NAME, ACCOUNT_JACK_DUMMY_USERNAME, USER_JACK_FULL_NAME, true);
+	}
+
+	private List<OperationResult> findSubresultsDeep(OperationResult result, String operation) {
+		List<OperationResult> found = new ArrayList<>();
+		for (OperationResult subresult : result.getSubresults()) {
+			if (operation.equals(subresult.getOperation())) {
+				found.add(subresult);
+			}
+			found.addAll(findSubresultsDeep(subresult, operation));
+		}
+		return found;
+	}
+
+	/**
+	 * Requests the abort as soon as the execution of projections is reported.
+	 */
+	private static class AbortingProgressListener implements ProgressListener {
+
+		private volatile boolean abortRequested;
+
+		@Override
+		public void onProgressAchieved(ModelContext modelContext, ProgressInformation progressInformation) {
+			if (progressInformation.getActivityType() == ProgressInformation.ActivityType.RESOURCE_OBJECT_OPERATION) {
+				abortRequested = true;
+			}
+		}
+
+		@Override
+		public boolean isAbortRequested() {
+			return abortRequested;
+		}
+	}
+
+	private static class RepositoryReadCounter implements InternalInspector {
+
+		private final Map<Class<?>, Integer> reads = new ConcurrentHashMap<>();
+
+		@Override
+		public <O extends ObjectType> void inspectRepositoryRead(Class<O> type, String oid) {
+			reads.merge(type, 1, Integer::sum);
+		}
+
+		@Override
+		public <F extends FocusType> void inspectRoleEvaluation(F target, boolean fullEvaluation) {
+		}
+
+		private int getReads(Class<?> type) {
+			return reads.getOrDefault(type, 0);
+		}
+	}
+}
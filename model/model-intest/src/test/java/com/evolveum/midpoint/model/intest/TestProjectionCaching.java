@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.intest;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+
+import java.io.File;
+import java.util.Collection;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.model.api.ModelExecuteOptions;
+import com.evolveum.midpoint.model.api.context.ModelContext;
+import com.evolveum.midpoint.model.api.context.ModelProjectionContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.MiscSchemaUtil;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.test.DummyResourceContoller;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests the use of cached shadow attributes by the projector (passive caching with maxStaleness).
+ */
+@ContextConfiguration(locations = {"classpath:ctx-model-intest-test-main.xml"})
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestProjectionCaching extends AbstractInitializedModelIntegrationTest {
+
+	public static final File TEST_DIR = new File("src/test/resources/caching");
+
+	protected static final File RESOURCE_DUMMY_CACHED_FILE = new File(TEST_DIR, "resource-dummy-cached.xml");
+	protected static final String RESOURCE_DUMMY_CACHED_OID = "cbd0de45-8b36-4ee3-bcd9-33d98e9fae01";
+	protected static final String RESOURCE_DUMMY_CACHED_NAME = "cached";
+
+	private static final String SHIP_BLACK_PEARL = "Black Pearl";
+
+	private String accountJackOid;
+
+	@Override
+	public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+		super.initSystem(initTask, initResult);
+		initDummyResourcePirate(RESOURCE_DUMMY_CACHED_NAME, RESOURCE_DUMMY_CACHED_FILE, RESOURCE_DUMMY_CACHED_OID, initTask, initResult);
+	}
+
+	@Test
+	public void test100AssignJackCachedAccount() throws Exception {
+		final String TEST_NAME = "test100AssignJackCachedAccount";
+		displayTestTitle(TEST_NAME);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		assignAccount(USER_JACK_OID, RESOURCE_DUMMY_CACHED_OID, null, task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+
+		PrismObject<UserType> userAfter = getUser(USER_JACK_OID);
+		display("User after", userAfter);
+		accountJackOid = getSingleLinkOid(userAfter);
+		assertDummyAccount(RESOURCE_DUMMY_CACHED_NAME, ACCOUNT_JACK_DUMMY_USERNAME, USER_JACK_FULL_NAME, true);
+
+		PrismObject<ShadowType> repoShadow = repositoryService.getObject(ShadowType.class, accountJackOid, null, result);
+		display("Repo shadow", repoShadow);
+		assertNotNull("No caching metadata in " + repoShadow, repoShadow.asObjectable().getCachingMetadata());
+	}
+
+	/**
+	 * The strong outbound mapping needs the account, but the cached attributes are fresh enough.
+	 * They may be used, but the projection must not be marked as having the full shadow.
+	 */
+	@Test
+	public void test110PreviewModifyJackFullName() throws Exception {
+		final String TEST_NAME = "test110PreviewModifyJackFullName";
+		displayTestTitle(TEST_NAME);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		ObjectDelta<UserType> userDelta = createModifyUserReplaceDelta(USER_JACK_OID, UserType.F_FULL_NAME,
+				new PolyString("Captain Jack Sparrow"));
+		Collection<ObjectDelta<? extends ObjectType>> deltas = MiscSchemaUtil.createCollection(userDelta);
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		ModelContext<UserType> modelContext = modelInteractionService.previewChanges(deltas, new ModelExecuteOptions(), task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		display("Preview context", modelContext);
+		assertSuccess(result);
+
+		Collection<? extends ModelProjectionContext> projectionContexts = modelContext.getProjectionContexts();
+		assertEquals("Wrong number of projection contexts", 1, projectionContexts.size());
+		ModelProjectionContext projectionContext = projectionContexts.iterator().next();
+		assertNotNull("No current shadow in " + projectionContext, projectionContext.getObjectCurrent());
+		assertNotNull("No caching metadata in current shadow", projectionContext.getObjectCurrent().asObjectable().getCachingMetadata());
+		assertFalse("Cached shadow marked as full", projectionContext.isFullShadow());
+	}
+
+	/**
+	 * The ship was changed on the resource, so the cached attributes are out of date. An a priori delta
+	 * triggers the inbound processing, and the strong inbound mapping has to be evaluated on the account
+	 * that was really read from the resource.
+	 */
+	@Test
+	public void test120ModifyJackAccountStrongInbound() throws Exception {
+		final String TEST_NAME = "test120ModifyJackAccountStrongInbound";
+		displayTestTitle(TEST_NAME);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		DummyResourceContoller controller = getDummyResourceController(RESOURCE_DUMMY_CACHED_NAME);
+		getDummyAccount(RESOURCE_DUMMY_CACHED_NAME, ACCOUNT_JACK_DUMMY_USERNAME)
+				.replaceAttributeValue(DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_SHIP_NAME, SHIP_BLACK_PEARL);
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		modifyAccountShadowReplace(accountJackOid,
+				controller.getAttributePath(DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_DRINK_NAME), task, result, "rum");
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+
+		PrismObject<UserType> userAfter = getUser(USER_JACK_OID);
+		display("User after", userAfter);
+		assertUserProperty(userAfter, UserType.F_TITLE, new PolyString(SHIP_BLACK_PEARL));
+		assertDummyAccountAttribute(RESOURCE_DUMMY_CACHED_NAME, ACCOUNT_JACK_DUMMY_USERNAME,
+				DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_DRINK_NAME, "rum");
+	}
+}
@@ -56,6 +56,7 @@ public class TestTriggerTask extends AbstractInitializedModelIntegrationTest {
 	private static final XMLGregorianCalendar LONG_LONG_TIME_AGO = XmlTypeConverter.createXMLGregorianCalendar(1111, 1, 1, 12, 00, 00);
 
 	private MockTriggerHandler testTriggerHandler;
+	private MockTriggerHandler idempotentTriggerHandler;
 
 	private XMLGregorianCalendar drakeValidFrom;
 	private XMLGregorianCalendar drakeValidTo;
@@ -77,6 +78,10 @@ public class TestTriggerTask extends AbstractInitializedModelIntegrationTest {
 		testTriggerHandler = new MockTriggerHandler();
 
 		triggerHandlerRegistry.register(MockTriggerHandler.HANDLER_URI, testTriggerHandler);
+
+		idempotentTriggerHandler = new MockTriggerHandler(true);
+
+		triggerHandlerRegistry.register(MockTriggerHandler.IDEMPOTENT_HANDLER_URI, idempotentTriggerHandler);
 	}
 
 	@Test
@@ -206,6 +211,83 @@ public class TestTriggerTask extends AbstractInitializedModelIntegrationTest {
 		assertLastScanTimestamp(TASK_TRIGGER_SCANNER_OID, startCal, endCal);
 	}
 
+	/**
+	 * Three hot triggers of an idempotent handler (like recompute) on one object: the handler is
+	 * invoked only once and all three triggers are removed.
+	 */
+	@Test
+	public void test130CoalescedIdempotentTriggers() throws Exception {
+		final String TEST_NAME = "test130CoalescedIdempotentTriggers";
+		TestUtil.displayTestTitle(this, TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TestTriggerTask.class.getName() + "." + TEST_NAME);
+		OperationResult result = task.getResult();
+		testTriggerHandler.reset();
+		idempotentTriggerHandler.reset();
+
+		XMLGregorianCalendar startCal = clock.currentTimeXMLGregorianCalendar();
+		XMLGregorianCalendar startCalPlus5ms = XmlTypeConverter.createXMLGregorianCalendar(startCal);
+		startCalPlus5ms.add(XmlTypeConverter.createDuration(5L));
+		XMLGregorianCalendar startCalPlus10ms = XmlTypeConverter.createXMLGregorianCalendar(startCal);
+		startCalPlus10ms.add(XmlTypeConverter.createDuration(10L));
+		addTriggers(USER_JACK_OID, Arrays.asList(startCal, startCalPlus5ms, startCalPlus10ms),
+				MockTriggerHandler.IDEMPOTENT_HANDLER_URI);
+
+		/// WHEN
+		TestUtil.displayWhen(TEST_NAME);
+		waitForTaskNextRunAssertSuccess(TASK_TRIGGER_SCANNER_OID, true);
+
+		// THEN
+		TestUtil.displayThen(TEST_NAME);
+		XMLGregorianCalendar endCal = clock.currentTimeXMLGregorianCalendar();
+
+		assertNotNull("Trigger was not called", idempotentTriggerHandler.getLastObject());
+		assertEquals("Coalesced triggers were called wrong number of times", 1, idempotentTriggerHandler.getInvocationCount());
+		assertNull("Non-idempotent trigger was called while not expecting it", testTriggerHandler.getLastObject());
+		assertNoTrigger(UserType.class, USER_JACK_OID);
+
+		assertLastScanTimestamp(TASK_TRIGGER_SCANNER_OID, startCal, endCal);
+	}
+
+	/**
+	 * The same as test130, but with a non-idempotent handler: the triggers must not be coalesced,
+	 * so the handler is invoked for each of them.
+	 */
+	@Test
+	public void test140NonIdempotentTriggersNotCoalesced() throws Exception {
+		final String TEST_NAME = "test140NonIdempotentTriggersNotCoalesced";
+		TestUtil.displayTestTitle(this, TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TestTriggerTask.class.getName() + "." + TEST_NAME);
+		OperationResult result = task.getResult();
+		testTriggerHandler.reset();
+		idempotentTriggerHandler.reset();
+
+		XMLGregorianCalendar startCal = clock.currentTimeXMLGregorianCalendar();
+		XMLGregorianCalendar startCalPlus5ms = XmlTypeConverter.createXMLGregorianCalendar(startCal);
+		startCalPlus5ms.add(XmlTypeConverter.createDuration(5L));
+		XMLGregorianCalendar startCalPlus10ms = XmlTypeConverter.createXMLGregorianCalendar(startCal);
+		startCalPlus10ms.add(XmlTypeConverter.createDuration(10L));
+		addTriggers(USER_JACK_OID, Arrays.asList(startCal, startCalPlus5ms, startCalPlus10ms), MockTriggerHandler.HANDLER_URI);
+
+		/// WHEN
+		TestUtil.displayWhen(TEST_NAME);
+		waitForTaskNextRunAssertSuccess(TASK_TRIGGER_SCANNER_OID, true);
+
+		// THEN
+		TestUtil.displayThen(TEST_NAME);
+		XMLGregorianCalendar endCal = clock.currentTimeXMLGregorianCalendar();
+
+		assertNotNull("Trigger was not called", testTriggerHandler.getLastObject());
+		assertEquals("Trigger was called wrong number of times", 3, testTriggerHandler.getInvocationCount());
+		assertNull("Idempotent trigger was called while not expecting it", idempotentTriggerHandler.getLastObject());
+		assertNoTrigger(UserType.class, USER_JACK_OID);
+
+		assertLastScanTimestamp(TASK_TRIGGER_SCANNER_OID, startCal, endCal);
+	}
+
 	@Test
     public void test150NoTriggerAgain() throws Exception {
 		final String TEST_NAME = "test115NoTriggerAgain";
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.intest;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.model.impl.trigger.RecomputeTriggerHandler;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ContainerDelta;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectPolicyConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.TriggerType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests recompute triggers scheduled at validity boundaries (objectPolicyConfiguration/validityTriggers).
+ * There should be exactly one such trigger, at the nearest future boundary, even if the boundaries change.
+ */
+@ContextConfiguration(locations = {"classpath:ctx-model-intest-test-main.xml"})
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestValidityTriggers extends AbstractInitializedModelIntegrationTest {
+
+	private static final String EMPLOYEE_TYPE_VALIDITY = "validity";
+
+	private String userValidityOid;
+
+	@Override
+	public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+		super.initSystem(initTask, initResult);
+
+		ObjectPolicyConfigurationType policy = new ObjectPolicyConfigurationType();
+		policy.setType(UserType.COMPLEX_TYPE);
+		policy.setSubtype(EMPLOYEE_TYPE_VALIDITY);
+		policy.setValidityTriggers(true);
+		List<ItemDelta<?, ?>> modifications = new ArrayList<>();
+		modifications.add(ContainerDelta.createModificationAdd(SystemConfigurationType.F_DEFAULT_OBJECT_POLICY_CONFIGURATION,
+				SystemConfigurationType.class, prismContext, policy));
+		modifySystemObjectInRepo(SystemConfigurationType.class, SYSTEM_CONFIGURATION_OID, modifications, initResult);
+	}
+
+	@Test
+	public void test100AddUserWithValidTo() throws Exception {
+		final String TEST_NAME = "test100AddUserWithValidTo";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		XMLGregorianCalendar validTo = getTimeFromNow("P10D");
+		PrismObject<UserType> user = createUser("validity", "Validity User", true);
+		user.asObjectable().getEmployeeType().add(EMPLOYEE_TYPE_VALIDITY);
+		user.asObjectable().getActivation().setValidTo(validTo);
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		userValidityOid = addObject(user, task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+		assertValidityTriggers(validTo);
+	}
+
+	/**
+	 * The boundary moves closer. The trigger for the old boundary has to be replaced.
+	 */
+	@Test
+	public void test110ModifyValidToEarlier() throws Exception {
+		final String TEST_NAME = "test110ModifyValidToEarlier";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+		XMLGregorianCalendar validTo = getTimeFromNow("P5D");
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		modifyUserReplace(userValidityOid, SchemaConstants.PATH_ACTIVATION_VALID_TO, task, result, validTo);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+		assertValidityTriggers(validTo);
+	}
+
+	/**
+	 * The boundary moves further. The trigger for the old boundary (which is not a boundary any more) has to be replaced.
+	 */
+	@Test
+	public void test120ModifyValidToLater() throws Exception {
+		final String TEST_NAME = "test120ModifyValidToLater";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+		XMLGregorianCalendar validTo = getTimeFromNow("P20D");
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		modifyUserReplace(userValidityOid, SchemaConstants.PATH_ACTIVATION_VALID_TO, task, result, validTo);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+		assertValidityTriggers(validTo);
+	}
+
+	/**
+	 * There is no boundary any more, so there should be no trigger.
+	 */
+	@Test
+	public void test130RemoveValidTo() throws Exception {
+		final String TEST_NAME = "test130RemoveValidTo";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		modifyUserReplace(userValidityOid, SchemaConstants.PATH_ACTIVATION_VALID_TO, task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+		assertValidityTriggers();
+	}
+
+	private XMLGregorianCalendar getTimeFromNow(String duration) {
+		XMLGregorianCalendar time = clock.currentTimeXMLGregorianCalendar();
+		time.add(XmlTypeConverter.createDuration(duration));
+		return time;
+	}
+
+	private void assertValidityTriggers(XMLGregorianCalendar... expectedTimestamps) throws Exception {
+		PrismObject<UserType> user = getUser(userValidityOid);
+		display("User", user);
+		List<XMLGregorianCalendar> timestamps = new ArrayList<>();
+		for (TriggerType trigger : user.asObjectable().getTrigger()) {
+			if (RecomputeTriggerHandler.HANDLER_URI.equals(trigger.getHandlerUri())) {
+				timestamps.add(trigger.getTimestamp());
+			}
+		}
+		assertEquals("Wrong number of recompute triggers: " + timestamps, expectedTimestamps.length, timestamps.size());
+		for (int i = 0; i < expectedTimestamps.length; i++) {
+			assertEquals("Wrong trigger timestamp", 0, expectedTimestamps[i].toGregorianCalendar()
+					.compareTo(timestamps.get(i).toGregorianCalendar()));
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.intest.manual;
+
+import static org.testng.AssertJUnit.assertNotNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.PendingOperationExecutionStatusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.PendingOperationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Same as TestSemiManualGrouping, but the multi-propagation task propagates the shadows
+ * of the resource using several threads.
+ */
+@ContextConfiguration(locations = {"classpath:ctx-model-intest-test-main.xml"})
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+@Listeners({ com.evolveum.midpoint.tools.testng.AlphabeticalMethodInterceptor.class })
+public class TestSemiManualGroupingParallelPropagation extends TestSemiManualGrouping {
+
+	protected static final File TASK_PROPAGATION_MULTI_PARALLEL_FILE = new File(TEST_DIR, "task-propagation-multi-parallel.xml");
+	protected static final String TASK_PROPAGATION_MULTI_PARALLEL_OID = "b4bcd5f0-3f4e-4c6a-9f0a-4e1c1e4a7f35";
+
+	private static final int NUMBER_OF_PARALLEL_USERS = 5;
+
+	private List<String> parallelAccountOids = new ArrayList<>();
+
+	@Override
+	protected String getPropagationTaskOid() {
+		return TASK_PROPAGATION_MULTI_PARALLEL_OID;
+	}
+
+	@Override
+	protected File getPropagationTaskFile() {
+		return TASK_PROPAGATION_MULTI_PARALLEL_FILE;
+	}
+
+	/**
+	 * More shadows than propagation threads wait for propagation.
+	 */
+	@Test
+	public void test900AssignParallelUsersRoleOne() throws Exception {
+		final String TEST_NAME = "test900AssignParallelUsersRoleOne";
+		displayTestTitle(TEST_NAME);
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		List<String> userOids = new ArrayList<>();
+		for (int i = 1; i <= NUMBER_OF_PARALLEL_USERS; i++) {
+			PrismObject<UserType> user = createUser("parallel" + i, "Parallel User " + i, true);
+			userOids.add(addObject(user));
+		}
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		for (String userOid : userOids) {
+			assignRole(userOid, getRoleOneOid(), task, result);
+		}
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertInProgress(result);
+
+		for (String userOid : userOids) {
+			PrismObject<UserType> userAfter = getUser(userOid);
+			display("User after", userAfter);
+			String accountOid = getSingleLinkOid(userAfter);
+			parallelAccountOids.add(accountOid);
+
+			PrismObject<ShadowType> shadowRepo = repositoryService.getObject(ShadowType.class, accountOid, null, result);
+			assertSinglePendingOperation(shadowRepo, null, null, PendingOperationExecutionStatusType.EXECUTION_PENDING);
+		}
+	}
+
+	/**
+	 * All the shadows are propagated by a single run of the task, each of them in its own case.
+	 */
+	@Test
+	public void test902RunParallelPropagation() throws Exception {
+		final String TEST_NAME = "test902RunParallelPropagation";
+		displayTestTitle(TEST_NAME);
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		clockForward("PT20M");
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		runPropagation();
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+
+		for (String accountOid : parallelAccountOids) {
+			PrismObject<ShadowType> shadowRepo = repositoryService.getObject(ShadowType.class, accountOid, null, result);
+			display("Repo shadow", shadowRepo);
+			PendingOperationType pendingOperation = assertSinglePendingOperation(shadowRepo, null, null,
+					PendingOperationExecutionStatusType.EXECUTING);
+			String pendingOperationRef = pendingOperation.getAsynchronousOperationReference();
+			assertNotNull("No async reference in pending operation in " + shadowRepo, pendingOperationRef);
+			assertCase(pendingOperationRef, SchemaConstants.CASE_STATE_OPEN);
+		}
+	}
+
+}
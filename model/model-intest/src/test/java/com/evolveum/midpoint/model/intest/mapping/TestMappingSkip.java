@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.intest.mapping;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.model.intest.util.StaticHookRecorder;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.schema.internals.InternalCounters;
+import com.evolveum.midpoint.schema.internals.InternalMonitor;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.test.DummyResourceContoller;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.InternalsConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests skipping of template and outbound mappings whose sources have not changed
+ * (internals/skipMappingsWithUnchangedSources).
+ *
+ * All the mappings record their evaluation in StaticHookRecorder. Only the "skippable" mappings can be skipped:
+ * the other ones are strong, have a range, are marked with alwaysEvaluate, or their source is changed by the test.
+ */
+@ContextConfiguration(locations = {"classpath:ctx-model-intest-test-main.xml"})
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestMappingSkip extends AbstractMappingTest {
+
+	private static final File RESOURCE_DUMMY_SKIP_FILE = new File(TEST_DIR, "resource-dummy-skip.xml");
+	private static final String RESOURCE_DUMMY_SKIP_OID = "a3f1d2e4-6b5c-4d7e-8f9a-0b1c2d3e4f56";
+	private static final String RESOURCE_DUMMY_SKIP_NAME = "skip";
+
+	private static final File USER_TEMPLATE_SKIP_FILE = new File(TEST_DIR, "user-template-skip.xml");
+	private static final String USER_TEMPLATE_SKIP_OID = "0e4b7f1a-3c2d-4e5f-9a8b-7c6d5e4f3a21";
+
+	private static final String EMPLOYEE_TYPE_SKIP = "skip";
+
+	private static final String USER_SKIPPER_NAME = "skipper";
+	private static final String COST_CENTER_1 = "CC1";
+	private static final String COST_CENTER_2 = "CC2";
+	private static final String TELEPHONE_NUMBER = "555-1234";
+
+	private static final String[] TEMPLATE_EVALUATED_MAPPINGS = { "template-always", "template-strong", "template-range", "template-changed" };
+	private static final String[] OUTBOUND_EVALUATED_MAPPINGS = { "outbound-strong", "outbound-changed" };
+	private static final String TEMPLATE_SKIPPABLE_MAPPING = "template-skippable";
+	private static final String OUTBOUND_SKIPPABLE_MAPPING = "outbound-skippable";
+
+	private String userSkipperOid;
+
+	@Override
+	public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+		super.initSystem(initTask, initResult);
+
+		initDummyResourcePirate(RESOURCE_DUMMY_SKIP_NAME, RESOURCE_DUMMY_SKIP_FILE, RESOURCE_DUMMY_SKIP_OID, initTask, initResult);
+		repoAddObjectFromFile(USER_TEMPLATE_SKIP_FILE, initResult);
+		setDefaultObjectTemplate(UserType.COMPLEX_TYPE, EMPLOYEE_TYPE_SKIP, USER_TEMPLATE_SKIP_OID, initResult);
+
+		modifyObjectReplaceProperty(SystemConfigurationType.class, SYSTEM_CONFIGURATION_OID,
+				new ItemPath(SystemConfigurationType.F_INTERNALS, InternalsConfigurationType.F_SKIP_MAPPINGS_WITH_UNCHANGED_SOURCES),
+				initTask, initResult, true);
+	}
+
+	/**
+	 * Nothing is skipped when the user is created, as all the values are new.
+	 */
+	@Test
+	public void test100AddUserWithAccount() throws Exception {
+		final String TEST_NAME = "test100AddUserWithAccount";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		PrismObject<UserType> user = createUser(USER_SKIPPER_NAME, "Skipper", true);
+		user.asObjectable().getEmployeeType().add(EMPLOYEE_TYPE_SKIP);
+		user.asObjectable().setCostCenter(COST_CENTER_1);
+		StaticHookRecorder.reset();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		userSkipperOid = addObject(user, task, result);
+		assignAccount(userSkipperOid, RESOURCE_DUMMY_SKIP_OID, null, task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+		display("StaticHookRecorder", StaticHookRecorder.dump());
+		assertEvaluated(TEMPLATE_SKIPPABLE_MAPPING);
+		assertEvaluated(OUTBOUND_SKIPPABLE_MAPPING);
+
+		PrismObject<UserType> userAfter = getUser(userSkipperOid);
+		display("User after", userAfter);
+		assertUserProperty(userAfter, UserType.F_LOCALITY, new PolyString(COST_CENTER_1));
+		assertDummyAccountAttribute(RESOURCE_DUMMY_SKIP_NAME, USER_SKIPPER_NAME,
+				DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_TITLE_NAME, COST_CENTER_1);
+	}
+
+	/**
+	 * Cost center is not changed, so the skippable mappings are not evaluated. The other mappings are.
+	 */
+	@Test
+	public void test110ModifyTelephoneNumber() throws Exception {
+		final String TEST_NAME = "test110ModifyTelephoneNumber";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+		StaticHookRecorder.reset();
+		long skipCountBefore = InternalMonitor.getCount(InternalCounters.MAPPING_EVALUATION_SKIP_COUNT);
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		modifyUserReplace(userSkipperOid, UserType.F_TELEPHONE_NUMBER, task, result, TELEPHONE_NUMBER);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+		display("StaticHookRecorder", StaticHookRecorder.dump());
+		assertNotEvaluated(TEMPLATE_SKIPPABLE_MAPPING);
+		assertNotEvaluated(OUTBOUND_SKIPPABLE_MAPPING);
+		assertEvaluated(TEMPLATE_EVALUATED_MAPPINGS);
+		assertEvaluated(OUTBOUND_EVALUATED_MAPPINGS);
+		long skipped = InternalMonitor.getCount(InternalCounters.MAPPING_EVALUATION_SKIP_COUNT) - skipCountBefore;
+		assertTrue("Skippable mappings were not counted as skipped: " + skipped, skipped >= 2);
+
+		// skipped mappings must not remove their values
+		PrismObject<UserType> userAfter = getUser(userSkipperOid);
+		display("User after", userAfter);
+		assertUserProperty(userAfter, UserType.F_LOCALITY, new PolyString(COST_CENTER_1));
+		assertUserProperty(userAfter, UserType.F_ADDITIONAL_NAME, new PolyString(TELEPHONE_NUMBER));
+		assertDummyAccountAttribute(RESOURCE_DUMMY_SKIP_NAME, USER_SKIPPER_NAME,
+				DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_TITLE_NAME, COST_CENTER_1);
+		assertDummyAccountAttribute(RESOURCE_DUMMY_SKIP_NAME, USER_SKIPPER_NAME,
+				DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_DRINK_NAME, TELEPHONE_NUMBER);
+	}
+
+	/**
+	 * Nothing is skipped when reconciling.
+	 */
+	@Test
+	public void test120ReconcileUser() throws Exception {
+		final String TEST_NAME = "test120ReconcileUser";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+		StaticHookRecorder.reset();
+		rememberCounter(InternalCounters.MAPPING_EVALUATION_SKIP_COUNT);
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		reconcileUser(userSkipperOid, task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+		display("StaticHookRecorder", StaticHookRecorder.dump());
+		assertCounterIncrement(InternalCounters.MAPPING_EVALUATION_SKIP_COUNT, 0);
+		assertEvaluated(TEMPLATE_SKIPPABLE_MAPPING);
+		assertEvaluated(OUTBOUND_SKIPPABLE_MAPPING);
+		assertEvaluated(TEMPLATE_EVALUATED_MAPPINGS);
+		assertEvaluated(OUTBOUND_EVALUATED_MAPPINGS);
+	}
+
+	/**
+	 * The source of the skippable mappings is changed now, so they are evaluated.
+	 */
+	@Test
+	public void test130ModifyCostCenter() throws Exception {
+		final String TEST_NAME = "test130ModifyCostCenter";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+		StaticHookRecorder.reset();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		modifyUserReplace(userSkipperOid, UserType.F_COST_CENTER, task, result, COST_CENTER_2);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+		display("StaticHookRecorder", StaticHookRecorder.dump());
+		assertEvaluated(TEMPLATE_SKIPPABLE_MAPPING);
+		assertEvaluated(OUTBOUND_SKIPPABLE_MAPPING);
+
+		PrismObject<UserType> userAfter = getUser(userSkipperOid);
+		display("User after", userAfter);
+		assertUserProperty(userAfter, UserType.F_LOCALITY, new PolyString(COST_CENTER_2));
+		assertDummyAccountAttribute(RESOURCE_DUMMY_SKIP_NAME, USER_SKIPPER_NAME,
+				DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_TITLE_NAME, COST_CENTER_2);
+	}
+
+	private void assertEvaluated(String... mappingNames) {
+		for (String mappingName : mappingNames) {
+			assertTrue("Mapping " + mappingName + " was not evaluated", StaticHookRecorder.getInvocationCount(mappingName) > 0);
+		}
+	}
+
+	private void assertNotEvaluated(String mappingName) {
+		assertEquals("Mapping " + mappingName + " was evaluated", 0, StaticHookRecorder.getInvocationCount(mappingName));
+	}
+}
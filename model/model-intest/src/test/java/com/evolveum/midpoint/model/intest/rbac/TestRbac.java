@@ -60,7 +60,9 @@ import com.evolveum.midpoint.prism.util.PrismAsserts;
 import com.evolveum.midpoint.prism.util.PrismTestUtil;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
 import com.evolveum.midpoint.schema.util.MiscSchemaUtil;
+import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.test.DummyResourceContoller;
 import com.evolveum.midpoint.test.IntegrationTestTools;
@@ -79,6 +81,11 @@ public class TestRbac extends AbstractRbacTest {
 
 	private static final String LOCALITY_TORTUGA = "Tortuga";
 
+	private static final String ROLE_CACHED_OID = "0c2f7d6e-3b8a-4f1e-9d5c-a4e8b7f21c90";
+	private static final long ROLE_CACHED_INDUCEMENT_ID = 1L;
+	private static final String USER_CACHED_NAME = "cached";
+	private static final String USER_CACHED_FULL_NAME = "Cached Pirate";
+
 	private String userLemonheadOid;
 	private String userSharptoothOid;
 	private String userRedskullOid;
@@ -2352,6 +2359,157 @@ public class TestRbac extends AbstractRbacTest {
         assertAssignees(ROLE_GOVERNOR_OID, 0);
 	}
 
+	/**
+	 * The following tests check the multiplicity constraint of the governor role (maxAssignees=1)
+	 * with cached numbers of assignees. The cached numbers must be invalidated when an assignment
+	 * is added or deleted on this node.
+	 */
+	@Test
+	public void test650SetAssigneeCountCacheTimeToLive() throws Exception {
+		final String TEST_NAME = "test650SetAssigneeCountCacheTimeToLive";
+		displayTestTitle(TEST_NAME);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		modifyObjectReplaceProperty(SystemConfigurationType.class, SYSTEM_CONFIGURATION_OID,
+				new ItemPath(SystemConfigurationType.F_INTERNALS, InternalsConfigurationType.F_ASSIGNEE_COUNT_CACHE_TIME_TO_LIVE),
+				task, result, 3600);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+	}
+
+	@Test
+	public void test652JackAssignRoleGovernorCachedCount() throws Exception {
+		final String TEST_NAME = "test652JackAssignRoleGovernorCachedCount";
+		displayTestTitle(TEST_NAME);
+		assumeAssignmentPolicy(AssignmentPolicyEnforcementType.RELATIVE);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		assertAssignees(ROLE_GOVERNOR_OID, 0);
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		assignRole(USER_JACK_OID, ROLE_GOVERNOR_OID, getDefaultOptions(), task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+
+		assertAssignedRole(USER_JACK_OID, ROLE_GOVERNOR_OID, task, result);
+		assertAssignees(ROLE_GOVERNOR_OID, 1);
+	}
+
+	/**
+	 * Number of governor assignees (0) was cached when evaluating jack's assignment. It must not be used now.
+	 */
+	@Test
+	public void test654ElaineAssignRoleGovernorCachedCount() throws Exception {
+		final String TEST_NAME = "test654ElaineAssignRoleGovernorCachedCount";
+		displayTestTitle(TEST_NAME);
+		assumeAssignmentPolicy(AssignmentPolicyEnforcementType.RELATIVE);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		try {
+			// WHEN
+			displayWhen(TEST_NAME);
+			assignRole(USER_ELAINE_OID, ROLE_GOVERNOR_OID, getDefaultOptions(), task, result);
+
+			AssertJUnit.fail("Unexpected success");
+		} catch (PolicyViolationException e) {
+			// this is expected
+			display("Expected exception", e);
+			assertMessage(e, "Role \"Governor\" requires at most 1 assignees with the relation of \"default\". The operation would result in 2 assignees.");
+		}
+
+		// THEN
+		displayThen(TEST_NAME);
+		result.computeStatus();
+		TestUtil.assertFailure(result);
+
+		assertAssignees(ROLE_GOVERNOR_OID, 1);
+	}
+
+	@Test
+	public void test656JackUnassignRoleGovernorCachedCount() throws Exception {
+		final String TEST_NAME = "test656JackUnassignRoleGovernorCachedCount";
+		displayTestTitle(TEST_NAME);
+		assumeAssignmentPolicy(AssignmentPolicyEnforcementType.RELATIVE);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		unassignRole(USER_JACK_OID, ROLE_GOVERNOR_OID, getDefaultOptions(), task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+
+		assertAssignees(ROLE_GOVERNOR_OID, 0);
+	}
+
+	/**
+	 * Number of governor assignees (1) was cached when evaluating elaine's assignment in test654.
+	 * It must not be used after jack's assignment was deleted.
+	 */
+	@Test
+	public void test658ElaineAssignRoleGovernorCachedCount() throws Exception {
+		final String TEST_NAME = "test658ElaineAssignRoleGovernorCachedCount";
+		displayTestTitle(TEST_NAME);
+		assumeAssignmentPolicy(AssignmentPolicyEnforcementType.RELATIVE);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		assignRole(USER_ELAINE_OID, ROLE_GOVERNOR_OID, getDefaultOptions(), task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+
+		assertAssignees(ROLE_GOVERNOR_OID, 1);
+	}
+
+	@Test
+	public void test659ElaineUnassignRoleGovernorNoCache() throws Exception {
+		final String TEST_NAME = "test659ElaineUnassignRoleGovernorNoCache";
+		displayTestTitle(TEST_NAME);
+		assumeAssignmentPolicy(AssignmentPolicyEnforcementType.RELATIVE);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		unassignRole(USER_ELAINE_OID, ROLE_GOVERNOR_OID, getDefaultOptions(), task, result);
+		modifyObjectReplaceProperty(SystemConfigurationType.class, SYSTEM_CONFIGURATION_OID,
+				new ItemPath(SystemConfigurationType.F_INTERNALS, InternalsConfigurationType.F_ASSIGNEE_COUNT_CACHE_TIME_TO_LIVE),
+				task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+
+		assertAssignedNoRole(getUser(USER_ELAINE_OID));
+		assertAssignees(ROLE_GOVERNOR_OID, 0);
+	}
+
 	@Test
     public void test700JackAssignRoleJudge() throws Exception {
 		final String TEST_NAME = "test700JackModifyJudgeRecompute";
@@ -4604,6 +4762,84 @@ public class TestRbac extends AbstractRbacTest {
 		executeChangesAssertSuccess(delta, getDefaultOptions(), task, result);
 	}
 
+	/**
+	 * The role is used in assignment evaluation (so it gets into the role object cache), then an inducement is added
+	 * to it directly in the repository, i.e. without the eager cache invalidation done by ChangeExecutor - as if it
+	 * was modified on another node. The next assignment evaluation must see the new inducement.
+	 */
+	@Test
+	public void test890RecomputeUserWithRoleModifiedInRepository() throws Exception {
+		final String TEST_NAME = "test890RecomputeUserWithRoleModifiedInRepository";
+		displayTestTitle(TEST_NAME);
+		assumeAssignmentPolicy(AssignmentPolicyEnforcementType.FULL);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		PrismObject<RoleType> role = prismContext.createObject(RoleType.class);
+		role.setOid(ROLE_CACHED_OID);
+		role.asObjectable().setName(createPolyStringType("Cached"));
+		repositoryService.addObject(role, null, result);
+
+		PrismObject<UserType> user = createUser(USER_CACHED_NAME, USER_CACHED_FULL_NAME, true);
+		String userOid = addObject(user, task, result);
+		assignRole(userOid, ROLE_CACHED_OID, task, result);
+		assertNoDummyAccount(null, USER_CACHED_NAME);
+
+		AssignmentType inducement = new AssignmentType();
+		inducement.setId(ROLE_CACHED_INDUCEMENT_ID);
+		ConstructionType construction = new ConstructionType();
+		construction.setResourceRef(ObjectTypeUtil.createObjectRef(RESOURCE_DUMMY_OID, ObjectTypes.RESOURCE));
+		inducement.setConstruction(construction);
+		ObjectDelta<RoleType> roleDelta = ObjectDelta.createModificationAddContainer(RoleType.class, ROLE_CACHED_OID,
+				new ItemPath(RoleType.F_INDUCEMENT), prismContext, inducement);
+		repositoryService.modifyObject(RoleType.class, ROLE_CACHED_OID, roleDelta.getModifications(), result);
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		recomputeUser(userOid, task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+
+		PrismObject<UserType> userAfter = getUser(userOid);
+		display("User after", userAfter);
+		assertAssignedRole(userAfter, ROLE_CACHED_OID);
+		assertDummyAccount(null, USER_CACHED_NAME, USER_CACHED_FULL_NAME, true);
+	}
+
+	/**
+	 * The inducement is deleted through the model. The next assignment evaluation must not see it any more.
+	 */
+	@Test
+	public void test892RecomputeUserWithRoleModified() throws Exception {
+		final String TEST_NAME = "test892RecomputeUserWithRoleModified";
+		displayTestTitle(TEST_NAME);
+		assumeAssignmentPolicy(AssignmentPolicyEnforcementType.FULL);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		modifyRoleDeleteInducement(ROLE_CACHED_OID, ROLE_CACHED_INDUCEMENT_ID, false, getDefaultOptions(), task);
+		PrismObject<UserType> userBefore = findUserByUsername(USER_CACHED_NAME);
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		recomputeUser(userBefore.getOid(), task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+
+		PrismObject<UserType> userAfter = getUser(userBefore.getOid());
+		display("User after", userAfter);
+		assertAssignedRole(userAfter, ROLE_CACHED_OID);
+		assertNoDummyAccount(null, USER_CACHED_NAME);
+	}
+
 	protected boolean testMultiplicityConstraintsForNonDefaultRelations() {
 		return true;
 	}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.intest.sync;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.File;
+import java.util.List;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.model.intest.AbstractInitializedModelIntegrationTest;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.test.DummyResourceContoller;
+import com.evolveum.midpoint.test.IntegrationTestTools;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests import with the correlation index (useCorrelationIndex). Accounts are correlated to users by employeeNumber.
+ *
+ * Users are added and modified by the test while the import task is running. The index has to reflect these changes,
+ * so the accounts are linked to these users instead of creating duplicates.
+ */
+@ContextConfiguration(locations = {"classpath:ctx-model-intest-test-main.xml"})
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestCorrelationIndex extends AbstractInitializedModelIntegrationTest {
+
+	private static final File TEST_DIR = new File("src/test/resources/sync");
+
+	private static final File RESOURCE_DUMMY_CORRELATION_FILE = new File(TEST_DIR, "resource-dummy-correlation.xml");
+	private static final String RESOURCE_DUMMY_CORRELATION_OID = "5f0e0b1c-7a8e-4c3b-9d5e-2a6f1c8d4e97";
+	private static final String RESOURCE_DUMMY_CORRELATION_NAME = "correlation";
+
+	private static final File TASK_IMPORT_DUMMY_CORRELATION_FILE = new File(TEST_DIR, "task-import-dummy-correlation.xml");
+	private static final String TASK_IMPORT_DUMMY_CORRELATION_OID = "e3a1c6d2-4b7f-4f0e-8c2a-6d9b5e1f7a30";
+
+	private static final int ACCOUNTS = 10;
+
+	private static final String USER_EXISTING_NAME = "corr-existing";
+	private static final String USER_ADDED_NAME = "corr-added";
+	private static final String USER_RENAMED_NAME = "corr-renamed";
+
+	private String userExistingOid;
+	private String userRenamedOid;
+
+	@Override
+	public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+		super.initSystem(initTask, initResult);
+		initDummyResourcePirate(RESOURCE_DUMMY_CORRELATION_NAME, RESOURCE_DUMMY_CORRELATION_FILE,
+				RESOURCE_DUMMY_CORRELATION_OID, initTask, initResult);
+	}
+
+	/**
+	 * Account c01 belongs to an existing user. Account c09 belongs to a user that is added while the task
+	 * is running, and account c10 to a user whose employeeNumber is changed while the task is running.
+	 * Users for all the other accounts are created by the import.
+	 */
+	@Test
+	public void test100ImportWithConcurrentChanges() throws Exception {
+		final String TEST_NAME = "test100ImportWithConcurrentChanges";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		DummyResourceContoller controller = getDummyResourceController(RESOURCE_DUMMY_CORRELATION_NAME);
+		for (int i = 1; i <= ACCOUNTS; i++) {
+			controller.addAccount(getAccountName(i), "Correlated " + i);
+		}
+
+		userExistingOid = addCorrelationUser(USER_EXISTING_NAME, getAccountName(1), task, result);
+		userRenamedOid = addCorrelationUser(USER_RENAMED_NAME, "x-old", task, result);
+		int usersBefore = repositoryService.countObjects(UserType.class, null, result);
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		addTask(TASK_IMPORT_DUMMY_CORRELATION_FILE);
+
+		// the index is built when the first account is correlated, i.e. before the user for the second account exists
+		IntegrationTestTools.waitFor("Waiting for the import to create a user", () -> {
+			OperationResult checkResult = new OperationResult(TEST_NAME + ".check");
+			return !findUsersByEmployeeNumber(getAccountName(2), checkResult).isEmpty();
+		}, 30000, 100);
+
+		String userAddedOid = addCorrelationUser(USER_ADDED_NAME, getAccountName(9), task, result);
+		modifyUserReplace(userRenamedOid, UserType.F_EMPLOYEE_NUMBER, task, result, getAccountName(10));
+
+		waitForTaskFinish(TASK_IMPORT_DUMMY_CORRELATION_OID, true, 60000);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertSuccess(result);
+
+		for (int i = 1; i <= ACCOUNTS; i++) {
+			List<PrismObject<UserType>> users = findUsersByEmployeeNumber(getAccountName(i), result);
+			display("Users with employee number " + getAccountName(i), users);
+			assertEquals("Wrong number of users with employee number " + getAccountName(i), 1, users.size());
+		}
+		assertLinkedToAccount(userExistingOid, getAccountName(1), result);
+		assertLinkedToAccount(userAddedOid, getAccountName(9), result);
+		assertLinkedToAccount(userRenamedOid, getAccountName(10), result);
+		assertNull("Duplicate user created for account " + getAccountName(9), findUserByUsername(getAccountName(9)));
+		assertNull("Duplicate user created for account " + getAccountName(10), findUserByUsername(getAccountName(10)));
+
+		// users for accounts c02 to c08 were created, plus the one added by the test
+		assertEquals("Wrong number of users", usersBefore + ACCOUNTS - 2, repositoryService.countObjects(UserType.class, null, result));
+	}
+
+	private String getAccountName(int i) {
+		return String.format("c%02d", i);
+	}
+
+	private String addCorrelationUser(String name, String employeeNumber, Task task, OperationResult result) throws Exception {
+		PrismObject<UserType> user = createUser(name, name, true);
+		user.asObjectable().setEmployeeNumber(employeeNumber);
+		return addObject(user, task, result);
+	}
+
+	private List<PrismObject<UserType>> findUsersByEmployeeNumber(String employeeNumber, OperationResult result) throws SchemaException {
+		ObjectQuery query = QueryBuilder.queryFor(UserType.class, prismContext)
+				.item(UserType.F_EMPLOYEE_NUMBER).eq(employeeNumber)
+				.build();
+		return repositoryService.searchObjects(UserType.class, query, null, result);
+	}
+
+	private void assertLinkedToAccount(String userOid, String accountName, OperationResult result) throws Exception {
+		PrismObject<UserType> user = getUser(userOid);
+		display("User " + accountName, user);
+		for (ObjectReferenceType linkRef : user.asObjectable().getLinkRef()) {
+			PrismObject<ShadowType> shadow = repositoryService.getObject(ShadowType.class, linkRef.getOid(), null, result);
+			if (RESOURCE_DUMMY_CORRELATION_OID.equals(shadow.asObjectable().getResourceRef().getOid())
+					&& accountName.equals(shadow.asObjectable().getName().getOrig())) {
+				return;
+			}
+		}
+		fail("User " + user + " is not linked to account " + accountName);
+	}
+}
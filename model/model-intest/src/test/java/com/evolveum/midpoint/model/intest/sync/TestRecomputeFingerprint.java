@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.model.intest.sync;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.model.intest.AbstractInitializedModelIntegrationTest;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.schema.internals.InternalCounters;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.InternalsConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectTemplateType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RecomputeFingerprintType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests skipping of recomputes whose inputs have not changed (recompute fingerprints).
+ *
+ * Users that were skipped by the recompute task keep their version. Users that were recomputed without
+ * any change get a new fingerprint, which increments their version.
+ */
+@ContextConfiguration(locations = {"classpath:ctx-model-intest-test-main.xml"})
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestRecomputeFingerprint extends AbstractInitializedModelIntegrationTest {
+
+	private static final File TEST_DIR = new File("src/test/resources/sync");
+
+	private static final File TASK_USER_RECOMPUTE_FINGERPRINT_FILE = new File(TEST_DIR, "task-user-recompute-fingerprint.xml");
+	private static final String TASK_USER_RECOMPUTE_FINGERPRINT_OID = "0c8bd7a4-6a9b-4a8e-93f5-5d0e3cf2f1a4";
+
+	private static final File USER_TEMPLATE_FINGERPRINT_FILE = new File(TEST_DIR, "user-template-fingerprint.xml");
+	private static final String USER_TEMPLATE_FINGERPRINT_OID = "4b0c3e9e-2f0c-4f7c-8d7e-1f0a3b6c9d21";
+
+	private static final File ROLE_FINGERPRINT_FILE = new File(TEST_DIR, "role-fingerprint.xml");
+	private static final String ROLE_FINGERPRINT_OID = "9d4e0a5c-55f5-4d0d-b2a2-6e1b6ad2c7f3";
+
+	private static final String EMPLOYEE_TYPE_FINGERPRINT = "fingerprint";
+	private static final String COST_CENTER_FINGERPRINTED = "fingerprinted";
+
+	private String userPlainOid;
+	private String userRoleOid;
+	private String userAccountOid;
+	private String userValidityOid;
+	private String userOtherOid;
+
+	private boolean recomputeTaskAdded = false;
+
+	@Override
+	public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+		super.initSystem(initTask, initResult);
+
+		repoAddObjectFromFile(USER_TEMPLATE_FINGERPRINT_FILE, initResult);
+		setDefaultObjectTemplate(UserType.COMPLEX_TYPE, EMPLOYEE_TYPE_FINGERPRINT, USER_TEMPLATE_FINGERPRINT_OID, initResult);
+		repoAddObjectFromFile(ROLE_FINGERPRINT_FILE, initResult);
+
+		modifyObjectReplaceProperty(SystemConfigurationType.class, SYSTEM_CONFIGURATION_OID,
+				new ItemPath(SystemConfigurationType.F_INTERNALS, InternalsConfigurationType.F_SKIP_RECOMPUTE_WITH_UNCHANGED_INPUTS),
+				initTask, initResult, true);
+	}
+
+	/**
+	 * The users are created by the model, so the first recompute changes nothing and the fingerprints are stored.
+	 */
+	@Test
+	public void test100RecomputeStoresFingerprints() throws Exception {
+		final String TEST_NAME = "test100RecomputeStoresFingerprints";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		userPlainOid = addFingerprintUser("fp-plain", null, task, result);
+		userRoleOid = addFingerprintUser("fp-role", null, task, result);
+		assignRole(userRoleOid, ROLE_FINGERPRINT_OID, task, result);
+		userAccountOid = addFingerprintUser("fp-account", null, task, result);
+		assignAccount(userAccountOid, RESOURCE_DUMMY_OID, null, task, result);
+		XMLGregorianCalendar validTo = clock.currentTimeXMLGregorianCalendar();
+		validTo.add(XmlTypeConverter.createDuration("P1D"));
+		userValidityOid = addFingerprintUser("fp-validity", validTo, task, result);
+		userOtherOid = addFingerprintUser("fp-other", null, task, result);
+		assertSuccess(result);
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		runRecomputeTask();
+
+		// THEN
+		displayThen(TEST_NAME);
+		for (String oid : allUserOids()) {
+			PrismObject<UserType> user = getUser(oid);
+			display("User after", user);
+			assertUserProperty(user, UserType.F_COST_CENTER, COST_CENTER_FINGERPRINTED);
+			RecomputeFingerprintType fingerprint = user.asObjectable().getRecomputeFingerprint();
+			assertNotNull("No recompute fingerprint in " + user, fingerprint);
+			assertEquals("Wrong focus version in fingerprint of " + user, user.getVersion(), fingerprint.getFocusVersion());
+			assertFalse("No dependencies in fingerprint of " + user, fingerprint.getDependencyRef().isEmpty());
+		}
+		assertEquals("Wrong validUntil in fingerprint", XmlTypeConverter.toMillis(validTo),
+				XmlTypeConverter.toMillis(getUser(userValidityOid).asObjectable().getRecomputeFingerprint().getValidUntil()));
+	}
+
+	@Test
+	public void test110RecomputeUnchanged() throws Exception {
+		final String TEST_NAME = "test110RecomputeUnchanged";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Map<String, String> versionsBefore = getUserVersions();
+		rememberCounter(InternalCounters.RECOMPUTE_SKIP_COUNT);
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		runRecomputeTask();
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertCounterIncrement(InternalCounters.RECOMPUTE_SKIP_COUNT, allUserOids().length);
+		for (String oid : allUserOids()) {
+			assertSkipped(oid, versionsBefore);
+		}
+	}
+
+	@Test
+	public void test120ModifyRole() throws Exception {
+		final String TEST_NAME = "test120ModifyRole";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+		modifyObjectReplaceProperty(RoleType.class, ROLE_FINGERPRINT_OID, RoleType.F_DESCRIPTION, task, result,
+				"Changed description");
+		Map<String, String> versionsBefore = getUserVersions();
+		rememberCounter(InternalCounters.RECOMPUTE_SKIP_COUNT);
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		runRecomputeTask();
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertCounterIncrement(InternalCounters.RECOMPUTE_SKIP_COUNT, allUserOids().length - 1);
+		assertRecomputedWithoutChange(userRoleOid, versionsBefore);
+		assertSkipped(userPlainOid, versionsBefore);
+		assertSkipped(userAccountOid, versionsBefore);
+	}
+
+	@Test
+	public void test130ModifyObjectTemplate() throws Exception {
+		final String TEST_NAME = "test130ModifyObjectTemplate";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+		modifyObjectReplaceProperty(ObjectTemplateType.class, USER_TEMPLATE_FINGERPRINT_OID, ObjectTemplateType.F_DESCRIPTION,
+				task, result, "Changed description");
+		Map<String, String> versionsBefore = getUserVersions();
+		rememberCounter(InternalCounters.RECOMPUTE_SKIP_COUNT);
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		runRecomputeTask();
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertCounterIncrement(InternalCounters.RECOMPUTE_SKIP_COUNT, 0);
+		for (String oid : allUserOids()) {
+			assertRecomputedWithoutChange(oid, versionsBefore);
+		}
+	}
+
+	@Test
+	public void test140ModifyResource() throws Exception {
+		final String TEST_NAME = "test140ModifyResource";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+		modifyObjectReplaceProperty(ResourceType.class, RESOURCE_DUMMY_OID, ResourceType.F_DESCRIPTION, task, result,
+				"Changed description");
+		Map<String, String> versionsBefore = getUserVersions();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		runRecomputeTask();
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertRecomputedWithoutChange(userAccountOid, versionsBefore);
+		assertSkipped(userPlainOid, versionsBefore);
+		assertSkipped(userRoleOid, versionsBefore);
+	}
+
+	/**
+	 * The validity of fp-validity ends, so its recompute cannot be skipped although nothing else has changed.
+	 */
+	@Test
+	public void test150ValidityBoundaryPassed() throws Exception {
+		final String TEST_NAME = "test150ValidityBoundaryPassed";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		clockForward("P2D");
+		Map<String, String> versionsBefore = getUserVersions();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		runRecomputeTask();
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertRecomputed(userValidityOid, versionsBefore);
+		assertSkipped(userPlainOid, versionsBefore);
+		assertSkipped(userRoleOid, versionsBefore);
+	}
+
+	/**
+	 * The focus is modified by someone else, so its version does not match the fingerprint any more.
+	 */
+	@Test
+	public void test160FocusModifiedBySomeoneElse() throws Exception {
+		final String TEST_NAME = "test160FocusModifiedBySomeoneElse";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+		modifyObjectReplaceProperty(UserType.class, userOtherOid, UserType.F_DESCRIPTION, task, result,
+				"Modified by someone else");
+		Map<String, String> versionsBefore = getUserVersions();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		runRecomputeTask();
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertRecomputedWithoutChange(userOtherOid, versionsBefore);
+		assertSkipped(userPlainOid, versionsBefore);
+		assertSkipped(userRoleOid, versionsBefore);
+	}
+
+	private String addFingerprintUser(String name, XMLGregorianCalendar validTo, Task task, OperationResult result) throws Exception {
+		PrismObject<UserType> user = createUser(name, "Fingerprint User " + name, true);
+		user.asObjectable().getEmployeeType().add(EMPLOYEE_TYPE_FINGERPRINT);
+		user.asObjectable().getActivation().setValidTo(validTo);
+		return addObject(user, task, result);
+	}
+
+	private String[] allUserOids() {
+		return new String[] { userPlainOid, userRoleOid, userAccountOid, userValidityOid, userOtherOid };
+	}
+
+	private void runRecomputeTask() throws Exception {
+		if (!recomputeTaskAdded) {
+			addTask(TASK_USER_RECOMPUTE_FINGERPRINT_FILE);
+			recomputeTaskAdded = true;
+			waitForTaskStart(TASK_USER_RECOMPUTE_FINGERPRINT_OID, true);
+		} else {
+			restartTask(TASK_USER_RECOMPUTE_FINGERPRINT_OID);
+		}
+		waitForTaskFinish(TASK_USER_RECOMPUTE_FINGERPRINT_OID, true);
+	}
+
+	private Map<String, String> getUserVersions() throws Exception {
+		Map<String, String> versions = new HashMap<>();
+		for (String oid : allUserOids()) {
+			versions.put(oid, getUser(oid).getVersion());
+		}
+		return versions;
+	}
+
+	private void assertSkipped(String oid, Map<String, String> versionsBefore) throws Exception {
+		PrismObject<UserType> user = getUser(oid);
+		assertEquals("User " + user + " was recomputed", versionsBefore.get(oid), user.getVersion());
+	}
+
+	private void assertRecomputed(String oid, Map<String, String> versionsBefore) throws Exception {
+		PrismObject<UserType> user = getUser(oid);
+		display("User after", user);
+		assertFalse("User " + user + " was not recomputed", versionsBefore.get(oid).equals(user.getVersion()));
+	}
+
+	// the recompute changed nothing, so it stored a new fingerprint matching the current version of the user
+	private void assertRecomputedWithoutChange(String oid, Map<String, String> versionsBefore) throws Exception {
+		assertRecomputed(oid, versionsBefore);
+		PrismObject<UserType> user = getUser(oid);
+		RecomputeFingerprintType fingerprint = user.asObjectable().getRecomputeFingerprint();
+		assertNotNull("No recompute fingerprint in " + user, fingerprint);
+		assertEquals("Wrong focus version in fingerprint of " + user, user.getVersion(), fingerprint.getFocusVersion());
+	}
+}
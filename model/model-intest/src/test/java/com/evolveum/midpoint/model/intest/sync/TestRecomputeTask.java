@@ -18,9 +18,11 @@ package com.evolveum.midpoint.model.intest.sync;
 import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
 
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.bind.JAXBElement;
 
@@ -28,6 +30,9 @@ import com.evolveum.midpoint.prism.util.ItemPathUtil;
 import com.evolveum.midpoint.prism.xnode.PrimitiveXNode;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.internals.InternalCounters;
+import com.evolveum.midpoint.schema.internals.InternalInspector;
+import com.evolveum.midpoint.schema.internals.InternalMonitor;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
 import com.evolveum.prism.xml.ns._public.types_3.RawType;
 
 import org.springframework.test.annotation.DirtiesContext;
@@ -41,12 +46,17 @@ import com.evolveum.midpoint.model.intest.AbstractInitializedModelIntegrationTes
 import com.evolveum.midpoint.prism.PrismContainer;
 import com.evolveum.midpoint.prism.PrismContainerValue;
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismProperty;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.path.IdItemPathSegment;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.path.NameItemPathSegment;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
 import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
 import com.evolveum.midpoint.schema.util.MiscSchemaUtil;
+import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.test.DummyResourceContoller;
 import com.evolveum.midpoint.test.IntegrationTestTools;
@@ -60,7 +70,9 @@ import com.evolveum.midpoint.util.exception.SecurityViolationException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentPolicyEnforcementType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ConstructionType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.MappingStrengthType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceAttributeDefinitionType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.TaskType;
@@ -85,9 +97,29 @@ public class TestRecomputeTask extends AbstractInitializedModelIntegrationTest {
 	private static final File TASK_USER_RECOMPUTE_CAPTAIN_FILE = new File(TEST_DIR, "task-user-recompute-captain.xml");
 	private static final String TASK_USER_RECOMPUTE_CAPTAIN_OID = "91919191-76e0-59e2-86d6-3d4f02d3aaac";
 
+	private static final File TASK_USER_RECOMPUTE_CHECKPOINT_FILE = new File(TEST_DIR, "task-user-recompute-checkpoint.xml");
+	private static final String TASK_USER_RECOMPUTE_CHECKPOINT_OID = "641bb784-9020-421a-97ce-fd9a9260ba42";
+
+	private static final File USER_TEMPLATE_CHECKPOINT_FILE = new File(TEST_DIR, "user-template-checkpoint.xml");
+	private static final String USER_TEMPLATE_CHECKPOINT_OID = "f94bc379-9622-4c02-9e77-0a6fbb8419d5";
+
+	private static final String EMPLOYEE_TYPE_CHECKPOINT = "checkpoint";
+	private static final int CHECKPOINT_USERS = 20;
+	private static final String COST_CENTER_RECOMPUTED = "recomputed";
+
 	private static final File TASK_USER_RECOMPUTE_HERMAN_BY_EXPRESSION_FILE = new File(TEST_DIR, "task-user-recompute-herman-by-expression.xml");
 	private static final String TASK_USER_RECOMPUTE_HERMAN_BY_EXPRESSION_OID = "91919191-76e0-59e2-86d6-3d4f02d3aadd";
 
+	private static final File TASK_USER_RECOMPUTE_BATCH_FILE = new File(TEST_DIR, "task-user-recompute-batch.xml");
+	private static final String TASK_USER_RECOMPUTE_BATCH_OID = "e7697b90-d1eb-406e-86ae-deff7e4efc74";
+
+	private static final File TASK_USER_RECOMPUTE_BATCH_NO_COUNT_FILE = new File(TEST_DIR, "task-user-recompute-batch-no-count.xml");
+	private static final String TASK_USER_RECOMPUTE_BATCH_NO_COUNT_OID = "3f6a9c21-8d4e-4b7a-a5c2-e19d7b0f4a83";
+
+	private static final String ROLE_BATCH_OID = "5c4a0e75-2fa1-4e11-83c0-de6aac6d0a00";
+	private static final String EMPLOYEE_TYPE_BATCH = "batch";
+	private static final int BATCH_USERS = 10;
+
 	@Override
 	public void initSystem(Task initTask, OperationResult initResult) throws Exception {
 		super.initSystem(initTask, initResult);
@@ -460,4 +492,184 @@ public class TestRecomputeTask extends AbstractInitializedModelIntegrationTest {
 
 	}
 
+	/**
+	 * Recompute task with checkpoints is suspended in the middle and then resumed. The resumed run continues
+	 * after the checkpoint, yet no object may be skipped.
+	 */
+	@Test
+	public void test200RecomputeSuspendAndResumeFromCheckpoint() throws Exception {
+		final String TEST_NAME = "test200RecomputeSuspendAndResumeFromCheckpoint";
+		TestUtil.displayTestTitle(this, TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		repoAddObjectFromFile(USER_TEMPLATE_CHECKPOINT_FILE, result);
+		setDefaultObjectTemplate(UserType.COMPLEX_TYPE, EMPLOYEE_TYPE_CHECKPOINT, USER_TEMPLATE_CHECKPOINT_OID, result);
+		for (int i = 0; i < CHECKPOINT_USERS; i++) {
+			PrismObject<UserType> user = createUser(String.format("checkpoint-%02d", i), "Checkpoint User " + i);
+			user.asObjectable().getEmployeeType().add(EMPLOYEE_TYPE_CHECKPOINT);
+			repoAddObject(user, result);
+		}
+
+		addTask(TASK_USER_RECOMPUTE_CHECKPOINT_FILE);
+		IntegrationTestTools.waitFor("Waiting for a checkpoint", () -> {
+			Task recomputeTask = taskManager.getTask(TASK_USER_RECOMPUTE_CHECKPOINT_OID, result);
+			return recomputeTask.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_LAST_PROCESSED_OID) != null;
+		}, 30000, 100);
+
+		// WHEN
+		TestUtil.displayWhen(TEST_NAME);
+		boolean stopped = taskManager.suspendTask(taskManager.getTask(TASK_USER_RECOMPUTE_CHECKPOINT_OID, result), 10000L, result);
+
+		// THEN
+		TestUtil.displayThen(TEST_NAME);
+		assertTrue("Task was not stopped", stopped);
+		Task suspendedTask = taskManager.getTask(TASK_USER_RECOMPUTE_CHECKPOINT_OID, result);
+		display("Suspended task", suspendedTask);
+		assertNotNull("No checkpoint in suspended task",
+				suspendedTask.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_LAST_PROCESSED_OID));
+		int recomputedBeforeResume = countRecomputedCheckpointUsers(task, result);
+		display("Users recomputed before resume", recomputedBeforeResume);
+		assertTrue("All users were recomputed before suspension, the test is inconclusive", recomputedBeforeResume < CHECKPOINT_USERS);
+
+		// WHEN
+		TestUtil.displayWhen(TEST_NAME);
+		taskManager.resumeTask(suspendedTask, result);
+		waitForTaskFinish(TASK_USER_RECOMPUTE_CHECKPOINT_OID, false, 60000);
+
+		// THEN
+		TestUtil.displayThen(TEST_NAME);
+		assertEquals("Some users were skipped", CHECKPOINT_USERS, countRecomputedCheckpointUsers(task, result));
+		Task finishedTask = taskManager.getTask(TASK_USER_RECOMPUTE_CHECKPOINT_OID, result);
+		PrismProperty<String> checkpointAfter = finishedTask.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_LAST_PROCESSED_OID);
+		assertTrue("Checkpoint was not removed: " + checkpointAfter, checkpointAfter == null || checkpointAfter.isEmpty());
+	}
+
+	/**
+	 * Recompute task with worker threads taking objects in batches. The role assigned to all the users is preloaded
+	 * for each batch, so it is never read from the repository one by one. Every user is recomputed exactly once
+	 * and the progress (stored once per batch) counts all of them.
+	 */
+	@Test
+	public void test300RecomputeBatches() throws Exception {
+		final String TEST_NAME = "test300RecomputeBatches";
+		TestUtil.displayTestTitle(this, TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		PrismObject<RoleType> role = prismContext.createObject(RoleType.class);
+		role.setOid(ROLE_BATCH_OID);
+		role.asObjectable().setName(new PolyStringType("Batch Role"));
+		repoAddObject(role, result);
+
+		setDefaultObjectTemplate(UserType.COMPLEX_TYPE, EMPLOYEE_TYPE_BATCH, USER_TEMPLATE_CHECKPOINT_OID, result);
+		for (int i = 0; i < BATCH_USERS; i++) {
+			PrismObject<UserType> user = createUser(String.format("batch-%02d", i), "Batch User " + i);
+			UserType userType = user.asObjectable();
+			userType.getEmployeeType().add(EMPLOYEE_TYPE_BATCH);
+			userType.beginAssignment().setTargetRef(ObjectTypeUtil.createObjectRef(ROLE_BATCH_OID, ObjectTypes.ROLE));
+			userType.getRoleMembershipRef().add(ObjectTypeUtil.createObjectRef(ROLE_BATCH_OID, ObjectTypes.ROLE));
+			repoAddObject(user, result);
+		}
+
+		RoleReadCounter readCounter = new RoleReadCounter(ROLE_BATCH_OID);
+		InternalMonitor.setInspector(readCounter);
+
+		try {
+			// WHEN
+			TestUtil.displayWhen(TEST_NAME);
+			addTask(TASK_USER_RECOMPUTE_BATCH_FILE);
+			waitForTaskFinish(TASK_USER_RECOMPUTE_BATCH_OID, true, 60000);
+		} finally {
+			InternalMonitor.setInspector(null);
+		}
+
+		// THEN
+		TestUtil.displayThen(TEST_NAME);
+		ObjectQuery query = QueryBuilder.queryFor(UserType.class, prismContext)
+				.item(UserType.F_EMPLOYEE_TYPE).eq(EMPLOYEE_TYPE_BATCH)
+				.build();
+		List<PrismObject<UserType>> users = repositoryService.searchObjects(UserType.class, query, null, result);
+		display("Users after recompute", users);
+		assertEquals("Wrong number of users", BATCH_USERS, users.size());
+		for (PrismObject<UserType> user : users) {
+			assertEquals("User " + user + " was not recomputed", COST_CENTER_RECOMPUTED, user.asObjectable().getCostCenter());
+		}
+
+		assertEquals("Role was read one by one", 0, readCounter.getReads());
+
+		TaskType recomputeTask = getTask(TASK_USER_RECOMPUTE_BATCH_OID).asObjectable();
+		display("Recompute task after", recomputeTask);
+		assertEquals("Wrong progress", Long.valueOf(BATCH_USERS), recomputeTask.getProgress());
+		assertEquals("Wrong expected total", Long.valueOf(BATCH_USERS), recomputeTask.getExpectedTotal());
+		assertEquals("Wrong success count", BATCH_USERS, recomputeTask.getOperationStats().getIterativeTaskInformation().getTotalSuccessCount());
+		assertEquals("Wrong failure count", 0, recomputeTask.getOperationStats().getIterativeTaskInformation().getTotalFailureCount());
+	}
+
+	/**
+	 * The same users are recomputed by a task with countObjectsOnStart=false. All of them are processed,
+	 * but they are not counted beforehand, so there is no expected total.
+	 */
+	@Test
+	public void test310RecomputeBatchesWithoutCounting() throws Exception {
+		final String TEST_NAME = "test310RecomputeBatchesWithoutCounting";
+		TestUtil.displayTestTitle(this, TEST_NAME);
+
+		// WHEN
+		TestUtil.displayWhen(TEST_NAME);
+		addTask(TASK_USER_RECOMPUTE_BATCH_NO_COUNT_FILE);
+		waitForTaskFinish(TASK_USER_RECOMPUTE_BATCH_NO_COUNT_OID, true, 60000);
+
+		// THEN
+		TestUtil.displayThen(TEST_NAME);
+		TaskType recomputeTask = getTask(TASK_USER_RECOMPUTE_BATCH_NO_COUNT_OID).asObjectable();
+		display("Recompute task after", recomputeTask);
+		assertEquals("Wrong progress", Long.valueOf(BATCH_USERS), recomputeTask.getProgress());
+		assertNull("Unexpected expected total", recomputeTask.getExpectedTotal());
+		assertEquals("Wrong success count", BATCH_USERS, recomputeTask.getOperationStats().getIterativeTaskInformation().getTotalSuccessCount());
+		assertEquals("Wrong failure count", 0, recomputeTask.getOperationStats().getIterativeTaskInformation().getTotalFailureCount());
+	}
+
+	private int countRecomputedCheckpointUsers(Task task, OperationResult result) throws Exception {
+		ObjectQuery query = QueryBuilder.queryFor(UserType.class, prismContext)
+				.item(UserType.F_EMPLOYEE_TYPE).eq(EMPLOYEE_TYPE_CHECKPOINT)
+				.build();
+		int count = 0;
+		for (PrismObject<UserType> user : repositoryService.searchObjects(UserType.class, query, null, result)) {
+			if (COST_CENTER_RECOMPUTED.equals(user.asObjectable().getCostCenter())) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static class RoleReadCounter implements InternalInspector {
+
+		private final String oid;
+		private final AtomicInteger reads = new AtomicInteger();
+
+		private RoleReadCounter(String oid) {
+			this.oid = oid;
+		}
+
+		@Override
+		public <O extends ObjectType> void inspectRepositoryRead(Class<O> type, String oid) {
+			if (this.oid.equals(oid)) {
+				reads.incrementAndGet();
+			}
+		}
+
+		@Override
+		public <F extends FocusType> void inspectRoleEvaluation(F target, boolean fullEvaluation) {
+		}
+
+		private int getReads() {
+			return reads.get();
+		}
+	}
+
 }
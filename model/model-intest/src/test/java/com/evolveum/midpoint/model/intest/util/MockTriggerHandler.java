@@ -35,12 +35,22 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class MockTriggerHandler implements TriggerHandler {
 
 	public static final String HANDLER_URI = SchemaConstants.NS_MIDPOINT_TEST + "/mock-trigger-handler";
+	public static final String IDEMPOTENT_HANDLER_URI = SchemaConstants.NS_MIDPOINT_TEST + "/mock-idempotent-trigger-handler";
 
 	protected static final Trace LOGGER = TraceManager.getTrace(MockTriggerHandler.class);
 
 	private PrismObject<?> lastObject;
 	private AtomicInteger invocationCount = new AtomicInteger(0);
 	private long delay;
+	private final boolean idempotent;
+
+	public MockTriggerHandler() {
+		this(false);
+	}
+
+	public MockTriggerHandler(boolean idempotent) {
+		this.idempotent = idempotent;
+	}
 
 	public PrismObject<?> getLastObject() {
 		return lastObject;
@@ -58,6 +68,11 @@ public class MockTriggerHandler implements TriggerHandler {
 		this.delay = delay;
 	}
 
+	@Override
+	public boolean isIdempotent() {
+		return idempotent;
+	}
+
 	/* (non-Javadoc)
 	 * @see com.evolveum.midpoint.model.trigger.TriggerHandler#handle(com.evolveum.midpoint.prism.PrismObject)
 	 */
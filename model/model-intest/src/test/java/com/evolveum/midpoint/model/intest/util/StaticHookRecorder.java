@@ -40,6 +40,11 @@ public class StaticHookRecorder {
         assertEquals("Wrong invocation count of hook '"+hookName+"'", (Integer)expectedCount, hookInvocationCountMap.get(hookName));
     }
 
+    public static int getInvocationCount(String hookName) {
+        Integer count = hookInvocationCountMap.get(hookName);
+        return count != null ? count : 0;
+    }
+
     public static void reset() {
         hookInvocationCountMap = new HashMap<>();
     }
@@ -22,6 +22,7 @@ import com.evolveum.midpoint.model.impl.lens.LensContext;
 import com.evolveum.midpoint.model.impl.lens.LensFocusContext;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.Task;
@@ -39,6 +40,10 @@ import org.springframework.test.context.ContextConfiguration;
 import org.testng.annotations.Test;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
 
 /**
  * @author mederly
@@ -105,4 +110,40 @@ public class TestInfrastructure extends AbstractInternalModelIntegrationTest {
 
         assertEquals("Object after serialization/deserialization does not match original one", scheduleType, scheduleTypeRetrieved);
     }
+
+    @Test(enabled = true)
+    public void test102SerializeReducedContext() throws Exception {
+    	final String TEST_NAME = "test102SerializeReducedContext";
+
+    	Task task = createTask(TEST_NAME);
+        OperationResult result = task.getResult();
+
+        LensContext<UserType> context = new LensContext<>(UserType.class, prismContext, provisioningService);
+        PrismObject<UserType> barbossa = prismContext.parseObject(USER_BARBOSSA_FILE);
+        CryptoUtil.encryptValues(protector, barbossa);
+        LensFocusContext<UserType> focusContext = context.getOrCreateFocusContext();
+        focusContext.setLoadedObject(barbossa);
+        focusContext.setObjectNew(barbossa.clone());
+        focusContext.setOid(USER_BARBOSSA_OID);
+        ObjectDelta<UserType> userDelta = ObjectDelta.createModificationReplaceProperty(UserType.class, USER_BARBOSSA_OID,
+                UserType.F_FULL_NAME, prismContext, PolyString.fromOrig("Captain Hector Barbossa"));
+        focusContext.setPrimaryDelta(userDelta);
+
+        JaxbValueContainer<LensContextType> fullContainer = new JaxbValueContainer<>(context.toLensContextType(false), prismContext);
+        JaxbValueContainer<LensContextType> reducedContainer = new JaxbValueContainer<>(context.toLensContextType(true), prismContext);
+        int fullSize = fullContainer.getXmlValue().length();
+        int reducedSize = reducedContainer.getXmlValue().length();
+        System.out.println("Full context size = " + fullSize + ", reduced context size = " + reducedSize);
+        assertTrue("Reduced context (" + reducedSize + ") is not smaller than the full one (" + fullSize + ")", reducedSize < fullSize);
+
+        reducedContainer.clearActualValue();
+        LensContext<UserType> contextRetrieved = LensContext.fromLensContextType(reducedContainer.getValue(), prismContext, provisioningService, task, result);
+
+        LensFocusContext<UserType> focusContextRetrieved = contextRetrieved.getFocusContext();
+        assertEquals("Wrong focus OID after deserialization", USER_BARBOSSA_OID, focusContextRetrieved.getOid());
+        assertNotNull("No primary delta after deserialization", focusContextRetrieved.getPrimaryDelta());
+        assertEquals("Wrong number of modifications in primary delta after deserialization", 1, focusContextRetrieved.getPrimaryDelta().getModifications().size());
+        assertNull("Object old present in reduced context", focusContextRetrieved.getObjectOld());
+        assertFalse("Deserialized focus context is fresh", focusContextRetrieved.isFresh());
+    }
 }
@@ -17,7 +17,9 @@ package com.evolveum.midpoint.wf.impl.legacy;
 
 import com.evolveum.midpoint.model.api.ModelExecuteOptions;
 import com.evolveum.midpoint.model.api.context.ModelContext;
+import com.evolveum.midpoint.model.api.context.ModelState;
 import com.evolveum.midpoint.model.impl.lens.LensContext;
+import com.evolveum.midpoint.model.impl.lens.LensProjectionContext;
 import com.evolveum.midpoint.prism.*;
 import com.evolveum.midpoint.prism.delta.ChangeType;
 import com.evolveum.midpoint.prism.delta.ContainerDelta;
@@ -38,6 +40,7 @@ import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.MiscSchemaUtil;
 import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
+import com.evolveum.midpoint.schema.util.ShadowUtil;
 import com.evolveum.midpoint.schema.util.WfContextUtil;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.test.DummyResourceContoller;
@@ -1203,6 +1206,83 @@ public class TestUserChangeApprovalLegacy extends AbstractWfTestLegacy {
         });
     }
 
+    /**
+     * User modification with one security-sensitive role, a change of the account and reconciliation.
+     *
+     * The model context of the root task is stored (in reduced form, i.e. without shadows) twice: when the approval
+     * process is started and when the approved deltas are put back into it. When the operation is resumed,
+     * the projection has to be re-loaded with a full shadow, as there is no shadow in the stored context.
+     */
+    @Test(enabled = true)
+    public void test096UserModifyAddRoleReconcileAccount() throws Exception {
+        final String TEST_NAME = "test096UserModifyAddRoleReconcileAccount";
+        TestUtil.displayTestTitle(this, TEST_NAME);
+        login(userAdministrator);
+
+        final String accountOid = getSingleLinkOid(getUser(USER_JACK_OID));
+
+        executeTest(TEST_NAME, USER_JACK_OID, new TestDetails() {
+            @Override int subtaskCount() { return 1; }
+            @Override boolean immediate() { return false; }
+            @Override boolean checkObjectOnSubtasks() { return true; }
+            @Override boolean removeAssignmentsBeforeTest() { return false; }
+
+            @Override
+            public LensContext createModelContext(Task task, OperationResult result) throws Exception {
+                LensContext<UserType> context = createUserLensContext();
+                fillContextWithUser(context, USER_JACK_OID, result);
+                fillContextWithAccount(context, accountOid, task, result);
+                addFocusModificationToContext(context, REQ_USER_JACK_MODIFY_ADD_ASSIGNMENT_ROLE1);
+                addModificationToContextReplaceAccountAttribute(context, accountOid,
+                        DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_TITLE_NAME, "Captain");
+                context.setDoReconciliationForAllProjections(true);
+                return context;
+            }
+
+            @Override
+            public void assertsAfterClockworkRun(Task rootTask, List<Task> wfSubtasks, OperationResult result) throws Exception {
+                LensContextType storedContext = rootTask.getModelOperationContext();
+                assertEquals("Wrong # of projection contexts in root task", 1, storedContext.getProjectionContext().size());
+                LensProjectionContextType storedProjectionContext = storedContext.getProjectionContext().get(0);
+                assertNull("Shadow stored in root task context", storedProjectionContext.getObjectOld());
+                assertFalse("Full shadow claimed in root task context", Boolean.TRUE.equals(storedProjectionContext.isFullShadow()));
+                assertNotAssignedRole(USER_JACK_OID, ROLE_R1_OID, rootTask, result);
+
+                mockClockworkHook.reset();
+                mockClockworkHook.setRecord(true);
+            }
+
+            @Override
+            void assertsRootTaskFinishes(Task task, List<Task> subtasks, OperationResult result) throws Exception {
+                mockClockworkHook.setRecord(false);
+                display("Hook contexts", mockClockworkHook);
+                LensProjectionContext projectionContext = null;
+                for (LensContext<?> hookContext : mockClockworkHook.getContexts()) {
+                    if (hookContext.getState() == ModelState.SECONDARY) {
+                        projectionContext = hookContext.findProjectionContextByOid(accountOid);
+                        break;
+                    }
+                }
+                mockClockworkHook.reset();
+                assertNotNull("No projection context in the resumed operation", projectionContext);
+                assertTrue("Projection context was not re-loaded with a full shadow", projectionContext.isFullShadow());
+                assertNotNull("No current shadow in projection context", projectionContext.getObjectCurrent());
+                assertNotNull("No fullname attribute in current shadow", ShadowUtil.getAttributeValue(projectionContext.getObjectCurrent(),
+                        new QName(RESOURCE_DUMMY_NAMESPACE, DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_FULLNAME_NAME)));
+
+                assertAssignedRole(USER_JACK_OID, ROLE_R1_OID, task, result);
+                assertDummyAccountAttribute(null, ACCOUNT_JACK_DUMMY_USERNAME,
+                        DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_TITLE_NAME, "Captain");
+                checkUserApprovers(USER_JACK_OID, Arrays.asList(R1BOSS_OID), result);
+            }
+
+            @Override
+            boolean decideOnApproval(String executionId) throws Exception {
+                return decideOnRoleApproval(executionId);
+            }
+        });
+    }
+
     protected void modifyAssignmentConstruction(LensContext<UserType> context, UserType jack,
                                                 String attributeName, String value, boolean add) throws SchemaException {
         assertEquals("jack's assignments", 1, jack.getAssignment().size());
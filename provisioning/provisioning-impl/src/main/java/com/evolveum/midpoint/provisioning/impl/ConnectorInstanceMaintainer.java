@@ -0,0 +1,270 @@
+/**
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.impl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.LabeledString;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.statistics.ConnectorOperationalStatus;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.task.api.TaskManager;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceConnectorManagementType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+
+/**
+ * Warms up connector instances and periodically checks their health in background, according to
+ * the connectorManagement configuration of individual resources.
+ *
+ * All the work is done by a single background thread, so the maintenance never competes for connections
+ * with regular operations too much.
+ *
+ * See ResourceConnectorManagementType for the configuration.
+ */
+@Component
+public class ConnectorInstanceMaintainer {
+
+	private static final Trace LOGGER = TraceManager.getTrace(ConnectorInstanceMaintainer.class);
+
+	private static final String OPERATION_START = ConnectorInstanceMaintainer.class.getName() + ".start";
+	private static final String OPERATION_WARM_UP = ConnectorInstanceMaintainer.class.getName() + ".warmUp";
+	private static final String OPERATION_HEALTH_CHECK = ConnectorInstanceMaintainer.class.getName() + ".healthCheck";
+
+	@Autowired
+	@Qualifier("cacheRepositoryService")
+	private RepositoryService repositoryService;
+
+	@Autowired private ResourceManager resourceManager;
+	@Autowired private TaskManager taskManager;
+
+	private volatile ScheduledExecutorService executor;
+	private final Map<String, ScheduledHealthCheck> healthChecks = new ConcurrentHashMap<>();
+	private final Map<String, ResourceStatistics> statistics = new ConcurrentHashMap<>();
+
+	/**
+	 * Starts the maintenance: all the resources are processed (in background) and their connectors
+	 * are warmed up and/or scheduled for health checks.
+	 */
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "connector-instance-maintainer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		submit(this::processAllResources);
+	}
+
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		healthChecks.clear();
+	}
+
+	/**
+	 * Should be called after the resource was added or modified.
+	 */
+	public void resourceChanged(String resourceOid) {
+		submit(() -> processResource(resourceOid, OPERATION_WARM_UP, true));
+	}
+
+	public void resourceDeleted(String resourceOid) {
+		cancelHealthCheck(resourceOid);
+		statistics.remove(resourceOid);
+	}
+
+	/**
+	 * Results of warm-ups and health checks (for diagnostics).
+	 */
+	public List<LabeledString> getStatistics() {
+		List<LabeledString> rv = new ArrayList<>();
+		for (Map.Entry<String, ResourceStatistics> entry : statistics.entrySet()) {
+			rv.add(new LabeledString("Connector health for resource " + entry.getKey(), entry.getValue().shortDump()));
+		}
+		return rv;
+	}
+
+	private void submit(Runnable runnable) {
+		ScheduledExecutorService executor = this.executor;
+		if (executor == null) {
+			// Not started yet. All the resources will be processed on start.
+			return;
+		}
+		try {
+			executor.execute(runnable);
+		} catch (RejectedExecutionException e) {
+			LOGGER.debug("Connector instance maintenance is shutting down, ignoring the request: {}", e.getMessage());
+		}
+	}
+
+	private void processAllResources() {
+		OperationResult result = new OperationResult(OPERATION_START);
+		List<PrismObject<ResourceType>> resources;
+		try {
+			resources = repositoryService.searchObjects(ResourceType.class, null,
+					SelectorOptions.createCollection(GetOperationOptions.createReadOnly()), result);
+		} catch (CommonException | RuntimeException e) {
+			LoggingUtils.logUnexpectedException(LOGGER, "Couldn't start maintenance of connector instances", e);
+			return;
+		}
+		for (PrismObject<ResourceType> resource : resources) {
+			ResourceConnectorManagementType config = resource.asObjectable().getConnectorManagement();
+			if (config != null && !Thread.currentThread().isInterrupted()) {
+				processResource(resource.getOid(), OPERATION_WARM_UP, true);
+			}
+		}
+	}
+
+	private void processResource(String resourceOid, String operation, boolean warmUp) {
+		Task task = taskManager.createTaskInstance(operation);
+		OperationResult result = task.getResult();
+		PrismObject<ResourceType> resource;
+		try {
+			resource = resourceManager.getResource(resourceOid, GetOperationOptions.createReadOnly(), task, result);
+		} catch (ObjectNotFoundException e) {
+			LOGGER.debug("Resource {} no longer exists, stopping maintenance of its connectors", resourceOid);
+			resourceDeleted(resourceOid);
+			return;
+		} catch (CommonException | RuntimeException e) {
+			LoggingUtils.logExceptionAsWarning(LOGGER, "Couldn't get {} for connector maintenance", e, resourceOid);
+			return;
+		}
+
+		ResourceConnectorManagementType config = resource.asObjectable().getConnectorManagement();
+		long interval = config != null && config.getHealthCheckInterval() != null ?
+				config.getHealthCheckInterval().getTimeInMillis(new Date()) : 0L;
+		scheduleHealthCheck(resourceOid, interval);
+
+		if (warmUp && config != null && Boolean.TRUE.equals(config.isWarmUp())) {
+			checkConnectors(resource, "Warm-up", result);
+		} else if (!warmUp && interval > 0) {
+			checkConnectors(resource, "Health check", result);
+		}
+	}
+
+	private void checkConnectors(PrismObject<ResourceType> resource, String label, OperationResult result) {
+		long start = System.currentTimeMillis();
+		boolean success;
+		try {
+			success = resourceManager.checkConnectors(resource, result);
+		} catch (CommonException | RuntimeException e) {
+			LoggingUtils.logExceptionAsWarning(LOGGER, "{} of connectors for {} failed", e, label, resource);
+			success = false;
+		}
+		long duration = System.currentTimeMillis() - start;
+		if (success) {
+			LOGGER.debug("{} of connectors for {} succeeded in {} ms", label, resource, duration);
+		} else {
+			LOGGER.warn("{} of connectors for {} failed in {} ms: {}", label, resource, duration, result.getMessage());
+		}
+		statistics.computeIfAbsent(resource.getOid(), oid -> new ResourceStatistics()).record(success, duration);
+
+		if (LOGGER.isDebugEnabled()) {
+			try {
+				for (ConnectorOperationalStatus status : resourceManager.getConnectorOperationalStatus(resource, result)) {
+					LOGGER.debug("Connector status for {}: {}", resource, status);
+				}
+			} catch (CommonException | RuntimeException e) {
+				LOGGER.debug("Couldn't get connector operational status for {}: {}", resource, e.getMessage(), e);
+			}
+		}
+	}
+
+	private synchronized void scheduleHealthCheck(String resourceOid, long interval) {
+		ScheduledHealthCheck existing = healthChecks.get(resourceOid);
+		if (existing != null && existing.interval == interval) {
+			return;
+		}
+		cancelHealthCheck(resourceOid);
+		ScheduledExecutorService executor = this.executor;
+		if (interval <= 0 || executor == null) {
+			return;
+		}
+		LOGGER.debug("Scheduling health checks of connectors for resource {} every {} ms", resourceOid, interval);
+		ScheduledFuture<?> future = executor.scheduleWithFixedDelay(
+				() -> processResource(resourceOid, OPERATION_HEALTH_CHECK, false), interval, interval, TimeUnit.MILLISECONDS);
+		healthChecks.put(resourceOid, new ScheduledHealthCheck(interval, future));
+	}
+
+	private void cancelHealthCheck(String resourceOid) {
+		ScheduledHealthCheck existing = healthChecks.remove(resourceOid);
+		if (existing != null) {
+			existing.future.cancel(false);
+		}
+	}
+
+	private static class ScheduledHealthCheck {
+		private final long interval;
+		private final ScheduledFuture<?> future;
+
+		private ScheduledHealthCheck(long interval, ScheduledFuture<?> future) {
+			this.interval = interval;
+			this.future = future;
+		}
+	}
+
+	private static class ResourceStatistics {
+		private long checks;
+		private long failures;
+		private long lastTimestamp;
+		private long lastDuration;
+		private boolean lastSuccess;
+
+		private synchronized void record(boolean success, long duration) {
+			checks++;
+			if (!success) {
+				failures++;
+			}
+			lastTimestamp = System.currentTimeMillis();
+			lastDuration = duration;
+			lastSuccess = success;
+		}
+
+		private synchronized String shortDump() {
+			return "checks=" + checks
+					+ ", failures=" + failures
+					+ ", last=" + new Date(lastTimestamp)
+					+ ", lastSuccess=" + lastSuccess
+					+ ", lastDuration=" + lastDuration + "ms";
+		}
+	}
+}
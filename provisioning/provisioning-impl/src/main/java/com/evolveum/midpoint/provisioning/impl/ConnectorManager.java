@@ -50,6 +50,7 @@ import com.evolveum.midpoint.schema.internals.InternalCounters;
 import com.evolveum.midpoint.schema.internals.InternalMonitor;
 import com.evolveum.midpoint.schema.processor.ResourceSchema;
 import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.statistics.ConnectorOperationalStatus;
 import com.evolveum.midpoint.schema.util.ConnectorTypeUtil;
 import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
 import com.evolveum.midpoint.schema.util.ResourceTypeUtil;
@@ -95,6 +96,7 @@ public class ConnectorManager {
 	private Collection<ConnectorFactory> connectorFactories;
 	private Map<ConfiguredConnectorCacheKey, ConfiguredConnectorInstanceEntry> connectorInstanceCache = new ConcurrentHashMap<>();
 	private Map<String, ConnectorType> connectorTypeCache = new ConcurrentHashMap<>();
+	private Map<ConfiguredConnectorCacheKey, ConnectorHealth> connectorHealthMap = new ConcurrentHashMap<>();
 
 	public Collection<ConnectorFactory> getConnectorFactories() {
 		if (connectorFactories == null) {
@@ -162,6 +164,7 @@ public class ConnectorManager {
 		}
 
 		// No usable connector in cache. Let's create it.
+		long start = System.currentTimeMillis();
 		ConnectorInstance configuredConnectorInstance = createConfiguredConnectorInstance(connectorSpec, result);
 
 		// .. and cache it
@@ -169,6 +172,7 @@ public class ConnectorManager {
 		cacheEntry.connectorOid = connectorSpec.getConnectorOid();
 		cacheEntry.configuration = connectorSpec.getConnectorConfiguration();
 		cacheEntry.connectorInstance = configuredConnectorInstance;
+		cacheEntry.createTime = System.currentTimeMillis() - start;
 		connectorInstanceCache.put(cacheKey, cacheEntry);
 
 		return configuredConnectorInstance;
@@ -188,6 +192,38 @@ public class ConnectorManager {
 			connectorInstanceCache.put(cacheKey, cacheEntry);
 		}
 
+	/**
+	 * Records the result of a (background) health check of a cached connector instance.
+	 * Failed instance is removed from the cache, so a fresh one is created for the next operation.
+	 */
+	void recordHealthCheck(ConnectorSpec connectorSpec, ConnectorInstance connectorInstance, boolean success) {
+		ConfiguredConnectorCacheKey cacheKey = connectorSpec.getCacheKey();
+		connectorHealthMap.put(cacheKey, new ConnectorHealth(System.currentTimeMillis(), success));
+		if (!success) {
+			ConfiguredConnectorInstanceEntry entry = connectorInstanceCache.get(cacheKey);
+			if (entry != null && entry.connectorInstance == connectorInstance && connectorInstanceCache.remove(cacheKey, entry)) {
+				LOGGER.info("Discarding connector instance for {} because it failed the health check", connectorSpec);
+				connectorInstance.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Adds information about connector instance management on this node to the operational status.
+	 */
+	void applyInstanceStatus(ConnectorSpec connectorSpec, ConnectorOperationalStatus status) {
+		ConfiguredConnectorCacheKey cacheKey = connectorSpec.getCacheKey();
+		ConfiguredConnectorInstanceEntry entry = connectorInstanceCache.get(cacheKey);
+		if (entry != null) {
+			status.setInstanceCreateTime(entry.createTime);
+		}
+		ConnectorHealth health = connectorHealthMap.get(cacheKey);
+		if (health != null) {
+			status.setLastHealthCheckTimestamp(health.timestamp);
+			status.setLastHealthCheckSuccess(health.success);
+		}
+	}
+
 	// should only be used by this class and testConnection in Resource manager
 	ConnectorInstance createConnectorInstance(ConnectorSpec connectorSpec, OperationResult result)
 			throws ObjectNotFoundException, SchemaException, CommunicationException, ConfigurationException {
@@ -537,6 +573,17 @@ public class ConnectorManager {
 		public String connectorOid;
 		public PrismContainer<ConnectorConfigurationType> configuration;
 		public ConnectorInstance connectorInstance;
+		public Long createTime;
+	}
+
+	private static class ConnectorHealth {
+		private final long timestamp;
+		private final boolean success;
+
+		private ConnectorHealth(long timestamp, boolean success) {
+			this.timestamp = timestamp;
+			this.success = success;
+		}
 	}
 
 	public void connectorFrameworkSelfTest(OperationResult parentTestResult, Task task) {
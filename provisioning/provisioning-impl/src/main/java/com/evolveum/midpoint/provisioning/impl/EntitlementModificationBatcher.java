@@ -0,0 +1,369 @@
+/**
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.PropertyDelta;
+import com.evolveum.midpoint.provisioning.ucf.api.Operation;
+import com.evolveum.midpoint.provisioning.ucf.api.PropertyModificationOperation;
+import com.evolveum.midpoint.schema.processor.ResourceAttribute;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.exception.CommunicationException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.EntitlementBatchingType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Coalesces concurrent modifications of the same entitlement object (object-to-subject associations)
+ * into a single connector operation.
+ *
+ * Callers announce the entitlement objects they are going to modify (enter) before modifying any of them,
+ * and withdraw the announcement when they are done (exit). The first thread that wants to modify an entitlement
+ * object becomes a "leader" of a batch. It waits until all the other callers that announced a modification
+ * of the same object joined the batch (but at most for the configured time window, and only until the batch
+ * is full), merges the changes of all the threads that joined the batch and executes them as one modify operation.
+ * So a caller without concurrent contributors does not wait at all. The other threads wait for the outcome.
+ * If the batched operation fails (for other reason than communication error), all the threads re-apply
+ * their own changes individually, so the errors are attributed correctly.
+ *
+ * See EntitlementBatchingType for the configuration.
+ */
+@Component
+public class EntitlementModificationBatcher {
+
+	private static final Trace LOGGER = TraceManager.getTrace(EntitlementModificationBatcher.class);
+
+	private static final String OPERATION_EXECUTE_BATCH = EntitlementModificationBatcher.class.getName() + ".executeBatch";
+
+	private static final long DEFAULT_WINDOW = 100L;
+	private static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+	@FunctionalInterface
+	public interface ModifyExecutor {
+		void execute(ProvisioningContext ctx, PrismObject<ShadowType> currentShadow,
+				Collection<? extends ResourceAttribute<?>> identifiers, Collection<Operation> operations,
+				OperationResult result) throws CommonException;
+	}
+
+	// both guarded by openBatches lock
+	private final Map<BatchKey, Batch> openBatches = new HashMap<>();
+	private final Map<BatchKey, Integer> pendingContributors = new HashMap<>();
+
+	public EntitlementBatchingType getConfiguration(ResourceType resource) {
+		return resource.getConsistency() != null ? resource.getConsistency().getEntitlementBatching() : null;
+	}
+
+	/**
+	 * Only additions and deletions of attribute values can be safely merged with changes of other subjects.
+	 */
+	public boolean isBatchable(Collection<Operation> operations) {
+		if (operations.isEmpty()) {
+			return false;
+		}
+		for (Operation operation : operations) {
+			if (!(operation instanceof PropertyModificationOperation)) {
+				return false;
+			}
+			PropertyDelta<?> delta = ((PropertyModificationOperation<?>) operation).getPropertyDelta();
+			if (delta == null || delta.isReplace()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Announces that the caller is going to modify given entitlement objects. Must be followed by exit(),
+	 * even if the caller does not get to modify all (or any) of them.
+	 */
+	public Participation enter(String resourceOid, Collection<ResourceObjectDiscriminator> discriminators) {
+		Participation participation = new Participation();
+		if (resourceOid == null) {
+			return participation;
+		}
+		synchronized (openBatches) {
+			for (ResourceObjectDiscriminator discriminator : discriminators) {
+				BatchKey key = new BatchKey(resourceOid, discriminator);
+				if (participation.pendingKeys.add(key)) {
+					pendingContributors.merge(key, 1, Integer::sum);
+				}
+			}
+		}
+		return participation;
+	}
+
+	/**
+	 * Withdraws the announcements of entitlement objects the caller has not modified.
+	 * Batches that were waiting only for this caller are closed.
+	 */
+	public void exit(Participation participation) {
+		List<Batch> batchesToClose = new ArrayList<>();
+		synchronized (openBatches) {
+			for (BatchKey key : participation.pendingKeys) {
+				if (removePendingContributor(key)) {
+					Batch batch = openBatches.remove(key);
+					if (batch != null) {
+						batch.closed = true;
+						batchesToClose.add(batch);
+					}
+				}
+			}
+			participation.pendingKeys.clear();
+		}
+		for (Batch batch : batchesToClose) {
+			batch.signal();
+		}
+	}
+
+	public void execute(Participation participation, ProvisioningContext entitlementCtx, ResourceObjectDiscriminator discriminator,
+			Collection<? extends ResourceAttribute<?>> identifiers, ResourceObjectOperations operations,
+			EntitlementBatchingType config, ModifyExecutor executor, OperationResult result) throws CommonException {
+
+		String resourceOid = entitlementCtx.getResource().getOid();
+		if (resourceOid == null) {
+			executor.execute(entitlementCtx, operations.getCurrentShadow(), identifiers, operations.getOperations(), result);
+			return;
+		}
+
+		BatchKey key = new BatchKey(resourceOid, discriminator);
+		Contribution contribution = new Contribution(entitlementCtx, identifiers, operations);
+		int maxBatchSize = config.getMaxBatchSize() != null ? config.getMaxBatchSize() : DEFAULT_MAX_BATCH_SIZE;
+		Batch batch;
+		boolean leader;
+		boolean closing = false;
+		synchronized (openBatches) {
+			boolean lastPending = participation.pendingKeys.remove(key) ?
+					removePendingContributor(key) : !pendingContributors.containsKey(key);
+			batch = openBatches.get(key);
+			leader = batch == null;
+			if (leader) {
+				batch = new Batch();
+				openBatches.put(key, batch);
+			}
+			batch.contributions.add(contribution);
+			if (lastPending || batch.contributions.size() >= maxBatchSize) {
+				// nobody else is going to join the batch (or it is full)
+				openBatches.remove(key);
+				batch.closed = true;
+				closing = true;
+			}
+		}
+		if (closing) {
+			batch.signal();
+		}
+
+		if (leader) {
+			long window = config.getWindow() != null ? config.getWindow().getTimeInMillis(new Date()) : DEFAULT_WINDOW;
+			batch.awaitClosing(System.currentTimeMillis() + window);
+			synchronized (openBatches) {
+				if (openBatches.get(key) == batch) {
+					openBatches.remove(key);
+				}
+				batch.closed = true;
+			}
+			executeBatch(batch, executor, result);
+		} else {
+			batch.awaitOutcome();
+		}
+
+		Throwable failure = batch.failure;
+		if (batch.retryIndividually) {
+			LOGGER.debug("Batched modification of {} failed, re-applying the change individually", discriminator);
+			executor.execute(entitlementCtx, operations.getCurrentShadow(), identifiers, operations.getOperations(), result);
+		} else if (failure instanceof CommonException) {
+			throw (CommonException) failure;
+		} else if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (!leader) {
+			result.addContext("batchSize", batch.contributions.size());
+		}
+	}
+
+	// returns true if there are no more pending contributors for the key
+	private boolean removePendingContributor(BatchKey key) {
+		Integer remaining = pendingContributors.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+		return remaining == null;
+	}
+
+	private void executeBatch(Batch batch, ModifyExecutor executor, OperationResult result) {
+		List<Contribution> contributions = batch.contributions;
+		Throwable failure = null;
+		boolean retryIndividually = false;
+		try {
+			if (contributions.size() == 1) {
+				Contribution single = contributions.get(0);
+				executor.execute(single.ctx, single.operations.getCurrentShadow(), single.identifiers,
+						single.operations.getOperations(), result);
+			} else {
+				Collection<Operation> mergedOperations = mergeOperations(contributions);
+				LOGGER.trace("Executing batch of {} entitlement changes: {}", contributions.size(), mergedOperations);
+				OperationResult batchResult = result.createMinorSubresult(OPERATION_EXECUTE_BATCH);
+				batchResult.addContext("batchSize", contributions.size());
+				Contribution first = contributions.get(0);
+				try {
+					// Current shadow of any subject may be outdated with respect to the changes of other subjects.
+					executor.execute(first.ctx, null, first.identifiers, mergedOperations, batchResult);
+					batchResult.computeStatusIfUnknown();
+				} catch (CommunicationException e) {
+					batchResult.recordFatalError(e);
+					throw e;
+				} catch (CommonException | RuntimeException e) {
+					LOGGER.debug("Batch of {} entitlement changes failed: {}", contributions.size(), e.getMessage(), e);
+					batchResult.recordHandledError(e);
+					retryIndividually = true;
+				}
+			}
+		} catch (Throwable t) {
+			failure = t;
+		} finally {
+			batch.complete(failure, retryIndividually);
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Collection<Operation> mergeOperations(List<Contribution> contributions) {
+		Map<QName, PropertyModificationOperation> merged = new LinkedHashMap<>();
+		for (Contribution contribution : contributions) {
+			for (Operation operation : contribution.operations.getOperations()) {
+				PropertyModificationOperation<?> propOp = (PropertyModificationOperation<?>) operation;
+				QName attributeName = propOp.getPropertyDelta().getElementName();
+				PropertyModificationOperation existing = merged.get(attributeName);
+				if (existing == null) {
+					PropertyModificationOperation copy = new PropertyModificationOperation<>(propOp.getPropertyDelta().clone());
+					copy.setMatchingRuleQName(propOp.getMatchingRuleQName());
+					merged.put(attributeName, copy);
+				} else {
+					existing.getPropertyDelta().merge(propOp.getPropertyDelta());
+				}
+			}
+		}
+		return new ArrayList<>(merged.values());
+	}
+
+	/**
+	 * Entitlement objects the caller announced to modify, but has not modified yet.
+	 */
+	public static class Participation {
+		// guarded by openBatches lock
+		private final Set<BatchKey> pendingKeys = new HashSet<>();
+	}
+
+	private static class Contribution {
+		private final ProvisioningContext ctx;
+		private final Collection<? extends ResourceAttribute<?>> identifiers;
+		private final ResourceObjectOperations operations;
+
+		private Contribution(ProvisioningContext ctx, Collection<? extends ResourceAttribute<?>> identifiers,
+				ResourceObjectOperations operations) {
+			this.ctx = ctx;
+			this.identifiers = identifiers;
+			this.operations = operations;
+		}
+	}
+
+	private static class Batch {
+		// modified only under openBatches lock
+		private final List<Contribution> contributions = new ArrayList<>();
+		private volatile boolean closed;
+
+		private boolean completed;
+		private Throwable failure;
+		private boolean retryIndividually;
+
+		private synchronized void signal() {
+			notifyAll();
+		}
+
+		private synchronized void awaitClosing(long deadline) {
+			long remaining;
+			while (!closed && (remaining = deadline - System.currentTimeMillis()) > 0) {
+				try {
+					wait(remaining);
+				} catch (InterruptedException e) {
+					// Let's execute the batch anyway, the other threads are waiting for it.
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+
+		private synchronized void awaitOutcome() {
+			while (!completed) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SystemException("Interrupted while waiting for batched entitlement modification", e);
+				}
+			}
+		}
+
+		private synchronized void complete(Throwable failure, boolean retryIndividually) {
+			this.failure = failure;
+			this.retryIndividually = retryIndividually;
+			this.completed = true;
+			notifyAll();
+		}
+	}
+
+	private static class BatchKey {
+		private final String resourceOid;
+		private final ResourceObjectDiscriminator discriminator;
+
+		private BatchKey(String resourceOid, ResourceObjectDiscriminator discriminator) {
+			this.resourceOid = resourceOid;
+			this.discriminator = discriminator;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof BatchKey)) {
+				return false;
+			}
+			BatchKey other = (BatchKey) o;
+			return resourceOid.equals(other.resourceOid) && discriminator.equals(other.discriminator);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(resourceOid, discriminator);
+		}
+	}
+}
@@ -114,6 +114,8 @@ public class ProvisioningServiceImpl implements ProvisioningService {
 	@Autowired ConnectorManager connectorManager;
 	@Autowired ProvisioningContextFactory ctxFactory;
 	@Autowired PrismContext prismContext;
+	@Autowired ResourceOperationLimiter operationLimiter;
+	@Autowired ConnectorInstanceMaintainer connectorInstanceMaintainer;
 
 	@Autowired(required = true)
 	@Qualifier("cacheRepositoryService")
@@ -337,6 +339,9 @@ public class ProvisioningServiceImpl implements ProvisioningService {
 			}
 			oid = cacheRepositoryService.addObject(object, addOptions, result);
 			result.computeStatus();
+			if (object.canRepresent(ResourceType.class)) {
+				connectorInstanceMaintainer.resourceChanged(oid);
+			}
 		}
 
 		result.cleanupResult();
@@ -645,6 +650,9 @@ public class ProvisioningServiceImpl implements ProvisioningService {
 					result);
 			} else {
 				cacheRepositoryService.modifyObject(type, oid, modifications, result);
+				if (ResourceType.class.isAssignableFrom(type)) {
+					connectorInstanceMaintainer.resourceChanged(oid);
+				}
 			}
 			if (!result.isInProgress()) {
 				// This is the case when there is already a conflicting pending operation.
@@ -724,6 +732,7 @@ public class ProvisioningServiceImpl implements ProvisioningService {
 		} else if (object.canRepresent(ResourceType.class)) {
 
 			resourceManager.deleteResource(oid, options, task, result);
+			connectorInstanceMaintainer.resourceDeleted(oid);
 
 		} else {
 
@@ -1069,7 +1078,7 @@ public class ProvisioningServiceImpl implements ProvisioningService {
 		PrismObject<ResourceType> resource;
 		try {
 
-			resource = resourceManager.getResource(resourceOid, null, task, result);
+			resource = resourceManager.getResource(resourceOid, GetOperationOptions.createReadOnly(), task, result);
 
 		} catch (SchemaException | ObjectNotFoundException | ExpressionEvaluationException ex) {
 			ProvisioningUtil.recordFatalError(LOGGER, result, ex.getMessage(), ex);
@@ -1209,6 +1218,8 @@ public class ProvisioningServiceImpl implements ProvisioningService {
             frameworkVersion = "unknown";
         }
         provisioningDiag.getAdditionalDetails().add(new LabeledString(DETAILS_CONNECTOR_FRAMEWORK_VERSION, frameworkVersion));
+        provisioningDiag.getAdditionalDetails().addAll(operationLimiter.getStatistics());
+        provisioningDiag.getAdditionalDetails().addAll(connectorInstanceMaintainer.getStatistics());
         return provisioningDiag;
     }
 
@@ -1230,12 +1241,16 @@ public class ProvisioningServiceImpl implements ProvisioningService {
 			LOGGER.info("Discovered local connector {}" + ObjectTypeUtil.toShortString(connector));
 		}
 
+		// Warm-up and health checks of connector instances (in background)
+		connectorInstanceMaintainer.start();
+
 		result.computeStatus("Provisioning post-initialization failed");
 		result.cleanupResult();
 	}
 
 	@PreDestroy
     public void shutdown() {
+		connectorInstanceMaintainer.shutdown();
 		connectorManager.shutdown();
 	}
 
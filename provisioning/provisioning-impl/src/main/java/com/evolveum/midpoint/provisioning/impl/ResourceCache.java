@@ -15,21 +15,28 @@
  */
 package com.evolveum.midpoint.provisioning.impl;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.evolveum.midpoint.common.refinery.RefinedResourceSchemaImpl;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import org.springframework.stereotype.Component;
 
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.internals.InternalCounters;
+import com.evolveum.midpoint.schema.internals.InternalMonitor;
+import com.evolveum.midpoint.schema.util.ResourceTypeUtil;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
 
 /**
  * Class for caching ResourceType instances with a parsed schemas.
  *
+ * The cache is lock-free. Cached resources are immutable and they carry their parsed resource schema
+ * and refined schema (in user data), so read-only clients get them without cloning or re-parsing.
+ *
  * @author Radovan Semancik
  *
  */
@@ -38,13 +45,12 @@ public class ResourceCache {
 
 	private static final Trace LOGGER = TraceManager.getTrace(ResourceCache.class);
 
-	private Map<String,PrismObject<ResourceType>> cache;
+	private final Map<String,CachedResource> cache = new ConcurrentHashMap<>();
 
     ResourceCache() {
-        cache = new HashMap<>();
     }
 
-	public synchronized void put(PrismObject<ResourceType> resource) throws SchemaException {
+	public void put(PrismObject<ResourceType> resource) throws SchemaException {
 		String oid = resource.getOid();
 		if (oid == null) {
 			throw new SchemaException("Attempt to cache "+resource+" without an OID");
@@ -55,16 +61,19 @@ public class ResourceCache {
 			throw new SchemaException("Attempt to cache "+resource+" without version");
 		}
 
-		PrismObject<ResourceType> cachedResource = cache.get(oid);
-		if (cachedResource == null) {
-			cache.put(oid, resource.createImmutableClone());
-		} else {
-			if (compareVersion(resource.getVersion(), cachedResource.getVersion())) {
-				// We already have equivalent resource, nothing to do
-			} else {
-				cache.put(oid, resource.createImmutableClone());
-			}
+		CachedResource cachedResource = cache.get(oid);
+		if (cachedResource != null && compareVersion(version, cachedResource.version)) {
+			// We already have equivalent resource, nothing to do
+			return;
+		}
+
+		// The schemas have to be parsed before the resource is made immutable. (They are normally
+		// already parsed by ResourceManager.completeResource, so this is cheap.)
+		if (resource.getPrismContext() != null && ResourceTypeUtil.getResourceXsdSchema(resource) != null) {
+			RefinedResourceSchemaImpl.getResourceSchema(resource, resource.getPrismContext());
+			RefinedResourceSchemaImpl.getRefinedSchema(resource);
 		}
+		cache.put(oid, new CachedResource(version, resource.createImmutableClone()));
 	}
 
 	private boolean compareVersion(String version1, String version2) {
@@ -77,55 +86,66 @@ public class ResourceCache {
 		return version1.equals(version2);
 	}
 
-	public synchronized PrismObject<ResourceType> get(PrismObject<ResourceType> resource, GetOperationOptions options) throws SchemaException {
+	public PrismObject<ResourceType> get(PrismObject<ResourceType> resource, GetOperationOptions options) throws SchemaException {
 		return get(resource.getOid(), resource.getVersion(), options);
 	}
 
-	public synchronized PrismObject<ResourceType> get(String oid, String version, GetOperationOptions options) throws SchemaException {
+	public PrismObject<ResourceType> get(String oid, String version, GetOperationOptions options) throws SchemaException {
 		if (oid == null) {
 			return null;
 		}
 
-		PrismObject<ResourceType> cachedResource = cache.get(oid);
+		CachedResource cachedResource = cache.get(oid);
 		if (cachedResource == null) {
 			return null;
 		}
 
-		if (!compareVersion(version, cachedResource.getVersion())) {
+		if (!compareVersion(version, cachedResource.version)) {
 			return null;
 		}
 
 		if (GetOperationOptions.isReadOnly(options)) {
 			try {	// MID-4574
-				cachedResource.checkImmutability();
+				cachedResource.resource.checkImmutability();
 			} catch (IllegalStateException ex) {
 				LOGGER.error("Failed immutability test", ex);
-				cache.remove(oid);
+				cache.remove(oid, cachedResource);
 
 				return null;
 			}
-			return cachedResource;
+			return cachedResource.resource;
 		} else {
-			return cachedResource.clone();
+			InternalMonitor.recordCount(InternalCounters.RESOURCE_CACHE_CLONE_COUNT);
+			return cachedResource.resource.clone();
 		}
 	}
 
 	/**
 	 * Returns currently cached version. FOR DIAGNOSTICS ONLY.
 	 */
-	public synchronized String getVersion(String oid) {
+	public String getVersion(String oid) {
 		if (oid == null) {
 			return null;
 		}
-		PrismObject<ResourceType> cachedResource = cache.get(oid);
+		CachedResource cachedResource = cache.get(oid);
 		if (cachedResource == null) {
 			return null;
 		}
-		return cachedResource.getVersion();
+		return cachedResource.version;
 	}
 
-	public synchronized void remove(String oid) {
+	public void remove(String oid) {
 		cache.remove(oid);
 	}
 
+	private static class CachedResource {
+		private final String version;
+		private final PrismObject<ResourceType> resource;
+
+		private CachedResource(String version, PrismObject<ResourceType> resource) {
+			this.version = version;
+			this.resource = resource;
+		}
+	}
+
 }
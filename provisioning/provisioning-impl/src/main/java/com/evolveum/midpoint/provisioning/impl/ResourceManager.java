@@ -127,6 +127,7 @@ public class ResourceManager {
 	private static final Trace LOGGER = TraceManager.getTrace(ResourceManager.class);
 	
 	private static final String OPERATION_COMPLETE_RESOURCE = ResourceManager.class.getName() + ".completeResource";
+	private static final String OPERATION_CHECK_CONNECTOR = ResourceManager.class.getName() + ".checkConnector";
 	
 	public PrismObject<ResourceType> getResource(PrismObject<ResourceType> repositoryObject, GetOperationOptions options, Task task, OperationResult parentResult) throws ObjectNotFoundException, SchemaException, CommunicationException, ConfigurationException, ExpressionEvaluationException{
 		InternalMonitor.getResourceCacheStats().recordRequest();
@@ -1232,7 +1233,7 @@ public class ResourceManager {
 	}
 
 	public Object executeScript(String resourceOid, ProvisioningScriptType script, Task task, OperationResult result) throws ObjectNotFoundException, SchemaException, CommunicationException, ConfigurationException, SecurityViolationException, ExpressionEvaluationException {
-		PrismObject<ResourceType> resource = getResource(resourceOid, null, task, result);
+		PrismObject<ResourceType> resource = getResource(resourceOid, GetOperationOptions.createReadOnly(), task, result);
 		ConnectorSpec connectorSpec = selectConnectorSpec(resource, ScriptCapabilityType.class);
 		if (connectorSpec == null) {
 			throw new UnsupportedOperationException("No connector supports script capability");
@@ -1256,11 +1257,40 @@ public class ResourceManager {
 			ConnectorOperationalStatus operationalStatus = connectorInstance.getOperationalStatus();
 			if (operationalStatus != null) {
 				operationalStatus.setConnectorName(connectorSpec.getConnectorName());
+				connectorManager.applyInstanceStatus(connectorSpec, operationalStatus);
 				statuses.add(operationalStatus);
 			}
 		}
 		return statuses;
 	}
+
+	/**
+	 * Makes sure that all the connectors of the resource have configured instances on this node and tests their connection.
+	 * The test uses a pooled connection (if the connector is pooled), so the pool is warmed up and broken idle connections
+	 * are disposed by it. Instances that fail the test are discarded.
+	 *
+	 * @return true if all the connectors passed the test
+	 */
+	public boolean checkConnectors(PrismObject<ResourceType> resource, OperationResult parentResult)
+			throws ObjectNotFoundException, SchemaException, CommunicationException, ConfigurationException {
+		boolean allSucceeded = true;
+		for (ConnectorSpec connectorSpec: getAllConnectorSpecs(resource)) {
+			OperationResult result = parentResult.createMinorSubresult(OPERATION_CHECK_CONNECTOR);
+			result.addParam("connector", connectorSpec.toString());
+			try {
+				ConnectorInstance connectorInstance = connectorManager.getConfiguredConnectorInstance(connectorSpec, false, result);
+				connectorInstance.test(result);
+				result.computeStatus();
+				boolean success = !result.isError();		// "not applicable" (test not supported) is OK here
+				connectorManager.recordHealthCheck(connectorSpec, connectorInstance, success);
+				allSucceeded = allSucceeded && success;
+			} catch (ObjectNotFoundException | SchemaException | CommunicationException | ConfigurationException | RuntimeException e) {
+				result.recordFatalError(e);
+				throw e;
+			}
+		}
+		return allSucceeded;
+	}
 	
 	private List<ConnectorSpec> getAllConnectorSpecs(PrismObject<ResourceType> resource) throws SchemaException {
 		List<ConnectorSpec> connectorSpecs = new ArrayList<>();
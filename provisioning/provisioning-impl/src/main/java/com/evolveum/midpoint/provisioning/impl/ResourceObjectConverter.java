@@ -112,6 +112,8 @@ public class ResourceObjectConverter {
 	@Autowired private ShadowCaretaker shadowCaretaker;
 	@Autowired private Clock clock;
 	@Autowired private PrismContext prismContext;
+	@Autowired private ResourceOperationLimiter operationLimiter;
+	@Autowired private EntitlementModificationBatcher entitlementBatcher;
 
 	private static final Trace LOGGER = TraceManager.getTrace(ResourceObjectConverter.class);
 
@@ -267,6 +269,7 @@ public class ResourceObjectConverter {
 		entitlementConverter.processEntitlementsAdd(ctx, shadowClone);
 		
 		ConnectorInstance connector = ctx.getConnector(CreateCapabilityType.class, result);
+		ResourceOperationLimiter.Permit permit = acquireOperationPermit(ctx, result);
 		try {
 
 			if (LOGGER.isDebugEnabled()) {
@@ -292,11 +295,13 @@ public class ResourceObjectConverter {
 			// outside this method.
 			applyAfterOperationAttributes(shadow, resourceAttributesAfterAdd);
 		} catch (CommunicationException ex) {
+			permit.recordFailure();
 			result.recordFatalError(
 					"Could not create object on the resource. Error communicating with the connector " + connector + ": " + ex.getMessage(), ex);
 			throw new CommunicationException("Error communicating with the connector " + connector + ": "
 					+ ex.getMessage(), ex);
 		} catch (GenericFrameworkException ex) {
+			permit.recordFailure();
 			result.recordFatalError("Could not create object on the resource. Generic error in connector: " + ex.getMessage(), ex);
 			throw new GenericConnectorException("Generic error in connector: " + ex.getMessage(), ex);
 		} catch (ObjectAlreadyExistsException ex){
@@ -305,6 +310,8 @@ public class ResourceObjectConverter {
 		} catch (ConfigurationException | SchemaException | RuntimeException | Error e){
 			result.recordFatalError(e);
 			throw e;
+		} finally {
+			permit.release();
 		}
 		
 		// Execute entitlement modification on other objects (if needed)
@@ -396,6 +403,7 @@ public class ResourceObjectConverter {
 				result);
 
 		ConnectorInstance connector = ctx.getConnector(DeleteCapabilityType.class, result);
+		ResourceOperationLimiter.Permit permit = acquireOperationPermit(ctx, result);
 		try {
 
 			if (LOGGER.isDebugEnabled()) {
@@ -423,6 +431,7 @@ public class ResourceObjectConverter {
 			throw new ObjectNotFoundException("An error occured while deleting resource object " + shadow
 					+ "whith identifiers " + identifiers + ": " + ex.getMessage(), ex);
 		} catch (CommunicationException ex) {
+			permit.recordFailure();
 			result.recordFatalError(
 					"Error communicating with the connector " + connector + ": " + ex.getMessage(), ex);
 			throw new CommunicationException("Error communicating with the connector " + connector + ": "
@@ -438,11 +447,14 @@ public class ResourceObjectConverter {
 			throw new ExpressionEvaluationException("Expression error while setting up the resource: "
 					+ ex.getMessage(), ex);
 		} catch (GenericFrameworkException ex) {
+			permit.recordFailure();
 			result.recordFatalError("Generic error in connector: " + ex.getMessage(), ex);
 			throw new GenericConnectorException("Generic error in connector: " + ex.getMessage(), ex);
 		} catch (RuntimeException | Error ex) {
 			result.recordFatalError(ex);
 			throw ex;
+		} finally {
+			permit.release();
 		}
 		
 		
@@ -693,6 +705,7 @@ public class ResourceObjectConverter {
 		
 		// Invoke ICF
 		ConnectorInstance connector = ctx.getConnector(UpdateCapabilityType.class, parentResult);
+		ResourceOperationLimiter.Permit permit = acquireOperationPermit(ctx, parentResult);
 		try {
 			
 			if (ResourceTypeUtil.isAvoidDuplicateValues(ctx.getResource())) {
@@ -805,6 +818,7 @@ public class ResourceObjectConverter {
 			parentResult.recordFatalError("Object to modify not found: " + ex.getMessage(), ex);
 			throw new ObjectNotFoundException("Object to modify not found: " + ex.getMessage(), ex);
 		} catch (CommunicationException ex) {
+			permit.recordFailure();
 			parentResult.recordFatalError(
 					"Error communicating with the connector " + connector + ": " + ex.getMessage(), ex);
 			throw new CommunicationException("Error communicating with connector " + connector + ": "
@@ -816,6 +830,7 @@ public class ResourceObjectConverter {
 			parentResult.recordFatalError("Security violation: " + ex.getMessage(), ex);
 			throw new SecurityViolationException("Security violation: " + ex.getMessage(), ex);
 		} catch (GenericFrameworkException ex) {
+			permit.recordFailure();
 			parentResult.recordFatalError(
 					"Generic error in the connector " + connector + ": " + ex.getMessage(), ex);
 			throw new GenericConnectorException("Generic error in connector connector " + connector + ": "
@@ -829,6 +844,8 @@ public class ResourceObjectConverter {
 		} catch (ObjectAlreadyExistsException ex) {
 			parentResult.recordFatalError("Conflict during modify: " + ex.getMessage(), ex);
 			throw new ObjectAlreadyExistsException("Conflict during modify: " + ex.getMessage(), ex);
+		} finally {
+			permit.release();
 		}
 		
 		return sideEffectChanges;
@@ -1171,45 +1188,163 @@ public class ResourceObjectConverter {
 			LOGGER.trace("Excuting entitlement chanes, roMap:\n{}", DebugUtil.debugDump(roMap, 1));
 		}
 		
-		for (Entry<ResourceObjectDiscriminator,ResourceObjectOperations> entry: roMap.entrySet()) {
-			ResourceObjectDiscriminator disc = entry.getKey();
-			ProvisioningContext entitlementCtx = entry.getValue().getResourceObjectContext();
-			Collection<? extends ResourceAttribute<?>> primaryIdentifiers = disc.getPrimaryIdentifiers();
-			ResourceObjectOperations resourceObjectOperations = entry.getValue();
-			Collection<? extends ResourceAttribute<?>> allIdentifiers = resourceObjectOperations.getAllIdentifiers();
-			if (allIdentifiers == null || allIdentifiers.isEmpty()) {
-				allIdentifiers = primaryIdentifiers;
+		EntitlementBatchingType batching = entitlementBatcher.getConfiguration(subjectCtx.getResource());
+		
+		roMap = executeEntitlementsAsConnectorBatch(subjectCtx, roMap, batching, parentResult);
+		
+		// Announce the batchable modifications, so the batches do not wait for us in vain (and we do not wait
+		// for the others if there is nobody else modifying the same entitlements).
+		EntitlementModificationBatcher.Participation participation = null;
+		if (batching != null) {
+			List<ResourceObjectDiscriminator> batchableDiscriminators = new ArrayList<>();
+			for (Entry<ResourceObjectDiscriminator,ResourceObjectOperations> entry: roMap.entrySet()) {
+				if (entitlementBatcher.isBatchable(entry.getValue().getOperations())) {
+					batchableDiscriminators.add(entry.getKey());
+				}
 			}
-			Collection<Operation> operations = resourceObjectOperations.getOperations();
+			participation = entitlementBatcher.enter(subjectCtx.getResource().getOid(), batchableDiscriminators);
+		}
+		
+		try {
+			for (Entry<ResourceObjectDiscriminator,ResourceObjectOperations> entry: roMap.entrySet()) {
+				ResourceObjectDiscriminator disc = entry.getKey();
+				ProvisioningContext entitlementCtx = entry.getValue().getResourceObjectContext();
+				Collection<? extends ResourceAttribute<?>> primaryIdentifiers = disc.getPrimaryIdentifiers();
+				ResourceObjectOperations resourceObjectOperations = entry.getValue();
+				Collection<? extends ResourceAttribute<?>> allIdentifiers = resourceObjectOperations.getAllIdentifiers();
+				if (allIdentifiers == null || allIdentifiers.isEmpty()) {
+					allIdentifiers = primaryIdentifiers;
+				}
+				Collection<Operation> operations = resourceObjectOperations.getOperations();
 			
-			if (LOGGER.isTraceEnabled()) {
-				LOGGER.trace("Excuting entitlement change identifiers={}:\n{}", allIdentifiers, DebugUtil.debugDump(operations, 1));
-			}
+				if (LOGGER.isTraceEnabled()) {
+					LOGGER.trace("Excuting entitlement change identifiers={}:\n{}", allIdentifiers, DebugUtil.debugDump(operations, 1));
+				}
 			
-			OperationResult result = parentResult.createMinorSubresult(OPERATION_MODIFY_ENTITLEMENT);
-			try {
+				OperationResult result = parentResult.createMinorSubresult(OPERATION_MODIFY_ENTITLEMENT);
+				try {
 				
-				executeModify(entitlementCtx, entry.getValue().getCurrentShadow(), allIdentifiers, operations, result);
+					if (batching != null && entitlementBatcher.isBatchable(operations)) {
+						entitlementBatcher.execute(participation, entitlementCtx, disc, allIdentifiers, resourceObjectOperations, batching,
+								(ctx, currentShadow, identifiers, ops, opResult) -> executeModify(ctx, currentShadow, identifiers, ops, opResult),
+								result);
+					} else {
+						executeModify(entitlementCtx, entry.getValue().getCurrentShadow(), allIdentifiers, operations, result);
+					}
 				
-				result.recordSuccess();
+					result.recordSuccess();
 				
-			} catch (ObjectNotFoundException | CommunicationException | SchemaException | SecurityViolationException | ConfigurationException | ObjectAlreadyExistsException | ExpressionEvaluationException e) {
-				// We need to handle this specially. 
-				// E.g. ObjectNotFoundException means that the entitlement object was not found,
-				// not that the subject was not found. It we throw ObjectNotFoundException here it may be
-				// interpreted by the consistency code to mean that the subject is missing. Which is not
-				// true. And that may cause really strange reactions. In fact we do not want to throw the
-				// exception at all, because the primary operation was obviously successful. So just 
-				// properly record the operation in the result.
-				LOGGER.error("Error while modifying entitlement {} of {}: {}", entitlementCtx, subjectCtx, e.getMessage(), e);
-				result.recordFatalError(e);
-			} catch (RuntimeException | Error e) {
-				LOGGER.error("Error while modifying entitlement {} of {}: {}", entitlementCtx, subjectCtx, e.getMessage(), e);
-				result.recordFatalError(e);
-				throw e;
-			}
+				} catch (CommonException e) {
+					// We need to handle this specially. 
+					// E.g. ObjectNotFoundException means that the entitlement object was not found,
+					// not that the subject was not found. It we throw ObjectNotFoundException here it may be
+					// interpreted by the consistency code to mean that the subject is missing. Which is not
+					// true. And that may cause really strange reactions. In fact we do not want to throw the
+					// exception at all, because the primary operation was obviously successful. So just 
+					// properly record the operation in the result.
+					LOGGER.error("Error while modifying entitlement {} of {}: {}", entitlementCtx, subjectCtx, e.getMessage(), e);
+					result.recordFatalError(e);
+				} catch (RuntimeException | Error e) {
+					LOGGER.error("Error while modifying entitlement {} of {}: {}", entitlementCtx, subjectCtx, e.getMessage(), e);
+					result.recordFatalError(e);
+					throw e;
+				}
 			
+			}
+		} finally {
+			if (participation != null) {
+				entitlementBatcher.exit(participation);
+			}
+		}
+	}
+
+	/**
+	 * Modifications of different entitlement objects are independent, so they are sent to the connector as one batch
+	 * if the connector supports it (ConnId pipelines them over the connector pool). Only plain modifications qualify:
+	 * no entitlement batching, no READ+REPLACE, no duplicate value filtering and a single operation wave.
+	 * The remaining modifications are returned to be executed one by one.
+	 */
+	private Map<ResourceObjectDiscriminator, ResourceObjectOperations> executeEntitlementsAsConnectorBatch(
+			ProvisioningContext subjectCtx, Map<ResourceObjectDiscriminator, ResourceObjectOperations> roMap,
+			EntitlementBatchingType batching, OperationResult parentResult) {
+		if (roMap.size() < 2) {
+			return roMap;
+		}
+		Map<ResourceObjectDiscriminator, ResourceObjectOperations> remaining = new HashMap<>();
+		List<BatchOperation> batchOperations = new ArrayList<>();
+		ConnectorInstance connector;
+		try {
+			if (ResourceTypeUtil.isAvoidDuplicateValues(subjectCtx.getResource())
+					|| !ResourceTypeUtil.isUpdateCapabilityEnabled(subjectCtx.getResource())) {
+				return roMap;
+			}
+			connector = subjectCtx.getConnector(UpdateCapabilityType.class, parentResult);
+			if (!connector.isBatchSupported()) {
+				return roMap;
+			}
+			for (Entry<ResourceObjectDiscriminator,ResourceObjectOperations> entry: roMap.entrySet()) {
+				ResourceObjectOperations resourceObjectOperations = entry.getValue();
+				ProvisioningContext entitlementCtx = resourceObjectOperations.getResourceObjectContext();
+				RefinedObjectClassDefinition objectClassDefinition = entitlementCtx.getObjectClassDefinition();
+				Collection<? extends ResourceAttribute<?>> allIdentifiers = resourceObjectOperations.getAllIdentifiers();
+				if (allIdentifiers == null || allIdentifiers.isEmpty()) {
+					allIdentifiers = entry.getKey().getPrimaryIdentifiers();
+				}
+				Collection<Operation> operations = resourceObjectOperations.getOperations();
+				if (operations.isEmpty()
+						|| batching != null && entitlementBatcher.isBatchable(operations)
+						|| !ShadowUtil.hasPrimaryIdentifier(allIdentifiers, objectClassDefinition)
+						|| sortOperationsIntoWaves(operations, objectClassDefinition).size() > 1
+						|| !determineReadReplace(entitlementCtx, operations, objectClassDefinition).isEmpty()) {
+					remaining.put(entry.getKey(), resourceObjectOperations);
+				} else {
+					batchOperations.add(BatchOperation.modify(objectClassDefinition, resourceObjectOperations.getCurrentShadow(),
+							cloneIdentifiers(allIdentifiers), operations));
+				}
+			}
+		} catch (CommonException e) {
+			// The modifications will be executed one by one, which reports the problem properly.
+			LOGGER.debug("Cannot execute entitlement changes as a batch: {}", e.getMessage(), e);
+			return roMap;
+		}
+		if (batchOperations.size() < 2) {
+			return roMap;
+		}
+
+		LOGGER.trace("Executing {} entitlement changes as a connector batch", batchOperations.size());
+		OperationResult result = parentResult.createMinorSubresult(OPERATION_MODIFY_ENTITLEMENT);
+		result.addParam("batchSize", batchOperations.size());
+		RuntimeException runtimeException = null;
+		ResourceOperationLimiter.Permit permit = null;
+		try {
+			permit = acquireOperationPermit(subjectCtx, result);
+			for (BatchOperationResult batchOperationResult : connector.executeBatch(batchOperations, subjectCtx, result)) {
+				Throwable e = batchOperationResult.getException();
+				if (e == null) {
+					continue;
+				}
+				// See executeEntitlements: errors of entitlement changes are recorded, not thrown.
+				LOGGER.error("Error while modifying entitlement {} of {}: {}", batchOperationResult.getOperation(), subjectCtx, e.getMessage(), e);
+				if (e instanceof CommunicationException || e instanceof GenericFrameworkException) {
+					permit.recordFailure();
+				}
+				if (e instanceof RuntimeException && runtimeException == null) {
+					runtimeException = (RuntimeException) e;
+				}
+			}
+			result.computeStatus();
+		} catch (CommonException e) {
+			LOGGER.error("Error while modifying entitlements of {}: {}", subjectCtx, e.getMessage(), e);
+			result.recordFatalError(e);
+		} finally {
+			if (permit != null) {
+				permit.release();
+			}
 		}
+		if (runtimeException != null) {
+			throw runtimeException;
+		}
+		return remaining;
 	}
 
 	public SearchResultMetadata searchResourceObjects(final ProvisioningContext ctx,
@@ -1238,6 +1373,7 @@ public class ResourceObjectConverter {
 		}
 
 		ConnectorInstance connector = ctx.getConnector(ReadCapabilityType.class, parentResult);
+		operationLimiter.checkCircuit(ctx);
 		
 		SearchResultMetadata metadata = null;
 		try {
@@ -1353,10 +1489,30 @@ public class ResourceObjectConverter {
 			OperationResult parentResult) throws ObjectNotFoundException,
 			CommunicationException, SchemaException, SecurityViolationException, ConfigurationException, ExpressionEvaluationException {
 
-		PrismObject<ShadowType> resourceObject = resourceObjectReferenceResolver.fetchResourceObject(ctx, identifiers, attributesToReturn, parentResult);
+		PrismObject<ShadowType> resourceObject;
+		ResourceOperationLimiter.Permit permit = acquireOperationPermit(ctx, parentResult);
+		try {
+			resourceObject = resourceObjectReferenceResolver.fetchResourceObject(ctx, identifiers, attributesToReturn, parentResult);
+		} catch (CommunicationException | GenericConnectorException e) {
+			permit.recordFailure();
+			throw e;
+		} finally {
+			permit.release();
+		}
 		return postProcessResourceObjectRead(ctx, resourceObject, fetchAssociations, parentResult);
 	}
 
+	private ResourceOperationLimiter.Permit acquireOperationPermit(ProvisioningContext ctx, OperationResult result)
+			throws CommunicationException, ObjectNotFoundException, SchemaException, ConfigurationException,
+			ExpressionEvaluationException {
+		try {
+			return operationLimiter.acquire(ctx);
+		} catch (CommunicationException e) {
+			result.recordFatalError(e);
+			throw e;
+		}
+	}
+
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	private void applyAfterOperationAttributes(PrismObject<ShadowType> shadow,
 			Collection<ResourceAttribute<?>> resourceAttributesAfterAdd) throws SchemaException {
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.impl;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.common.Clock;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.prism.xml.ns._public.query_3.SearchFilterType;
+
+/**
+ * Keeps recently computed numbers of resource objects, so repeated count operations
+ * (e.g. paging in GUI, task progress estimation) do not need to go to the resource.
+ *
+ * Entries are bound to a specific resource version, so they are not used after the resource
+ * definition changes. Otherwise they simply expire after configured time to live.
+ *
+ * Filters are compared in their serialized (XNode) form, like in the repository cache, so equivalent
+ * filters created by different clients share the entry.
+ *
+ * See CountObjectsCachingType for the configuration.
+ */
+@Component
+public class ResourceObjectCountCache {
+
+	private static final Trace LOGGER = TraceManager.getTrace(ResourceObjectCountCache.class);
+
+	private static final int MAX_ENTRIES = 10000;
+
+	@Autowired private Clock clock;
+
+	private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+	public Integer get(String resourceOid, String resourceVersion, SearchFilterType filter) {
+		Key key = new Key(resourceOid, resourceVersion, filter);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.expiresAt < clock.currentTimeMillis()) {
+			entries.remove(key, entry);
+			return null;
+		}
+		LOGGER.trace("Using cached number of objects for {}: {}", key, entry.count);
+		return entry.count;
+	}
+
+	public void put(String resourceOid, String resourceVersion, SearchFilterType filter, int count, long timeToLive) {
+		if (entries.size() >= MAX_ENTRIES) {
+			// Very unlikely (only a limited set of queries is usually counted), so we do not bother with LRU here.
+			LOGGER.debug("Too many cached object counts ({}), clearing the cache", entries.size());
+			entries.clear();
+		}
+		entries.put(new Key(resourceOid, resourceVersion, filter), new Entry(count, clock.currentTimeMillis() + timeToLive));
+	}
+
+	private static class Entry {
+		private final int count;
+		private final long expiresAt;
+
+		private Entry(int count, long expiresAt) {
+			this.count = count;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private static class Key {
+		private final String resourceOid;
+		private final String resourceVersion;
+		private final SearchFilterType filter;
+
+		private Key(String resourceOid, String resourceVersion, SearchFilterType filter) {
+			this.resourceOid = resourceOid;
+			this.resourceVersion = resourceVersion;
+			this.filter = filter;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return resourceOid.equals(other.resourceOid) && Objects.equals(resourceVersion, other.resourceVersion)
+					&& Objects.equals(filter, other.filter);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(resourceOid, resourceVersion, filter);
+		}
+
+		@Override
+		public String toString() {
+			return resourceOid + "(" + resourceVersion + "): " + filter;
+		}
+	}
+}
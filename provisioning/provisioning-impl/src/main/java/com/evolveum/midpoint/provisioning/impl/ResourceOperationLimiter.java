@@ -0,0 +1,333 @@
+/**
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.impl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.datatype.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.common.Clock;
+import com.evolveum.midpoint.schema.LabeledString;
+import com.evolveum.midpoint.util.exception.CommunicationException;
+import com.evolveum.midpoint.util.exception.ConfigurationException;
+import com.evolveum.midpoint.util.exception.ExpressionEvaluationException;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceOperationLimiterType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+
+/**
+ * Limits concurrent connector operations on individual resources (AIMD-style adaptive limit)
+ * and stops sending operations to resources that keep failing (circuit breaker).
+ *
+ * The state is kept per resource OID on this node. Nested operations on the same resource
+ * invoked by a thread that already holds a permit (e.g. fetch during modify) are not limited,
+ * as that could lead to a deadlock.
+ *
+ * See ResourceOperationLimiterType for the configuration.
+ */
+@Component
+public class ResourceOperationLimiter {
+
+	private static final Trace LOGGER = TraceManager.getTrace(ResourceOperationLimiter.class);
+
+	private static final long DEFAULT_ACQUIRE_TIMEOUT = 30000L;
+	private static final long DEFAULT_OPEN_CIRCUIT_DURATION = 30000L;
+	private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+	private static final double DECREASE_FACTOR = 0.5;
+
+	private static final ThreadLocal<Set<String>> RESOURCES_HELD = ThreadLocal.withInitial(HashSet::new);
+
+	@Autowired private Clock clock;
+
+	private final Map<String, ResourceLimit> limits = new ConcurrentHashMap<>();
+
+	/**
+	 * Waits for a free slot for an operation on the resource. The returned permit has to be released
+	 * (in a finally block); failures indicating problems of the resource should be recorded on it before that.
+	 *
+	 * @throws CommunicationException if the circuit is open or no slot is available in time
+	 */
+	public Permit acquire(ProvisioningContext ctx) throws CommunicationException, ObjectNotFoundException,
+			SchemaException, ConfigurationException, ExpressionEvaluationException {
+		ResourceType resource = ctx.getResource();
+		ResourceOperationLimiterType config = getConfiguration(resource);
+		if (config == null || RESOURCES_HELD.get().contains(resource.getOid())) {
+			return Permit.NONE;
+		}
+		ResourceLimit limit = limits.computeIfAbsent(resource.getOid(), ResourceLimit::new);
+		boolean probe = limit.acquire(config, resource, clock.currentTimeMillis());
+		RESOURCES_HELD.get().add(resource.getOid());
+		return new Permit(this, limit, config, probe, clock.currentTimeMillis());
+	}
+
+	/**
+	 * Fails fast if the circuit for the resource is open. Used for operations that are not limited
+	 * by the number of slots (e.g. searches).
+	 */
+	public void checkCircuit(ProvisioningContext ctx) throws CommunicationException, ObjectNotFoundException,
+			SchemaException, ConfigurationException, ExpressionEvaluationException {
+		ResourceType resource = ctx.getResource();
+		if (getConfiguration(resource) == null) {
+			return;
+		}
+		ResourceLimit limit = limits.get(resource.getOid());
+		if (limit != null) {
+			limit.checkCircuit(resource, clock.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Current state of limits for individual resources (for diagnostics).
+	 */
+	public List<LabeledString> getStatistics() {
+		List<LabeledString> rv = new ArrayList<>();
+		for (ResourceLimit limit : limits.values()) {
+			rv.add(new LabeledString("Operation limiter for resource " + limit.resourceOid, limit.shortDump()));
+		}
+		return rv;
+	}
+
+	private void release(Permit permit) {
+		RESOURCES_HELD.get().remove(permit.limit.resourceOid);
+		long now = clock.currentTimeMillis();
+		permit.limit.release(permit.config, permit.probe, permit.failed, now - permit.startTimestamp, now);
+	}
+
+	private ResourceOperationLimiterType getConfiguration(ResourceType resource) {
+		if (resource.getOid() == null || resource.getConsistency() == null) {
+			return null;
+		}
+		return resource.getConsistency().getOperationLimiter();
+	}
+
+	private static long toMillis(Duration duration, long defaultValue) {
+		return duration != null ? duration.getTimeInMillis(new Date()) : defaultValue;
+	}
+
+	public static class Permit {
+
+		private static final Permit NONE = new Permit(null, null, null, false, 0L);
+
+		private final ResourceOperationLimiter limiter;
+		private final ResourceLimit limit;
+		private final ResourceOperationLimiterType config;
+		private final boolean probe;
+		private final long startTimestamp;
+		private boolean failed;
+		private boolean released;
+
+		private Permit(ResourceOperationLimiter limiter, ResourceLimit limit, ResourceOperationLimiterType config,
+				boolean probe, long startTimestamp) {
+			this.limiter = limiter;
+			this.limit = limit;
+			this.config = config;
+			this.probe = probe;
+			this.startTimestamp = startTimestamp;
+		}
+
+		/**
+		 * Records that the operation failed in a way that indicates a problem of the resource
+		 * (e.g. communication error), as opposed to e.g. schema violation or "already exists" error.
+		 */
+		public void recordFailure() {
+			if (limit != null) {
+				failed = true;
+			}
+		}
+
+		public void release() {
+			if (limit != null && !released) {
+				released = true;
+				limiter.release(this);
+			}
+		}
+	}
+
+	private enum CircuitState {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private static class ResourceLimit {
+
+		private final String resourceOid;
+
+		private double currentLimit = Double.MAX_VALUE;
+		private int inFlight;
+		private int consecutiveFailures;
+		private CircuitState circuitState = CircuitState.CLOSED;
+		private long openUntil;
+		private boolean probeInProgress;
+
+		// statistics
+		private long operations;
+		private long failures;
+		private long slowOperations;
+		private long rejected;
+		private long circuitOpenings;
+
+		private ResourceLimit(String resourceOid) {
+			this.resourceOid = resourceOid;
+		}
+
+		/**
+		 * @return true if the operation is a probe in half-open circuit state
+		 */
+		private synchronized boolean acquire(ResourceOperationLimiterType config, ResourceType resource, long now)
+				throws CommunicationException {
+			checkCircuit(resource, now);
+			int effectiveLimit = applyConfiguration(config);
+			boolean probe = circuitState == CircuitState.HALF_OPEN;
+			if (probe) {
+				probeInProgress = true;         // no other operations until the probe finishes
+			}
+			long deadline = System.currentTimeMillis() + toMillis(config.getAcquireTimeout(), DEFAULT_ACQUIRE_TIMEOUT);
+			boolean acquired = false;
+			try {
+				while (inFlight >= effectiveLimit) {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						rejected++;
+						throw new CommunicationException("Timed out waiting for a free slot for an operation on " + resource
+								+ " (" + inFlight + " operations in progress)");
+					}
+					try {
+						wait(remaining);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new SystemException("Interrupted while waiting for a free slot for an operation on " + resource, e);
+					}
+					effectiveLimit = getEffectiveLimit(config);
+				}
+				inFlight++;
+				acquired = true;
+				return probe;
+			} finally {
+				if (probe && !acquired) {
+					probeInProgress = false;
+				}
+			}
+		}
+
+		private synchronized void checkCircuit(ResourceType resource, long now) throws CommunicationException {
+			if (circuitState == CircuitState.OPEN && now >= openUntil) {
+				LOGGER.debug("Circuit for {} is half-open, letting a probe operation through", resource);
+				circuitState = CircuitState.HALF_OPEN;
+			}
+			if (circuitState == CircuitState.OPEN || circuitState == CircuitState.HALF_OPEN && probeInProgress) {
+				rejected++;
+				throw new CommunicationException("Operations on " + resource + " are suspended because the resource keeps"
+						+ " failing (" + consecutiveFailures + " consecutive failures)");
+			}
+		}
+
+		private synchronized void release(ResourceOperationLimiterType config, boolean probe, boolean failed,
+				long duration, long now) {
+			inFlight--;
+			operations++;
+			if (probe) {
+				probeInProgress = false;
+			}
+			if (failed) {
+				failures++;
+				consecutiveFailures++;
+				decrease(config);
+				int failureThreshold = config.getFailureThreshold() != null ? config.getFailureThreshold() : DEFAULT_FAILURE_THRESHOLD;
+				if (probe || failureThreshold > 0 && consecutiveFailures >= failureThreshold) {
+					openCircuit(config, now);
+				}
+			} else {
+				consecutiveFailures = 0;
+				if (circuitState == CircuitState.HALF_OPEN) {
+					LOGGER.info("Probe operation on resource {} succeeded, closing the circuit", resourceOid);
+					circuitState = CircuitState.CLOSED;
+				}
+				if (config.getLatencyThreshold() != null && duration > toMillis(config.getLatencyThreshold(), 0L)) {
+					slowOperations++;
+					decrease(config);
+				} else {
+					increase(config);
+				}
+			}
+			notifyAll();
+		}
+
+		private void openCircuit(ResourceOperationLimiterType config, long now) {
+			if (circuitState != CircuitState.OPEN) {
+				circuitOpenings++;
+				LOGGER.warn("Opening the circuit for resource {} after {} consecutive failures", resourceOid, consecutiveFailures);
+			}
+			circuitState = CircuitState.OPEN;
+			openUntil = now + toMillis(config.getOpenCircuitDuration(), DEFAULT_OPEN_CIRCUIT_DURATION);
+		}
+
+		/**
+		 * Brings the current limit within the configured bounds (the configuration might have changed
+		 * since the last operation).
+		 *
+		 * @return the effective limit
+		 */
+		private int applyConfiguration(ResourceOperationLimiterType config) {
+			if (config.getMaxConcurrentOperations() != null) {
+				currentLimit = Math.max(getMin(config), Math.min(currentLimit, config.getMaxConcurrentOperations()));
+			}
+			return getEffectiveLimit(config);
+		}
+
+		private int getEffectiveLimit(ResourceOperationLimiterType config) {
+			return config.getMaxConcurrentOperations() != null ? (int) currentLimit : Integer.MAX_VALUE;
+		}
+
+		private void increase(ResourceOperationLimiterType config) {
+			if (config.getMaxConcurrentOperations() != null) {
+				currentLimit = Math.min(config.getMaxConcurrentOperations(), currentLimit + 1.0 / currentLimit);
+			}
+		}
+
+		private void decrease(ResourceOperationLimiterType config) {
+			if (config.getMaxConcurrentOperations() != null) {
+				currentLimit = Math.max(getMin(config), Math.min(currentLimit, config.getMaxConcurrentOperations()) * DECREASE_FACTOR);
+			}
+		}
+
+		private int getMin(ResourceOperationLimiterType config) {
+			return config.getMinConcurrentOperations() != null ? Math.max(1, config.getMinConcurrentOperations()) : 1;
+		}
+
+		private synchronized String shortDump() {
+			return "circuit=" + circuitState
+					+ ", limit=" + (currentLimit == Double.MAX_VALUE ? "unlimited" : String.format("%.1f", currentLimit))
+					+ ", inFlight=" + inFlight
+					+ ", operations=" + operations
+					+ ", failures=" + failures
+					+ ", slow=" + slowOperations
+					+ ", rejected=" + rejected
+					+ ", circuitOpenings=" + circuitOpenings;
+		}
+	}
+}
@@ -66,6 +66,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 import com.evolveum.midpoint.xml.ns._public.resource.capabilities_3.CountObjectsCapabilityType;
 import com.evolveum.midpoint.xml.ns._public.resource.capabilities_3.CountObjectsSimulateType;
 import com.evolveum.midpoint.xml.ns._public.resource.capabilities_3.ReadCapabilityType;
+import com.evolveum.prism.xml.ns._public.query_3.SearchFilterType;
 import com.evolveum.prism.xml.ns._public.types_3.ChangeTypeType;
 import com.evolveum.prism.xml.ns._public.types_3.ObjectDeltaType;
 import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
@@ -82,6 +83,7 @@ import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -120,6 +122,7 @@ public abstract class ShadowCache {
 	@Autowired private TaskManager taskManager;
 	@Autowired private ChangeNotificationDispatcher changeNotificationDispatcher;
 	@Autowired private ProvisioningContextFactory ctxFactory;
+	@Autowired private ResourceObjectCountCache countCache;
 	@Autowired private Protector protector;
 
 	private static final Trace LOGGER = TraceManager.getTrace(ShadowCache.class);
@@ -404,7 +407,8 @@ public abstract class ShadowCache {
 		}
 		PointInTimeType pit = GetOperationOptions.getPointInTimeType(SelectorOptions.findRootOptions(options));
 		if (pit != null) {
-			if (pit != PointInTimeType.CACHED) {
+			// Future state can be computed from the cached one, as pending operations are applied to it anyway.
+			if (pit != PointInTimeType.CACHED && pit != PointInTimeType.FUTURE) {
 				return false;
 			}
 		}
@@ -1950,6 +1954,51 @@ public abstract class ShadowCache {
 
 		RefinedObjectClassDefinition objectClassDef = ctx.getObjectClassDefinition();
 		ResourceType resourceType = ctx.getResource();
+
+		CountObjectsCachingType countCaching = getCountObjectsCaching(objectClassDef, resourceType);
+		if (countCaching != null && countCaching.getEstimate() == CountObjectsEstimateType.REPOSITORY
+				&& !hasAttributeFilter(query)) {
+			// Only coordinates (resource, object class, kind, intent) are in the query, so it can be used for the repository.
+			int count = repositoryService.countObjects(ShadowType.class, ObjectQuery.createObjectQuery(query.getFilter()), null, result);
+			LOGGER.trace("Estimated number of objects for {} using repository shadows: {}", ctx, count);
+			result.recordSuccessIfUnknown();
+			return count;
+		}
+
+		long timeToLive = countCaching != null && countCaching.getTimeToLive() != null
+				? countCaching.getTimeToLive().getTimeInMillis(new Date()) : 0L;
+		SearchFilterType cacheKey = timeToLive > 0 ? QueryJaxbConvertor.createSearchFilterType(query.getFilter(), prismContext) : null;
+		if (cacheKey != null) {
+			Integer cachedCount = countCache.get(resourceType.getOid(), resourceType.getVersion(), cacheKey);
+			if (cachedCount != null) {
+				result.recordSuccessIfUnknown();
+				return cachedCount;
+			}
+		}
+
+		Integer count = countObjectsOnResource(ctx, objectClassDef, query, task, result);
+		if (cacheKey != null && count != null) {
+			countCache.put(resourceType.getOid(), resourceType.getVersion(), cacheKey, count, timeToLive);
+		}
+		return count;
+	}
+
+	private CountObjectsCachingType getCountObjectsCaching(RefinedObjectClassDefinition objectClassDef, ResourceType resourceType) {
+		CachingPolicyType caching = objectClassDef.getCaching() != null ? objectClassDef.getCaching() : resourceType.getCaching();
+		return caching != null ? caching.getCountObjects() : null;
+	}
+
+	private boolean hasAttributeFilter(ObjectQuery query) throws SchemaException {
+		ObjectQuery attributeQuery = createAttributeQuery(query);
+		return attributeQuery != null && attributeQuery.getFilter() != null;
+	}
+
+	private Integer countObjectsOnResource(ProvisioningContext ctx, RefinedObjectClassDefinition objectClassDef,
+			ObjectQuery query, Task task, final OperationResult result)
+			throws SchemaException, ObjectNotFoundException, CommunicationException, ConfigurationException,
+			SecurityViolationException, ExpressionEvaluationException {
+
+		ResourceType resourceType = ctx.getResource();
 		CountObjectsCapabilityType countObjectsCapabilityType = objectClassDef
 				.getEffectiveCapability(CountObjectsCapabilityType.class, resourceType);
 		if (countObjectsCapabilityType == null) {
@@ -2760,7 +2809,24 @@ public abstract class ShadowCache {
 		}
 	}
 	
+	/**
+	 * Creates a context that can be shared by propagation of all the shadows on the resource,
+	 * so the resource and its refined schema are resolved only once.
+	 */
+	public ProvisioningContext createPropagationContext(PrismObject<ResourceType> resource, Task task, OperationResult result) throws ObjectNotFoundException, SchemaException, CommunicationException, ConfigurationException, ExpressionEvaluationException {
+		ProvisioningContext resourceCtx = ctxFactory.create(new ResourceShadowDiscriminator(resource.getOid(), null, null), task, result);
+		resourceCtx.getRefinedSchema();
+		return resourceCtx;
+	}
+
 	public void propagateOperations(PrismObject<ResourceType> resource, PrismObject<ShadowType> shadow, Task task, OperationResult result) throws ObjectNotFoundException, SchemaException, CommunicationException, ConfigurationException, ExpressionEvaluationException, GenericFrameworkException, ObjectAlreadyExistsException, SecurityViolationException {
+		propagateOperations(resource, null, shadow, task, result);
+	}
+
+	/**
+	 * @param resourceCtx context created by createPropagationContext (optional)
+	 */
+	public void propagateOperations(PrismObject<ResourceType> resource, ProvisioningContext resourceCtx, PrismObject<ShadowType> shadow, Task task, OperationResult result) throws ObjectNotFoundException, SchemaException, CommunicationException, ConfigurationException, ExpressionEvaluationException, GenericFrameworkException, ObjectAlreadyExistsException, SecurityViolationException {
 		ResourceConsistencyType resourceConsistencyType = resource.asObjectable().getConsistency();
 		if (resourceConsistencyType == null) {
 			LOGGER.warn("Skipping propagation of {} because no there is no consistency definition in resource", shadow);
@@ -2794,12 +2860,26 @@ public abstract class ShadowCache {
 		}
 		LOGGER.debug("Propagating {} pending operations in {} ", pendingExecutionOperations.size(), shadow);
 
+		ProvisioningContext ctx;
+		if (resourceCtx != null) {
+			ctx = resourceCtx.spawn(shadow);
+			ctx.setTask(task);
+		} else {
+			ctx = ctxFactory.create(shadow, task, result);
+		}
+		ctx.assertDefinition();
+		shadowCaretaker.applyAttributesDefinition(ctx, shadow);
+
+		// All pending deltas are related to this shadow, so we can apply the definitions using the same context
+		// instead of re-reading the shadow from the repository for each delta (as applyDefinition would do).
 		ObjectDelta<ShadowType> operationDelta = null;
 		List<PendingOperationType> sortedOperations = shadowCaretaker.sortPendingOperations(pendingExecutionOperations);
 		for (PendingOperationType pendingOperation: sortedOperations) {
 			ObjectDeltaType pendingDeltaType = pendingOperation.getDelta();
 			ObjectDelta<ShadowType> pendingDelta = DeltaConvertor.createObjectDelta(pendingDeltaType, prismContext);
-			applyDefinition(pendingDelta, shadow.asObjectable(), result);
+			if (!pendingDelta.isDelete()) {
+				shadowCaretaker.applyAttributesDefinition(ctx, pendingDelta);
+			}
 			if (operationDelta == null) {
 				operationDelta = pendingDelta;
 			} else {
@@ -2807,8 +2887,6 @@ public abstract class ShadowCache {
 			}
 		}
 		
-		ProvisioningContext ctx = ctxFactory.create(shadow, task, result);
-		shadowCaretaker.applyAttributesDefinition(ctx, shadow);
 		shadowCaretaker.applyAttributesDefinition(ctx, operationDelta);
 		LOGGER.trace("Merged operation for {}:\n{} ", shadow, operationDelta.debugDumpLazily(1));
 		
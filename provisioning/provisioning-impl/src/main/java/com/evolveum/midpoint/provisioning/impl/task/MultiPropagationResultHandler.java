@@ -15,17 +15,38 @@
  */
 package com.evolveum.midpoint.provisioning.impl.task;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismProperty;
 import com.evolveum.midpoint.prism.query.ObjectFilter;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
+import com.evolveum.midpoint.provisioning.impl.ProvisioningContext;
 import com.evolveum.midpoint.provisioning.impl.ShadowCache;
 import com.evolveum.midpoint.provisioning.ucf.api.GenericFrameworkException;
 import com.evolveum.midpoint.repo.api.PreconditionViolationException;
 import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.repo.cache.RepositoryCache;
 import com.evolveum.midpoint.repo.common.task.AbstractSearchIterativeResultHandler;
 import com.evolveum.midpoint.schema.ResultHandler;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.security.api.SecurityContextManager;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.task.api.TaskManager;
 import com.evolveum.midpoint.util.exception.CommonException;
@@ -43,13 +64,44 @@ public class MultiPropagationResultHandler extends AbstractSearchIterativeResult
 	
 	private static final transient Trace LOGGER = TraceManager.getTrace(MultiPropagationResultHandler.class);
 	
+	private static final String OPERATION_PROPAGATE_SHADOW = MultiPropagationResultHandler.class.getName() + ".propagateShadow";
+	private static final long PROPAGATION_THREAD_KEEP_ALIVE = 60000L;
+	
+	private final TaskManager taskManager;
 	private final RepositoryService repositoryService;
 	private final ShadowCache shadowCache;
+	private final SecurityContextManager securityContextManager;
+	private final int propagationThreads;
+	private final ExecutorService propagationExecutor;		// null if the propagation is not parallel
 
-	public MultiPropagationResultHandler(Task coordinatorTask, String taskOperationPrefix, TaskManager taskManager, RepositoryService repositoryService, ShadowCache shadowCache) {
+	public MultiPropagationResultHandler(Task coordinatorTask, String taskOperationPrefix, TaskManager taskManager,
+			RepositoryService repositoryService, ShadowCache shadowCache, SecurityContextManager securityContextManager) {
 		super(coordinatorTask, taskOperationPrefix, "propagation", "multipropagation", taskManager);
+		this.taskManager = taskManager;
 		this.repositoryService = repositoryService;
 		this.shadowCache = shadowCache;
+		this.securityContextManager = securityContextManager;
+		PrismProperty<Integer> propagationThreadsProperty = coordinatorTask.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_PROPAGATION_THREADS);
+		this.propagationThreads = propagationThreadsProperty != null && propagationThreadsProperty.getRealValue() != null ?
+				propagationThreadsProperty.getRealValue() : 1;
+		this.propagationExecutor = propagationThreads > 1 ? createPropagationExecutor(coordinatorTask) : null;
+	}
+
+	/*
+	 * One executor for all the resources processed by the task. It is shut down when the processing completes.
+	 * Should the task end abruptly, idle threads time out, and as daemons they never prevent the JVM from exiting.
+	 */
+	private ExecutorService createPropagationExecutor(Task coordinatorTask) {
+		String threadNamePrefix = "propagation-" + coordinatorTask.getOid() + "-";
+		AtomicInteger threadNumber = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(propagationThreads, propagationThreads,
+				PROPAGATION_THREAD_KEEP_ALIVE, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, threadNamePrefix + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
 	}
 
 	@Override
@@ -65,22 +117,134 @@ public class MultiPropagationResultHandler extends AbstractSearchIterativeResult
 			.buildFilter();
 		query.setFilter(filter);
 		
-		ResultHandler<ShadowType> handler = 
-				(shadow, result) -> {
-					propagateShadowOperations(resource, shadow, workerTask, result);
-					return true;
-				};
+		// Resource and its schema are resolved only once for all the shadows
+		ProvisioningContext resourceCtx = shadowCache.createPropagationContext(resource, workerTask, taskResult);
 		
-		repositoryService.searchObjectsIterative(ShadowType.class, query, handler, null, false, taskResult);
+		if (propagationExecutor != null) {
+			propagateInParallel(resource, query, workerTask, taskResult);
+		} else {
+			ResultHandler<ShadowType> handler = 
+					(shadow, result) -> {
+						propagateShadowOperations(resource, resourceCtx, shadow, workerTask, result);
+						return true;
+					};
+			
+			repositoryService.searchObjectsIterative(ShadowType.class, query, handler, null, false, taskResult);
+		}
 		
 		LOGGER.trace("Propagation of {} done", resource);
 		
 		return true;
 	}
 
-	protected void propagateShadowOperations(PrismObject<ResourceType> resource, PrismObject<ShadowType> shadow, Task workerTask, OperationResult result) {
+	/**
+	 * Shadows are read by a single repository search and their operations are propagated by the threads
+	 * of the propagation executor. The search is stopped on first error, as in the sequential case.
+	 *
+	 * Provisioning contexts, tasks and operation results are not thread-safe, so each shadow gets its own ones.
+	 * The resource schema was already parsed by the calling thread, so creating a context per shadow is cheap.
+	 */
+	private void propagateInParallel(PrismObject<ResourceType> resource, ObjectQuery query, Task workerTask,
+			OperationResult taskResult) throws CommonException {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		Semaphore slots = new Semaphore(propagationThreads * 2);			// do not keep too many shadows in memory
+		List<Future<?>> futures = new ArrayList<>();
+		List<OperationResult> shadowResults = new ArrayList<>();
+		AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+		try {
+			ResultHandler<ShadowType> handler =
+					(shadow, result) -> {
+						if (firstFailure.get() != null) {
+							return false;
+						}
+						OperationResult shadowResult = new OperationResult(OPERATION_PROPAGATE_SHADOW);
+						shadowResult.addParam("shadow", shadow.getOid());
+						shadowResults.add(shadowResult);
+						Task shadowTask = createShadowTask(workerTask);
+						Runnable propagation = () -> {
+							securityContextManager.setupPreAuthenticatedSecurityContext(authentication);
+							RepositoryCache.enter();
+							try {
+								ProvisioningContext shadowCtx = shadowCache.createPropagationContext(resource, shadowTask, shadowResult);
+								propagateShadowOperations(resource, shadowCtx, shadow, shadowTask, shadowResult);
+								shadowResult.computeStatusIfUnknown();
+							} catch (Throwable t) {
+								shadowResult.recordFatalError(t);
+								firstFailure.compareAndSet(null, t);
+							} finally {
+								RepositoryCache.exit();
+								securityContextManager.setupPreAuthenticatedSecurityContext((Authentication) null);
+								slots.release();
+							}
+						};
+						slots.acquireUninterruptibly();
+						try {
+							futures.add(propagationExecutor.submit(propagation));
+						} catch (RejectedExecutionException e) {
+							// the executor was shut down (the task is being finished), so let's do the work ourselves
+							slots.release();
+							propagateShadowOperations(resource, null, shadow, workerTask, shadowResult);
+							shadowResult.computeStatusIfUnknown();
+						}
+						return workerTask.canRun();
+					};
+			repositoryService.searchObjectsIterative(ShadowType.class, query, handler, null, false, taskResult);
+		} finally {
+			waitForPropagations(resource, futures);
+			for (OperationResult shadowResult : shadowResults) {
+				taskResult.addSubresult(shadowResult);
+			}
+			taskResult.summarize();
+		}
+		Throwable failure = firstFailure.get();
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+	}
+
+	private Task createShadowTask(Task workerTask) {
+		Task shadowTask = taskManager.createTaskInstance(OPERATION_PROPAGATE_SHADOW);
+		shadowTask.setOwner(workerTask.getOwner());
+		shadowTask.setChannel(workerTask.getChannel());
+		return shadowTask;
+	}
+
+	// propagations that were already started are always finished, so their results can be safely collected
+	private void waitForPropagations(PrismObject<ResourceType> resource, List<Future<?>> futures) {
+		boolean interrupted = false;
+		for (Future<?> future : futures) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (InterruptedException e) {
+					LOGGER.debug("Interrupted while waiting for propagation of operations on {}, still waiting", resource);
+					interrupted = true;
+				} catch (ExecutionException e) {
+					// failures are recorded by the propagation itself
+					break;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void completeProcessing(Task task, OperationResult result) {
+		super.completeProcessing(task, result);
+		if (propagationExecutor != null) {
+			propagationExecutor.shutdown();
+		}
+	}
+
+	protected void propagateShadowOperations(PrismObject<ResourceType> resource, ProvisioningContext resourceCtx,
+			PrismObject<ShadowType> shadow, Task workerTask, OperationResult result) {
 		try {
-			shadowCache.propagateOperations(resource, shadow, workerTask, result);
+			shadowCache.propagateOperations(resource, resourceCtx, shadow, workerTask, result);
 		} catch (CommonException | GenericFrameworkException e) {
 			throw new SystemException("Generic provisioning framework error: " + e.getMessage(), e);
 		}
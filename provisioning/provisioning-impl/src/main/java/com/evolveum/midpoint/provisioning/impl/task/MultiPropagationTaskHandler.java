@@ -27,6 +27,7 @@ import com.evolveum.midpoint.repo.common.task.AbstractSearchIterativeTaskHandler
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.security.api.SecurityContextManager;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.task.api.TaskCategory;
 import com.evolveum.midpoint.task.api.TaskManager;
@@ -61,6 +62,7 @@ public class MultiPropagationTaskHandler extends AbstractSearchIterativeTaskHand
 
     @Autowired private TaskManager taskManager;
     @Autowired private ShadowCacheFactory shadowCacheFactory;
+    @Autowired private SecurityContextManager securityContextManager;
     
     private static final Trace LOGGER = TraceManager.getTrace(MultiPropagationTaskHandler.class);
     
@@ -81,7 +83,8 @@ public class MultiPropagationTaskHandler extends AbstractSearchIterativeTaskHand
 			OperationResult opResult) {
     	
     	ShadowCache shadowCache = shadowCacheFactory.getShadowCache(ShadowCacheFactory.Mode.STANDARD);
-    	MultiPropagationResultHandler handler = new MultiPropagationResultHandler(coordinatorTask, getTaskOperationPrefix(), taskManager, repositoryService, shadowCache);
+    	MultiPropagationResultHandler handler = new MultiPropagationResultHandler(coordinatorTask, getTaskOperationPrefix(), taskManager, repositoryService, shadowCache,
+    			securityContextManager);
     	return handler;
     }
 
@@ -16,6 +16,7 @@
 package com.evolveum.midpoint.provisioning.impl.task;
 
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.provisioning.impl.ProvisioningContext;
 import com.evolveum.midpoint.provisioning.impl.ShadowCache;
 import com.evolveum.midpoint.provisioning.ucf.api.GenericFrameworkException;
 import com.evolveum.midpoint.repo.api.PreconditionViolationException;
@@ -40,11 +41,14 @@ public class PropagationResultHandler extends AbstractSearchIterativeResultHandl
 	
 	private final ShadowCache shadowCache;
 	private final PrismObject<ResourceType> resource;
+	private final ProvisioningContext resourceCtx;
 
-	public PropagationResultHandler(Task coordinatorTask, String taskOperationPrefix, TaskManager taskManager, ShadowCache shadowCache, PrismObject<ResourceType> resource) {
+	public PropagationResultHandler(Task coordinatorTask, String taskOperationPrefix, TaskManager taskManager, ShadowCache shadowCache,
+			PrismObject<ResourceType> resource, ProvisioningContext resourceCtx) {
 		super(coordinatorTask, taskOperationPrefix, "propagation", "to "+resource, taskManager);
 		this.shadowCache = shadowCache;
 		this.resource = resource;
+		this.resourceCtx = resourceCtx;
 	}
 
 	protected PrismObject<ResourceType> getResource() {
@@ -55,7 +59,7 @@ public class PropagationResultHandler extends AbstractSearchIterativeResultHandl
 	protected boolean handleObject(PrismObject<ShadowType> shadow, Task workerTask, OperationResult result)
 			throws CommonException, PreconditionViolationException {
 		try {
-			shadowCache.propagateOperations(resource, shadow, workerTask, result);
+			shadowCache.propagateOperations(resource, resourceCtx, shadow, workerTask, result);
 		} catch (GenericFrameworkException e) {
 			throw new SystemException("Generic provisioning framework error: " + e.getMessage(), e);
 		}
@@ -25,6 +25,7 @@ import com.evolveum.midpoint.prism.query.ObjectFilter;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
 import com.evolveum.midpoint.provisioning.api.ProvisioningService;
+import com.evolveum.midpoint.provisioning.impl.ProvisioningContext;
 import com.evolveum.midpoint.provisioning.impl.ShadowCache;
 import com.evolveum.midpoint.provisioning.impl.ShadowCacheFactory;
 import com.evolveum.midpoint.repo.common.task.AbstractSearchIterativeTaskHandler;
@@ -98,7 +99,16 @@ public class PropagationTaskHandler extends AbstractSearchIterativeTaskHandler<S
             return null;
 		}
     	ShadowCache shadowCache = shadowCacheFactory.getShadowCache(ShadowCacheFactory.Mode.STANDARD);
-    	PropagationResultHandler handler = new PropagationResultHandler(coordinatorTask, getTaskOperationPrefix(), taskManager, shadowCache, resource);
+    	ProvisioningContext resourceCtx;
+    	try {
+    		resourceCtx = shadowCache.createPropagationContext(resource, coordinatorTask, opResult);
+		} catch (ObjectNotFoundException | CommunicationException | SchemaException | ConfigurationException
+				| ExpressionEvaluationException e) {
+			opResult.recordFatalError("Error preparing propagation context for " + resource, e);
+            runResult.setRunResultStatus(TaskRunResultStatus.PERMANENT_ERROR);
+            return null;
+		}
+    	PropagationResultHandler handler = new PropagationResultHandler(coordinatorTask, getTaskOperationPrefix(), taskManager, shadowCache, resource, resourceCtx);
     	return handler;
     }
 
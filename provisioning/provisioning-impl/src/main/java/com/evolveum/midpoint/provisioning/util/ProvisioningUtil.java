@@ -562,6 +562,14 @@ public class ProvisioningUtil {
 	public static CachingStategyType getCachingStrategy(ProvisioningContext ctx)
 			throws ObjectNotFoundException, SchemaException, CommunicationException, ConfigurationException, ExpressionEvaluationException {
 		ResourceType resource = ctx.getResource();
+		if (ctx.isUseRefinedDefinition() && !ctx.isWildcard()) {
+			// object type specific policy takes precedence over the resource-wide one
+			RefinedObjectClassDefinition objectClassDefinition = ctx.getObjectClassDefinition();
+			CachingPolicyType objectTypeCaching = objectClassDefinition != null ? objectClassDefinition.getCaching() : null;
+			if (objectTypeCaching != null && objectTypeCaching.getCachingStategy() != null) {
+				return objectTypeCaching.getCachingStategy();
+			}
+		}
 		CachingPolicyType caching = resource.getCaching();
 		if (caching == null || caching.getCachingStategy() == null) {
 			ReadCapabilityType readCapabilityType = ResourceTypeUtil.getEffectiveCapability(resource, ReadCapabilityType.class);
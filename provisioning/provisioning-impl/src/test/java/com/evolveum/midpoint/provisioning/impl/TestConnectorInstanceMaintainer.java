@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.impl;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.LabeledString;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.schema.SearchResultList;
+import com.evolveum.midpoint.schema.constants.MidPointConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.task.api.TaskManager;
+import com.evolveum.midpoint.util.PrettyPrinter;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceConnectorManagementType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+
+/**
+ * Unit tests for ConnectorInstanceMaintainer. The resource manager is mocked, so the tests check only
+ * when the connectors are checked and how the results are reported, not the checks themselves.
+ */
+public class TestConnectorInstanceMaintainer {
+
+	private static final String RESOURCE_OID = "5d8e2a4f-1c7b-4e9a-b6d3-0a2f8c4e7b91";
+
+	private static final long HEALTH_CHECK_INTERVAL = 100L;
+	private static final long WAIT_TIMEOUT = 10000L;
+
+	@BeforeSuite
+	public void setup() throws SchemaException, SAXException, IOException {
+		PrettyPrinter.setDefaultNamespacePrefix(MidPointConstants.NS_MIDPOINT_PUBLIC_PREFIX);
+		PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+	}
+
+	/**
+	 * The connector of a resource configured for warm-up is checked right after start.
+	 */
+	@Test
+	public void test100WarmUpOnStart() throws Exception {
+		PrismObject<ResourceType> resource = createResource(true, null);
+		ResourceManager resourceManager = createResourceManager(resource, true);
+		ConnectorInstanceMaintainer maintainer = createMaintainer(resourceManager, Collections.singletonList(resource));
+
+		try {
+			maintainer.start();
+
+			verify(resourceManager, timeout(WAIT_TIMEOUT)).checkConnectors(any(PrismObject.class), any(OperationResult.class));
+			String statistics = waitForStatistics(maintainer, "checks=1");
+			assertTrue("Warm-up not reported as successful: " + statistics, statistics.contains("failures=0"));
+			assertTrue("Warm-up not reported as successful: " + statistics, statistics.contains("lastSuccess=true"));
+		} finally {
+			maintainer.shutdown();
+		}
+	}
+
+	/**
+	 * The resource is configured for warm-up only after the start. Its connector is warmed up when the change
+	 * is announced.
+	 */
+	@Test
+	public void test110WarmUpAfterChange() throws Exception {
+		PrismObject<ResourceType> resource = createResource(true, null);
+		ResourceManager resourceManager = createResourceManager(resource, true);
+		ConnectorInstanceMaintainer maintainer = createMaintainer(resourceManager, Collections.emptyList());
+
+		try {
+			maintainer.start();
+			Thread.sleep(HEALTH_CHECK_INTERVAL);
+			verify(resourceManager, never()).checkConnectors(any(PrismObject.class), any(OperationResult.class));
+
+			maintainer.resourceChanged(RESOURCE_OID);
+
+			verify(resourceManager, timeout(WAIT_TIMEOUT)).checkConnectors(any(PrismObject.class), any(OperationResult.class));
+			String statistics = waitForStatistics(maintainer, "checks=1");
+			assertTrue("Warm-up not reported as successful: " + statistics, statistics.contains("lastSuccess=true"));
+		} finally {
+			maintainer.shutdown();
+		}
+	}
+
+	/**
+	 * The resource is not warmed up, but its connector is checked periodically. The failing checks are reported
+	 * in the statistics.
+	 */
+	@Test
+	public void test120FailingHealthCheckReported() throws Exception {
+		PrismObject<ResourceType> resource = createResource(false, HEALTH_CHECK_INTERVAL);
+		ResourceManager resourceManager = createResourceManager(resource, false);
+		ConnectorInstanceMaintainer maintainer = createMaintainer(resourceManager, Collections.singletonList(resource));
+
+		try {
+			maintainer.start();
+
+			String statistics = waitForStatistics(maintainer, "lastSuccess=false");
+			assertTrue("Failure not counted: " + statistics, !statistics.contains("failures=0"));
+		} finally {
+			maintainer.shutdown();
+		}
+	}
+
+	private ConnectorInstanceMaintainer createMaintainer(ResourceManager resourceManager,
+			List<PrismObject<ResourceType>> resources) throws Exception {
+		RepositoryService repositoryService = mock(RepositoryService.class);
+		when(repositoryService.searchObjects(eq(ResourceType.class), any(ObjectQuery.class), any(Collection.class),
+				any(OperationResult.class))).thenReturn(new SearchResultList<>(resources));
+
+		Task task = mock(Task.class);
+		when(task.getResult()).thenAnswer(invocation -> new OperationResult(TestConnectorInstanceMaintainer.class.getName() + ".task"));
+		TaskManager taskManager = mock(TaskManager.class);
+		when(taskManager.createTaskInstance(anyString())).thenReturn(task);
+
+		ConnectorInstanceMaintainer maintainer = new ConnectorInstanceMaintainer();
+		ReflectionTestUtils.setField(maintainer, "repositoryService", repositoryService);
+		ReflectionTestUtils.setField(maintainer, "resourceManager", resourceManager);
+		ReflectionTestUtils.setField(maintainer, "taskManager", taskManager);
+		return maintainer;
+	}
+
+	private ResourceManager createResourceManager(PrismObject<ResourceType> resource, boolean checkSucceeds) throws Exception {
+		ResourceManager resourceManager = mock(ResourceManager.class);
+		when(resourceManager.getResource(eq(RESOURCE_OID), any(GetOperationOptions.class), any(Task.class),
+				any(OperationResult.class))).thenReturn(resource);
+		when(resourceManager.checkConnectors(any(PrismObject.class), any(OperationResult.class))).thenReturn(checkSucceeds);
+		return resourceManager;
+	}
+
+	private PrismObject<ResourceType> createResource(boolean warmUp, Long healthCheckInterval) {
+		ResourceType resource = new ResourceType(PrismTestUtil.getPrismContext());
+		resource.setOid(RESOURCE_OID);
+		resource.setName(PrismTestUtil.createPolyStringType("Maintained"));
+		ResourceConnectorManagementType connectorManagement = new ResourceConnectorManagementType();
+		connectorManagement.setWarmUp(warmUp);
+		if (healthCheckInterval != null) {
+			connectorManagement.setHealthCheckInterval(XmlTypeConverter.createDuration(healthCheckInterval));
+		}
+		resource.setConnectorManagement(connectorManagement);
+		return resource.asPrismObject();
+	}
+
+	private String waitForStatistics(ConnectorInstanceMaintainer maintainer, String expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+		List<LabeledString> statistics;
+		do {
+			statistics = maintainer.getStatistics();
+			if (statistics.size() == 1 && statistics.get(0).getData().contains(expected)) {
+				return statistics.get(0).getData();
+			}
+			Thread.sleep(50L);
+		} while (System.currentTimeMillis() < deadline);
+		fail("No '" + expected + "' in connector statistics: " + statistics);
+		return null;        // not reached
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.namespace.QName;
+
+import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
+
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.schema.constants.MidPointConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.PrettyPrinter;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.EntitlementBatchingType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+
+/**
+ * Unit tests for EntitlementModificationBatcher. The batching window is long, so the tests would notice
+ * if any of the callers waited for the window to expire instead of for the announced contributors.
+ */
+public class TestEntitlementModificationBatcher {
+
+	private static final String RESOURCE_OID = "6c2f9d4e-8a1b-4e3c-b7d5-0f9a2e8c1d63";
+	private static final QName OBJECT_CLASS = new QName(MidPointConstants.NS_RI, "GroupObjectClass");
+
+	private static final long WINDOW = 10000L;
+	// well below the window, but enough for a slow build machine
+	private static final long MAX_DURATION = WINDOW / 2;
+
+	@BeforeSuite
+	public void setup() throws SchemaException, SAXException, IOException {
+		PrettyPrinter.setDefaultNamespacePrefix(MidPointConstants.NS_MIDPOINT_PUBLIC_PREFIX);
+		PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+	}
+
+	/**
+	 * There is nobody else modifying the entitlement, so the change is executed right away.
+	 */
+	@Test
+	public void test100SingleCaller() throws Exception {
+		EntitlementModificationBatcher batcher = new EntitlementModificationBatcher();
+		AtomicInteger executions = new AtomicInteger();
+		ResourceObjectDiscriminator discriminator = createDiscriminator();
+
+		long start = System.currentTimeMillis();
+		EntitlementModificationBatcher.Participation participation = batcher.enter(RESOURCE_OID, Collections.singletonList(discriminator));
+		try {
+			execute(batcher, participation, discriminator, executions);
+		} finally {
+			batcher.exit(participation);
+		}
+		long duration = System.currentTimeMillis() - start;
+
+		assertEquals("Wrong number of executions", 1, executions.get());
+		assertTrue("Single caller waited for the batching window: " + duration + " ms", duration < MAX_DURATION);
+	}
+
+	/**
+	 * Two callers announced the modification of the same entitlement. Their changes are executed as one operation,
+	 * as soon as both of them joined the batch.
+	 */
+	@Test
+	public void test110TwoCallers() throws Exception {
+		EntitlementModificationBatcher batcher = new EntitlementModificationBatcher();
+		AtomicInteger executions = new AtomicInteger();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		ResourceObjectDiscriminator discriminator = createDiscriminator();
+
+		long start = System.currentTimeMillis();
+		EntitlementModificationBatcher.Participation participation1 = batcher.enter(RESOURCE_OID, Collections.singletonList(discriminator));
+		EntitlementModificationBatcher.Participation participation2 = batcher.enter(RESOURCE_OID, Collections.singletonList(discriminator));
+		Thread thread1 = startContributor(batcher, participation1, discriminator, executions, failure);
+		Thread thread2 = startContributor(batcher, participation2, discriminator, executions, failure);
+		thread1.join(WINDOW * 2);
+		thread2.join(WINDOW * 2);
+		long duration = System.currentTimeMillis() - start;
+
+		assertNull("Unexpected failure: " + failure.get(), failure.get());
+		assertFalse("Contributors have not finished", thread1.isAlive() || thread2.isAlive());
+		assertEquals("Changes were not batched", 1, executions.get());
+		assertTrue("Callers waited for the batching window: " + duration + " ms", duration < MAX_DURATION);
+	}
+
+	/**
+	 * The other caller announced the modification, but it is done without contributing to the batch.
+	 * The batch must not wait for it.
+	 */
+	@Test
+	public void test120AnnouncedCallerExits() throws Exception {
+		EntitlementModificationBatcher batcher = new EntitlementModificationBatcher();
+		AtomicInteger executions = new AtomicInteger();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		ResourceObjectDiscriminator discriminator = createDiscriminator();
+
+		long start = System.currentTimeMillis();
+		EntitlementModificationBatcher.Participation participation1 = batcher.enter(RESOURCE_OID, Collections.singletonList(discriminator));
+		EntitlementModificationBatcher.Participation participation2 = batcher.enter(RESOURCE_OID, Collections.singletonList(discriminator));
+		Thread thread1 = startContributor(batcher, participation1, discriminator, executions, failure);
+		batcher.exit(participation2);
+		thread1.join(WINDOW * 2);
+		long duration = System.currentTimeMillis() - start;
+
+		assertNull("Unexpected failure: " + failure.get(), failure.get());
+		assertFalse("Contributor has not finished", thread1.isAlive());
+		assertEquals("Wrong number of executions", 1, executions.get());
+		assertTrue("Caller waited for the batching window: " + duration + " ms", duration < MAX_DURATION);
+	}
+
+	private Thread startContributor(EntitlementModificationBatcher batcher,
+			EntitlementModificationBatcher.Participation participation, ResourceObjectDiscriminator discriminator,
+			AtomicInteger executions, AtomicReference<Throwable> failure) {
+		Thread thread = new Thread(() -> {
+			try {
+				execute(batcher, participation, discriminator, executions);
+			} catch (Throwable t) {
+				failure.compareAndSet(null, t);
+			} finally {
+				batcher.exit(participation);
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	private void execute(EntitlementModificationBatcher batcher, EntitlementModificationBatcher.Participation participation,
+			ResourceObjectDiscriminator discriminator, AtomicInteger executions) throws Exception {
+		OperationResult result = new OperationResult(TestEntitlementModificationBatcher.class.getName() + ".execute");
+		ProvisioningContext ctx = new ProvisioningContext(null, result);
+		ResourceType resource = new ResourceType();
+		resource.setOid(RESOURCE_OID);
+		ctx.setResource(resource);
+
+		EntitlementBatchingType config = new EntitlementBatchingType();
+		config.setWindow(XmlTypeConverter.createDuration(WINDOW));
+
+		batcher.execute(participation, ctx, discriminator, discriminator.getPrimaryIdentifiers(),
+				new ResourceObjectOperations(), config,
+				(executorCtx, currentShadow, identifiers, operations, opResult) -> executions.incrementAndGet(),
+				result);
+	}
+
+	private ResourceObjectDiscriminator createDiscriminator() {
+		return new ResourceObjectDiscriminator(OBJECT_CLASS, Collections.emptyList());
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.IOException;
+
+import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.schema.constants.MidPointConstants;
+import com.evolveum.midpoint.schema.internals.InternalCounters;
+import com.evolveum.midpoint.schema.internals.InternalMonitor;
+import com.evolveum.midpoint.util.PrettyPrinter;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+
+/**
+ * Unit tests for ResourceCache: read-only clients get the cached (immutable) resource itself,
+ * other clients get a mutable clone, and a different version is a cache miss.
+ */
+public class TestResourceCache {
+
+	private static final String RESOURCE_OID = "9e4b1d7a-2c6f-4a8e-b3d5-f1a7c0e9d246";
+	private static final String RESOURCE_NAME = "Cached Dummy";
+
+	@BeforeSuite
+	public void setup() throws SchemaException, SAXException, IOException {
+		PrettyPrinter.setDefaultNamespacePrefix(MidPointConstants.NS_MIDPOINT_PUBLIC_PREFIX);
+		PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+	}
+
+	@Test
+	public void test100GetReadOnly() throws Exception {
+		ResourceCache cache = new ResourceCache();
+		cache.put(createResource("1"));
+		long clonesBefore = InternalMonitor.getCount(InternalCounters.RESOURCE_CACHE_CLONE_COUNT);
+
+		PrismObject<ResourceType> resource1 = cache.get(RESOURCE_OID, "1", GetOperationOptions.createReadOnly());
+		PrismObject<ResourceType> resource2 = cache.get(RESOURCE_OID, "1", GetOperationOptions.createReadOnly());
+
+		assertNotNull("Cache miss", resource1);
+		assertSame("Read-only resource was cloned", resource1, resource2);
+		assertTrue("Read-only resource is not immutable", resource1.isImmutable());
+		assertEquals("Wrong name", RESOURCE_NAME, resource1.asObjectable().getName().getOrig());
+		assertEquals("Unexpected clones", clonesBefore, InternalMonitor.getCount(InternalCounters.RESOURCE_CACHE_CLONE_COUNT));
+	}
+
+	@Test
+	public void test110GetMutable() throws Exception {
+		ResourceCache cache = new ResourceCache();
+		cache.put(createResource("1"));
+		long clonesBefore = InternalMonitor.getCount(InternalCounters.RESOURCE_CACHE_CLONE_COUNT);
+
+		PrismObject<ResourceType> resource1 = cache.get(RESOURCE_OID, "1", null);
+		PrismObject<ResourceType> resource2 = cache.get(RESOURCE_OID, "1", null);
+
+		assertNotNull("Cache miss", resource1);
+		assertNotSame("Mutable resource was not cloned", resource1, resource2);
+		assertFalse("Mutable resource is immutable", resource1.isImmutable());
+		resource1.asObjectable().setDescription("changed");
+		assertNull("Change of a clone got into the cache",
+				cache.get(RESOURCE_OID, "1", GetOperationOptions.createReadOnly()).asObjectable().getDescription());
+		assertEquals("Wrong # of clones", clonesBefore + 2, InternalMonitor.getCount(InternalCounters.RESOURCE_CACHE_CLONE_COUNT));
+	}
+
+	@Test
+	public void test120StaleVersion() throws Exception {
+		ResourceCache cache = new ResourceCache();
+		cache.put(createResource("1"));
+
+		assertNull("Unexpected hit of a newer version", cache.get(RESOURCE_OID, "2", GetOperationOptions.createReadOnly()));
+		assertNull("Unexpected hit of a newer version", cache.get(RESOURCE_OID, "2", null));
+
+		cache.put(createResource("2"));
+
+		assertNull("Unexpected hit of a stale version", cache.get(RESOURCE_OID, "1", GetOperationOptions.createReadOnly()));
+		assertNotNull("Cache miss", cache.get(RESOURCE_OID, "2", GetOperationOptions.createReadOnly()));
+		assertEquals("Wrong cached version", "2", cache.getVersion(RESOURCE_OID));
+
+		cache.remove(RESOURCE_OID);
+		assertNull("Unexpected hit after remove", cache.get(RESOURCE_OID, "2", GetOperationOptions.createReadOnly()));
+	}
+
+	private PrismObject<ResourceType> createResource(String version) {
+		ResourceType resource = new ResourceType(PrismTestUtil.getPrismContext());
+		resource.setOid(RESOURCE_OID);
+		resource.setVersion(version);
+		resource.setName(PrismTestUtil.createPolyStringType(RESOURCE_NAME));
+		return resource.asPrismObject();
+	}
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.impl;
+
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
+
+import com.evolveum.midpoint.common.Clock;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.schema.constants.MidPointConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.PrettyPrinter;
+import com.evolveum.midpoint.util.exception.CommunicationException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceConsistencyType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceOperationLimiterType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+
+/**
+ * Unit tests for ResourceOperationLimiter. Operations of "other callers" are started in separate threads,
+ * because nested operations of the same thread are not limited.
+ */
+public class TestResourceOperationLimiter {
+
+	private static final String RESOURCE_OID = "2b7d8c3e-5f4a-4d9b-a1e6-7c0f3b9d2e58";
+
+	private static final long ACQUIRE_TIMEOUT = 200L;
+	private static final long OPEN_CIRCUIT_DURATION = 10000L;
+
+	@BeforeSuite
+	public void setup() throws SchemaException, SAXException, IOException {
+		PrettyPrinter.setDefaultNamespacePrefix(MidPointConstants.NS_MIDPOINT_PUBLIC_PREFIX);
+		PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+	}
+
+	/**
+	 * A failure halves the limit (2 -> 1), so the other caller has to wait. A success increases it again (1 -> 2).
+	 */
+	@Test
+	public void test100LimitDecreaseAndIncrease() throws Exception {
+		ResourceOperationLimiterType config = createConfig(2);
+		config.setFailureThreshold(3);
+		ResourceOperationLimiter limiter = createLimiter(new Clock());
+		ProvisioningContext ctx = createContext(config);
+
+		ResourceOperationLimiter.Permit permit1 = limiter.acquire(ctx);
+		ResourceOperationLimiter.Permit permit2 = acquireInOtherThread(limiter, ctx);
+		permit2.release();
+		permit1.recordFailure();
+		permit1.release();
+
+		ResourceOperationLimiter.Permit permit3 = limiter.acquire(ctx);
+		assertRejectedInOtherThread(limiter, ctx);
+		permit3.release();
+
+		ResourceOperationLimiter.Permit permit4 = limiter.acquire(ctx);
+		ResourceOperationLimiter.Permit permit5 = acquireInOtherThread(limiter, ctx);
+		permit5.release();
+		permit4.release();
+	}
+
+	/**
+	 * Consecutive failures open the circuit. After the open circuit duration one probe operation is let through
+	 * (other operations are still rejected) and its success closes the circuit.
+	 */
+	@Test
+	public void test110CircuitOpenHalfOpenClosed() throws Exception {
+		ResourceOperationLimiterType config = createConfig(null);
+		config.setFailureThreshold(2);
+		config.setOpenCircuitDuration(XmlTypeConverter.createDuration(OPEN_CIRCUIT_DURATION));
+		Clock clock = new Clock();
+		ResourceOperationLimiter limiter = createLimiter(clock);
+		ProvisioningContext ctx = createContext(config);
+
+		for (int i = 0; i < 2; i++) {
+			ResourceOperationLimiter.Permit permit = limiter.acquire(ctx);
+			permit.recordFailure();
+			permit.release();
+		}
+
+		// open
+		assertRejected(limiter, ctx);
+		try {
+			limiter.checkCircuit(ctx);
+			fail("Unexpected success of circuit check");
+		} catch (CommunicationException e) {
+			// expected
+		}
+
+		// half-open
+		clock.overrideDuration(OPEN_CIRCUIT_DURATION + 1000L);
+		ResourceOperationLimiter.Permit probe = limiter.acquire(ctx);
+		assertRejectedInOtherThread(limiter, ctx);
+		probe.release();
+
+		// closed
+		ResourceOperationLimiter.Permit permit1 = limiter.acquire(ctx);
+		ResourceOperationLimiter.Permit permit2 = acquireInOtherThread(limiter, ctx);
+		permit2.release();
+		permit1.release();
+		limiter.checkCircuit(ctx);
+	}
+
+	/**
+	 * There is no free slot, so the other caller gets CommunicationException after the acquire timeout.
+	 */
+	@Test
+	public void test120AcquireTimeout() throws Exception {
+		ResourceOperationLimiter limiter = createLimiter(new Clock());
+		ProvisioningContext ctx = createContext(createConfig(1));
+
+		ResourceOperationLimiter.Permit permit = limiter.acquire(ctx);
+		long start = System.currentTimeMillis();
+		assertRejectedInOtherThread(limiter, ctx);
+		long duration = System.currentTimeMillis() - start;
+		permit.release();
+
+		assertTrue("Caller did not wait for the acquire timeout: " + duration + " ms", duration >= ACQUIRE_TIMEOUT);
+	}
+
+	/**
+	 * A nested operation of the thread that already holds a permit is not limited (it would wait for itself).
+	 * After the outer permit is released, the thread is limited again.
+	 */
+	@Test
+	public void test130NestedOperationBypassesLimit() throws Exception {
+		ResourceOperationLimiter limiter = createLimiter(new Clock());
+		ProvisioningContext ctx = createContext(createConfig(1));
+
+		ResourceOperationLimiter.Permit outer = limiter.acquire(ctx);
+		ResourceOperationLimiter.Permit nested = limiter.acquire(ctx);
+		nested.release();
+		assertRejectedInOtherThread(limiter, ctx);          // the outer permit is still held
+		outer.release();
+
+		ResourceOperationLimiter.Permit permit = limiter.acquire(ctx);
+		assertRejectedInOtherThread(limiter, ctx);          // a real permit again
+		permit.release();
+	}
+
+	private ResourceOperationLimiter createLimiter(Clock clock) {
+		ResourceOperationLimiter limiter = new ResourceOperationLimiter();
+		ReflectionTestUtils.setField(limiter, "clock", clock);
+		return limiter;
+	}
+
+	private ResourceOperationLimiterType createConfig(Integer maxConcurrentOperations) {
+		ResourceOperationLimiterType config = new ResourceOperationLimiterType();
+		config.setMaxConcurrentOperations(maxConcurrentOperations);
+		config.setAcquireTimeout(XmlTypeConverter.createDuration(ACQUIRE_TIMEOUT));
+		return config;
+	}
+
+	private ProvisioningContext createContext(ResourceOperationLimiterType config) {
+		OperationResult result = new OperationResult(TestResourceOperationLimiter.class.getName() + ".createContext");
+		ResourceType resource = new ResourceType();
+		resource.setOid(RESOURCE_OID);
+		ResourceConsistencyType consistency = new ResourceConsistencyType();
+		consistency.setOperationLimiter(config);
+		resource.setConsistency(consistency);
+		ProvisioningContext ctx = new ProvisioningContext(null, result);
+		ctx.setResource(resource);
+		return ctx;
+	}
+
+	private ResourceOperationLimiter.Permit acquireInOtherThread(ResourceOperationLimiter limiter, ProvisioningContext ctx)
+			throws Exception {
+		AtomicReference<ResourceOperationLimiter.Permit> permit = new AtomicReference<>();
+		Exception exception = runInOtherThread(() -> permit.set(limiter.acquire(ctx)));
+		if (exception != null) {
+			throw exception;
+		}
+		assertNotNull("No permit", permit.get());
+		return permit.get();
+	}
+
+	private void assertRejectedInOtherThread(ResourceOperationLimiter limiter, ProvisioningContext ctx) throws Exception {
+		Exception exception = runInOtherThread(() -> limiter.acquire(ctx).release());
+		assertTrue("Expected CommunicationException, got " + exception, exception instanceof CommunicationException);
+	}
+
+	private void assertRejected(ResourceOperationLimiter limiter, ProvisioningContext ctx) throws Exception {
+		try {
+			limiter.acquire(ctx).release();
+			fail("Unexpected success of acquire");
+		} catch (CommunicationException e) {
+			// expected
+		}
+	}
+
+	private Exception runInOtherThread(Operation operation) throws InterruptedException {
+		AtomicReference<Exception> exception = new AtomicReference<>();
+		Thread thread = new Thread(() -> {
+			try {
+				operation.run();
+			} catch (Exception e) {
+				exception.set(e);
+			}
+		});
+		thread.start();
+		thread.join(ACQUIRE_TIMEOUT * 50);
+		assertFalse("Thread has not finished", thread.isAlive());
+		return exception.get();
+	}
+
+	@FunctionalInterface
+	private interface Operation {
+		void run() throws Exception;
+	}
+}
@@ -19,15 +19,25 @@
  */
 package com.evolveum.midpoint.provisioning.impl.dummy;
 
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
+import com.evolveum.icf.dummy.resource.DummyAccount;
+import com.evolveum.icf.dummy.resource.DummyGroup;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.provisioning.ucf.api.BatchOperation;
+import com.evolveum.midpoint.provisioning.ucf.api.ConnectorInstance;
 import com.evolveum.midpoint.repo.cache.RepositoryCache;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
@@ -35,6 +45,7 @@ import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.test.DummyResourceContoller;
 import com.evolveum.midpoint.test.util.Counter;
 import com.evolveum.midpoint.test.util.ParallelTestThread;
+import com.evolveum.midpoint.test.util.TestUtil;
 import com.evolveum.midpoint.util.FailableProducer;
 import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
@@ -67,6 +78,10 @@ public class TestDummyParallelism extends AbstractBasicDummyTest {
 
 	private static final int DUMMY_OPERATION_DELAY_RANGE = 1500;
 
+	private static final String ACCOUNT_BATCHMAN_USERNAME = "batchman";
+	private static final String GROUP_BATCH_A_NAME = "batch-a";
+	private static final String GROUP_BATCH_B_NAME = "batch-b";
+
 	private String accountMorganOid;
 	private String accountElizabethOid;
 
@@ -501,4 +516,62 @@ public class TestDummyParallelism extends AbstractBasicDummyTest {
 		assertSteadyResource();
 	}
 
+	/**
+	 * The account is a member of two groups. Its deletion removes it from both groups. These are independent
+	 * modifications of two entitlement objects, so they are sent to the connector as one batch.
+	 */
+	@Test
+	public void test300DeleteAccountInTwoGroups() throws Exception {
+		final String TEST_NAME = "test300DeleteAccountInTwoGroups";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		dummyResource.addAccount(new DummyAccount(ACCOUNT_BATCHMAN_USERNAME));
+		for (String groupName : Arrays.asList(GROUP_BATCH_A_NAME, GROUP_BATCH_B_NAME)) {
+			DummyGroup group = new DummyGroup(groupName);
+			group.addMember(ACCOUNT_BATCHMAN_USERNAME);
+			dummyResource.addGroup(group);
+		}
+
+		List<PrismObject<ShadowType>> shadows = provisioningService.searchObjects(ShadowType.class,
+				createAccountShadowQuerySecondaryIdentifier(ACCOUNT_BATCHMAN_USERNAME, resource), null, task, result);
+		assertEquals("Wrong number of shadows", 1, shadows.size());
+		String shadowOid = shadows.get(0).getOid();
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		provisioningService.deleteObject(ShadowType.class, shadowOid, null, null, task, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		result.computeStatus();
+		display("Result", result);
+		TestUtil.assertSuccess(result);
+
+		assertNoRepoObject(ShadowType.class, shadowOid);
+		assertNull("Dummy account is not gone", dummyResource.getAccountByUsername(ACCOUNT_BATCHMAN_USERNAME));
+		assertNoMember(dummyResource.getGroupByName(GROUP_BATCH_A_NAME), ACCOUNT_BATCHMAN_USERNAME);
+		assertNoMember(dummyResource.getGroupByName(GROUP_BATCH_B_NAME), ACCOUNT_BATCHMAN_USERNAME);
+
+		List<OperationResult> batchResults = new ArrayList<>();
+		collectSubresults(result, ConnectorInstance.OPERATION_EXECUTE_BATCH, batchResults);
+		assertEquals("Wrong number of batch results", 1, batchResults.size());
+		assertEquals("Wrong number of batch operation results", 2,
+				batchResults.get(0).findSubresults(BatchOperation.OPERATION_EXECUTE).size());
+
+		assertSteadyResource();
+	}
+
+	private void collectSubresults(OperationResult result, String operation, List<OperationResult> found) {
+		for (OperationResult subresult : result.getSubresults()) {
+			if (operation.equals(subresult.getOperation())) {
+				found.add(subresult);
+			}
+			collectSubresults(subresult, operation, found);
+		}
+	}
+
 }
@@ -29,6 +29,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 
@@ -61,6 +62,7 @@ import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.PrismProperty;
 import com.evolveum.midpoint.prism.PrismPropertyDefinition;
 import com.evolveum.midpoint.prism.PrismPropertyValue;
+import com.evolveum.midpoint.prism.delta.ContainerDelta;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.delta.PropertyDelta;
@@ -111,8 +113,11 @@ import com.evolveum.midpoint.xml.ns._public.common.api_types_3.PropertyReference
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ActivationStatusType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ActivationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.CachingMetadataType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.CachingPolicyType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.CapabilityCollectionType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ConnectorType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.CountObjectsCachingType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.CountObjectsEstimateType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.CredentialsType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.LockoutStatusType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
@@ -1951,6 +1956,105 @@ public class TestOpenDj extends AbstractOpenDjTest {
 		assertEquals("Unexpected number of search results", (Integer)14, count);
 	}
 
+	/**
+	 * Counts are cached for an hour. The second count is a cache hit, even if the (equivalent) query
+	 * is a different instance. No connector operation is needed.
+	 */
+	@Test
+	public void test252CountObjectsCached() throws Exception {
+		final String TEST_NAME = "test252CountObjectsCached";
+		TestUtil.displayTestTitle(TEST_NAME);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		CountObjectsCachingType countCaching = new CountObjectsCachingType();
+		countCaching.setTimeToLive(XmlTypeConverter.createDuration("PT1H"));
+		setCountObjectsCaching(countCaching, result);
+
+		Integer count = provisioningService.countObjects(ShadowType.class, parseAllAccountsQuery(), null, task, result);
+		assertEquals("Unexpected number of objects", (Integer)14, count);
+
+		rememberCounter(InternalCounters.CONNECTOR_OPERATION_COUNT);
+
+		// WHEN
+		count = provisioningService.countObjects(ShadowType.class, parseAllAccountsQuery(), null, task, result);
+
+		// THEN
+		result.computeStatus();
+		assertSuccess(result);
+
+		assertEquals("Unexpected number of cached objects", (Integer)14, count);
+		assertCounterIncrement(InternalCounters.CONNECTOR_OPERATION_COUNT, 0);
+	}
+
+	/**
+	 * The cached count has expired, so the objects are counted on the resource again.
+	 */
+	@Test
+	public void test254CountObjectsCacheExpired() throws Exception {
+		final String TEST_NAME = "test254CountObjectsCacheExpired";
+		TestUtil.displayTestTitle(TEST_NAME);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		rememberCounter(InternalCounters.CONNECTOR_OPERATION_COUNT);
+		clock.overrideDuration("PT2H");
+
+		try {
+			// WHEN
+			Integer count = provisioningService.countObjects(ShadowType.class, parseAllAccountsQuery(), null, task, result);
+
+			// THEN
+			result.computeStatus();
+			assertSuccess(result);
+
+			assertEquals("Unexpected number of objects", (Integer)14, count);
+			assertCounterIncrement(InternalCounters.CONNECTOR_OPERATION_COUNT, 1, Integer.MAX_VALUE);
+		} finally {
+			clock.resetOverride();
+		}
+	}
+
+	/**
+	 * The query contains only the coordinates, so the number of objects is estimated using repository shadows,
+	 * without any connector operation.
+	 */
+	@Test
+	public void test256CountObjectsEstimateRepository() throws Exception {
+		final String TEST_NAME = "test256CountObjectsEstimateRepository";
+		TestUtil.displayTestTitle(TEST_NAME);
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+
+		CountObjectsCachingType countCaching = new CountObjectsCachingType();
+		countCaching.setEstimate(CountObjectsEstimateType.REPOSITORY);
+		setCountObjectsCaching(countCaching, result);
+
+		ObjectQuery query = parseAllAccountsQuery();
+		int repoCount = repositoryService.countObjects(ShadowType.class, query, null, result);
+
+		// warm up the resource (it was modified)
+		provisioningService.getObject(ResourceType.class, RESOURCE_OPENDJ_OID, null, task, result);
+		rememberCounter(InternalCounters.CONNECTOR_OPERATION_COUNT);
+
+		try {
+			// WHEN
+			Integer count = provisioningService.countObjects(ShadowType.class, query, null, task, result);
+
+			// THEN
+			result.computeStatus();
+			assertSuccess(result);
+
+			assertEquals("Unexpected estimated number of objects", (Integer)repoCount, count);
+			assertCounterIncrement(InternalCounters.CONNECTOR_OPERATION_COUNT, 0);
+		} finally {
+			setCountObjectsCaching(null, result);
+		}
+	}
+
 	/**
 	 * The exception comes from the resource. There is no shadow for this object.
 	 */
@@ -2901,6 +3005,23 @@ public class TestOpenDj extends AbstractOpenDjTest {
 
 	}
 
+	private ObjectQuery parseAllAccountsQuery() throws SchemaException, IOException {
+		QueryType queryType = PrismTestUtil.parseAtomicValue(QUERY_ALL_ACCOUNTS_FILE, QueryType.COMPLEX_TYPE);
+		return QueryJaxbConvertor.createObjectQuery(ShadowType.class, queryType, prismContext);
+	}
+
+	private void setCountObjectsCaching(CountObjectsCachingType countCaching, OperationResult result) throws Exception {
+		List<CachingPolicyType> caching = new ArrayList<>();
+		if (countCaching != null) {
+			CachingPolicyType cachingPolicy = new CachingPolicyType();
+			cachingPolicy.setCountObjects(countCaching);
+			caching.add(cachingPolicy);
+		}
+		ContainerDelta<CachingPolicyType> delta = ContainerDelta.createModificationReplace(ResourceType.F_CACHING,
+				ResourceType.class, prismContext, caching);
+		repositoryService.modifyObject(ResourceType.class, RESOURCE_OPENDJ_OID, Collections.singletonList(delta), result);
+	}
+
 	protected void assertConnectorOperationIncrement(int expectedIncrementSmart, int expectedIncrementDumb) {
 		assertCounterIncrement(InternalCounters.CONNECTOR_OPERATION_COUNT, expectedIncrementSmart);
 	}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.ucf.api;
+
+import java.util.Collection;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.schema.processor.ObjectClassComplexTypeDefinition;
+import com.evolveum.midpoint.schema.processor.ResourceAttribute;
+import com.evolveum.midpoint.schema.result.AsynchronousOperationResult;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.StateReporter;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * One operation (add, modify or delete of a resource object) that is part of a batch
+ * passed to {@link ConnectorInstance#executeBatch}.
+ *
+ * Operations in one batch must be independent of each other, i.e. they must not touch the same
+ * resource object. The connector may execute them in any order (or concurrently).
+ */
+public class BatchOperation {
+
+	public static final String OPERATION_EXECUTE = BatchOperation.class.getName() + ".execute";
+
+	public enum Type {
+		ADD, MODIFY, DELETE
+	}
+
+	private final Type type;
+	private final ObjectClassComplexTypeDefinition objectClass;
+	private final PrismObject<ShadowType> shadow;
+	private final Collection<? extends ResourceAttribute<?>> identifiers;
+	private final Collection<Operation> operations;
+
+	private BatchOperation(Type type, ObjectClassComplexTypeDefinition objectClass, PrismObject<ShadowType> shadow,
+			Collection<? extends ResourceAttribute<?>> identifiers, Collection<Operation> operations) {
+		this.type = type;
+		this.objectClass = objectClass;
+		this.shadow = shadow;
+		this.identifiers = identifiers;
+		this.operations = operations;
+	}
+
+	/**
+	 * @param additionalOperations the same as for {@link ConnectorInstance#addObject}
+	 */
+	public static BatchOperation add(PrismObject<ShadowType> shadow, Collection<Operation> additionalOperations) {
+		return new BatchOperation(Type.ADD, null, shadow, null, additionalOperations);
+	}
+
+	public static BatchOperation modify(ObjectClassComplexTypeDefinition objectClass, PrismObject<ShadowType> shadow,
+			Collection<? extends ResourceAttribute<?>> identifiers, Collection<Operation> changes) {
+		return new BatchOperation(Type.MODIFY, objectClass, shadow, identifiers, changes);
+	}
+
+	public static BatchOperation delete(ObjectClassComplexTypeDefinition objectClass, PrismObject<ShadowType> shadow,
+			Collection<? extends ResourceAttribute<?>> identifiers, Collection<Operation> additionalOperations) {
+		return new BatchOperation(Type.DELETE, objectClass, shadow, identifiers, additionalOperations);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Null for ADD operations (the object class is taken from the shadow).
+	 */
+	public ObjectClassComplexTypeDefinition getObjectClass() {
+		return objectClass;
+	}
+
+	public PrismObject<ShadowType> getShadow() {
+		return shadow;
+	}
+
+	public Collection<? extends ResourceAttribute<?>> getIdentifiers() {
+		return identifiers;
+	}
+
+	/**
+	 * Changes (for MODIFY) or additional operations (for ADD and DELETE).
+	 */
+	public Collection<Operation> getOperations() {
+		return operations;
+	}
+
+	public OperationResult createResult(OperationResult parentResult) {
+		OperationResult result = parentResult.createSubresult(OPERATION_EXECUTE);
+		result.addParam("type", type.toString());
+		return result;
+	}
+
+	/**
+	 * Result for an operation executed in another thread. The caller attaches it to the parent result
+	 * when the operation is finished.
+	 */
+	public OperationResult createDetachedResult() {
+		OperationResult result = new OperationResult(OPERATION_EXECUTE);
+		result.addParam("type", type.toString());
+		return result;
+	}
+
+	/**
+	 * Executes the operation using the single-object methods of the connector. Errors are not thrown,
+	 * they are recorded in the returned value (and in the result).
+	 *
+	 * @param result result created by {@link #createResult} or {@link #createDetachedResult} specifically for this operation
+	 */
+	public BatchOperationResult execute(ConnectorInstance connector, StateReporter reporter, OperationResult result) {
+		try {
+			AsynchronousOperationResult outcome;
+			switch (type) {
+				case ADD:
+					outcome = connector.addObject(shadow, operations, reporter, result);
+					break;
+				case MODIFY:
+					outcome = connector.modifyObject(objectClass, shadow, identifiers, operations, reporter, result);
+					break;
+				case DELETE:
+					outcome = connector.deleteObject(objectClass, operations, shadow, identifiers, reporter, result);
+					break;
+				default:
+					throw new IllegalStateException("Unknown batch operation type " + type);
+			}
+			result.computeStatus();
+			return new BatchOperationResult(this, outcome, null, result);
+		} catch (CommonException | GenericFrameworkException | RuntimeException e) {
+			result.recordFatalError(e);
+			return new BatchOperationResult(this, null, e, result);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "BatchOperation(" + type + ": " + (shadow != null ? shadow : identifiers) + ")";
+	}
+}
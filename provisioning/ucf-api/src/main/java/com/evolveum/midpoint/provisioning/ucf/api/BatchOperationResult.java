@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.ucf.api;
+
+import com.evolveum.midpoint.schema.result.AsynchronousOperationResult;
+import com.evolveum.midpoint.schema.result.OperationResult;
+
+/**
+ * Outcome of one operation executed as part of a batch.
+ */
+public class BatchOperationResult {
+
+	private final BatchOperation operation;
+	private final AsynchronousOperationResult outcome;
+	private final Throwable exception;
+	private final OperationResult result;
+
+	public BatchOperationResult(BatchOperation operation, AsynchronousOperationResult outcome, Throwable exception,
+			OperationResult result) {
+		this.operation = operation;
+		this.outcome = outcome;
+		this.exception = exception;
+		this.result = result;
+	}
+
+	public BatchOperation getOperation() {
+		return operation;
+	}
+
+	/**
+	 * The value that would be returned by the corresponding single-object method of the connector,
+	 * i.e. AsynchronousOperationReturnValue for ADD and MODIFY. Null if the operation failed.
+	 */
+	public AsynchronousOperationResult getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * The exception that would be thrown by the corresponding single-object method of the connector.
+	 */
+	public Throwable getException() {
+		return exception;
+	}
+
+	public OperationResult getResult() {
+		return result;
+	}
+
+	public boolean isSuccess() {
+		return exception == null && !result.isError();
+	}
+
+	@Override
+	public String toString() {
+		return "BatchOperationResult(" + operation + ": " + (exception != null ? exception : result.getStatus()) + ")";
+	}
+}
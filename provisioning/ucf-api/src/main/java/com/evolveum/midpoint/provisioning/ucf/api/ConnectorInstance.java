@@ -35,6 +35,7 @@ import com.evolveum.midpoint.util.exception.*;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 import com.evolveum.midpoint.xml.ns._public.resource.capabilities_3.PagedSearchCapabilityType;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -67,6 +68,7 @@ public interface ConnectorInstance {
 
 	public static final String OPERATION_CONFIGURE = ConnectorInstance.class.getName() + ".configure";
 	public static final String OPERATION_INITIALIZE = ConnectorInstance.class.getName() + ".initialize";
+	public static final String OPERATION_EXECUTE_BATCH = ConnectorInstance.class.getName() + ".executeBatch";
 
 	/**
 	 *
@@ -279,6 +281,32 @@ public interface ConnectorInstance {
 							 OperationResult parentResult)
 					throws ObjectNotFoundException, CommunicationException, GenericFrameworkException, SchemaException, ConfigurationException;
 
+	/**
+	 * Returns true if the connector can execute batches of operations more efficiently than one by one
+	 * (e.g. using bulk requests or by pipelining them over several connections).
+	 */
+	default boolean isBatchSupported() {
+		return false;
+	}
+
+	/**
+	 * Executes a batch of independent add, modify and delete operations. The operations may be executed
+	 * in any order or concurrently.
+	 *
+	 * Failure of an operation does not stop the others. The errors are not thrown, they are recorded in
+	 * the returned results (one for each operation, in the same order as operations).
+	 *
+	 * The default implementation executes the operations one by one.
+	 */
+	default List<BatchOperationResult> executeBatch(List<BatchOperation> operations, StateReporter reporter,
+			OperationResult parentResult) {
+		List<BatchOperationResult> results = new ArrayList<>(operations.size());
+		for (BatchOperation operation : operations) {
+			results.add(operation.execute(this, reporter, operation.createResult(parentResult)));
+		}
+		return results;
+	}
+
 	Object executeScript(ExecuteProvisioningScriptOperation scriptOperation, StateReporter reporter, OperationResult parentResult) throws CommunicationException, GenericFrameworkException;
 
 	/**
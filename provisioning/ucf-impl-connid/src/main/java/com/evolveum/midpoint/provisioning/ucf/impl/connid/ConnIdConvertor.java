@@ -17,9 +17,12 @@ package com.evolveum.midpoint.provisioning.ucf.impl.connid;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.namespace.QName;
 
@@ -67,6 +70,10 @@ public class ConnIdConvertor {
 	private Protector protector;
 	private ConnIdNameMapper icfNameMapper;
 
+	// Mapping of ConnId attribute names to definitions for the most recently used object class.
+	// Searches usually convert many objects of the same class.
+	private volatile AttributeMappingCache attributeMappingCache;
+
 	public ConnIdConvertor(Protector protector, String resourceSchemaNamespace) {
 		super();
 		this.protector = protector;
@@ -124,28 +131,31 @@ public class ConnIdConvertor {
 		ResourceAttributeContainerDefinition attributesContainerDefinition = attributesContainer.getDefinition();
 		shadow.setObjectClass(attributesContainerDefinition.getTypeName());
 
-		List<ObjectClassComplexTypeDefinition> auxiliaryObjectClassDefinitions = new ArrayList<>();
+		List<ObjectClassComplexTypeDefinition> auxiliaryObjectClassDefinitions = Collections.emptyList();
 
 		// too loud
 //		if (LOGGER.isTraceEnabled()) {
 //			LOGGER.trace("Resource attribute container definition {}.", attributesContainerDefinition.debugDump());
 //		}
 
-		for (Attribute icfAttr : co.getAttributes()) {
-			if (icfAttr.is(PredefinedAttributes.AUXILIARY_OBJECT_CLASS_NAME)) {
-				List<QName> auxiliaryObjectClasses = shadow.getAuxiliaryObjectClass();
-				for (Object auxiliaryIcfObjectClass: icfAttr.getValue()) {
-					QName auxiliaryObjectClassQname = icfNameMapper.objectClassToQname(new ObjectClass((String)auxiliaryIcfObjectClass), resourceSchemaNamespace, legacySchema);
-					auxiliaryObjectClasses.add(auxiliaryObjectClassQname);
-					ObjectClassComplexTypeDefinition auxiliaryObjectClassDefinition = icfNameMapper.getResourceSchema().findObjectClassDefinition(auxiliaryObjectClassQname);
-					if (auxiliaryObjectClassDefinition == null) {
-						throw new SchemaException("Resource object "+co+" refers to auxiliary object class "+auxiliaryObjectClassQname+" which is not in the schema");
-					}
-					auxiliaryObjectClassDefinitions.add(auxiliaryObjectClassDefinition);
+		Attribute auxiliaryObjectClassAttr = co.getAttributeByName(PredefinedAttributes.AUXILIARY_OBJECT_CLASS_NAME);
+		if (auxiliaryObjectClassAttr != null && auxiliaryObjectClassAttr.getValue() != null) {
+			auxiliaryObjectClassDefinitions = new ArrayList<>(auxiliaryObjectClassAttr.getValue().size());
+			List<QName> auxiliaryObjectClasses = shadow.getAuxiliaryObjectClass();
+			for (Object auxiliaryIcfObjectClass: auxiliaryObjectClassAttr.getValue()) {
+				QName auxiliaryObjectClassQname = icfNameMapper.objectClassToQname(new ObjectClass((String)auxiliaryIcfObjectClass), resourceSchemaNamespace, legacySchema);
+				auxiliaryObjectClasses.add(auxiliaryObjectClassQname);
+				ObjectClassComplexTypeDefinition auxiliaryObjectClassDefinition = icfNameMapper.getResourceSchema().findObjectClassDefinition(auxiliaryObjectClassQname);
+				if (auxiliaryObjectClassDefinition == null) {
+					throw new SchemaException("Resource object "+co+" refers to auxiliary object class "+auxiliaryObjectClassQname+" which is not in the schema");
 				}
-				break;
+				auxiliaryObjectClassDefinitions.add(auxiliaryObjectClassDefinition);
 			}
 		}
+
+		Map<String, AttributeMapping> attributeMappings = getAttributeMappings(attributesContainerDefinition, caseIgnoreAttributeNames);
+		// Names of attributes already added. Used instead of (much slower) uniqueness check in the container value.
+		Set<QName> convertedAttributeNames = new HashSet<>();
 		
 		for (Attribute connIdAttr : co.getAttributes()) {
 			if (LOGGER.isTraceEnabled()) {
@@ -233,25 +243,39 @@ public class ConnIdConvertor {
 				continue;
 			}
 
-			QName qname = icfNameMapper.convertAttributeNameToQName(connIdAttr.getName(), attributesContainerDefinition);
-			ResourceAttributeDefinition attributeDefinition = attributesContainerDefinition.findAttributeDefinition(qname, caseIgnoreAttributeNames);
+			QName qname;
+			ResourceAttributeDefinition attributeDefinition;
+			AttributeMapping attributeMapping = attributeMappings.get(connIdAttr.getName());
+			if (attributeMapping != null) {
+				qname = attributeMapping.name;
+				attributeDefinition = attributeMapping.definition;
+			} else {
+				qname = icfNameMapper.convertAttributeNameToQName(connIdAttr.getName(), attributesContainerDefinition);
+				attributeDefinition = attributesContainerDefinition.findAttributeDefinition(qname, caseIgnoreAttributeNames);
 
-			if (attributeDefinition == null) {
-				// Try to locate definition in auxiliary object classes
-				for (ObjectClassComplexTypeDefinition auxiliaryObjectClassDefinition: auxiliaryObjectClassDefinitions) {
-					attributeDefinition = auxiliaryObjectClassDefinition.findAttributeDefinition(qname, caseIgnoreAttributeNames);
-					if (attributeDefinition != null) {
-						break;
-					}
-				}
+				boolean auxiliary = false;
 				if (attributeDefinition == null) {
-					throw new SchemaException("Unknown attribute " + qname + " in definition of object class " + attributesContainerDefinition.getTypeName()
-					+ ". Original ConnId name: " + connIdAttr.getName() + " in resource object identified by " + co.getName(), qname);
+					// Try to locate definition in auxiliary object classes
+					for (ObjectClassComplexTypeDefinition auxiliaryObjectClassDefinition: auxiliaryObjectClassDefinitions) {
+						attributeDefinition = auxiliaryObjectClassDefinition.findAttributeDefinition(qname, caseIgnoreAttributeNames);
+						if (attributeDefinition != null) {
+							auxiliary = true;
+							break;
+						}
+					}
+					if (attributeDefinition == null) {
+						throw new SchemaException("Unknown attribute " + qname + " in definition of object class " + attributesContainerDefinition.getTypeName()
+						+ ". Original ConnId name: " + connIdAttr.getName() + " in resource object identified by " + co.getName(), qname);
+					}
 				}
-			}
 
-			if (caseIgnoreAttributeNames) {
-				qname = attributeDefinition.getName();            // normalized version
+				if (caseIgnoreAttributeNames) {
+					qname = attributeDefinition.getName();            // normalized version
+				}
+				if (!auxiliary) {
+					// definitions from auxiliary object classes depend on the particular object
+					attributeMappings.put(connIdAttr.getName(), new AttributeMapping(qname, attributeDefinition));
+				}
 			}
 
 			ResourceAttribute<Object> resourceAttribute = attributeDefinition.instantiate(qname);
@@ -263,14 +287,11 @@ public class ConnIdConvertor {
 					// Convert the values. While most values do not need
 					// conversions, some
 					// of them may need it (e.g. GuardedString)
-					for (Object connIdValue : connIdAttr.getValue()) {
-						Object value = convertValueFromIcf(connIdValue, qname);
-						resourceAttribute.add(new PrismPropertyValue<>(value));
-					}
+					addConvertedValues(resourceAttribute, connIdAttr.getValue(), qname, false);
 				}
 
 				LOGGER.trace("Converted attribute {}", resourceAttribute);
-				attributesContainer.getValue().add(resourceAttribute);
+				addAttribute(attributesContainer, resourceAttribute, convertedAttributeNames);
 
 				// in this case when false, we need only the attributes with the
 				// non-null values.
@@ -278,18 +299,11 @@ public class ConnIdConvertor {
 				if (connIdAttr.getValue() != null && !connIdAttr.getValue().isEmpty()) {
 					// Convert the values. While most values do not need
 					// conversions, some of them may need it (e.g. GuardedString)
-					boolean empty = true;
-					for (Object connIdValue : connIdAttr.getValue()) {
-						if (connIdValue != null) {
-							Object value = convertValueFromIcf(connIdValue, qname);
-							empty = false;
-							resourceAttribute.add(new PrismPropertyValue<>(value));
-						}
-					}
+					addConvertedValues(resourceAttribute, connIdAttr.getValue(), qname, true);
 
-					if (!empty) {
+					if (!resourceAttribute.isEmpty()) {
 						LOGGER.trace("Converted attribute {}", resourceAttribute);
-						attributesContainer.getValue().add(resourceAttribute);
+						addAttribute(attributesContainer, resourceAttribute, convertedAttributeNames);
 					}
 
 				}
@@ -306,15 +320,84 @@ public class ConnIdConvertor {
 			throw new SchemaException("No definition for ConnId UID attribute found in definition "
 					+ ocDef);
 		}
-		if (attributesContainer.getValue().findItem(uidDefinition.getName()) == null) {
+		if (!convertedAttributeNames.contains(uidDefinition.getName())) {
 			ResourceAttribute<String> uidRoa = uidDefinition.instantiate();
 			uidRoa.setValue(new PrismPropertyValue<>(uid.getUidValue()));
-			attributesContainer.getValue().add(uidRoa);
+			attributesContainer.getValue().add(uidRoa, false);		// checked above
 		}
 
 		return shadowPrism;
 	}
 
+	private void addAttribute(ResourceAttributeContainer attributesContainer, ResourceAttribute<?> attribute,
+			Set<QName> convertedAttributeNames) throws SchemaException {
+		if (!convertedAttributeNames.add(attribute.getElementName())) {
+			throw new IllegalArgumentException("Item " + attribute.getElementName() + " is already present in " + attributesContainer);
+		}
+		attributesContainer.getValue().add(attribute, false);
+	}
+
+	/**
+	 * Values with well-behaved equals (strings, numbers, ...) are checked for duplicates using a hash set.
+	 * The standard prism uniqueness check compares each new value with all existing values, which is
+	 * quadratic and very slow e.g. for groups with many members. Other values (e.g. byte arrays) are still
+	 * checked in the standard way.
+	 */
+	private void addConvertedValues(ResourceAttribute<Object> resourceAttribute, List<Object> connIdValues, QName qname,
+			boolean skipNulls) throws SchemaException {
+		Set<Object> simpleValues = connIdValues.size() > 1 ? new HashSet<>(connIdValues.size() * 2) : null;
+		for (Object connIdValue : connIdValues) {
+			if (skipNulls && connIdValue == null) {
+				continue;
+			}
+			Object value = convertValueFromIcf(connIdValue, qname);
+			if (isSimpleValue(value)) {
+				if (simpleValues == null || simpleValues.add(value)) {
+					resourceAttribute.add(new PrismPropertyValue<>(value), false);
+				}
+			} else {
+				resourceAttribute.add(new PrismPropertyValue<>(value));
+			}
+		}
+	}
+
+	private boolean isSimpleValue(Object value) {
+		return value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character;
+	}
+
+	private Map<String, AttributeMapping> getAttributeMappings(ResourceAttributeContainerDefinition attributesContainerDefinition,
+			boolean caseIgnoreAttributeNames) {
+		ObjectClassComplexTypeDefinition objectClassDefinition = attributesContainerDefinition.getComplexTypeDefinition();
+		AttributeMappingCache cache = attributeMappingCache;
+		if (cache == null || cache.objectClassDefinition != objectClassDefinition
+				|| cache.caseIgnoreAttributeNames != caseIgnoreAttributeNames) {
+			cache = new AttributeMappingCache(objectClassDefinition, caseIgnoreAttributeNames);
+			attributeMappingCache = cache;
+		}
+		return cache.mappings;
+	}
+
+	private static class AttributeMapping {
+		private final QName name;
+		private final ResourceAttributeDefinition definition;
+
+		private AttributeMapping(QName name, ResourceAttributeDefinition definition) {
+			this.name = name;
+			this.definition = definition;
+		}
+	}
+
+	private static class AttributeMappingCache {
+		private final ObjectClassComplexTypeDefinition objectClassDefinition;
+		private final boolean caseIgnoreAttributeNames;
+		private final Map<String, AttributeMapping> mappings = new ConcurrentHashMap<>();
+
+		private AttributeMappingCache(ObjectClassComplexTypeDefinition objectClassDefinition, boolean caseIgnoreAttributeNames) {
+			this.objectClassDefinition = objectClassDefinition;
+			this.caseIgnoreAttributeNames = caseIgnoreAttributeNames;
+		}
+	}
+
 	Set<Attribute> convertFromResourceObject(ResourceAttributeContainer attributesPrism,
 			ObjectClassComplexTypeDefinition ocDef) throws SchemaException {
 		Collection<ResourceAttribute<?>> resourceAttributes = attributesPrism.getAttributes();
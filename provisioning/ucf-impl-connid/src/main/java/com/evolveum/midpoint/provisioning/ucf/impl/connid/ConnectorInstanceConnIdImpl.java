@@ -18,6 +18,12 @@ package com.evolveum.midpoint.provisioning.ucf.impl.connid;
 import static com.evolveum.midpoint.provisioning.ucf.impl.connid.ConnIdUtil.processConnIdException;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
@@ -103,6 +109,8 @@ import com.evolveum.midpoint.prism.schema.PrismSchema;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 import com.evolveum.midpoint.prism.xml.XsdTypeMapper;
 import com.evolveum.midpoint.provisioning.ucf.api.AttributesToReturn;
+import com.evolveum.midpoint.provisioning.ucf.api.BatchOperation;
+import com.evolveum.midpoint.provisioning.ucf.api.BatchOperationResult;
 import com.evolveum.midpoint.provisioning.ucf.api.Change;
 import com.evolveum.midpoint.provisioning.ucf.api.ConnectorInstance;
 import com.evolveum.midpoint.provisioning.ucf.api.ExecuteProvisioningScriptOperation;
@@ -187,12 +195,16 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance {
 
 	private static final Trace LOGGER = TraceManager.getTrace(ConnectorInstanceConnIdImpl.class);
 
+	private static final int MAX_BATCH_PARALLELISM = 10;
+	private static final long BATCH_THREAD_KEEP_ALIVE = 60000L;
+
 	ConnectorInfo cinfo;
 	ConnectorType connectorType;
 	ConnectorFacade connIdConnectorFacade;
 	String resourceSchemaNamespace;
 	private PrismSchema connectorSchema;
 	private APIConfiguration apiConfig = null;
+	private ExecutorService batchExecutor = null;
 
 	Protector protector;
 	PrismContext prismContext;
@@ -1991,6 +2003,99 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance {
 		return AsynchronousOperationResult.wrap(result);
 	}
 
+	@Override
+	public boolean isBatchSupported() {
+		return getBatchParallelism() > 1;
+	}
+
+	/**
+	 * ConnId has no bulk operations. Therefore the batch is pipelined: the operations are executed concurrently,
+	 * each using its own connector instance from the pool. This hides the round-trip latency of the resource,
+	 * which is the main cost of provisioning many small changes.
+	 */
+	@Override
+	public List<BatchOperationResult> executeBatch(List<BatchOperation> operations, StateReporter reporter,
+			OperationResult parentResult) {
+		OperationResult result = parentResult.createSubresult(ConnectorInstance.OPERATION_EXECUTE_BATCH);
+		result.addParam("size", operations.size());
+		result.addContext("connector", connectorType);
+		int parallelism = Math.min(getBatchParallelism(), operations.size());
+		result.addContext("parallelism", parallelism);
+		try {
+			if (parallelism <= 1) {
+				return ConnectorInstance.super.executeBatch(operations, reporter, result);
+			}
+			LOGGER.trace("Executing batch of {} operations on {} using {} threads", operations.size(), this, parallelism);
+			ExecutorService executor = getBatchExecutor();
+			// OperationResult is not thread-safe: each operation gets a detached result that is attached after join.
+			List<OperationResult> operationResults = new ArrayList<>(operations.size());
+			List<Future<BatchOperationResult>> futures = new ArrayList<>(operations.size());
+			for (BatchOperation operation : operations) {
+				OperationResult operationResult = operation.createDetachedResult();
+				StateReporter operationReporter = reporter != null ? reporter.createConcurrentReporter() : null;
+				operationResults.add(operationResult);
+				futures.add(executor.submit(() -> operation.execute(this, operationReporter, operationResult)));
+			}
+			List<BatchOperationResult> results = new ArrayList<>(operations.size());
+			for (int i = 0; i < operations.size(); i++) {
+				results.add(getBatchOperationResult(futures.get(i), operations.get(i), operationResults.get(i)));
+			}
+			for (BatchOperationResult batchOperationResult : results) {
+				result.addSubresult(batchOperationResult.getResult());
+			}
+			return results;
+		} finally {
+			result.computeStatus();
+		}
+	}
+
+	/**
+	 * One executor per connector instance, shared by all batches. It is bounded by the size of the connector pool,
+	 * so concurrent batches queue up instead of exhausting the pool. Idle threads are released.
+	 */
+	private synchronized ExecutorService getBatchExecutor() {
+		if (batchExecutor == null) {
+			int threads = getBatchParallelism();
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, BATCH_THREAD_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<>(), runnable -> {
+						Thread thread = new Thread(runnable, "connid-batch-" + getHumanReadableName());
+						thread.setDaemon(true);
+						return thread;
+					});
+			executor.allowCoreThreadTimeOut(true);
+			batchExecutor = executor;
+		}
+		return batchExecutor;
+	}
+
+	private BatchOperationResult getBatchOperationResult(Future<BatchOperationResult> future, BatchOperation operation,
+			OperationResult operationResult) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			// The worker may still be using its result, so a new one is reported.
+			future.cancel(true);
+			OperationResult interruptedResult = operation.createDetachedResult();
+			interruptedResult.recordFatalError("Interrupted while waiting for the operation to finish", e);
+			return new BatchOperationResult(operation, null, e, interruptedResult);
+		} catch (ExecutionException e) {
+			operationResult.recordFatalError(e.getCause());
+			return new BatchOperationResult(operation, null, e.getCause(), operationResult);
+		}
+	}
+
+	private int getBatchParallelism() {
+		if (apiConfig == null || !apiConfig.isConnectorPoolingSupported()) {
+			return 1;
+		}
+		ObjectPoolConfiguration poolConfiguration = apiConfig.getConnectorPoolConfiguration();
+		if (poolConfiguration == null || poolConfiguration.getMaxObjects() <= 0) {
+			return 1;
+		}
+		return Math.min(poolConfiguration.getMaxObjects(), MAX_BATCH_PARALLELISM);
+	}
+
 	@Override
 	public PrismProperty<?> deserializeToken(Object serializedToken) {
 		return createTokenProperty(serializedToken);
@@ -3030,8 +3135,11 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance {
 	}
 
 	@Override
-	public void dispose() {
-		// Nothing to do
+	public synchronized void dispose() {
+		if (batchExecutor != null) {
+			batchExecutor.shutdown();
+			batchExecutor = null;
+		}
 	}
 
 	private void recordIcfOperationStart(StateReporter reporter, ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDefinition, Uid uid) {
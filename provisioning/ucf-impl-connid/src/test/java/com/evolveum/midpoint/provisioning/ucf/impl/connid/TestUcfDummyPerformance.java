@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.provisioning.ucf.impl.connid;
+
+import static com.evolveum.midpoint.test.IntegrationTestTools.display;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.icf.dummy.resource.DummyAccount;
+import com.evolveum.icf.dummy.resource.DummyGroup;
+import com.evolveum.midpoint.prism.PrismContainerValue;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.provisioning.ucf.api.BatchOperation;
+import com.evolveum.midpoint.provisioning.ucf.api.BatchOperationResult;
+import com.evolveum.midpoint.provisioning.ucf.api.ConnectorInstance;
+import com.evolveum.midpoint.provisioning.ucf.api.ShadowResultHandler;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.schema.processor.ObjectClassComplexTypeDefinition;
+import com.evolveum.midpoint.schema.processor.ResourceAttribute;
+import com.evolveum.midpoint.schema.processor.ResourceAttributeContainer;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ResourceTypeUtil;
+import com.evolveum.midpoint.schema.util.ShadowUtil;
+import com.evolveum.midpoint.test.util.TestUtil;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ConnectorConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowKindType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Throughput of connector search (ConnId object to shadow conversion) and of batched operations
+ * with dummy resource. The numbers are only displayed, not asserted, as they depend on the machine.
+ */
+@ContextConfiguration(locations = { "classpath:ctx-ucf-connid-test.xml" })
+public class TestUcfDummyPerformance extends AbstractUcfDummyTest {
+
+	private static final Trace LOGGER = TraceManager.getTrace(TestUcfDummyPerformance.class);
+
+	private static final int NUMBER_OF_ACCOUNTS = 2000;
+	private static final int NUMBER_OF_GROUP_MEMBERS = 5000;
+	private static final int SEARCH_ITERATIONS = 5;
+	private static final String GROUP_BIG_NAME = "big";
+	private static final int NUMBER_OF_WRITES = 100;
+	private static final int NETWORK_LATENCY = 20;
+
+	@Test
+	public void test020CreateConfiguredConnector() throws Exception {
+		final String TEST_NAME = "test020CreateConfiguredConnector";
+		TestUtil.displayTestTitle(TEST_NAME);
+
+		cc = connectorFactory.createConnectorInstance(connectorType, ResourceTypeUtil.getResourceNamespace(resourceType),
+				"test connector");
+		assertNotNull("Failed to instantiate connector", cc);
+		OperationResult result = new OperationResult(TestUcfDummyPerformance.class.getName() + "." + TEST_NAME);
+		PrismContainerValue<ConnectorConfigurationType> configContainer = resourceType.getConnectorConfiguration().asPrismContainerValue();
+
+		// WHEN
+		cc.configure(configContainer, result);
+
+		// THEN
+		result.computeStatus();
+		TestUtil.assertSuccess(result);
+
+		resourceSchema = cc.fetchResourceSchema(null, result);
+		assertNotNull("No resource schema", resourceSchema);
+	}
+
+	@Test
+	public void test100CreateObjects() throws Exception {
+		final String TEST_NAME = "test100CreateObjects";
+		TestUtil.displayTestTitle(TEST_NAME);
+
+		for (int i = 0; i < NUMBER_OF_ACCOUNTS; i++) {
+			DummyAccount account = new DummyAccount(String.format("user%05d", i));
+			account.addAttributeValues(DummyAccount.ATTR_FULLNAME_NAME, "User " + i);
+			dummyResource.addAccount(account);
+		}
+
+		DummyGroup group = new DummyGroup(GROUP_BIG_NAME);
+		dummyResource.addGroup(group);
+		for (int i = 0; i < NUMBER_OF_GROUP_MEMBERS; i++) {
+			group.addMember(String.format("member%05d", i));
+		}
+	}
+
+	@Test
+	public void test110SearchAccounts() throws Exception {
+		final String TEST_NAME = "test110SearchAccounts";
+		TestUtil.displayTestTitle(TEST_NAME);
+
+		ObjectClassComplexTypeDefinition accountDefinition = resourceSchema.findDefaultObjectClassDefinition(ShadowKindType.ACCOUNT);
+
+		for (int iteration = 0; iteration < SEARCH_ITERATIONS; iteration++) {
+			OperationResult result = new OperationResult(TestUcfDummyPerformance.class.getName() + "." + TEST_NAME);
+			AtomicInteger count = new AtomicInteger();
+			ShadowResultHandler handler = shadow -> {
+				count.incrementAndGet();
+				return true;
+			};
+
+			// WHEN
+			long start = System.currentTimeMillis();
+			cc.search(accountDefinition, new ObjectQuery(), handler, null, null, null, null, result);
+			long duration = System.currentTimeMillis() - start;
+
+			// THEN
+			assertEquals("Unexpected number of search results", NUMBER_OF_ACCOUNTS, count.get());
+			displayThroughput("Account search #" + iteration, count.get(), duration);
+		}
+	}
+
+	@Test
+	public void test120SearchBigGroup() throws Exception {
+		final String TEST_NAME = "test120SearchBigGroup";
+		TestUtil.displayTestTitle(TEST_NAME);
+
+		ObjectClassComplexTypeDefinition groupDefinition = resourceSchema.findObjectClassDefinition("GroupObjectClass");
+		assertNotNull("No group object class definition", groupDefinition);
+
+		for (int iteration = 0; iteration < SEARCH_ITERATIONS; iteration++) {
+			OperationResult result = new OperationResult(TestUcfDummyPerformance.class.getName() + "." + TEST_NAME);
+			AtomicInteger members = new AtomicInteger();
+			ShadowResultHandler handler = shadow -> {
+				for (ResourceAttribute<?> attribute : ShadowUtil.getAttributes(shadow)) {
+					if (DummyGroup.ATTR_MEMBERS_NAME.equals(attribute.getElementName().getLocalPart())) {
+						members.addAndGet(attribute.size());
+					}
+				}
+				return true;
+			};
+
+			// WHEN
+			long start = System.currentTimeMillis();
+			cc.search(groupDefinition, new ObjectQuery(), handler, null, null, null, null, result);
+			long duration = System.currentTimeMillis() - start;
+
+			// THEN
+			assertEquals("Unexpected number of group members", NUMBER_OF_GROUP_MEMBERS, members.get());
+			displayThroughput("Group search #" + iteration, members.get(), duration);
+		}
+	}
+
+	@Test
+	public void test200AddAccountsOneByOne() throws Exception {
+		final String TEST_NAME = "test200AddAccountsOneByOne";
+		TestUtil.displayTestTitle(TEST_NAME);
+
+		OperationResult result = new OperationResult(TestUcfDummyPerformance.class.getName() + "." + TEST_NAME);
+		dummyResource.setNetworkLatency(NETWORK_LATENCY);
+		try {
+			// WHEN
+			long start = System.currentTimeMillis();
+			for (int i = 0; i < NUMBER_OF_WRITES; i++) {
+				cc.addObject(createAccountShadow(String.format("single%05d", i)), null, null, result);
+			}
+			long duration = System.currentTimeMillis() - start;
+
+			// THEN
+			result.computeStatus();
+			TestUtil.assertSuccess(result);
+			assertNotNull("Last account was not created", dummyResource.getAccountByUsername(String.format("single%05d", NUMBER_OF_WRITES - 1)));
+			displayThroughput("Add one by one", NUMBER_OF_WRITES, duration);
+		} finally {
+			dummyResource.setNetworkLatency(0);
+		}
+	}
+
+	@Test
+	public void test210AddAccountsInBatch() throws Exception {
+		final String TEST_NAME = "test210AddAccountsInBatch";
+		TestUtil.displayTestTitle(TEST_NAME);
+
+		OperationResult result = new OperationResult(TestUcfDummyPerformance.class.getName() + "." + TEST_NAME);
+		assertTrue("Batch not supported", cc.isBatchSupported());
+		List<BatchOperation> operations = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_WRITES; i++) {
+			operations.add(BatchOperation.add(createAccountShadow(String.format("batch%05d", i)), null));
+		}
+		dummyResource.setNetworkLatency(NETWORK_LATENCY);
+		try {
+			// WHEN
+			long start = System.currentTimeMillis();
+			List<BatchOperationResult> batchResults = cc.executeBatch(operations, null, result);
+			long duration = System.currentTimeMillis() - start;
+
+			// THEN
+			result.computeStatus();
+			TestUtil.assertSuccess(result);
+			assertEquals("Wrong number of batch results", NUMBER_OF_WRITES, batchResults.size());
+			for (int i = 0; i < NUMBER_OF_WRITES; i++) {
+				BatchOperationResult batchResult = batchResults.get(i);
+				assertTrue("Operation failed: " + batchResult, batchResult.isSuccess());
+				assertNotNull("Account was not created: " + batchResult,
+						dummyResource.getAccountByUsername(String.format("batch%05d", i)));
+			}
+			assertBatchSubresults(result, NUMBER_OF_WRITES);
+			displayThroughput("Add in batch", NUMBER_OF_WRITES, duration);
+		} finally {
+			dummyResource.setNetworkLatency(0);
+		}
+	}
+
+	@Test
+	public void test220DeleteAccountsInBatch() throws Exception {
+		final String TEST_NAME = "test220DeleteAccountsInBatch";
+		TestUtil.displayTestTitle(TEST_NAME);
+
+		OperationResult result = new OperationResult(TestUcfDummyPerformance.class.getName() + "." + TEST_NAME);
+		ObjectClassComplexTypeDefinition accountDefinition = resourceSchema.findDefaultObjectClassDefinition(ShadowKindType.ACCOUNT);
+		List<BatchOperation> operations = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_WRITES; i++) {
+			PrismObject<ShadowType> shadow = createAccountShadow(String.format("batch%05d", i));
+			operations.add(BatchOperation.delete(accountDefinition, shadow,
+					ShadowUtil.getAttributesContainer(shadow).getAttributes(), null));
+		}
+		// Let's include one failing operation. It must not affect the others.
+		PrismObject<ShadowType> nonExisting = createAccountShadow("nonexisting");
+		operations.add(BatchOperation.delete(accountDefinition, nonExisting,
+				ShadowUtil.getAttributesContainer(nonExisting).getAttributes(), null));
+		dummyResource.setNetworkLatency(NETWORK_LATENCY);
+		try {
+			// WHEN
+			long start = System.currentTimeMillis();
+			List<BatchOperationResult> batchResults = cc.executeBatch(operations, null, result);
+			long duration = System.currentTimeMillis() - start;
+
+			// THEN
+			assertEquals("Wrong number of batch results", NUMBER_OF_WRITES + 1, batchResults.size());
+			for (int i = 0; i < NUMBER_OF_WRITES; i++) {
+				assertTrue("Operation failed: " + batchResults.get(i), batchResults.get(i).isSuccess());
+			}
+			BatchOperationResult failed = batchResults.get(NUMBER_OF_WRITES);
+			assertTrue("Deletion of non-existing account succeeded", !failed.isSuccess());
+			assertNotNull("No exception for deletion of non-existing account", failed.getException());
+			assertEquals("Unexpected number of accounts", NUMBER_OF_ACCOUNTS + NUMBER_OF_WRITES, dummyResource.listAccounts().size());
+			assertBatchSubresults(result, NUMBER_OF_WRITES + 1);
+			displayThroughput("Delete in batch", NUMBER_OF_WRITES, duration);
+		} finally {
+			dummyResource.setNetworkLatency(0);
+		}
+	}
+
+	// Operation results are created by the worker threads and attached to the batch result after all of them finished.
+	private void assertBatchSubresults(OperationResult result, int expected) {
+		OperationResult batchResult = result.findSubresult(ConnectorInstance.OPERATION_EXECUTE_BATCH);
+		assertNotNull("No batch result", batchResult);
+		assertEquals("Wrong number of operation results", expected,
+				batchResult.findSubresults(BatchOperation.OPERATION_EXECUTE).size());
+	}
+
+	private PrismObject<ShadowType> createAccountShadow(String name) throws Exception {
+		ObjectClassComplexTypeDefinition accountDefinition = resourceSchema.findDefaultObjectClassDefinition(ShadowKindType.ACCOUNT);
+		ShadowType shadowType = new ShadowType();
+		PrismTestUtil.getPrismContext().adopt(shadowType);
+		shadowType.setName(PrismTestUtil.createPolyStringType(name));
+		ObjectReferenceType resourceRef = new ObjectReferenceType();
+		resourceRef.setOid(resource.getOid());
+		shadowType.setResourceRef(resourceRef);
+		shadowType.setObjectClass(accountDefinition.getTypeName());
+		PrismObject<ShadowType> shadow = shadowType.asPrismObject();
+		ResourceAttributeContainer attributesContainer = ShadowUtil.getOrCreateAttributesContainer(shadow, accountDefinition);
+		ResourceAttribute<String> nameAttribute = attributesContainer.findOrCreateAttribute(SchemaConstants.ICFS_NAME);
+		nameAttribute.setRealValue(name);
+		return shadow;
+	}
+
+	private void displayThroughput(String label, int count, long duration) {
+		double perSecond = duration > 0 ? count * 1000.0 / duration : Double.POSITIVE_INFINITY;
+		display(label, count + " in " + duration + " ms (" + String.format("%.1f", perSecond) + " per second)");
+		LOGGER.info("{}: {} in {} ms ({} per second)", label, count, duration, String.format("%.1f", perSecond));
+	}
+}
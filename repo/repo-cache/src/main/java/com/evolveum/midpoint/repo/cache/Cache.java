@@ -59,6 +59,10 @@ public class Cache extends AbstractCache {
         versions.put(oid, object.getVersion());
     }
 
+    public Map<String, PrismObject<? extends ObjectType>> getObjects() {
+        return objects;
+    }
+
     public void removeObject(String oid) {
         objects.remove(oid);
         versions.remove(oid);
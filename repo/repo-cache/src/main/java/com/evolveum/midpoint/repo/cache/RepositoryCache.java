@@ -136,6 +136,42 @@ public class RepositoryCache implements RepositoryService {
 		return Cache.exists(cacheInstance);
 	}
 
+	/**
+	 * Removes an object (and query results for its type) from the local cache of the current thread.
+	 * Needed after the object was changed by another thread, because such a change invalidates only the local cache
+	 * of that thread (and the global cache).
+	 */
+	public static <T extends ObjectType> void invalidateLocal(Class<T> type, String oid) {
+		Cache cache = getCache();
+		if (cache != null) {
+			if (oid != null) {
+				cache.removeObject(oid);
+			}
+			cache.clearQueryResults(type);
+		}
+	}
+
+	/**
+	 * Returns a copy of objects in the local cache of the current thread (empty if there is no cache).
+	 * Together with {@link #putLocalObjects(Map)} it allows to carry objects loaded in one cache scope over to others.
+	 */
+	public static Map<String, PrismObject<? extends ObjectType>> getLocalObjects() {
+		Cache cache = getCache();
+		return cache != null ? new HashMap<>(cache.getObjects()) : new HashMap<>();
+	}
+
+	/**
+	 * Puts objects (obtained by {@link #getLocalObjects()}) into the local cache of the current thread, if there is one.
+	 */
+	public static void putLocalObjects(Map<String, PrismObject<? extends ObjectType>> objects) {
+		Cache cache = getCache();
+		if (cache != null) {
+			for (Map.Entry<String, PrismObject<? extends ObjectType>> entry : objects.entrySet()) {
+				cache.putObject(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
 	public Integer getModifyRandomDelayRange() {
 		return modifyRandomDelayRange;
 	}
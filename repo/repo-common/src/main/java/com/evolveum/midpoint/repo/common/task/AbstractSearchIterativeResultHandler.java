@@ -32,14 +32,19 @@ import com.evolveum.midpoint.schema.ResultHandler;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -70,13 +75,21 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 	private boolean enableSynchronizationStatistics = false;		// whether we want to collect sync statistics
 	private boolean enableActionsExecutedStatistics = false;		// whether we want to collect repo objects statistics
 	private BlockingQueue<ProcessingRequest> requestQueue;
+	private int batchSize = 1;										// how many requests a worker takes at once
 	private AtomicBoolean stopRequestedByAnyWorker = new AtomicBoolean(false);
 	private final long startTime;
 
+	// checkpointing (applicable only if objects are submitted in OID order)
+	private int checkpointInterval;									// 0 means no checkpointing
+	private final NavigableSet<String> oidsInProgress = new ConcurrentSkipListSet<>();
+	private final NavigableSet<String> oidsCompleted = new ConcurrentSkipListSet<>();
+	private long progressAtLastCheckpoint;
+	private String lastCheckpoint;
+
 	private static final transient Trace LOGGER = TraceManager.getTrace(AbstractSearchIterativeResultHandler.class);
 	private volatile boolean allItemsSubmitted = false;
 
-	private List<OperationResult> workerSpecificResults;
+	private List<WorkerHandler> workerHandlers;
 
 	public AbstractSearchIterativeResultHandler(Task coordinatorTask, String taskOperationPrefix, String processShortName,
 			String contextDesc, TaskManager taskManager) {
@@ -166,24 +179,57 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 			throw new IllegalArgumentException("Object has null OID");
 		}
 
+		if (shouldStop(parentResult)) {
+			return false;			// do not feed anything more if we are stopping
+		}
+
 		ProcessingRequest request = new ProcessingRequest(object);
+		if (isCheckpointing()) {
+			oidsInProgress.add(object.getOid());
+		}
 		if (requestQueue != null) {
 			// by not putting anything in the parent result we hope the status will be SUCCESS
 			try {
 				while (!requestQueue.offer(request, REQUEST_QUEUE_OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
 					if (shouldStop(parentResult)) {
+						discardQueuedRequests();
 						return false;
 					}
 				}
 			} catch (InterruptedException e) {
 				recordInterrupted(parentResult);
+				discardQueuedRequests();
 				return false;
 			}
 		} else {
 			processRequest(request, coordinatorTask, parentResult);			// coordinator is also a worker here
 		}
 
-		return !shouldStop(parentResult);
+		if (shouldStop(parentResult)) {
+			discardQueuedRequests();
+			return false;
+		} else {
+			return true;
+		}
+	}
+
+	/**
+	 * Removes requests that were not taken by workers yet. They are not processed in this run; when checkpointing,
+	 * they stay among "in progress" objects, so the checkpoint does not move beyond them.
+	 */
+	private void discardQueuedRequests() {
+		if (requestQueue != null) {
+			List<ProcessingRequest> discarded = new ArrayList<>();
+			requestQueue.drainTo(discarded);
+			if (!discarded.isEmpty()) {
+				LOGGER.debug("{} {}: discarded {} queued object(s) because processing is being stopped",
+						getProcessShortNameCapitalized(), getContextDesc(), discarded.size());
+			}
+		}
+	}
+
+	private boolean canContinue(Task workerTask) {
+		return workerTask.canRun() && coordinatorTask.canRun() && !stopRequestedByAnyWorker.get();
 	}
 
 	// stop can be requested either internally (by handler or error in any worker thread)
@@ -236,12 +282,29 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 	}
 
 	public void waitForCompletion(OperationResult opResult) {
-		taskManager.waitForTransientChildren(coordinatorTask, opResult);
+		Long drainTimeout = getWorkerDrainTimeout(coordinatorTask);
+		if (requestQueue != null && drainTimeout != null && !coordinatorTask.canRun()) {
+			discardQueuedRequests();
+			if (!taskManager.waitForTransientChildren(coordinatorTask, drainTimeout, opResult)) {
+				LOGGER.warn("{} {}: not all worker threads stopped within {} ms (they were interrupted but some are still "
+						+ "running); their results are not included", getProcessShortNameCapitalized(), getContextDesc(), drainTimeout);
+				opResult.createSubresult(taskOperationPrefix + ".waitForCompletion")
+						.recordWarning("Not all worker threads stopped within " + drainTimeout + " ms");
+			}
+		} else {
+			taskManager.waitForTransientChildren(coordinatorTask, opResult);
+		}
 	}
 
 	public void updateOperationResult(OperationResult opResult) {
-		if (workerSpecificResults != null) {								// not null in the parallelized case
-			for (OperationResult workerSpecificResult : workerSpecificResults) {
+		if (workerHandlers != null) {										// not null in the parallelized case
+			for (WorkerHandler workerHandler : workerHandlers) {
+				if (workerHandler.isRunning()) {
+					// the result is still being updated by the worker thread, so we must not touch it
+					LOGGER.debug("Not including result of a worker that is still running: {}", workerHandler.workerSpecificResult);
+					continue;
+				}
+				OperationResult workerSpecificResult = workerHandler.workerSpecificResult;
 				workerSpecificResult.computeStatus();
 				workerSpecificResult.summarize();
 				opResult.addSubresult(workerSpecificResult);
@@ -257,24 +320,60 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 	public void completeProcessing(Task task, OperationResult result) {
 		signalAllItemsSubmitted();
 		waitForCompletion(result);      		// in order to provide correct statistics results, we have to wait until all child tasks finish
+		if (isCheckpointing()) {
+			if (isAnyWorkerRunning()) {
+				// such a worker can still complete objects, so the checkpoint might not correspond to the real state
+				LOGGER.warn("{} {}: not storing the final checkpoint because some worker threads are still running",
+						getProcessShortNameCapitalized(), getContextDesc());
+			} else {
+				synchronized (coordinatorTask) {
+					storeCheckpoint();				// so that an interrupted run can continue exactly where it stopped
+				}
+			}
+		}
 		updateOperationResult(result);
 	}
 
+	private boolean isAnyWorkerRunning() {
+		if (workerHandlers != null) {
+			for (WorkerHandler workerHandler : workerHandlers) {
+				if (workerHandler.isRunning()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	class WorkerHandler implements LightweightTaskHandler {
 		private OperationResult workerSpecificResult;
+		private volatile boolean running;
 
 		public WorkerHandler(OperationResult workerSpecificResult) {
 			this.workerSpecificResult = workerSpecificResult;
 		}
 
+		public boolean isRunning() {
+			return running;
+		}
+
 		@Override
 		public void run(Task workerTask) {
+			running = true;
+			try {
+				doRun(workerTask);
+			} finally {
+				running = false;
+			}
+		}
+
+		private void doRun(Task workerTask) {
 
 			// temporary hack: how to see thread name for this task
 			workerTask.setName(workerTask.getName().getOrig() + " (" + Thread.currentThread().getName() + ")");
 			workerSpecificResult.addArbitraryObjectAsContext("subtaskName", workerTask.getName());
 
-			while (workerTask.canRun()) {
+			while (canContinue(workerTask)) {
 				ProcessingRequest request;
 				try {
 					request = requestQueue.poll(WORKER_THREAD_WAIT_FOR_REQUEST, TimeUnit.MILLISECONDS);
@@ -283,7 +382,14 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 					return;
 				}
 				if (request != null) {
-					processRequest(request, workerTask, workerSpecificResult);
+					if (batchSize > 1) {
+						List<ProcessingRequest> batch = new ArrayList<>(batchSize);
+						batch.add(request);
+						requestQueue.drainTo(batch, batchSize - 1);
+						processRequestBatch(batch, workerTask, workerSpecificResult);
+					} else {
+						processRequest(request, workerTask, workerSpecificResult);
+					}
 				} else {
 					if (allItemsSubmitted) {
 						LOGGER.trace("queue is empty and nothing more is expected - exiting");
@@ -295,8 +401,91 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 	}
 
 	private void processRequest(ProcessingRequest request, Task workerTask, OperationResult parentResult) {
+		RepositoryCache.enter();
+		try {
+			processObject(request.object, workerTask, parentResult);
+		} finally {
+			RepositoryCache.exit();
+		}
+		updateTaskProgress(workerTask, 1);
+	}
+
+	/**
+	 * Processes a batch of requests taken by a worker thread. Each object is processed in its own repository cache
+	 * scope, just like in {@link #processRequest(ProcessingRequest, Task, OperationResult)}. Only the related objects
+	 * preloaded by {@link #prepareBatch(List, Task, OperationResult)} are put into each of these scopes; the ones that
+	 * were changed while processing an object are not used for the rest of the batch. Task progress and statistics
+	 * are stored only once for the whole batch.
+	 */
+	private void processRequestBatch(List<ProcessingRequest> batch, Task workerTask, OperationResult parentResult) {
+		int processed = 0;
+		try {
+			List<PrismObject<O>> objects = new ArrayList<>(batch.size());
+			for (ProcessingRequest request : batch) {
+				objects.add(request.object);
+			}
+			Map<String, PrismObject<? extends ObjectType>> preloadedObjects =
+					prepareBatchSafely(objects, workerTask, parentResult);
+			for (PrismObject<O> object : objects) {
+				if (!canContinue(workerTask)) {
+					break;
+				}
+				RepositoryCache.enter();
+				try {
+					RepositoryCache.putLocalObjects(preloadedObjects);
+					processObject(object, workerTask, parentResult);
+					if (!preloadedObjects.isEmpty()) {
+						Map<String, PrismObject<? extends ObjectType>> cachedObjects = RepositoryCache.getLocalObjects();
+						preloadedObjects.entrySet().removeIf(e -> cachedObjects.get(e.getKey()) != e.getValue());
+					}
+				} finally {
+					RepositoryCache.exit();
+				}
+				processed++;
+			}
+		} finally {
+			updateTaskProgress(workerTask, processed);
+		}
+		if (processed < batch.size()) {
+			LOGGER.trace("Processing stopped, skipping {} remaining object(s) in the batch", batch.size() - processed);
+		}
+	}
+
+	/**
+	 * Returns the objects loaded into the repository cache by {@link #prepareBatch(List, Task, OperationResult)}.
+	 */
+	private Map<String, PrismObject<? extends ObjectType>> prepareBatchSafely(List<PrismObject<O>> objects,
+			Task workerTask, OperationResult parentResult) {
+		OperationResult result = parentResult.createMinorSubresult(taskOperationPrefix + ".prepareBatch");
+		result.addParam("size", objects.size());
+		RepositoryCache.enter();
+		try {
+			prepareBatch(objects, workerTask, result);
+			result.computeStatusIfUnknown();
+			return RepositoryCache.getLocalObjects();
+		} catch (CommonException | RuntimeException e) {
+			// Preloading is only an optimization. If it fails, the objects are processed without it.
+			LOGGER.warn("Couldn't prepare batch of {} objects for {} {}: {}", objects.size(), getProcessShortName(),
+					getContextDesc(), e.getMessage(), e);
+			result.recordHandledError(e);
+			return new HashMap<>();
+		} finally {
+			RepositoryCache.exit();
+			parentResult.summarize();
+		}
+	}
 
-		PrismObject<O> object = request.object;
+	/**
+	 * Called before a batch of objects is processed by a worker thread (only if workerBatchSize is greater than 1).
+	 * Objects loaded here into the repository cache are made available to the processing of each object in the batch,
+	 * so this is the right place to load objects related to the whole batch (e.g. linked shadows or assigned roles)
+	 * using a single repository search.
+	 * The default implementation does nothing.
+	 */
+	protected void prepareBatch(List<PrismObject<O>> objects, Task workerTask, OperationResult result) throws CommonException {
+	}
+
+	private void processObject(PrismObject<O> object, Task workerTask, OperationResult parentResult) {
 
 		String objectName = PolyString.getOrig(object.getName());
 		String objectDisplayName = getDisplayName(object);
@@ -310,8 +499,6 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 
 		try {
 
-			RepositoryCache.enter();
-
 			if (LOGGER.isTraceEnabled()) {
 				LOGGER.trace("{} starting for {} {}", getProcessShortNameCapitalized(), object, getContextDesc());
 			}
@@ -355,7 +542,10 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 			}
 			cont = processError(object, e, result);
 		} finally {
-			RepositoryCache.exit();
+			if (isCheckpointing()) {
+				oidsCompleted.add(object.getOid());
+				oidsInProgress.remove(object.getOid());
+			}
 
 			long duration = System.currentTimeMillis()-startTime;
 			long total = totalTimeProcessing.addAndGet(duration);
@@ -367,15 +557,6 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 			// or parentResult as obtained in handle(..) method in single-thread scenario
 			parentResult.summarize();
 
-			synchronized (coordinatorTask) {
-				coordinatorTask.setProgress(progress);
-				if (requestQueue != null) {
-					workerTask.setProgress(workerTask.getProgress()+1);
-				}
-				// todo report current op result?
-				coordinatorTask.storeOperationStatsIfNeeded();  // includes savePendingModifications
-			}
-
 			if (logObjectProgress) {
 				if (LOGGER.isInfoEnabled()) {
 					LOGGER.info("{} object {} {} done with status {} (this one: {} ms, avg: {} ms) (total progress: {}, wall clock avg: {} ms)",
@@ -397,6 +578,71 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 		}
 	}
 
+	private void updateTaskProgress(Task workerTask, int processed) {
+		synchronized (coordinatorTask) {
+			coordinatorTask.setProgress(objectsProcessed.get());
+			if (requestQueue != null) {
+				workerTask.setProgress(workerTask.getProgress() + processed);
+			}
+			if (isCheckpointing() && objectsProcessed.get() - progressAtLastCheckpoint >= checkpointInterval) {
+				storeCheckpoint();
+			}
+			// todo report current op result?
+			coordinatorTask.storeOperationStatsIfNeeded();  // includes savePendingModifications
+		}
+	}
+
+	public boolean isCheckpointing() {
+		return checkpointInterval > 0;
+	}
+
+	/**
+	 * Enables recording of checkpoints into the coordinator task. The caller is responsible for ensuring that
+	 * objects are submitted to this handler in ascending OID order.
+	 */
+	public void setCheckpointInterval(int checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	/**
+	 * Returns the highest OID such that all objects submitted up to (and including) it are processed.
+	 * Objects are submitted in OID order but processed concurrently, so we cannot go beyond the lowest OID
+	 * that is still in progress.
+	 */
+	private String computeCheckpoint() {
+		String lowestInProgress = oidsInProgress.isEmpty() ? null : oidsInProgress.first();
+		String checkpoint;
+		if (lowestInProgress == null) {
+			checkpoint = oidsCompleted.isEmpty() ? null : oidsCompleted.last();
+		} else {
+			checkpoint = oidsCompleted.lower(lowestInProgress);
+		}
+		if (checkpoint != null) {
+			oidsCompleted.headSet(checkpoint, false).clear();		// these are not needed any more
+		}
+		return checkpoint;
+	}
+
+	// must be called under coordinatorTask lock
+	private void storeCheckpoint() {
+		progressAtLastCheckpoint = objectsProcessed.get();
+		String checkpoint = computeCheckpoint();
+		if (checkpoint == null || checkpoint.equals(lastCheckpoint)) {
+			return;
+		}
+		OperationResult result = new OperationResult(taskOperationPrefix + ".storeCheckpoint");
+		try {
+			coordinatorTask.setExtensionPropertyValue(SchemaConstants.MODEL_EXTENSION_LAST_PROCESSED_OID, checkpoint);
+			coordinatorTask.savePendingModifications(result);
+			lastCheckpoint = checkpoint;
+			LOGGER.trace("{} {}: stored checkpoint {} (progress: {})", getProcessShortNameCapitalized(), getContextDesc(),
+					checkpoint, progressAtLastCheckpoint);
+		} catch (CommonException | RuntimeException e) {
+			// Not critical; in the worst case we will re-process some objects after restart.
+			LoggingUtils.logUnexpectedException(LOGGER, "Couldn't store checkpoint {} into {}", e, checkpoint, coordinatorTask);
+		}
+	}
+
 	// may be overridden
 	protected String getDisplayName(PrismObject<O> object) {
 		return StatisticsUtil.getDisplayName(object);
@@ -477,19 +723,23 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 			return;             // nothing to do
 		}
 
-		int queueSize = threadsCount*2;				// actually, size of threadsCount should be sufficient but it doesn't hurt if queue is larger
+		Integer batchSizeFromTask = getWorkerBatchSize(coordinatorTask);
+		batchSize = batchSizeFromTask != null && batchSizeFromTask > 1 ? batchSizeFromTask : 1;
+
+		int queueSize = threadsCount*2*batchSize;				// actually, size of threadsCount should be sufficient but it doesn't hurt if queue is larger
 		requestQueue = new ArrayBlockingQueue<>(queueSize);
 
-		workerSpecificResults = new ArrayList<>(threadsCount);
+		workerHandlers = new ArrayList<>(threadsCount);
 
 		for (int i = 0; i < threadsCount; i++) {
 			// we intentionally do not put worker specific result under main operation result until the handler is done
 			// (because of concurrency issues - adding subresults vs e.g. putting main result into the task)
 			OperationResult workerSpecificResult = new OperationResult(taskOperationPrefix + ".handleAsynchronously");
 			workerSpecificResult.addContext("subtaskIndex", i+1);
-			workerSpecificResults.add(workerSpecificResult);
+			WorkerHandler workerHandler = new WorkerHandler(workerSpecificResult);
+			workerHandlers.add(workerHandler);
 
-			Task subtask = coordinatorTask.createSubtask(new WorkerHandler(workerSpecificResult));
+			Task subtask = coordinatorTask.createSubtask(workerHandler);
 			if (isEnableIterationStatistics()) {
 				subtask.resetIterativeTaskInformation(null);
 			}
@@ -516,5 +766,25 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 		}
 	}
 
+	protected Integer getWorkerBatchSize(Task task) {
+		PrismProperty<Integer> batchSizePrismProperty = task.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_WORKER_BATCH_SIZE);
+		if (batchSizePrismProperty != null && batchSizePrismProperty.getRealValue() != null) {
+			return batchSizePrismProperty.getRealValue();
+		} else {
+			return null;
+		}
+	}
 
+	protected Long getWorkerDrainTimeout(Task task) {
+		PrismProperty<Long> drainTimeoutPrismProperty = task.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_WORKER_DRAIN_TIMEOUT);
+		if (drainTimeoutPrismProperty != null && drainTimeoutPrismProperty.getRealValue() != null) {
+			return drainTimeoutPrismProperty.getRealValue();
+		} else {
+			return null;
+		}
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
 }
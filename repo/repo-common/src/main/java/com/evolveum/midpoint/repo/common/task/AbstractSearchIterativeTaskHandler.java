@@ -23,6 +23,7 @@ import java.util.function.Function;
 import javax.xml.namespace.QName;
 
 import com.evolveum.midpoint.prism.ItemDefinition;
+import com.evolveum.midpoint.prism.PrismConstants;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.schema.util.MiscSchemaUtil;
 import com.evolveum.midpoint.schema.util.TaskWorkStateTypeUtil;
@@ -39,6 +40,7 @@ import com.evolveum.midpoint.prism.PrismProperty;
 import com.evolveum.midpoint.prism.query.FilterUtils;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.query.QueryJaxbConvertor;
+import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
 import com.evolveum.midpoint.prism.util.CloneUtil;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.schema.GetOperationOptions;
@@ -69,7 +71,7 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
 	private String taskName;
 	private String taskOperationPrefix;
 	private boolean logFinishInfo = false;
-    private boolean countObjectsOnStart = true;         // todo make configurable per task instance (if necessary)
+    private boolean countObjectsOnStart = true;         // can be overridden by task extension (countObjectsOnStart)
     private boolean preserveStatistics = true;
     private boolean enableIterationStatistics = true;   // beware, this controls whether task stores these statistics; see also recordIterationStatistics in AbstractSearchIterativeResultHandler
     private boolean enableSynchronizationStatistics = false;
@@ -217,6 +219,8 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
 			ObjectQuery query = prepareQuery(resultHandler, type, workBucket, localCoordinatorTask, runResult, opResult);
 			Collection<SelectorOptions<GetOperationOptions>> searchOptions = createSearchOptions(resultHandler, runResult, localCoordinatorTask, opResult);
 			boolean useRepository = useRepositoryDirectly(resultHandler, runResult, localCoordinatorTask, opResult);
+			query = setupCheckpointingIfApplicable(resultHandler, type, query, searchOptions, useRepository, workBucket,
+					localCoordinatorTask);
 
 			LOGGER.trace("{}: searching {} with options {}, using query:\n{}", taskName, type, searchOptions, query.debugDumpLazily());
 
@@ -235,7 +239,7 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
 							"Unexpected ObjectAlreadyExistsException when updating task progress/expectedTotal", e);
 				}
 
-				searchOptions = updateSearchOptionsWithIterationMethod(searchOptions, localCoordinatorTask);
+				searchOptions = updateSearchOptionsWithIterationMethod(searchOptions, resultHandler, localCoordinatorTask);
 
 				resultHandler.createWorkerThreads(localCoordinatorTask, opResult);
 				if (!useRepository) {
@@ -304,6 +308,9 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
 			}
 
 			try {
+				if (resultHandler.isCheckpointing() && localCoordinatorTask.canRun()) {
+					clearCheckpointIfPresent(localCoordinatorTask);
+				}
 				finish(resultHandler, runResult, localCoordinatorTask, opResult);
 			} catch (SchemaException e) {
 				logErrorAndSetResult(runResult, resultHandler, "Schema error while finishing the run", e,
@@ -324,10 +331,74 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
 		return null;
 	}
 
+	/**
+	 * If checkpointing is requested and possible, tells the handler to record checkpoints and (if there is
+	 * a checkpoint from an interrupted run) narrows the query to objects after the checkpoint.
+	 */
+	private ObjectQuery setupCheckpointingIfApplicable(H resultHandler, Class<? extends ObjectType> type, ObjectQuery query,
+			Collection<SelectorOptions<GetOperationOptions>> searchOptions, boolean useRepository, WorkBucketType workBucket,
+			Task localCoordinatorTask) {
+		Integer checkpointInterval = getRealValue(localCoordinatorTask.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_CHECKPOINT_INTERVAL));
+		if (checkpointInterval == null || checkpointInterval <= 0) {
+			return query;
+		}
+		IterationMethodType iterationMethod = getIterationMethodFromTask(localCoordinatorTask);
+		if (TaskWorkStateTypeUtil.hasLimitations(workBucket)) {
+			LOGGER.debug("{}: not using checkpoints because work buckets are used", taskName);
+			return query;
+		} else if (query.getPaging() != null) {
+			LOGGER.warn("{}: not using checkpoints because the query contains paging: {}", taskName, query.getPaging());
+			return query;
+		} else if (iterationMethod != null && iterationMethod != IterationMethodType.STRICTLY_SEQUENTIAL_PAGING) {
+			LOGGER.warn("{}: not using checkpoints because iteration method is {}", taskName, iterationMethod);
+			return query;
+		} else if (!isCheckpointingSupported(type, searchOptions, useRepository)) {
+			LOGGER.warn("{}: not using checkpoints because they are not supported for objects of type {} in this task",
+					taskName, type.getSimpleName());
+			return query;
+		}
+		resultHandler.setCheckpointInterval(checkpointInterval);
+		String lastProcessedOid = getRealValue(localCoordinatorTask.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_LAST_PROCESSED_OID));
+		if (lastProcessedOid == null) {
+			return query;
+		}
+		LOGGER.info("{}: resuming interrupted run of {} after object {}", taskName, localCoordinatorTask, lastProcessedOid);
+		ObjectQuery narrowedQuery = query.clone();
+		narrowedQuery.addFilter(QueryBuilder.queryFor(type, prismContext)
+				.item(PrismConstants.T_ID).gt(lastProcessedOid)
+				.buildFilter());
+		return narrowedQuery;
+	}
+
+	/**
+	 * Whether checkpoints can be used. Objects have to be returned in OID order if strictly sequential paging is requested:
+	 * this is true for the repository, whereas objects fetched from resources come in the order provided by the connector.
+	 * Moreover, a resumed run has to use the same query as the interrupted one, otherwise objects that enter the query
+	 * below the checkpoint would be skipped. Handlers whose query changes from run to run have to override this method.
+	 */
+	protected boolean isCheckpointingSupported(Class<? extends ObjectType> type,
+			Collection<SelectorOptions<GetOperationOptions>> searchOptions, boolean useRepository) {
+		return useRepository || !ShadowType.class.isAssignableFrom(type)
+				|| GetOperationOptions.isNoFetch(SelectorOptions.findRootOptions(searchOptions));
+	}
+
+	/**
+	 * Removes the checkpoint after the run has finished its duties, so the next run starts from the beginning.
+	 */
+	private void clearCheckpointIfPresent(Task localCoordinatorTask) throws SchemaException {
+		PrismProperty<String> lastProcessedOid = localCoordinatorTask.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_LAST_PROCESSED_OID);
+		if (lastProcessedOid != null && !lastProcessedOid.isEmpty()) {
+			localCoordinatorTask.deleteExtensionProperty(lastProcessedOid.clone());
+		}
+	}
+
 	private Collection<SelectorOptions<GetOperationOptions>> updateSearchOptionsWithIterationMethod(
-			Collection<SelectorOptions<GetOperationOptions>> searchOptions, Task localCoordinatorTask) {
+			Collection<SelectorOptions<GetOperationOptions>> searchOptions, H resultHandler, Task localCoordinatorTask) {
 		Collection<SelectorOptions<GetOperationOptions>> rv;
 		IterationMethodType iterationMethod = getIterationMethodFromTask(localCoordinatorTask);
+		if (iterationMethod == null && resultHandler.isCheckpointing()) {
+			iterationMethod = IterationMethodType.STRICTLY_SEQUENTIAL_PAGING;     // checkpoints require OID ordering
+		}
 		if (iterationMethod != null) {
 			rv = CloneUtil.cloneCollectionMembers(searchOptions);
 			return SelectorOptions.updateRootOptions(rv, o -> o.setIterationMethod(iterationMethod), GetOperationOptions::new);
@@ -342,7 +413,7 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
 			WorkBucketType workBucket, Task localCoordinatorTask,
 			OperationResult opResult) throws SchemaException, ObjectNotFoundException, CommunicationException, ConfigurationException,
 			SecurityViolationException, ExpressionEvaluationException {
-		if (!countObjectsOnStart) {
+		if (!isCountObjectsOnStart(localCoordinatorTask)) {
 			return null;
 		} else if (TaskWorkStateTypeUtil.hasLimitations(workBucket)) {
 			// We avoid computing expected total if we are processing a bucket -- actually we could but we should
@@ -365,6 +436,16 @@ public abstract class AbstractSearchIterativeTaskHandler<O extends ObjectType, H
 		}
 	}
 
+	private boolean isCountObjectsOnStart(Task localCoordinatorTask) {
+		PrismProperty<Boolean> countObjectsOnStartProperty = localCoordinatorTask
+				.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_COUNT_OBJECTS_ON_START);
+		if (countObjectsOnStartProperty != null && countObjectsOnStartProperty.getRealValue() != null) {
+			return countObjectsOnStartProperty.getRealValue();
+		} else {
+			return countObjectsOnStart;
+		}
+	}
+
 	private ObjectQuery prepareQuery(H resultHandler,
 			Class<? extends ObjectType> type,
 			WorkBucketType workBucket, Task localCoordinatorTask, TaskWorkBucketProcessingResult runResult,
@@ -739,6 +739,10 @@ public class SimpleTaskAdapter implements Task {
     public void recordMappingOperation(String objectOid, String objectName, String objectTypeName, String mappingName, long duration) {
     }
 
+    @Override
+    public void recordProjectorComponentOperation(String component, String resourceName, Integer wave, long duration) {
+    }
+
     @Override
     public void recordSynchronizationOperationEnd(String objectName, String objectDisplayName, QName objectType, String objectOid, long started,
 			Throwable exception, SynchronizationInformation.Record originalStateIncrement, SynchronizationInformation.Record newStateIncrement) {
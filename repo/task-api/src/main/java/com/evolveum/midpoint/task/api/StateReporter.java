@@ -53,6 +53,16 @@ public class StateReporter {
         this.task = task;
     }
 
+    /**
+     * Creates a reporter for the same resource and task, to be used for operations executed concurrently
+     * with the ones reported by this reporter (the reporter tracks only one operation at a time).
+     */
+    public StateReporter createConcurrentReporter() {
+        StateReporter reporter = new StateReporter(resourceOid, task);
+        reporter.resourceName = resourceName;
+        return reporter;
+    }
+
     private String getResourceName() {
         if (resourceName != null) {
             return resourceName;
@@ -89,6 +89,15 @@ public interface TaskManager {
 
     void waitForTransientChildren(Task task, OperationResult result);
 
+    /**
+     * Waits for transient children at most the specified time (in milliseconds). Children that do not finish
+     * in time are cancelled (with thread interruption), and then they are waited for a short grace period.
+     * Children that ignore the interruption and do not stop even then are not waited for anymore.
+     *
+     * @return true if no children are executing any more (either finished or stopped after cancellation)
+     */
+    boolean waitForTransientChildren(Task task, long timeout, OperationResult result);
+
     /**
      * TODO
      */
@@ -26,6 +26,8 @@ import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 
 import javax.annotation.PostConstruct;
@@ -185,6 +187,9 @@ public class TaskManagerQuartzImpl implements TaskManager, BeanFactoryAware {
     // (see shutdown() method)
     private static final long WAIT_ON_SHUTDOWN = 2000;
 
+    // how long to wait for lightweight subtasks that were cancelled (interrupted) because they did not finish in time
+    private static final long CANCELLED_SUBTASKS_GRACE_PERIOD = 5000;
+
 	private List<String> PURGE_SUCCESSFUL_RESULT_FOR = Collections.singletonList(TaskCategory.WORKFLOW);
 
 	//region Initialization and shutdown
@@ -1128,6 +1133,49 @@ public class TaskManagerQuartzImpl implements TaskManager, BeanFactoryAware {
         }
     }
 
+    @Override
+    public boolean waitForTransientChildren(Task task, long timeout, OperationResult result) {
+        long deadline = System.currentTimeMillis() + timeout;
+        boolean allStopped = true;
+        List<TaskQuartzImpl> cancelled = new ArrayList<>();
+        for (Task subtask : task.getRunningLightweightAsynchronousSubtasks()) {
+            Future future = ((TaskQuartzImpl) subtask).getLightweightHandlerFuture();
+            if (future != null) {       // should always be
+                LOGGER.debug("Waiting for subtask {} to complete (at most {} ms).", subtask, deadline - System.currentTimeMillis());
+                try {
+                    future.get(Math.max(deadline - System.currentTimeMillis(), 0L), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    LOGGER.warn("Subtask {} did not complete in {} ms, cancelling it.", subtask, timeout);
+                    future.cancel(true);
+                    cancelled.add((TaskQuartzImpl) subtask);
+                } catch (CancellationException e) {
+                    cancelled.add((TaskQuartzImpl) subtask);
+                } catch (Throwable t) {
+                    LoggingUtils.logUnexpectedException(LOGGER, "Exception while waiting for subtask {} to complete.", t, subtask);
+                    result.recordWarning("Got exception while waiting for subtask " + subtask + " to complete: " + t.getMessage(), t);
+                }
+            }
+        }
+        // the Futures were cancelled; however, the run() methods may be still executing
+        long graceDeadline = System.currentTimeMillis() + CANCELLED_SUBTASKS_GRACE_PERIOD;
+        for (TaskQuartzImpl subtask : cancelled) {
+            while (subtask.isLightweightHandlerExecuting() && System.currentTimeMillis() < graceDeadline) {
+                LOGGER.debug("Subtask {} was cancelled, waiting for its real completion.", subtask);
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    LOGGER.warn("Waiting for subtask {} completion interrupted.", subtask);
+                    break;
+                }
+            }
+            if (subtask.isLightweightHandlerExecuting()) {
+                LOGGER.warn("Subtask {} was cancelled but it is still executing; not waiting for it anymore.", subtask);
+                allStopped = false;
+            }
+        }
+        return allStopped;
+    }
+
     //endregion
 
     //region Getting and searching for tasks and nodes
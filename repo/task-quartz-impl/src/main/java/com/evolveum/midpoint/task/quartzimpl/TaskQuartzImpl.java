@@ -2940,6 +2940,11 @@ public class TaskQuartzImpl implements Task {
 		environmentalPerformanceInformation.recordMappingOperation(objectOid, objectName, objectTypeName, mappingName, duration);
 	}
 
+	@Override
+	public void recordProjectorComponentOperation(String component, String resourceName, Integer wave, long duration) {
+		environmentalPerformanceInformation.recordProjectorComponentOperation(component, resourceName, wave, duration);
+	}
+
 	@Override
 	public synchronized void recordSynchronizationOperationEnd(String objectName, String objectDisplayName, QName objectType,
 			String objectOid,
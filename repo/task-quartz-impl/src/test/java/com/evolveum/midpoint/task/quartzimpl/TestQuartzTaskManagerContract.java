@@ -63,6 +63,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.evolveum.midpoint.schema.GetOperationOptions.retrieveItemsNamed;
 import static com.evolveum.midpoint.test.IntegrationTestTools.display;
@@ -80,6 +81,7 @@ public class TestQuartzTaskManagerContract extends AbstractTaskManagerTest {
 	private static final transient Trace LOGGER = TraceManager.getTrace(TestQuartzTaskManagerContract.class);
 
     private static final String TASK_OWNER_FILENAME = "src/test/resources/basic/owner.xml";
+    private static final String TASK_OWNER_OID = "c0c010c0-d34d-b33f-f00d-111111111111";
     private static final String TASK_OWNER2_FILENAME = "src/test/resources/basic/owner2.xml";
     private static final String TASK_OWNER2_OID = "c0c010c0-d34d-b33f-f00d-111111111112";
     private static final String NS_WHATEVER = "http://myself.me/schemas/whatever";
@@ -1372,6 +1374,65 @@ public class TestQuartzTaskManagerContract extends AbstractTaskManagerTest {
         }
     }
 
+    /**
+     * Lightweight subtasks that do not finish in time are interrupted. The ones that react on the interruption
+     * are waited for; the ones that ignore it are reported as still executing.
+     */
+    @Test
+    public void test106WaitForTransientChildrenIgnoringInterrupts() throws Exception {
+        final String TEST_NAME = "test106WaitForTransientChildrenIgnoringInterrupts";
+        final OperationResult result = createResult(TEST_NAME, LOGGER);
+
+        PrismObject<UserType> owner = repositoryService.getObject(UserType.class, TASK_OWNER_OID, null, result);
+
+        // a subtask that stops when interrupted
+        Task politeTask = taskManager.createTaskInstance(TEST_NAME);
+        politeTask.setOwner(owner);
+        MockParallelTaskHandler.MyLightweightTaskHandler politeHandler = parallelTaskHandler.new MyLightweightTaskHandler(null);
+        Task politeSubtask = politeTask.createSubtask(politeHandler);
+        politeSubtask.startLightweightHandler();
+
+        waitFor("Waiting for the subtask to start", () -> politeHandler.hasRun(), 10000, 100);
+
+        boolean politeStopped = taskManager.waitForTransientChildren(politeTask, 500L, result);
+
+        assertTrue("Interrupted subtask was not waited for", politeStopped);
+        assertTrue("Handler has not exited", politeHandler.hasExited());
+        assertFalse("Handler is still executing", ((TaskQuartzImpl) politeSubtask).isLightweightHandlerExecuting());
+
+        // a subtask that ignores interruptions
+        Task stubbornTask = taskManager.createTaskInstance(TEST_NAME);
+        stubbornTask.setOwner(owner);
+        AtomicBoolean started = new AtomicBoolean();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        AtomicBoolean stop = new AtomicBoolean();
+        Task stubbornSubtask = stubbornTask.createSubtask(task -> {
+            started.set(true);
+            while (!stop.get()) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                }
+            }
+        });
+        stubbornSubtask.startLightweightHandler();
+
+        waitFor("Waiting for the subtask to start", () -> started.get(), 10000, 100);
+
+        try {
+            boolean stubbornStopped = taskManager.waitForTransientChildren(stubbornTask, 500L, result);
+
+            assertFalse("Subtask ignoring interruption was reported as stopped", stubbornStopped);
+            assertTrue("Subtask was not interrupted", interrupted.get());
+            assertTrue("Handler is not executing", ((TaskQuartzImpl) stubbornSubtask).isLightweightHandlerExecuting());
+        } finally {
+            stop.set(true);
+        }
+
+        waitFor("Waiting for the subtask to finish", () -> !((TaskQuartzImpl) stubbornSubtask).isLightweightHandlerExecuting(), 10000, 100);
+    }
+
     @Test
     public void test108SecondaryGroupLimit() throws Exception {
         final String TEST_NAME = "test108SecondaryGroupLimit";
@@ -15,7 +15,11 @@
  */
 package com.evolveum.midpoint.testing.story;
 
+import static org.testng.AssertJUnit.assertTrue;
+
 import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.List;
 
 import javax.xml.namespace.QName;
@@ -35,6 +39,7 @@ import com.evolveum.midpoint.prism.PrismContainerDefinitionImpl;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.PrismObjectDefinition;
 import com.evolveum.midpoint.prism.PrismProperty;
+import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.repo.cache.RepositoryCache;
 import com.evolveum.midpoint.schema.internals.InternalCounters;
 import com.evolveum.midpoint.schema.internals.InternalMonitor;
@@ -45,7 +50,9 @@ import com.evolveum.midpoint.util.DOMUtil;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.InternalsConfigurationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
 
@@ -85,6 +92,8 @@ public class TestOperationPerf extends AbstractStoryTest {
 	private CountingInspector internalInspector;
 	private ProfilingModelInspectorManager profilingModelInspectorManager;
 
+	private long recomputeClonesWithoutSharing;
+
 	@Override
 	public void initSystem(Task initTask, OperationResult initResult) throws Exception {
 		super.initSystem(initTask, initResult);
@@ -187,6 +196,87 @@ public class TestOperationPerf extends AbstractStoryTest {
         assertCounterIncrement(InternalCounters.PRISM_OBJECT_COMPARE_COUNT, 0);
 	}
 
+	@Test
+    public void test200RecomputeAlice() throws Exception {
+		final String TEST_NAME = "test200RecomputeAlice";
+		recomputeClonesWithoutSharing = testRecomputeUser(TEST_NAME, USER_ALICE_OID);
+	}
+
+	/**
+	 * The same as test200 but with shareImmutableObjectsInLens. The focus and its roles are not cloned then.
+	 */
+	@Test
+    public void test210RecomputeAliceShareImmutableObjects() throws Exception {
+		final String TEST_NAME = "test210RecomputeAliceShareImmutableObjects";
+
+		Task task = createTask(TEST_NAME);
+		OperationResult result = task.getResult();
+		setShareImmutableObjectsInLens(true, task, result);
+		try {
+			long clones = testRecomputeUser(TEST_NAME, USER_ALICE_OID);
+
+			assertTrue("Sharing of immutable objects did not decrease the number of clones: " + clones
+					+ " (was " + recomputeClonesWithoutSharing + " without sharing)", clones < recomputeClonesWithoutSharing);
+		} finally {
+			setShareImmutableObjectsInLens(false, task, result);
+		}
+	}
+
+	// returns number of object clones
+	private long testRecomputeUser(final String TEST_NAME, String userOid) throws Exception {
+        displayTestTitle(TEST_NAME);
+
+        Task task = createTask(TEST_NAME);
+        OperationResult result = task.getResult();
+
+        // warming up the caches, so we measure steady state
+        recomputeUser(userOid, task, result);
+
+        internalInspector.reset();
+        profilingModelInspectorManager.reset();
+        rememberCounter(InternalCounters.PRISM_OBJECT_CLONE_COUNT);
+        long allocatedBefore = getAllocatedBytes();
+        long startMillis = System.currentTimeMillis();
+
+        // WHEN
+        displayWhen(TEST_NAME);
+
+        recomputeUser(userOid, task, result);
+
+        // THEN
+        displayThen(TEST_NAME);
+        long endMillis = System.currentTimeMillis();
+        long allocated = getAllocatedBytes() - allocatedBefore;
+        assertSuccess(result);
+
+        long clones = getCounterIncrement(InternalCounters.PRISM_OBJECT_CLONE_COUNT);
+        display("Recomputed user in "+(endMillis - startMillis)+" ms");
+        display("Object clones", clones);
+        display("Allocated bytes", allocated);          // meaningless if the JVM cannot measure it
+        display("Model diagnostics", profilingModelInspectorManager);
+        display("Internal inspector", internalInspector);
+
+        PrismObject<UserType> userAfter = getUser(userOid);
+        assertAssignments(userAfter, 1);
+        return clones;
+	}
+
+	private void setShareImmutableObjectsInLens(boolean value, Task task, OperationResult result) throws Exception {
+		modifyObjectReplaceProperty(SystemConfigurationType.class, SYSTEM_CONFIGURATION_OID,
+				new ItemPath(SystemConfigurationType.F_INTERNALS, InternalsConfigurationType.F_SHARE_IMMUTABLE_OBJECTS_IN_LENS),
+				task, result, value);
+	}
+
+	// negative if not supported by the JVM
+	private long getAllocatedBytes() {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		} else {
+			return -1;
+		}
+	}
+
 	private void populateUserExtension(PrismObject<UserType> user,
 			int numberOfProperties) throws SchemaException {
 		PrismContainer<?> extension = user.getExtension();